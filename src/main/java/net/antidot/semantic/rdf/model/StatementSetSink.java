@@ -0,0 +1,76 @@
+/* 
+ * Copyright 2011-2013 Antidot opensource@antidot.net
+ * https://github.com/antidot/db2triples
+ * 
+ * This file is part of DB2Triples
+ *
+ * DB2Triples is free software; you can redistribute it and/or 
+ * modify it under the terms of the GNU Lesser General Public License as 
+ * published by the Free Software Foundation; either version 2 of 
+ * the License, or (at your option) any later version.
+ * 
+ * DB2Triples is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+/***************************************************************************
+ *
+ * RDF Triple Sink : Statement Set Sink
+ *
+ * Sink which collects every emitted triple into a set of statements
+ * (duplicated triples are stored once).
+ *
+ ****************************************************************************/
+package net.antidot.semantic.rdf.model;
+
+import java.util.HashSet;
+
+import org.openrdf.model.Resource;
+import org.openrdf.model.Statement;
+import org.openrdf.model.URI;
+import org.openrdf.model.Value;
+import org.openrdf.model.ValueFactory;
+import org.openrdf.model.impl.ValueFactoryImpl;
+
+public class StatementSetSink implements TripleSink {
+
+	// Collected statements
+	private HashSet<Statement> statements;
+
+	// Sesame valueFactory which generates statements
+	private ValueFactory vf;
+
+	public StatementSetSink() {
+		statements = new HashSet<Statement>();
+		vf = new ValueFactoryImpl();
+	}
+
+	public void add(Resource s, URI p, Value o, Resource... contexts) {
+		if (contexts == null || contexts.length == 0)
+			statements.add(vf.createStatement(s, p, o));
+		else
+			for (Resource context : contexts)
+				statements.add(vf.createStatement(s, p, o, context));
+	}
+
+	public void addStatement(Statement s) {
+		statements.add(s);
+	}
+
+	public void flush() {
+		// Nothing to do : statements are kept in memory
+	}
+
+	public void close() {
+		// Nothing to do : statements are kept in memory
+	}
+
+	public HashSet<Statement> getStatements() {
+		return statements;
+	}
+
+}
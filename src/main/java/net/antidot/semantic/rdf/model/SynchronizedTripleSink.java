@@ -0,0 +1,64 @@
+/* 
+ * Copyright 2011-2013 Antidot opensource@antidot.net
+ * https://github.com/antidot/db2triples
+ * 
+ * This file is part of DB2Triples
+ *
+ * DB2Triples is free software; you can redistribute it and/or 
+ * modify it under the terms of the GNU Lesser General Public License as 
+ * published by the Free Software Foundation; either version 2 of 
+ * the License, or (at your option) any later version.
+ * 
+ * DB2Triples is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+/***************************************************************************
+ *
+ * RDF Triple Sink : Synchronized Triple Sink
+ *
+ * Decorator which serializes every call to a triple sink, so that
+ * several mapping workers can share the same output.
+ *
+ ****************************************************************************/
+package net.antidot.semantic.rdf.model;
+
+import org.openrdf.model.Resource;
+import org.openrdf.model.Statement;
+import org.openrdf.model.URI;
+import org.openrdf.model.Value;
+
+public class SynchronizedTripleSink implements TripleSink {
+
+	// Decorated sink
+	private TripleSink sink;
+
+	public SynchronizedTripleSink(TripleSink sink) {
+		if (sink == null)
+			throw new IllegalArgumentException(
+					"[SynchronizedTripleSink:SynchronizedTripleSink] No triple sink found.");
+		this.sink = sink;
+	}
+
+	public synchronized void add(Resource s, URI p, Value o,
+			Resource... contexts) {
+		sink.add(s, p, o, contexts);
+	}
+
+	public synchronized void addStatement(Statement s) {
+		sink.addStatement(s);
+	}
+
+	public synchronized void flush() {
+		sink.flush();
+	}
+
+	public synchronized void close() {
+		sink.close();
+	}
+
+}
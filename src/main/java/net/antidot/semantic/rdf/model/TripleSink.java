@@ -0,0 +1,67 @@
+/* 
+ * Copyright 2011-2013 Antidot opensource@antidot.net
+ * https://github.com/antidot/db2triples
+ * 
+ * This file is part of DB2Triples
+ *
+ * DB2Triples is free software; you can redistribute it and/or 
+ * modify it under the terms of the GNU Lesser General Public License as 
+ * published by the Free Software Foundation; either version 2 of 
+ * the License, or (at your option) any later version.
+ * 
+ * DB2Triples is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+/***************************************************************************
+ *
+ * RDF Triple Sink
+ *
+ * Output of the mapping engines : every generated triple is emitted
+ * into a sink which stores it (see SesameDataSet) or serializes it
+ * directly (see RDFWriterSink).
+ *
+ ****************************************************************************/
+package net.antidot.semantic.rdf.model;
+
+import org.openrdf.model.Resource;
+import org.openrdf.model.Statement;
+import org.openrdf.model.URI;
+import org.openrdf.model.Value;
+
+public interface TripleSink {
+
+	/**
+	 * Emit a triple into the sink.
+	 * 
+	 * @param s
+	 *            subject
+	 * @param p
+	 *            predicate
+	 * @param o
+	 *            object
+	 * @param contexts
+	 *            varArgs context objects (use default graph if null)
+	 */
+	public void add(Resource s, URI p, Value o, Resource... contexts);
+
+	/**
+	 * Emit a statement object into the sink.
+	 */
+	public void addStatement(Statement s);
+
+	/**
+	 * Make every triple emitted so far durable or visible to readers.
+	 */
+	public void flush();
+
+	/**
+	 * Flush the sink and release its resources.
+	 */
+	public void close();
+
+}
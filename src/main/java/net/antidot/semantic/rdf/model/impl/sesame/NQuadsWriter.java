@@ -0,0 +1,104 @@
+/* 
+ * Copyright 2011-2013 Antidot opensource@antidot.net
+ * https://github.com/antidot/db2triples
+ * 
+ * This file is part of DB2Triples
+ *
+ * DB2Triples is free software; you can redistribute it and/or 
+ * modify it under the terms of the GNU Lesser General Public License as 
+ * published by the Free Software Foundation; either version 2 of 
+ * the License, or (at your option) any later version.
+ * 
+ * DB2Triples is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+/***************************************************************************
+ *
+ * N-Quads Writer
+ *
+ * Serializes statements line by line in N-Quads : a N-Triples line
+ * followed by the context of the statement, if any.
+ *
+ * Reference : http://sw.deri.org/2008/07/n-quads/
+ *
+ ****************************************************************************/
+package net.antidot.semantic.rdf.model.impl.sesame;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.Charset;
+
+import org.openrdf.model.Statement;
+import org.openrdf.rio.RDFFormat;
+import org.openrdf.rio.RDFHandlerException;
+import org.openrdf.rio.RDFWriter;
+import org.openrdf.rio.ntriples.NTriplesUtil;
+
+public class NQuadsWriter implements RDFWriter {
+
+	private Writer writer;
+
+	public NQuadsWriter(OutputStream out) {
+		this(new OutputStreamWriter(out, Charset.forName("UTF-8")));
+	}
+
+	public NQuadsWriter(Writer writer) {
+		this.writer = writer;
+	}
+
+	public RDFFormat getRDFFormat() {
+		return RDFFormat.NQUADS;
+	}
+
+	public void startRDF() throws RDFHandlerException {
+		// Nothing to write
+	}
+
+	public void endRDF() throws RDFHandlerException {
+		try {
+			writer.flush();
+		} catch (IOException e) {
+			throw new RDFHandlerException(e);
+		}
+	}
+
+	public void handleNamespace(String prefix, String uri)
+			throws RDFHandlerException {
+		// N-Quads does not support namespace prefixes
+	}
+
+	public void handleStatement(Statement st) throws RDFHandlerException {
+		try {
+			NTriplesUtil.append(st.getSubject(), writer);
+			writer.write(" ");
+			NTriplesUtil.append(st.getPredicate(), writer);
+			writer.write(" ");
+			NTriplesUtil.append(st.getObject(), writer);
+			if (st.getContext() != null) {
+				writer.write(" ");
+				NTriplesUtil.append(st.getContext(), writer);
+			}
+			writer.write(" .\n");
+		} catch (IOException e) {
+			throw new RDFHandlerException(e);
+		}
+	}
+
+	public void handleComment(String comment) throws RDFHandlerException {
+		try {
+			writer.write("# ");
+			writer.write(comment);
+			writer.write("\n");
+		} catch (IOException e) {
+			throw new RDFHandlerException(e);
+		}
+	}
+
+}
@@ -0,0 +1,204 @@
+/* 
+ * Copyright 2011-2013 Antidot opensource@antidot.net
+ * https://github.com/antidot/db2triples
+ * 
+ * This file is part of DB2Triples
+ *
+ * DB2Triples is free software; you can redistribute it and/or 
+ * modify it under the terms of the GNU Lesser General Public License as 
+ * published by the Free Software Foundation; either version 2 of 
+ * the License, or (at your option) any later version.
+ * 
+ * DB2Triples is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+/***************************************************************************
+ *
+ * RDF Writer Sink
+ *
+ * Triple sink which serializes every emitted triple straight to an output
+ * stream. No triple is kept in memory : the memory used does not depend
+ * on the size of the mapped database. Duplicate triples are not removed.
+ *
+ ****************************************************************************/
+package net.antidot.semantic.rdf.model.impl.sesame;
+
+import java.io.BufferedOutputStream;
+import java.io.BufferedWriter;
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+
+import net.antidot.semantic.rdf.model.TripleSink;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.openrdf.model.Resource;
+import org.openrdf.model.Statement;
+import org.openrdf.model.URI;
+import org.openrdf.model.Value;
+import org.openrdf.model.ValueFactory;
+import org.openrdf.model.impl.ValueFactoryImpl;
+import org.openrdf.rio.RDFFormat;
+import org.openrdf.rio.RDFHandlerException;
+import org.openrdf.rio.RDFWriter;
+import org.openrdf.rio.Rio;
+
+public class RDFWriterSink implements TripleSink {
+
+	// Log
+	private static Log log = LogFactory.getLog(RDFWriterSink.class);
+
+	// Value factory
+	private static ValueFactory vf = new ValueFactoryImpl();
+
+	private OutputStream out;
+	// Buffered character stream (null for binary formats)
+	private Writer textOut;
+	// Close the output stream with the sink
+	private boolean ownStream;
+	private RDFWriter writer;
+	private boolean closed = false;
+	private long nbStatements = 0;
+
+	/**
+	 * Serialize triples into an output stream. The stream is flushed but not
+	 * closed by close().
+	 * 
+	 * @param out
+	 * @param format
+	 */
+	public RDFWriterSink(OutputStream out, RDFFormat format) {
+		this(out, format, false);
+	}
+
+	/**
+	 * Serialize triples into a file.
+	 * 
+	 * @param filePath
+	 * @param format
+	 * @throws FileNotFoundException
+	 */
+	public RDFWriterSink(String filePath, RDFFormat format)
+			throws FileNotFoundException {
+		this(new BufferedOutputStream(new FileOutputStream(filePath)), format,
+				true);
+	}
+
+	private RDFWriterSink(OutputStream out, RDFFormat format, boolean ownStream) {
+		if (out == null)
+			throw new IllegalArgumentException(
+					"[RDFWriterSink:RDFWriterSink] No output stream.");
+		this.out = out;
+		this.ownStream = ownStream;
+		if (format.hasCharset()) {
+			textOut = new BufferedWriter(new OutputStreamWriter(out,
+					format.getCharset()));
+			writer = createWriter(format, textOut);
+		} else {
+			writer = createWriter(format, out);
+		}
+		try {
+			writer.startRDF();
+		} catch (RDFHandlerException e) {
+			throw new IllegalStateException(
+					"[RDFWriterSink:RDFWriterSink] Unable to start RDF output : "
+							+ e.getMessage(), e);
+		}
+	}
+
+	/**
+	 * Create a RDF writer for a format. N-Quads are handled by NQuadsWriter
+	 * since Sesame does not provide any writer for this format.
+	 */
+	public static RDFWriter createWriter(RDFFormat format, OutputStream out) {
+		if (RDFFormat.NQUADS.equals(format))
+			return new NQuadsWriter(out);
+		return Rio.createWriter(format, out);
+	}
+
+	/**
+	 * Create a RDF writer for a textual format.
+	 */
+	public static RDFWriter createWriter(RDFFormat format, Writer out) {
+		if (RDFFormat.NQUADS.equals(format))
+			return new NQuadsWriter(out);
+		return Rio.createWriter(format, out);
+	}
+
+	public void add(Resource s, URI p, Value o, Resource... contexts) {
+		if (contexts == null || contexts.length == 0) {
+			addStatement(vf.createStatement(s, p, o));
+		} else {
+			for (Resource context : contexts)
+				addStatement(vf.createStatement(s, p, o, context));
+		}
+	}
+
+	public void addStatement(Statement s) {
+		if (closed)
+			throw new IllegalStateException(
+					"[RDFWriterSink:addStatement] Sink is already closed.");
+		try {
+			writer.handleStatement(s);
+			nbStatements++;
+		} catch (RDFHandlerException e) {
+			throw new IllegalStateException(
+					"[RDFWriterSink:addStatement] Unable to write statement "
+							+ s + " : " + e.getMessage(), e);
+		}
+	}
+
+	public void flush() {
+		if (closed)
+			return;
+		try {
+			if (textOut != null)
+				textOut.flush();
+			out.flush();
+		} catch (IOException e) {
+			throw new IllegalStateException(
+					"[RDFWriterSink:flush] Unable to flush output : "
+							+ e.getMessage(), e);
+		}
+	}
+
+	public void close() {
+		if (closed)
+			return;
+		try {
+			writer.endRDF();
+			flush();
+			if (ownStream)
+				out.close();
+		} catch (RDFHandlerException e) {
+			throw new IllegalStateException(
+					"[RDFWriterSink:close] Unable to end RDF output : "
+							+ e.getMessage(), e);
+		} catch (IOException e) {
+			throw new IllegalStateException(
+					"[RDFWriterSink:close] Unable to close output : "
+							+ e.getMessage(), e);
+		} finally {
+			closed = true;
+		}
+		log.debug("[RDFWriterSink:close] " + nbStatements
+				+ " statements written.");
+	}
+
+	/**
+	 * Return the number of statements written so far.
+	 */
+	public long getNbStatements() {
+		return nbStatements;
+	}
+
+}
@@ -44,9 +44,12 @@ import java.util.HashMap;
 import java.util.List;
 import java.util.Set;
 
+import net.antidot.semantic.rdf.model.TripleSink;
+
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.openrdf.model.BNode;
+import org.openrdf.model.Namespace;
 import org.openrdf.model.Resource;
 import org.openrdf.model.Statement;
 import org.openrdf.model.URI;
@@ -64,20 +67,43 @@ import org.openrdf.repository.RepositoryResult;
 import org.openrdf.repository.http.HTTPRepository;
 import org.openrdf.repository.sail.SailRepository;
 import org.openrdf.rio.RDFFormat;
+import org.openrdf.rio.RDFHandler;
+import org.openrdf.rio.RDFHandlerException;
 import org.openrdf.rio.RDFParseException;
 import org.openrdf.rio.RDFWriter;
 import org.openrdf.rio.Rio;
+import org.openrdf.rio.helpers.RDFHandlerBase;
 import org.openrdf.sail.inferencer.fc.ForwardChainingRDFSInferencer;
 import org.openrdf.sail.memory.MemoryStore;
 import org.openrdf.sail.nativerdf.NativeStore;
 
-public class SesameDataSet {
+public class SesameDataSet implements TripleSink {
 
 	// Log
 	private static Log log = LogFactory.getLog(SesameDataSet.class);
 
 	private Repository currentRepository = null;
 
+	// Batched writes : default commit intervals
+	public static final int DEFAULT_COMMIT_STATEMENTS = 10000;
+	public static final long DEFAULT_COMMIT_BYTES = 4 * 1024 * 1024;
+
+	// Long-lived connection used in batch mode (null until first add)
+	private RepositoryConnection batchConnection = null;
+	// Commit interval in number of statements (0 or less : no batch mode)
+	private int commitStatements = 0;
+	// Commit interval in bytes of lexical forms (0 or less : no limit)
+	private long commitBytes = 0;
+	// Statements and bytes added since last commit
+	private int pendingStatements = 0;
+	private long pendingBytes = 0;
+
+	// Spill mode : default memory budget of the statement buffer (64 MB)
+	public static final long DEFAULT_SPILL_MEMORY = 64 * 1024 * 1024;
+	// Spill mode : statements added outside of the repository (null if
+	// disabled)
+	private SpilledStatements spilledStatements = null;
+
 	// useful -local- constants
 	static RDFFormat NTRIPLES = RDFFormat.NTRIPLES;
 	static RDFFormat N3 = RDFFormat.N3;
@@ -148,6 +174,7 @@ public class SesameDataSet {
 	public void loadDataFromFile(String filePath, RDFFormat format,
 			Resource... contexts) throws RepositoryException,
 			RDFParseException, IOException {
+		flush();
 		RepositoryConnection con = null;
 		try {
 			con = currentRepository.getConnection();
@@ -165,6 +192,7 @@ public class SesameDataSet {
 	}
 
 	public void loadDataFromURL(String stringURL) throws RepositoryException, RDFParseException, IOException {
+		flush();
 		RepositoryConnection con = null;
 		try {
 			con = currentRepository.getConnection();
@@ -276,6 +304,14 @@ public class SesameDataSet {
 		if (log.isDebugEnabled())
 			log.debug("[SesameDataSet:add] Add triple (" + s.stringValue()
 					+ ", " + p.stringValue() + ", " + o.stringValue() + ").");
+		if (isSpillMode()) {
+			addToSpill(s, p, o, contexts);
+			return;
+		}
+		if (isBatchMode()) {
+			addToBatch(s, p, o, contexts);
+			return;
+		}
 		try {
 			RepositoryConnection con = currentRepository.getConnection();
 			try {
@@ -294,7 +330,158 @@ public class SesameDataSet {
 		}
 	}
 
+	/**
+	 * Enable batched writes : statements are added through a long-lived
+	 * connection which is committed every maxStatements statements and/or
+	 * every maxBytes bytes of lexical forms. Pending statements are committed
+	 * by flush() and close(), and before any other access to the repository.
+	 * 
+	 * @param maxStatements
+	 *            commit interval in number of statements (0 or less disables
+	 *            batch mode)
+	 * @param maxBytes
+	 *            commit interval in bytes (0 or less : no limit by size)
+	 */
+	public void setBatchMode(int maxStatements, long maxBytes) {
+		if (maxStatements <= 0)
+			close();
+		commitStatements = maxStatements;
+		commitBytes = maxBytes;
+	}
+
+	/**
+	 * Enable batched writes with default commit intervals.
+	 */
+	public void setBatchMode() {
+		setBatchMode(DEFAULT_COMMIT_STATEMENTS, DEFAULT_COMMIT_BYTES);
+	}
+
+	public boolean isBatchMode() {
+		return commitStatements > 0;
+	}
+
+	private void addToBatch(Resource s, URI p, Value o, Resource... contexts) {
+		try {
+			if (batchConnection == null) {
+				batchConnection = currentRepository.getConnection();
+				batchConnection.setAutoCommit(false);
+			}
+			batchConnection.add(s, p, o, contexts);
+			pendingStatements++;
+			pendingBytes += s.stringValue().length()
+					+ p.stringValue().length() + o.stringValue().length();
+			if (pendingStatements >= commitStatements
+					|| (commitBytes > 0 && pendingBytes >= commitBytes))
+				flush();
+		} catch (RepositoryException e) {
+			e.printStackTrace();
+		}
+	}
+
+	/**
+	 * Enable spill mode : added statements are kept out of the repository in
+	 * a buffer of at most memoryBudget bytes, which is sorted, deduplicated
+	 * and spilled on disk when full. The sorted runs are merged when the
+	 * graph is dumped, after the statements of the repository. Any other
+	 * access to the statements loads the spilled statements into the
+	 * repository first.
+	 * 
+	 * @param memoryBudget
+	 */
+	public void setSpillMode(long memoryBudget) {
+		if (spilledStatements != null)
+			loadSpilledStatements();
+		spilledStatements = new SpilledStatements(memoryBudget);
+	}
+
+	public void setSpillMode() {
+		setSpillMode(DEFAULT_SPILL_MEMORY);
+	}
+
+	public boolean isSpillMode() {
+		return spilledStatements != null;
+	}
+
+	private void addToSpill(Resource s, URI p, Value o, Resource... contexts) {
+		if (contexts == null || contexts.length == 0)
+			spilledStatements.add(s, p, o, null);
+		else
+			for (Resource context : contexts)
+				spilledStatements.add(s, p, o, context);
+	}
+
+	/*
+	 * Spill mode : move the spilled statements into the repository, so
+	 * that they can be queried.
+	 */
+	private void loadSpilledStatements() {
+		if (spilledStatements == null || spilledStatements.isEmpty())
+			return;
+		log.warn("[SesameDataSet:loadSpilledStatements] Spilled statements are loaded into the repository.");
+		try {
+			final RepositoryConnection con = currentRepository.getConnection();
+			try {
+				con.setAutoCommit(false);
+				spilledStatements.export(new RDFHandlerBase() {
+					public void handleStatement(Statement st)
+							throws RDFHandlerException {
+						try {
+							con.add(st);
+						} catch (RepositoryException e) {
+							throw new RDFHandlerException(e);
+						}
+					}
+				});
+				con.commit();
+			} finally {
+				con.close();
+			}
+		} catch (Exception e) {
+			e.printStackTrace();
+		}
+		spilledStatements.clear();
+	}
+
+	/**
+	 * Commit statements added in batch mode since the last commit.
+	 */
+	public void flush() {
+		if (batchConnection == null || pendingStatements == 0)
+			return;
+		try {
+			batchConnection.commit();
+			if (log.isDebugEnabled())
+				log.debug("[SesameDataSet:flush] " + pendingStatements
+						+ " statements committed.");
+		} catch (RepositoryException e) {
+			e.printStackTrace();
+		} finally {
+			pendingStatements = 0;
+			pendingBytes = 0;
+		}
+	}
+
+	/**
+	 * Commit pending statements and release the batch connection. The
+	 * repository stays available : a new connection will be opened by the
+	 * next add in batch mode.
+	 */
+	public void close() {
+		if (batchConnection == null)
+			return;
+		flush();
+		try {
+			batchConnection.close();
+		} catch (RepositoryException e) {
+			e.printStackTrace();
+		} finally {
+			batchConnection = null;
+		}
+	}
+
 	public void remove(Resource s, URI p, Value o, Resource... context) {
+		flush();
+		loadSpilledStatements();
 		try {
 			RepositoryConnection con = currentRepository.getConnection();
 			try {
@@ -319,6 +506,7 @@ public class SesameDataSet {
 	 *            RDF format of the string (used to select parser)
 	 */
 	public void addString(String rdfstring, RDFFormat format) {
+		flush();
 		try {
 			RepositoryConnection con = currentRepository.getConnection();
 			try {
@@ -341,6 +529,7 @@ public class SesameDataSet {
 	 *            RDF format of the string (used to select parser)
 	 */
 	public void addFile(String filepath, RDFFormat format) {
+		flush();
 		try {
 			RepositoryConnection con = currentRepository.getConnection();
 			try {
@@ -363,6 +552,7 @@ public class SesameDataSet {
 	 *            RDF format to request/parse from data source
 	 */
 	public void addURI(String urlstring, RDFFormat format) {
+		flush();
 		try {
 			RepositoryConnection con = currentRepository.getConnection();
 			try {
@@ -389,11 +579,12 @@ public class SesameDataSet {
 	 * @return
 	 */
 	public void dumpRDF(OutputStream out, RDFFormat outform) {
+		flush();
 		try {
 			RepositoryConnection con = currentRepository.getConnection();
 			try {
-				RDFWriter w = Rio.createWriter(outform, out);
-				con.export(w);
+				RDFWriter w = RDFWriterSink.createWriter(outform, out);
+				export(con, w);
 			} finally {
 				con.close();
 			}
@@ -402,6 +593,55 @@ public class SesameDataSet {
 		}
 	}
 
+	/*
+	 * Export the statements of the repository, then the spilled statements
+	 * which are not in the repository (statements added before the spill
+	 * mode or already in a reused native store).
+	 */
+	private void export(final RepositoryConnection con, final RDFHandler handler)
+			throws RepositoryException, RDFHandlerException {
+		if (spilledStatements == null || spilledStatements.isEmpty()) {
+			con.export(handler);
+			return;
+		}
+		handler.startRDF();
+		RepositoryResult<Namespace> namespaces = con.getNamespaces();
+		try {
+			while (namespaces.hasNext()) {
+				Namespace namespace = namespaces.next();
+				handler.handleNamespace(namespace.getPrefix(),
+						namespace.getName());
+			}
+		} finally {
+			namespaces.close();
+		}
+		RepositoryResult<Statement> statements = con.getStatements(null,
+				null, null, false);
+		try {
+			while (statements.hasNext())
+				handler.handleStatement(statements.next());
+		} finally {
+			statements.close();
+		}
+		if (con.isEmpty())
+			spilledStatements.export(handler);
+		else
+			spilledStatements.export(new RDFHandlerBase() {
+				public void handleStatement(Statement st)
+						throws RDFHandlerException {
+					try {
+						if (!con.hasStatement(st.getSubject(),
+								st.getPredicate(), st.getObject(), false,
+								st.getContext()))
+							handler.handleStatement(st);
+					} catch (RepositoryException e) {
+						throw new RDFHandlerException(e);
+					}
+				}
+			});
+		handler.endRDF();
+	}
+
 	/**
 	 * dump RDF graph
 	 * 
@@ -429,13 +669,13 @@ public class SesameDataSet {
 	}
 
 	public String printRDF(RDFFormat outform) {
+		flush();
 		try {
 			RepositoryConnection con = currentRepository.getConnection();
 			try {
 				ByteArrayOutputStream out = new ByteArrayOutputStream();
-				RDFWriter w = Rio.createWriter(outform, out);
-
-				con.export(w);
+				RDFWriter w = RDFWriterSink.createWriter(outform, out);
+				export(con, w);
 				String result = new String(out.toByteArray(), "UTF-8");
 				return result;
 			} finally {
@@ -473,6 +713,8 @@ public class SesameDataSet {
 	 */
 	public List<Statement> tuplePattern(Resource s, URI p, Value o,
 			Resource... contexts) {
+		flush();
+		loadSpilledStatements();
 		try {
 			RepositoryConnection con = currentRepository.getConnection();
 			try {
@@ -502,6 +744,8 @@ public class SesameDataSet {
 	 * @return serialized graph of results
 	 */
 	public String runSPARQL(String qs, RDFFormat format) {
+		flush();
+		loadSpilledStatements();
 		try {
 			RepositoryConnection con = currentRepository.getConnection();
 			try {
@@ -528,6 +772,8 @@ public class SesameDataSet {
 	 * @return list of solutions, each containing a hashmap of bindings
 	 */
 	public List<HashMap<String, Value>> runSPARQL(String qs) {
+		flush();
+		loadSpilledStatements();
 		try {
 			RepositoryConnection con = currentRepository.getConnection();
 			try {
@@ -622,6 +868,11 @@ public class SesameDataSet {
 	 * @throws RepositoryException
 	 */
 	public void closeRepository() throws RepositoryException {
+		close();
+		if (spilledStatements != null) {
+			spilledStatements.clear();
+			spilledStatements = null;
+		}
 		currentRepository.shutDown();
 	}
 
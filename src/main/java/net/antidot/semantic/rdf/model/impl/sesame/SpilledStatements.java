@@ -0,0 +1,270 @@
+/* 
+ * Copyright 2011-2013 Antidot opensource@antidot.net
+ * https://github.com/antidot/db2triples
+ * 
+ * This file is part of DB2Triples
+ *
+ * DB2Triples is free software; you can redistribute it and/or 
+ * modify it under the terms of the GNU Lesser General Public License as 
+ * published by the Free Software Foundation; either version 2 of 
+ * the License, or (at your option) any later version.
+ * 
+ * DB2Triples is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+/***************************************************************************
+ *
+ * Spilled Statements
+ *
+ * Bounded in-memory buffer of statements : beyond its memory budget, the
+ * buffer is sorted, deduplicated and spilled on disk as a run. At export
+ * time, the runs and the remaining buffer are merged into a single
+ * sorted stream without duplicates.
+ *
+ ****************************************************************************/
+package net.antidot.semantic.rdf.model.impl.sesame;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.PriorityQueue;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.openrdf.model.Resource;
+import org.openrdf.model.Statement;
+import org.openrdf.model.URI;
+import org.openrdf.model.Value;
+import org.openrdf.model.ValueFactory;
+import org.openrdf.model.impl.ValueFactoryImpl;
+import org.openrdf.rio.RDFHandler;
+import org.openrdf.rio.RDFHandlerException;
+import org.openrdf.rio.ntriples.NTriplesUtil;
+
+public class SpilledStatements {
+
+	// Log
+	private static Log log = LogFactory.getLog(SpilledStatements.class);
+
+	// Estimated memory of a buffered statement besides its characters
+	private static final int STATEMENT_OVERHEAD = 64;
+
+	private static ValueFactory vf = new ValueFactoryImpl();
+
+	private long memoryBudget;
+	// Statements in N-Triples form, separated by new lines (which are always
+	// escaped inside N-Triples terms) : subject, predicate, object, context
+	private List<String> buffer = new ArrayList<String>();
+	private long bufferMemory = 0;
+	private List<File> runs = new ArrayList<File>();
+
+	public SpilledStatements(long memoryBudget) {
+		if (memoryBudget < 1)
+			throw new IllegalArgumentException(
+					"[SpilledStatements:SpilledStatements] Memory budget must be positive : "
+							+ memoryBudget);
+		this.memoryBudget = memoryBudget;
+	}
+
+	public long getMemoryBudget() {
+		return memoryBudget;
+	}
+
+	public int getNbRuns() {
+		return runs.size();
+	}
+
+	public boolean isEmpty() {
+		return buffer.isEmpty() && runs.isEmpty();
+	}
+
+	/**
+	 * Add a statement (in the default graph if context is null).
+	 */
+	public void add(Resource s, URI p, Value o, Resource context) {
+		StringBuilder statement = new StringBuilder();
+		statement.append(NTriplesUtil.toNTriplesString(s)).append('\n');
+		statement.append(NTriplesUtil.toNTriplesString(p)).append('\n');
+		statement.append(NTriplesUtil.toNTriplesString(o)).append('\n');
+		if (context != null)
+			statement.append(NTriplesUtil.toNTriplesString(context));
+		buffer.add(statement.toString());
+		bufferMemory += 2 * statement.length() + STATEMENT_OVERHEAD;
+		if (bufferMemory >= memoryBudget)
+			spill();
+	}
+
+	/*
+	 * Write the sorted buffer without duplicates into a new run.
+	 */
+	private void spill() {
+		Collections.sort(buffer);
+		File file = null;
+		DataOutputStream out = null;
+		try {
+			file = File.createTempFile("db2triples-statements-", ".run");
+			file.deleteOnExit();
+			runs.add(file);
+			out = new DataOutputStream(new BufferedOutputStream(
+					new FileOutputStream(file)));
+			String last = null;
+			for (String statement : buffer) {
+				if (statement.equals(last))
+					continue;
+				writeString(out, statement);
+				last = statement;
+			}
+			out.close();
+		} catch (IOException e) {
+			throw new IllegalStateException(
+					"[SpilledStatements:spill] Unable to spill statements : "
+							+ e.getMessage(), e);
+		}
+		if (log.isDebugEnabled())
+			log.debug("[SpilledStatements:spill] " + buffer.size()
+					+ " statements spilled into " + file);
+		buffer.clear();
+		bufferMemory = 0;
+	}
+
+	/**
+	 * Emit every statement, sorted and without duplicates, into a handler.
+	 * The handler is neither started nor ended.
+	 * 
+	 * @param handler
+	 * @throws RDFHandlerException
+	 */
+	public void export(RDFHandler handler) throws RDFHandlerException {
+		Collections.sort(buffer);
+		PriorityQueue<Run> queue = new PriorityQueue<Run>();
+		try {
+			for (File file : runs) {
+				Run run = new Run(new DataInputStream(new BufferedInputStream(
+						new FileInputStream(file))));
+				if (run.next())
+					queue.add(run);
+			}
+			Run memoryRun = new Run(null);
+			if (memoryRun.next())
+				queue.add(memoryRun);
+			String last = null;
+			while (!queue.isEmpty()) {
+				Run run = queue.poll();
+				if (!run.current.equals(last)) {
+					handler.handleStatement(parse(run.current));
+					last = run.current;
+				}
+				if (run.next())
+					queue.add(run);
+				else
+					run.close();
+			}
+		} catch (IOException e) {
+			throw new RDFHandlerException(
+					"[SpilledStatements:export] Unable to read spilled statements : "
+							+ e.getMessage(), e);
+		} finally {
+			for (Run run : queue)
+				run.close();
+		}
+	}
+
+	/**
+	 * Remove every statement and its runs on disk.
+	 */
+	public void clear() {
+		buffer.clear();
+		bufferMemory = 0;
+		for (File file : runs)
+			if (!file.delete())
+				log.warn("[SpilledStatements:clear] Unable to delete " + file);
+		runs.clear();
+	}
+
+	private static Statement parse(String statement) {
+		int i = statement.indexOf('\n');
+		int j = statement.indexOf('\n', i + 1);
+		int k = statement.indexOf('\n', j + 1);
+		Resource s = NTriplesUtil.parseResource(statement.substring(0, i), vf);
+		URI p = NTriplesUtil.parseURI(statement.substring(i + 1, j), vf);
+		Value o = NTriplesUtil.parseValue(statement.substring(j + 1, k), vf);
+		if (k == statement.length() - 1)
+			return vf.createStatement(s, p, o);
+		Resource c = NTriplesUtil.parseResource(statement.substring(k + 1),
+				vf);
+		return vf.createStatement(s, p, o, c);
+	}
+
+	/*
+	 * Sorted statements of a run on disk, or of the buffer if in is null.
+	 */
+	private class Run implements Comparable<Run> {
+		private DataInputStream in;
+		private int index = 0;
+		private String current;
+
+		private Run(DataInputStream in) {
+			this.in = in;
+		}
+
+		private boolean next() throws IOException {
+			if (in == null)
+				current = index < buffer.size() ? buffer.get(index++) : null;
+			else
+				current = readString(in);
+			return current != null;
+		}
+
+		private void close() {
+			if (in == null)
+				return;
+			try {
+				in.close();
+			} catch (IOException e) {
+				log.warn("[SpilledStatements:close] Unable to close spill file : "
+						+ e.getMessage());
+			}
+		}
+
+		public int compareTo(Run other) {
+			return current.compareTo(other.current);
+		}
+	}
+
+	private static void writeString(DataOutputStream out, String s)
+			throws IOException {
+		byte[] bytes = s.getBytes("UTF-8");
+		out.writeInt(bytes.length);
+		out.write(bytes);
+	}
+
+	/*
+	 * Return null at the end of the stream.
+	 */
+	private static String readString(DataInputStream in) throws IOException {
+		int length;
+		try {
+			length = in.readInt();
+		} catch (EOFException e) {
+			return null;
+		}
+		byte[] bytes = new byte[length];
+		in.readFully(bytes);
+		return new String(bytes, "UTF-8");
+	}
+
+}
@@ -0,0 +1,56 @@
+/* 
+ * Copyright 2011-2013 Antidot opensource@antidot.net
+ * https://github.com/antidot/db2triples
+ * 
+ * This file is part of DB2Triples
+ *
+ * DB2Triples is free software; you can redistribute it and/or 
+ * modify it under the terms of the GNU Lesser General Public License as 
+ * published by the Free Software Foundation; either version 2 of 
+ * the License, or (at your option) any later version.
+ * 
+ * DB2Triples is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+/***************************************************************************
+ *
+ * RDB2RDF Commons : LRU Cache
+ *
+ * Map bounded to a maximal number of entries : the least recently
+ * accessed entry is evicted when this number is exceeded.
+ *
+ ****************************************************************************/
+package net.antidot.semantic.rdf.rdb2rdf.commons;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+public class LRUCache<K, V> extends LinkedHashMap<K, V> {
+
+	private static final long serialVersionUID = 1L;
+
+	private int maxEntries;
+
+	public LRUCache(int maxEntries) {
+		super(16, 0.75f, true);
+		if (maxEntries < 1)
+			throw new IllegalArgumentException(
+					"[LRUCache:LRUCache] Maximal number of entries must be positive : "
+							+ maxEntries);
+		this.maxEntries = maxEntries;
+	}
+
+	public int getMaxEntries() {
+		return maxEntries;
+	}
+
+	protected boolean removeEldestEntry(Map.Entry<K, V> eldest) {
+		return size() > maxEntries;
+	}
+
+}
@@ -30,18 +30,32 @@ package net.antidot.semantic.rdf.rdb2rdf.dm.core;
 
 import java.io.UnsupportedEncodingException;
 import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.ArrayList;
 import java.util.HashMap;
-import java.util.HashSet;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
 
+import net.antidot.semantic.rdf.model.SynchronizedTripleSink;
+import net.antidot.semantic.rdf.model.TripleSink;
 import net.antidot.semantic.rdf.model.impl.sesame.SesameDataSet;
 import net.antidot.semantic.rdf.rdb2rdf.dm.core.DirectMappingEngine.Version;
+import net.antidot.sql.model.core.ConnectionPool;
 import net.antidot.sql.model.core.DriverType;
+import net.antidot.sql.model.core.SQLConnector;
 import net.antidot.sql.model.db.Key;
+import net.antidot.sql.model.db.SchemaCatalog;
 import net.antidot.sql.model.db.Tuple;
 
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
-import org.openrdf.model.Statement;
 
 
 public abstract class DirectMapper extends Thread {
@@ -60,12 +74,70 @@ public abstract class DirectMapper extends Thread {
 	}
 	
 	// Metrics 
-	private static int nbTriples;
-	private static int lastModulo;
+	private static int nbTriplesLogStep = 50000;
+	
+	// Maximum number of referenced tuples extracted in one query per foreign key
+	private static int bulkReferencedRows = 0;
+	
+	/**
+	 * Resolve the referenced tuples of each foreign key with one query per
+	 * table, keeping at most maxReferencedRows referenced tuples in memory
+	 * per foreign key (see TupleExtractor.setBulkReferenceMode). A zero
+	 * maximum disables this mode.
+	 */
+	public static void setBulkReferenceMode(int maxReferencedRows) {
+		bulkReferencedRows = maxReferencedRows;
+	}
+	
+	// Memory budget of the referenced tuples cache
+	private static long referencedTupleCacheMemory = ReferencedTupleCache.DEFAULT_MEMORY;
+	
+	/**
+	 * Memory budget in bytes of the cache of referenced tuples (see
+	 * TupleExtractor.setReferencedTupleCache). A zero budget disables this
+	 * cache.
+	 */
+	public static void setReferencedTupleCache(long memoryBudget) {
+		referencedTupleCacheMemory = memoryBudget;
+	}
+	
+	// Number of tuples of tables known before their extraction
+	private static TupleExtractor.RowCountMode rowCountMode = TupleExtractor.RowCountMode.ESTIMATE;
+	
+	/**
+	 * Choose how the number of tuples of each table is known before its
+	 * extraction, only to log the progress of this extraction (see
+	 * TupleExtractor.setRowCountMode).
+	 */
+	public static void setRowCountMode(TupleExtractor.RowCountMode rowCountMode) {
+		DirectMapper.rowCountMode = rowCountMode;
+	}
+	
+	// Number of rows of the partitions of a table (parallel mode)
+	private static int partitionSize = 0;
+	
+	/**
+	 * In parallel mode, split large tables in partitions of about
+	 * partitionSize rows converted concurrently (see
+	 * TupleExtractor.partitionTable). A zero size disables this mode.
+	 */
+	public static void setPartitionMode(int partitionSize) {
+		DirectMapper.partitionSize = partitionSize;
+	}
+	
+	// Number of rows fetched at once from tables
+	private static int fetchSize = SQLConnector.DEFAULT_FETCH_SIZE;
+	
+	/**
+	 * Number of rows of tables fetched at once from the database (see
+	 * TupleExtractor.setFetchSize). A zero fetch size lets the driver load
+	 * every row of a table in memory.
+	 */
+	public static void setFetchSize(int fetchSize) {
+		DirectMapper.fetchSize = fetchSize;
+	}
 	
 	public static SesameDataSet generateDirectMapping(Connection conn, Version version, DriverType driver, String baseURI, String timeZone, String fileToNativeStore) throws UnsupportedEncodingException{
-		log.info("Generate Direct Mapping...");
-		Long start = System.currentTimeMillis();
 		SesameDataSet result = null;
 		// Check if use of native store is required
 		if (fileToNativeStore != null) {
@@ -73,33 +145,249 @@ public abstract class DirectMapper extends Thread {
 		} else {
 			result = new SesameDataSet();
 		}
-		DirectMappingEngine dme = null;
+		// Commit generated triples by batches
+		result.setBatchMode();
+		generateDirectMappingToSink(conn, version, driver, baseURI, timeZone, result);
+		// Commit last generated triples
+		result.close();
+		return result;
+	}
+	
+	/**
+	 * Parallel version of generateDirectMapping : see
+	 * generateDirectMappingToSink(ConnectionPool, int, ...).
+	 */
+	public static SesameDataSet generateDirectMapping(ConnectionPool pool, int parallelism, Version version, DriverType driver, String baseURI, String timeZone, String fileToNativeStore) throws UnsupportedEncodingException, SQLException{
+		SesameDataSet result = null;
+		// Check if use of native store is required
+		if (fileToNativeStore != null) {
+			result = new SesameDataSet(fileToNativeStore, false);
+		} else {
+			result = new SesameDataSet();
+		}
+		// Commit generated triples by batches
+		result.setBatchMode();
+		generateDirectMappingToSink(pool, parallelism, version, driver, baseURI, timeZone, result);
+		// Commit last generated triples
+		result.close();
+		return result;
+	}
+	
+	/**
+	 * Generate the Direct Mapping of a database and emit every generated triple
+	 * into a triple sink, without building any RDF dataset. The sink is flushed
+	 * but not closed.
+	 */
+	public static void generateDirectMappingToSink(Connection conn, Version version, DriverType driver, String baseURI, String timeZone, TripleSink sink) throws UnsupportedEncodingException{
+		log.info("Generate Direct Mapping...");
+		Long start = System.currentTimeMillis();
+		DirectMappingEngine dme = createEngine(version);
+		TupleExtractor te = createTupleExtractor(conn, dme, driver, timeZone,
+				null, null, referencedTupleCacheMemory);
+		AtomicInteger nbTriples = new AtomicInteger(0);
+		convertTuples(sink, te, dme, driver, baseURI, nbTriples);
+		sink.flush();
+		List<TupleExtractor> extractors = new ArrayList<TupleExtractor>();
+		extractors.add(te);
+		logMetrics(start, nbTriples.get(), extractors);
+	}
+	
+	/**
+	 * Generate the Direct Mapping of a database with several workers. Each
+	 * worker runs its own tuple extractor on its own connection of the pool
+	 * and takes the next table to convert from a queue shared by all
+	 * workers, so that a long table does not hold back the other ones. In
+	 * partition mode, large tables are split in partitions which are queued
+	 * first.
+	 * Table metadata are loaded once and shared, and the engine, which holds
+	 * no state about the current table, is shared too. Every worker emits
+	 * its triples into the same synchronized sink, which is flushed but not
+	 * closed. The memory of the referenced tuples cache is split between
+	 * workers.
+	 */
+	public static void generateDirectMappingToSink(final ConnectionPool pool, final int parallelism, Version version, final DriverType driver, final String baseURI, final String timeZone, TripleSink sink) throws UnsupportedEncodingException, SQLException{
+		if (pool == null)
+			throw new IllegalStateException(
+					"[DirectMapper:generateDirectMappingToSink] SQL connection pool does not exists.");
+		if (parallelism < 1)
+			throw new IllegalArgumentException(
+					"[DirectMapper:generateDirectMappingToSink] Parallelism must be positive : "
+							+ parallelism);
+		log.info("Generate Direct Mapping with " + parallelism + " workers...");
+		Long start = System.currentTimeMillis();
+		final DirectMappingEngine dme = createEngine(version);
+		// Extract columns and keys of every table once
+		final SchemaCatalog catalog;
+		final Queue<TablePartition> tables = new ConcurrentLinkedQueue<TablePartition>();
+		Connection catalogConn = pool.acquire();
+		try {
+			catalog = SchemaCatalog.load(catalogConn);
+			tables.addAll(partitionTables(catalogConn, driver, catalog));
+		} finally {
+			pool.release(catalogConn);
+		}
+		final TripleSink sharedSink = new SynchronizedTripleSink(sink);
+		final AtomicInteger nbTriples = new AtomicInteger(0);
+		final long workerCacheMemory = referencedTupleCacheMemory / parallelism;
+		int nbWorkers = Math.max(1, Math.min(parallelism, tables.size()));
+		ExecutorService executor = Executors.newFixedThreadPool(nbWorkers);
+		List<Future<TupleExtractor>> workers = new ArrayList<Future<TupleExtractor>>();
+		List<TupleExtractor> extractors = new ArrayList<TupleExtractor>();
+		try {
+			for (int i = 0; i < nbWorkers; i++) {
+				workers.add(executor.submit(new Callable<TupleExtractor>() {
+					public TupleExtractor call() throws Exception {
+						return runWorker(pool, dme, driver, baseURI, timeZone,
+								catalog, tables, workerCacheMemory, sharedSink,
+								nbTriples);
+					}
+				}));
+			}
+			for (Future<TupleExtractor> worker : workers)
+				extractors.add(waitForWorker(worker));
+		} finally {
+			executor.shutdownNow();
+		}
+		sharedSink.flush();
+		logMetrics(start, nbTriples.get(), extractors);
+	}
+	
+	/*
+	 * Partitions of every table of the catalog : partitions of split tables
+	 * come first, since they are the longest to convert.
+	 */
+	private static List<TablePartition> partitionTables(Connection conn,
+			DriverType driver, SchemaCatalog catalog) {
+		List<TablePartition> splitTables = new ArrayList<TablePartition>();
+		List<TablePartition> wholeTables = new ArrayList<TablePartition>();
+		for (String tableName : catalog.getTableNames()) {
+			List<TablePartition> partitions = null;
+			if (partitionSize > 0) {
+				try {
+					partitions = TupleExtractor.partitionTable(conn, driver,
+							catalog.getTable(tableName), partitionSize);
+				} catch (SQLException e) {
+					log.warn("[DirectMapper:partitionTables] Table "
+							+ tableName + " can not be split : "
+							+ e.getMessage());
+				}
+			}
+			if (partitions == null || partitions.size() < 2) {
+				wholeTables.add(new TablePartition(tableName));
+			} else {
+				log.info("Table " + tableName + " split in "
+						+ partitions.size() + " partitions.");
+				splitTables.addAll(partitions);
+			}
+		}
+		splitTables.addAll(wholeTables);
+		return splitTables;
+	}
+	
+	private static TupleExtractor runWorker(ConnectionPool pool,
+			DirectMappingEngine dme, DriverType driver, String baseURI,
+			String timeZone, SchemaCatalog catalog, Queue<TablePartition> tables,
+			long cacheMemory, TripleSink sink, AtomicInteger nbTriples)
+			throws SQLException, UnsupportedEncodingException {
+		Connection workerConn = pool.acquire();
+		try {
+			TupleExtractor te = createTupleExtractor(workerConn, dme, driver,
+					timeZone, catalog, tables, cacheMemory);
+			convertTuples(sink, te, dme, driver, baseURI, nbTriples);
+			return te;
+		} finally {
+			pool.release(workerConn);
+		}
+	}
+	
+	/*
+	 * Wait for the end of a worker and throw again its failure.
+	 */
+	private static TupleExtractor waitForWorker(Future<TupleExtractor> worker)
+			throws SQLException, UnsupportedEncodingException {
+		try {
+			return worker.get();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IllegalStateException(
+					"[DirectMapper:waitForWorker] Interrupted while waiting for mapping workers.");
+		} catch (ExecutionException e) {
+			Throwable cause = e.getCause();
+			if (cause instanceof SQLException)
+				throw (SQLException) cause;
+			if (cause instanceof UnsupportedEncodingException)
+				throw (UnsupportedEncodingException) cause;
+			if (cause instanceof RuntimeException)
+				throw (RuntimeException) cause;
+			if (cause instanceof Error)
+				throw (Error) cause;
+			throw new IllegalStateException(
+					"[DirectMapper:waitForWorker] Mapping worker failed : "
+							+ cause.getMessage(), cause);
+		}
+	}
+	
+	private static DirectMappingEngine createEngine(Version version) {
 		switch (version) {
 		case WD_20110324:
-			dme = new DirectMappingEngineWD20110324();
-			break;
+			return new DirectMappingEngineWD20110324();
 		case WD_20120529:
-			dme = new DirectMappingEngineWD20120529();
-			break;
+			return new DirectMappingEngineWD20120529();
 		default:
 			// Working draft Mars 2011 by default
-			dme = new DirectMappingEngineWD20110324();
-			break;
+			return new DirectMappingEngineWD20110324();
 		}
-		TupleExtractor te = new TupleExtractor(conn, dme, driver, timeZone);
-		nbTriples = 0;
-		lastModulo = 0;
+	}
+	
+	private static TupleExtractor createTupleExtractor(Connection conn,
+			DirectMappingEngine dme, DriverType driver, String timeZone,
+			SchemaCatalog catalog, Queue<TablePartition> tables, long cacheMemory) {
+		TupleExtractor te = new TupleExtractor(conn, dme, driver, timeZone,
+				catalog, tables);
+		if (bulkReferencedRows > 0)
+			te.setBulkReferenceMode(bulkReferencedRows);
+		te.setReferencedTupleCache(cacheMemory);
+		te.setRowCountMode(rowCountMode);
+		te.setFetchSize(fetchSize);
+		return te;
+	}
+	
+	private static void convertTuples(TripleSink sink, TupleExtractor te,
+			DirectMappingEngine dme, DriverType driver, String baseURI,
+			AtomicInteger nbTriples) throws UnsupportedEncodingException {
 		while (te.next()){
-			convertNextTuple(result, te, dme, driver, baseURI);
+			convertNextTuple(sink, te, dme, driver, baseURI, nbTriples);
 		}
+	}
+	
+	private static void logMetrics(Long start, int nbTriples,
+			List<TupleExtractor> extractors) {
 		Float stop = Float.valueOf(System.currentTimeMillis() - start) / 1000;
 		log.info("Database extracted in "
 					+ stop + " seconds.");
 		log.info(nbTriples + " triples has been extracted.");
-		return result;
+		long hits = 0, misses = 0, evictions = 0, entries = 0, memory = 0;
+		boolean cached = false;
+		for (TupleExtractor te : extractors) {
+			ReferencedTupleCache cache = te.getReferencedTupleCache();
+			if (cache == null)
+				continue;
+			cached = true;
+			hits += cache.getHits();
+			misses += cache.getMisses();
+			evictions += cache.getEvictions();
+			entries += cache.getNbEntries();
+			memory += cache.getUsedMemory();
+		}
+		if (cached)
+			log.info("Referenced tuples cache : " + hits + " hits, " + misses
+					+ " misses (hit rate : "
+					+ (hits + misses == 0 ? 0 : Math.round(hits * 100. / (hits + misses)))
+					+ "%), " + evictions + " evictions, " + entries
+					+ " tuples in " + memory + " bytes.");
 	}
 	
-	private static void convertNextTuple(SesameDataSet result, TupleExtractor te, DirectMappingEngine dme, DriverType driver, String baseURI) throws UnsupportedEncodingException{
+	private static void convertNextTuple(TripleSink result, TupleExtractor te, DirectMappingEngine dme, DriverType driver, String baseURI, AtomicInteger nbTriples) throws UnsupportedEncodingException{
 		Tuple tuple = te.getCurrentTuple();
 		//Tuple tuple = null;
 		log.debug("[DirectMapper:convertNextTuple] Tuple extracted : " + tuple);
@@ -110,17 +398,12 @@ public abstract class DirectMapper extends Thread {
 			Key primaryIsForeignKey = te.getCurrentPrimaryIsForeignKey(referencedTuples.keySet(), tuple);
 			log.debug("[DirectMapper:convertNextTuple] Number of referenced tuples generated : " + referencedTuples.values().size());
 			
-			HashSet<Statement> statements = dme.extractTriplesFrom(tuple, referencedTuples, primaryIsForeignKey, baseURI);
-			for (Statement triple : statements) {
-				log.debug("[DirectMapper:convertNextTuple] Triple generated : " + triple);
-				result.add(triple.getSubject(), triple.getPredicate(), triple
-						.getObject());
-				nbTriples++;
-			}
-			if (nbTriples / 50000 > lastModulo){
-				log.info(nbTriples + " triples has already been extracted.");
-				lastModulo = nbTriples / 50000;
-			}
+			// Triples are emitted into the sink as soon as they are generated
+			int nbGenerated = dme.extractTriplesFrom(tuple, referencedTuples, primaryIsForeignKey, baseURI, result);
+			log.debug("[DirectMapper:convertNextTuple] Number of triples generated : " + nbGenerated);
+			int total = nbTriples.addAndGet(nbGenerated);
+			if (total / nbTriplesLogStep > (total - nbGenerated) / nbTriplesLogStep)
+				log.info(total + " triples has already been extracted.");
 		} catch (UnsupportedEncodingException e) {
 			log.error("[DirectMapper:generateDirectMapping] Encoding not supported.");
 			e.printStackTrace();
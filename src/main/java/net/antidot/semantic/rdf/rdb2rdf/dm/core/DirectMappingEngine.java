@@ -32,11 +32,14 @@ package net.antidot.semantic.rdf.rdb2rdf.dm.core;
 
 import java.io.UnsupportedEncodingException;
 import java.sql.ResultSet;
+import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.HashSet;
 
+import net.antidot.semantic.rdf.model.TripleSink;
 import net.antidot.sql.model.core.DriverType;
 import net.antidot.sql.model.db.Key;
+import net.antidot.sql.model.db.TableMetadata;
 import net.antidot.sql.model.db.Tuple;
 
 import org.openrdf.model.Statement;
@@ -64,59 +67,81 @@ public interface DirectMappingEngine {
 	public static String encoding = "UTF-8";
 
 	/**
-	 * Extract a generic tuple from generic JDBC sets. 
+	 * Extract a generic tuple from generic JDBC sets and the metadata of its table. 
 	 * @param values
-	 * @param headers
-	 * @param primaryKeys
-	 * @param foreignKeys
-	 * @param tableName 
+	 * @param table
 	 * @param driver
 	 * @param timeZone
 	 * @param index 
 	 * @return
 	 * @throws UnsupportedEncodingException 
 	 */
-	public Tuple extractTupleFrom(ResultSet values, ResultSet headers,
-			ResultSet primaryKeys, ResultSet foreignKeys, String tableName,
-			DriverType driver, String timeZone, int index) throws UnsupportedEncodingException;
+	public Tuple extractTupleFrom(ResultSet values, TableMetadata table,
+			DriverType driver, String timeZone, long index) throws UnsupportedEncodingException;
 
 	/**
-	 * Extract a generic referenced tuple from generic JDBC sets.
+	 * Extract a generic referenced tuple from generic JDBC sets and the metadata of its table.
 	 * A referenced tuple corresponds to a tuple which is the target of a foreign key.
 	 * @param values
-	 * @param headers
-	 * @param primaryKeys
-	 * @param foreignKeys
-	 * @param tableName
+	 * @param table
 	 * @param driver
 	 * @param timeZone
 	 * @return
 	 * @throws UnsupportedEncodingException 
 	 */
 	public Tuple extractReferencedTupleFrom(ResultSet values,
-			ResultSet headers, ResultSet primaryKeys, ResultSet foreignKeys,
-			String tableName, DriverType driver, String timeZone, int index) throws UnsupportedEncodingException;
+			TableMetadata table, DriverType driver, String timeZone, long index) throws UnsupportedEncodingException;
 
 	/**
 	 * Construct the SQL Query depending on current norm used for construct tuples.
 	 * @param driver 
-	 * @param headersSet
-	 * @param tableName
+	 * @param table
 	 * @return
 	 */
-	public String constructSQLQuery(DriverType driver, ResultSet headersSet,
-			String tableName);
+	public String constructSQLQuery(DriverType driver, TableMetadata table);
+
+	/**
+	 * Construct the SQL Query depending on current norm used for construct
+	 * tuples of a table which match a condition (every tuple if it's null).
+	 * @param driver 
+	 * @param table
+	 * @param condition
+	 * @return
+	 */
+	public String constructSQLQuery(DriverType driver, TableMetadata table,
+			String condition);
 	
 	/**
 	 * Construct the SQL Query depending on current norm used for construct referenced tuples.
 	 * @param driver
-	 * @param headersSet
-	 * @param tableName
+	 * @param table
 	 * @return
 	 * @throws UnsupportedEncodingException 
 	 */
 	public String constructReferencedSQLQuery(DriverType driver,
-			ResultSet headersSet, String tableName, Key key, Tuple tuple) throws UnsupportedEncodingException;
+			TableMetadata table, Key key, Tuple tuple) throws UnsupportedEncodingException;
+
+	/**
+	 * Construct the SQL Query depending on current norm used for construct, in one query,
+	 * every referenced tuple pointed by a foreign key of the referencing tuples which
+	 * match a condition (every referencing tuple if it's null).
+	 * @param driver
+	 * @param table
+	 * @param key
+	 * @param condition
+	 * @return
+	 */
+	public String constructReferencedSetSQLQuery(DriverType driver,
+			TableMetadata table, Key key, String condition);
+
+	/**
+	 * Copy a referenced tuple extracted once for a new referencing tuple.
+	 * @param referencedTuple
+	 * @param index
+	 * @return
+	 * @throws UnsupportedEncodingException
+	 */
+	public Tuple copyReferencedTuple(Tuple referencedTuple, long index) throws UnsupportedEncodingException;
 
 	/**
 	 * Extract Sesame triples from generic tuples depends on used norm.
@@ -131,6 +156,21 @@ public interface DirectMappingEngine {
 			HashMap<Key, Tuple> referencedTuples, Key primaryIsForeignKey,
 			String baseURI) throws UnsupportedEncodingException;
 
+	/**
+	 * Extract Sesame triples from generic tuples depends on used norm and
+	 * emit them into a sink as soon as they are generated.
+	 * @param tuple
+	 * @param referencedTuples
+	 * @param primaryIsForeignKey
+	 * @param baseURI
+	 * @param sink
+	 * @return number of emitted triples
+	 * @throws UnsupportedEncodingException
+	 */
+	public int extractTriplesFrom(Tuple tuple,
+			HashMap<Key, Tuple> referencedTuples, Key primaryIsForeignKey,
+			String baseURI, TripleSink sink) throws UnsupportedEncodingException;
+
 	/**
 	 * Methods which convert generic tuples to corresponding model in used norm.
 	 * @param tuple
@@ -138,6 +178,7 @@ public interface DirectMappingEngine {
 	 */
 	public String getReferencedTableName(Tuple tuple);
 	public String getReferencedTableName(Key key);
+	public ArrayList<String> getReferencedColumnNames(Key key);
 	public HashSet<Key> getReferencedKeys(Tuple tuple);
 	public boolean isPrimaryKey(Key key, Tuple tuple);
 
@@ -35,10 +35,10 @@ import java.sql.SQLException;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.HashSet;
-import java.util.LinkedHashMap;
-import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
 
-import net.antidot.semantic.rdf.model.impl.sesame.SemiStatement;
+import net.antidot.semantic.rdf.model.StatementSetSink;
+import net.antidot.semantic.rdf.model.TripleSink;
 import net.antidot.semantic.rdf.model.tools.RDFDataValidator;
 import net.antidot.semantic.rdf.rdb2rdf.commons.RDFPrefixes;
 import net.antidot.semantic.rdf.rdb2rdf.commons.SpecificSQLToXMLS;
@@ -49,9 +49,10 @@ import net.antidot.sql.model.db.CandidateKey;
 import net.antidot.sql.model.db.ForeignKey;
 import net.antidot.sql.model.db.Key;
 import net.antidot.sql.model.db.Row;
-import net.antidot.sql.model.db.StdBody;
+import net.antidot.sql.model.db.RowLayout;
 import net.antidot.sql.model.db.StdHeader;
 import net.antidot.sql.model.db.StdTable;
+import net.antidot.sql.model.db.TableMetadata;
 import net.antidot.sql.model.db.Tuple;
 import net.antidot.sql.model.type.SQLSpecificType;
 
@@ -73,13 +74,6 @@ public class DirectMappingEngineWD20110324 implements DirectMappingEngine {
 	private static Log log = LogFactory
 			.getLog(DirectMappingEngineWD20110324.class);
 
-	// Database values
-	private String currentTableName;
-	private LinkedHashMap<String, String> datatypes;
-	private StdHeader header;
-	private ArrayList<CandidateKey> primaryKeys;
-	private HashSet<ForeignKey> foreignKeys;
-
 	// Sesame valueFactory which generates values like litterals or URI
 	private ValueFactory vf;
 	
@@ -89,55 +83,28 @@ public class DirectMappingEngineWD20110324 implements DirectMappingEngine {
 	private static char hash = '#';
 	private static char hyphenMinus = '=';
 
-	public DirectMappingEngineWD20110324() {
-		initDatabaseValues();
-	}
+	// rdf:type predicate of table triples
+	private URI typePredicate;
 
-	private void initDatabaseValues() {
-		currentTableName = null;
-		datatypes = new LinkedHashMap<String, String>();
-		header = null;
-		primaryKeys = new ArrayList<CandidateKey>();
-		foreignKeys = new HashSet<ForeignKey>();
+	// IRIs of each table, computed once per table
+	private ConcurrentHashMap<String, TableVocabulary> vocabularies;
+
+	public DirectMappingEngineWD20110324() {
 		vf = new ValueFactoryImpl();
+		typePredicate = vf.createURI(RDFPrefixes.prefix.get("rdf"), "type");
+		vocabularies = new ConcurrentHashMap<String, TableVocabulary>();
 	}
 
 	/*
 	 * Extract a tuple from database extracted sets.
 	 */
-	public Tuple extractTupleFrom(ResultSet valueSet, ResultSet headerSet,
-			ResultSet primaryKeysSet, ResultSet foreignKeysSet,
-			String tableName, DriverType driver, String timeZone, int index) throws UnsupportedEncodingException {
-		if (tableName != currentTableName)
-			// First table treatment
-			// Get datatypes
-			updateTableContext(headerSet, primaryKeysSet, foreignKeysSet,
-					tableName);
-		if (datatypes == null || header == null || primaryKeys == null
-				|| foreignKeys == null)
+	public Tuple extractTupleFrom(ResultSet valueSet, TableMetadata table,
+			DriverType driver, String timeZone, long index) throws UnsupportedEncodingException {
+		if (table == null)
 			throw new IllegalStateException(
-					"[DirectMappingEngine:extractTupleFrom] One of mandatory elements for tuple's building is missing.");
+					"[DirectMappingEngine:extractTupleFrom] Metadata of table is required for tuple's building.");
 		// Extract row
-		Row result = extractRow(driver, header, tableName, valueSet, timeZone, index);
-		// Attach context to this row
-		buildTmpModel(result, tableName, header, primaryKeys, foreignKeys);
-		return result;
-	}
-
-	/*
-	 * Update data associated with current table.
-	 */
-	private void updateTableContext(ResultSet headerSet,
-			ResultSet primaryKeysSet, ResultSet foreignKeysSet, String tableName) {
-		// First table treatment
-		// Get datatypes
-		datatypes = extractDatatypes(headerSet, tableName);
-		header = new StdHeader(datatypes);
-		// Extract candidate keys
-		primaryKeys = extractPrimaryKeys(primaryKeysSet, header, tableName);
-		// Extract foreign key
-		if (foreignKeysSet != null)
-			foreignKeys = extractForeignKeys(foreignKeysSet, tableName);
+		return extractRow(driver, table, valueSet, timeZone, index);
 	}
 
 	/*
@@ -145,89 +112,55 @@ public class DirectMappingEngineWD20110324 implements DirectMappingEngine {
 	 * extracted sets.
 	 */
 	public Tuple extractReferencedTupleFrom(ResultSet valueSet,
-			ResultSet headerSet, ResultSet primaryKeysSet,
-			ResultSet foreignKeysSet, String tableName, DriverType driver,
-			String timeZone, int index) throws UnsupportedEncodingException {
-		// Get datatypes
-		LinkedHashMap<String, String> referencedDatatypes = extractDatatypes(
-				headerSet, tableName);
-		StdHeader referencedHeader = new StdHeader(referencedDatatypes);
-		// Extract candidate keys
-		ArrayList<CandidateKey> referencedPrimaryKeys = extractPrimaryKeys(
-				primaryKeysSet, referencedHeader, tableName);
-		// Extract foreign key
-		HashSet<ForeignKey> referencedForeignKeys = extractForeignKeys(
-				foreignKeysSet, tableName);
-		if (datatypes == null || header == null || primaryKeys == null)
-			throw new IllegalStateException(
-					"[DirectMappingEngine:extractTupleFrom] One of mandatory elements for tuple's building is missing.");
-		// Extract row
-		Row result = extractRow(driver, referencedHeader, tableName, valueSet,
-				timeZone, index);
-		// Attach context to this row
-		buildTmpModel(result, tableName, referencedHeader,
-				referencedPrimaryKeys, referencedForeignKeys);
-		return result;
-	}
-
-	/*
-	 * Build objects associated with a row from database extracted sets.
-	 */
-	private void buildTmpModel(Row row, String tableName, StdHeader header,
-			ArrayList<CandidateKey> primaryKeys, HashSet<ForeignKey> foreignKeys) {
-		// Create body
-		HashSet<Row> rows = new HashSet<Row>();
-		rows.add(row);
-		StdBody body = new StdBody(rows, null);
-		// Create table
-		StdTable table = new StdTable(tableName, header, primaryKeys, foreignKeys,
-				body);
-		// Link objects
-		body.setParentTable(table);
-		row.setParentBody(body);
+			TableMetadata table, DriverType driver, String timeZone, long index)
+			throws UnsupportedEncodingException {
+		return extractTupleFrom(valueSet, table, driver, timeZone, index);
 	}
 
 	/*
-	 * Extract a row from values datasets and its model.
+	 * Extract a row from values datasets and its model. Values are read by
+	 * position and the row is linked to the table model shared by every row
+	 * of its table (this working draft uses database specific type names).
 	 */
-	private Row extractRow(DriverType driver, StdHeader header, String tableName,
-			ResultSet valueSet, String timeZone, int index) throws UnsupportedEncodingException {
-		TreeMap<String, byte[]> values = new TreeMap<String, byte[]>();
-		for (String columnName : header.getColumnNames()) {
+	private Row extractRow(DriverType driver, TableMetadata table,
+			ResultSet valueSet, String timeZone, long index) throws UnsupportedEncodingException {
+		StdHeader header = table.getTypeNameHeader();
+		RowLayout layout = table.getRowLayout();
+		byte[][] values = new byte[layout.getNbColumns()][];
+		for (int i = 0; i < values.length; i++) {
+			String columnName = layout.getColumnNames().get(i);
+			int position = table.getHeaderPosition(i);
 			try {
-				byte[] value = null;
 				SQLSpecificType type = SQLSpecificType.toSQLType(header.getDatatypes().get(
 						columnName));
 
 				if ((driver != null) && driver.equals("com.mysql.jdbc.Driver")
 						&& type.isDateType()) {
 					// Particular treatment for MySQL dates
-					extractMySQLDate(columnName, valueSet, tableName, type, timeZone, values);
+					values[i] = extractMySQLDate(columnName, position, valueSet, table.getTableName(), header, type, timeZone);
 				} else {
-					value = valueSet.getBytes(columnName);
-					values.put(columnName, value);
+					values[i] = valueSet.getBytes(position);
 				}
 			} catch (SQLException e) {
 				log.error("[TupleExtractor:extractRow] SQL Error during row extraction");
 				e.printStackTrace();
 			}
 		}
-		Row row = new Row(values, null, index);
-		return row;
+		return new Row(layout, values, table.getTypeNameBody(), index);
 	}
 
 	/*
 	 * Special treatment for MySQL date.
 	 */
-	private void extractMySQLDate(String columnName, ResultSet valueSet,
-			String tableName, SQLSpecificType type, String timeZone,
-			TreeMap<String, byte[]> values) {
+	private byte[] extractMySQLDate(String columnName, int position,
+			ResultSet valueSet, String tableName, StdHeader header,
+			SQLSpecificType type, String timeZone) {
 		// Optimization of datatype
 		try {
 			SQLSpecificType.toSQLType(header.getDatatypes().get(columnName));
 			// Convert date into timestamp
 			String value;
-			value = valueSet.getString("UNIX_TIMESTAMP(`" + columnName + "`)");
+			value = valueSet.getString(position);
 
 			if (value == null) {
 					log
@@ -236,169 +169,32 @@ public class DirectMappingEngineWD20110324 implements DirectMappingEngine {
 									+ " from column "
 									+ columnName
 									+ " in table " + tableName);
-				values.put(columnName, (new String("null")).getBytes());
+				return (new String("null")).getBytes();
 			} else {
 					log
 							.debug("[SQLConnection:extractDatabase] Timestamp value : "
 									+ value);
 				// Store date values in appropriate date format
-				values.put(columnName, SQLConnector.dateFormatToDate(type, Long
-						.valueOf(value), timeZone).getBytes());
+				return SQLConnector.dateFormatToDate(type, Long
+						.valueOf(value), timeZone).getBytes();
 			}
 		} catch (SQLException e) {
 			// TODO Auto-generated catch block
 			e.printStackTrace();
 		}
+		return null;
 	}
 
 	/*
-	 * Extract datatypes from a table and its header set.
+	 * Construct the SELECT clause of a query which extracts rows from a
+	 * table (columns can be prefixed by a table alias).
 	 */
-	private LinkedHashMap<String, String> extractDatatypes(
-			ResultSet headersSet, String tableName) {
-		LinkedHashMap<String, String> datatypes = new LinkedHashMap<String, String>();
-		try {
-			while (headersSet.next()) {
-				String type = headersSet.getString("TYPE_NAME");
-				String column = headersSet.getString("COLUMN_NAME");
-				checkBlobType(type, tableName, column);
-				datatypes.put(column, type);
-			}
-		} catch (SQLException e) {
-				log.error("[TupleExtractor:extractDatatypes] SQL Error during datatype's tuples extraction");
-			e.printStackTrace();
-		}
-		return datatypes;
-	}
-	
-	/*
-	 * Check blob types. This type is not supported in this working draft.
-	 */
-	private void checkBlobType(String type, String tableName, String column){
-		if (SQLSpecificType.toSQLType(type).isBlobType())
-			log
-					.warn("[DirectMapper:checkBlobType] WARNING Table "
-							+ tableName
-							+ ", column "
-							+ column
-							+ " Forbidden BLOB type (binary stream not supported in XSD)"
-							+ " => this column will be ignored.");
-	}
-
-	/*
-	 * Extract primary keys from database sets.
-	 */
-	private ArrayList<CandidateKey> extractPrimaryKeys(
-			ResultSet primaryKeysSet, StdHeader header, String tableName) {
-		ArrayList<CandidateKey> primaryKeys = new ArrayList<CandidateKey>();
-		// In particular : primary key
-
-		ArrayList<String> columnNames = new ArrayList<String>();
-		int size = 0;
-		// Extract columns names
-		try {
-			while (primaryKeysSet.next()) {
-				size++;
-				String columnName = primaryKeysSet.getString("COLUMN_NAME");
-				columnNames.add(columnName);
-			}
-		} catch (SQLException e) {
-			log.error("[DirectMappingEngineWD20110324:extractTupleFrom] SQL Error during primary key of tuples extraction");
-			e.printStackTrace();
-		}
-		// Sort columns
-		ArrayList<String> sortedColumnNames = new ArrayList<String>();
-		for (String columnName : header.getColumnNames()) {
-			if (columnNames.contains(columnName))
-				sortedColumnNames.add(columnName);
-		}
-		// Create object
-		if (size != 0) {
-			CandidateKey primaryKey = new CandidateKey(sortedColumnNames,
-					tableName, CandidateKey.KeyType.PRIMARY);
-			primaryKeys.add(primaryKey);
-		}
-		if (primaryKeys.size() > 1)
-			throw new IllegalStateException(
-					"[DirectMappingEngine:extractPrimaryKeys] Table "
-							+ tableName + " has more primary keys.");
-		return primaryKeys;
-	}
-
-	/*
-	 * Extract foreign keys from database sets.
-	 */
-	private HashSet<ForeignKey> extractForeignKeys(ResultSet foreignKeysSet,
-			String tableName) {
-		// Extract foreign key
-		HashSet<ForeignKey> foreignKeys = new HashSet<ForeignKey>();
-		String currentPkTableName = null;
-		ArrayList<String> pkColumnNames = new ArrayList<String>();
-		ArrayList<String> fkColumnNames = new ArrayList<String>();
-		try {
-			while (foreignKeysSet.next()) {
-				String pkTableName;
-				// Foreign key infos
-				pkTableName = foreignKeysSet.getString("PKTABLE_NAME");
-				String pkColumnName = foreignKeysSet.getString("PKCOLUMN_NAME");
-				String fkTableName = foreignKeysSet.getString("FKTABLE_NAME");
-				String fkColumnName = foreignKeysSet.getString("FKCOLUMN_NAME");
-				int fkSequence = foreignKeysSet.getInt("KEY_SEQ");
-				// Consistency test
-				if (!fkTableName.equals(tableName))
-					throw new IllegalStateException(
-							"[SQLConnection:extractDatabase] Unconsistency between source "
-									+ "table of foreign key and current table : "
-									+ tableName + " != " + fkTableName);
-
-				if (fkSequence == 1) { // Sequence == order of column in
-					// Multi-column foreign key
-					// New foreign key => store last key
-					storeForeignKey(foreignKeys, fkColumnNames, pkColumnNames,
-							tableName, currentPkTableName);
-					// TODO : check if this value is the same for another
-					// SGBD than MySQL
-					fkColumnNames = new ArrayList<String>();
-					pkColumnNames = new ArrayList<String>();
-				}
-				currentPkTableName = pkTableName;
-				pkColumnNames.add(pkColumnName);
-				fkColumnNames.add(fkColumnName);
-			}
-			// Store last key
-			storeForeignKey(foreignKeys, fkColumnNames, pkColumnNames,
-					tableName, currentPkTableName);
-
-		} catch (SQLException e) {
-			if (log.isErrorEnabled())
-				log
-						.error("[DirectMappingEngineWD20110324:extractTupleFrom] SQL Error during foreign keys of tuples extraction");
-			e.printStackTrace();
-		}
-		return foreignKeys;
-	}
-
-	/*
-	 * Create foreign key object.
-	 */
-	private void storeForeignKey(HashSet<ForeignKey> foreignKeys,
-			ArrayList<String> fkColumnNames, ArrayList<String> pkColumnNames,
-			String tableName, String currentPkTableName) {
-		if (fkColumnNames.size() != 0)
-			foreignKeys.add(new ForeignKey(fkColumnNames, tableName,
-					new CandidateKey(pkColumnNames, currentPkTableName,
-							CandidateKey.KeyType.REFERENCE)));
-	}
-
-	/*
-	 * Construct SQL Query from database sets in order to extract row from its table.
-	 */
-	public String constructSQLQuery(DriverType driver, ResultSet headersSet,
-			String tableName) {
-		LinkedHashMap<String, String> datatypes = extractDatatypes(headersSet,
-				tableName);
-		StdHeader header = new StdHeader(datatypes);
-		// Construct SQL query
+	private String constructSelectClause(DriverType driver,
+			TableMetadata table, String alias) {
+		StdHeader header = table.getTypeNameHeader();
+		String prefix = "";
+		if (alias != null)
+			prefix = alias + ".";
 		String SQLQuery = "SELECT ";
 		int i = 0;
 		for (String columnName : header.getColumnNames()) {
@@ -412,75 +208,80 @@ public class DirectMappingEngineWD20110324 implements DirectMappingEngine {
 								+ header.getDatatypes().get(columnName)
 								+ " from column : " + columnName);
 			}
-			if (type == SQLSpecificType.UNKNOW) {
-					log.warn("[DirectMappingEngineWD20110324:constructSQLQuery] Unknown SQL type : "
-									+ header.getDatatypes().get(columnName)
-									+ " from column : " + columnName);
-			}
 			// MySQL date special treatment
 			if ((driver != null) && driver.equals("com.mysql.jdbc.Driver")
 					&& type.isDateType()) {
-				SQLQuery += "UNIX_TIMESTAMP(`" + columnName + "`)";
+				SQLQuery += "UNIX_TIMESTAMP(" + prefix + "`" + columnName + "`)";
 			} else {
-				SQLQuery += "`" + columnName + "`";
+				SQLQuery += prefix + "`" + columnName + "`";
 			}
 			if (i < header.getColumnNames().size())
 				SQLQuery += ", ";
 		}
-		SQLQuery += " FROM `" + tableName + "`;";
 		return SQLQuery;
 	}
 
 	/*
 	 * Construct SQL Query from database sets in order to extract row from its table.
 	 */
-	public String constructReferencedSQLQuery(DriverType driver,
-			ResultSet headersSet, String tableName, Key key, Tuple tuple) {
-		// Explicit conversion
-		ForeignKey fk = (ForeignKey) key;
-		Row r = (Row) tuple;
-		LinkedHashMap<String, String> datatypes = extractDatatypes(headersSet,
-				tableName);
-		StdHeader header = new StdHeader(datatypes);
-		// Construct SQL query
-		// SELECT clause
-		String SQLQuery = "SELECT ";
-		int i = 0;
+	public String constructSQLQuery(DriverType driver, TableMetadata table) {
+		return constructSQLQuery(driver, table, null);
+	}
+
+	/*
+	 * Construct SQL Query from database sets in order to extract rows which
+	 * match a condition from their table.
+	 */
+	public String constructSQLQuery(DriverType driver, TableMetadata table,
+			String condition) {
+		StdHeader header = table.getTypeNameHeader();
+		// Check types once per table
 		for (String columnName : header.getColumnNames()) {
-			i++;
-			// Extract SQL date format in a ISO 8601 format
 			SQLSpecificType type = SQLSpecificType.toSQLType(header.getDatatypes().get(
 					columnName));
-			if (type == null) {
-				throw new IllegalStateException(
-						"[DirectMappingEngineWD20110324:constructSQLQuery] Unknown SQL type : "
-								+ header.getDatatypes().get(columnName)
-								+ " from column : " + columnName);
-			}
 			if (type == SQLSpecificType.UNKNOW) {
-				if (log.isWarnEnabled())
-					log
-							.warn("[DirectMappingEngineWD20110324:constructSQLQuery] Unknown SQL type : "
+					log.warn("[DirectMappingEngineWD20110324:constructSQLQuery] Unknown SQL type : "
 									+ header.getDatatypes().get(columnName)
 									+ " from column : " + columnName);
 			}
-			if ((driver != null) && driver.equals("com.mysql.jdbc.Driver")
-					&& type.isDateType()) {
-				SQLQuery += "UNIX_TIMESTAMP(`" + columnName + "`)";
-			} else {
-				SQLQuery += "`" + columnName + "`";
-			}
-			if (i < header.getColumnNames().size())
-				SQLQuery += ", ";
+			// Blob types are not supported in this working draft.
+			if (type != null && type.isBlobType())
+				log
+						.warn("[DirectMapper:checkBlobType] WARNING Table "
+								+ table.getTableName()
+								+ ", column "
+								+ columnName
+								+ " Forbidden BLOB type (binary stream not supported in XSD)"
+								+ " => this column will be ignored.");
 		}
-		SQLQuery += " FROM `" + tableName + "`";
+		// Construct SQL query
+		String SQLQuery = constructSelectClause(driver, table, null);
+		SQLQuery += " FROM `" + table.getTableName() + "`";
+		if (condition != null)
+			SQLQuery += " WHERE " + condition;
+		SQLQuery += ";";
+		return SQLQuery;
+	}
+
+	/*
+	 * Construct SQL Query from database sets in order to extract row from its table.
+	 */
+	public String constructReferencedSQLQuery(DriverType driver,
+			TableMetadata table, Key key, Tuple tuple) {
+		// Explicit conversion
+		ForeignKey fk = (ForeignKey) key;
+		Row r = (Row) tuple;
+		// Construct SQL query
+		// SELECT clause
+		String SQLQuery = constructSelectClause(driver, table, null);
+		SQLQuery += " FROM `" + table.getTableName() + "`";
 		// WHERE clause
 		SQLQuery += " WHERE ";
 		int j = 0;
 		ArrayList<String> columnNames = fk.getReferenceKey().getColumnNames();
 		for (String columnName : columnNames) {
 			SQLQuery += "`" + columnName + "` = '"
-					+ r.getValues().get(fk.getColumnNames().get(j)) + "'";
+					+ r.getValue(fk.getColumnNames().get(j)) + "'";
 			j++;
 			if (j < columnNames.size())
 				SQLQuery += " AND ";
@@ -491,6 +292,38 @@ public class DirectMappingEngineWD20110324 implements DirectMappingEngine {
 		return SQLQuery;
 	}
 
+	/*
+	 * Construct SQL Query from database sets in order to extract, in one
+	 * query, every row of the referenced table pointed by a foreign key of
+	 * the referencing rows which match a condition.
+	 */
+	public String constructReferencedSetSQLQuery(DriverType driver,
+			TableMetadata table, Key key, String condition) {
+		// Explicit conversion
+		ForeignKey fk = (ForeignKey) key;
+		// Construct SQL query
+		// SELECT clause
+		String SQLQuery = constructSelectClause(driver, table, "referenced");
+		SQLQuery += " FROM `" + table.getTableName() + "` referenced";
+		// WHERE clause
+		SQLQuery += " WHERE EXISTS (SELECT 1 FROM `" + fk.getSourceTable()
+				+ "` referencing WHERE ";
+		int j = 0;
+		ArrayList<String> columnNames = fk.getReferenceKey().getColumnNames();
+		for (String columnName : columnNames) {
+			SQLQuery += "referencing.`" + fk.getColumnNames().get(j)
+					+ "` = referenced.`" + columnName + "`";
+			j++;
+			if (j < columnNames.size())
+				SQLQuery += " AND ";
+		}
+		// Columns of the condition belong to the referencing table
+		if (condition != null)
+			SQLQuery += " AND (" + condition + ")";
+		SQLQuery += ");";
+		return SQLQuery;
+	}
+
 	/*
 	 * Most of the functions defining the Direct Mapping are higher-order
 	 * functions parameterized by a function φ (phi) : Row → Node. This function
@@ -502,10 +335,18 @@ public class DirectMappingEngineWD20110324 implements DirectMappingEngine {
 			throws UnsupportedEncodingException {
 		if (log.isDebugEnabled())
 			log.debug("[DirectMapper:phi] Table : " + t);
-		CandidateKey primaryKey = t.getPrimaryKey();
+		return phi(t.getTableName(), t.getPrimaryKey(), r, baseURI);
+	}
+
+	/*
+	 * Phi function for a row seen from a given table name and primary key
+	 * (tables are shared by every row and must not be modified).
+	 */
+	private Resource phi(String tableName, CandidateKey primaryKey, Row r,
+			String baseURI) throws UnsupportedEncodingException {
 		if (primaryKey != null) {
 			// Unique Node IRI
-			String stringURI = generateUniqNodeIRI(r, t, primaryKey, baseURI);
+			String stringURI = generateUniqNodeIRI(r, tableName, primaryKey, baseURI);
 			URI uri = vf.createURI(baseURI, stringURI);
 			return uri;
 		} else {
@@ -525,7 +366,7 @@ public class DirectMappingEngineWD20110324 implements DirectMappingEngine {
 		CandidateKey primaryKey = t.getPrimaryKey();
 		if (primaryKey != null) {
 			// Unique Node IRI
-			String stringURI = generateUniqNodeIRI(referencedRow, t, primaryKey, baseURI);
+			String stringURI = generateUniqNodeIRI(referencedRow, t.getTableName(), primaryKey, baseURI);
 			URI uri = vf.createURI(baseURI, stringURI);
 			// URIs.put(r, uri);
 			return uri;
@@ -539,13 +380,13 @@ public class DirectMappingEngineWD20110324 implements DirectMappingEngine {
 	/*
 	 * Generate IRI name from databse information.
 	 */
-	private String generateUniqNodeIRI(Row r, StdTable t, CandidateKey primaryKey, String baseURI){
-		String stringURI = t.getTableName() + solidus;
+	private String generateUniqNodeIRI(Row r, String tableName, CandidateKey primaryKey, String baseURI){
+		String stringURI = tableName + solidus;
 		int i = 0;
 		for (String columnName : primaryKey.getColumnNames()) {
 			i++;
 			stringURI += columnName + hyphenMinus
-					+ r.getValues().get(columnName);
+					+ r.getValue(columnName);
 			if (i < primaryKey.getColumnNames().size())
 				stringURI += fullStop;
 		}
@@ -564,13 +405,13 @@ public class DirectMappingEngineWD20110324 implements DirectMappingEngine {
 	private  String generateUniqBlankNodeName(Row r) throws UnsupportedEncodingException{
 		String blankNodeUniqName = r.getIndex() + "-";
 		int i = 1;
-		for (String columnName : r.getValues().keySet()) {
-			final byte[] bs = r.getValues().get(columnName);
+		for (String columnName : r.getColumnNames()) {
+			final byte[] bs = r.getValue(columnName);
 			blankNodeUniqName += URLEncoder.encode(columnName, DirectMappingEngine.encoding)
 					+ hyphenMinus
 					+ URLEncoder.encode(new String(bs),
 							DirectMappingEngine.encoding);
-			if (i < r.getValues().size())
+			if (i < r.getColumnNames().size())
 				blankNodeUniqName += fullStop;
 			i++;
 		}
@@ -583,47 +424,30 @@ public class DirectMappingEngineWD20110324 implements DirectMappingEngine {
 	 * row in R. - The foreign key K generates no reference triple. - Even if K
 	 * is a single-column foreign key, it generates a literal triple.
 	 */
-	private HashSet<Statement> convertPrimaryIsCandidateKey(Row row,
-			Row referencedRow, ForeignKey fk, String baseURI)
-			throws UnsupportedEncodingException {
-		HashSet<Statement> result = new HashSet<Statement>();
-		// Generate URI subject
-
-		String saveTableName = referencedRow.getParentBody().getParentTable()
-				.getTableName();
-		StdTable referencedTable = referencedRow.getParentBody().getParentTable();
-		referencedTable.setTableName(fk.getTargetTableName());
-
-		Resource s = phi(referencedTable, referencedRow, baseURI);
-		referencedTable.setTableName(saveTableName);
-		// Generate predicates and objects
-		for (String columnName : fk.getColumnNames()) {
-			// For each column in candidate key, a literal triple is generated
-			Statement t = convertLex(row.getParentBody().getParentTable()
-					.getHeader(), row, columnName, baseURI);
-			result.add(vf.createStatement(s, t.getPredicate(), t.getObject()));
-		}
-		return result;
+	private Resource convertPrimaryIsCandidateKey(Row row, ForeignKey fk,
+			String baseURI) throws UnsupportedEncodingException {
+		// Generate URI subject : the row is seen from its referenced table
+		CandidateKey primaryKey = row.getParentBody().getParentTable()
+				.getPrimaryKey();
+		return phi(fk.getTargetTableName(), primaryKey, row, baseURI);
 	}
 
 	/*
 	 * Denotational semantics function : convert foreign key columns
 	 * into a triple with mapped (predicate, object).
 	 */
-	private HashSet<SemiStatement> convertRef(Row row, Row referencedRow,
-			ForeignKey fk, String baseURI) throws UnsupportedEncodingException {
-		HashSet<SemiStatement> result = new HashSet<SemiStatement>();
-		ArrayList<String> columnNames = new ArrayList<String>();
-		columnNames.addAll(fk.getColumnNames());
-		URI p = convertCol(row, columnNames, baseURI);
+	private Statement convertRef(Resource s, TableVocabulary vocabulary,
+			Row row, Row referencedRow, ForeignKey fk, String baseURI)
+			throws UnsupportedEncodingException {
+		URI p = vocabulary.getReferencePredicate(fk);
+		if (p == null)
+			p = convertCol(vocabulary.getTableName(), fk.getColumnNames(),
+					baseURI);
 
 		// Get URI of target table
 		Resource o = phi(referencedRow.getParentBody().getParentTable(), row,
 				referencedRow, baseURI);
-		SemiStatement semiTriple = new SemiStatement(p, o);
-		result.add(semiTriple);
-
-		return result;
+		return vf.createStatement(s, p, o);
 	}
 
 	/*
@@ -632,81 +456,117 @@ public class DirectMappingEngineWD20110324 implements DirectMappingEngine {
 	public HashSet<Statement> extractTriplesFrom(Tuple t,
 			HashMap<Key, Tuple> referencedTuples, Key primaryIsForeignKey,
 			String baseURI) throws UnsupportedEncodingException {
+		StatementSetSink result = new StatementSetSink();
+		extractTriplesFrom(t, referencedTuples, primaryIsForeignKey, baseURI,
+				result);
+		return result.getStatements();
+	}
+
+	/*
+	 * Denotational semantics function : convert row into triples which are
+	 * emitted into the sink as soon as they are generated.
+	 */
+	public int extractTriplesFrom(Tuple t,
+			HashMap<Key, Tuple> referencedTuples, Key primaryIsForeignKey,
+			String baseURI, TripleSink sink)
+			throws UnsupportedEncodingException {
 			log.debug("[DirectMapper:convertRow] Tuple : " + t
 					+ ", referencedTuples : " + referencedTuples);
 		// Explicit conversion
 		Row r = (Row) t;
-		HashMap<ForeignKey, Row> referencedRows = new HashMap<ForeignKey, Row>();
-		for (Key key : referencedTuples.keySet()) {
-			referencedRows.put((ForeignKey) key, (Row) referencedTuples
-					.get(key));
-		}
 		ForeignKey primaryIsFk = (ForeignKey) primaryIsForeignKey;
-		HashSet<Statement> result = new HashSet<Statement>();
 		StdTable currentTable = r.getParentBody().getParentTable();
-
-		Resource s = phi(currentTable, r, baseURI);
-		// Temporary set of triple used to store triples
-		// before attribute them their subject
-		// It's necessary for manage the Primary-is-Candidate-Key Exception
-		// which can modify subject
-		HashSet<SemiStatement> tmpResult = new HashSet<SemiStatement>();
-		if (primaryIsForeignKey != null) {
-			// Primary-is-Candidate-Key Exception
-			HashSet<Statement> primaryIsCandidateKeyTriples = convertPrimaryIsCandidateKey(
-					r, r, primaryIsFk, baseURI);
-			// Add these triples to result
-			boolean firstTriple = true;
-			for (Statement primaryIsCandidateKeyTriple : primaryIsCandidateKeyTriples) {
-				// Modify subject
-				if (firstTriple) {
-					s = primaryIsCandidateKeyTriple.getSubject();
-					firstTriple = false;
+		TableVocabulary vocabulary = getVocabulary(currentTable, baseURI);
+		int nbTriples = 0;
+
+		Resource s;
+		if (primaryIsFk != null) {
+			// Primary-is-Candidate-Key Exception : subject is known before
+			// any triple is emitted
+			s = convertPrimaryIsCandidateKey(r, primaryIsFk, baseURI);
+			// For each column in candidate key, a literal triple is generated
+			for (String columnName : primaryIsFk.getColumnNames()) {
+				Statement triple = convertLex(s, vocabulary, r, columnName);
+				if (triple != null) {
+					sink.addStatement(triple);
+					nbTriples++;
 				}
-				result.add(primaryIsCandidateKeyTriple);
 			}
-		}
-		for (ForeignKey fk : referencedRows.keySet()) {
-			HashSet<SemiStatement> refTriples = convertRef(r, referencedRows
-					.get(fk), fk, baseURI);
-			for (SemiStatement refTriple : refTriples) {
-				tmpResult.add(refTriple);
-			}
-		}
-		// Construct ref triples with correct subject
-		for (SemiStatement refSemiTriple : tmpResult) {
-			Statement triple = vf.createStatement(s, refSemiTriple
-					.getPredicate(), refSemiTriple.getObject());
-			if (triple != null)
-				result.add(triple);
+		} else
+			s = phi(currentTable, r, baseURI);
+		// Reference Triples
+		for (Key key : referencedTuples.keySet()) {
+			sink.addStatement(convertRef(s, vocabulary, r,
+					(Row) referencedTuples.get(key), (ForeignKey) key, baseURI));
+			nbTriples++;
 		}
 		// Literal Triples
-		for (String columnName : currentTable.getLexicals()) {
-			Statement triple = convertLex(currentTable.getHeader(), r,
-					columnName, baseURI);
+		for (String columnName : vocabulary.getLexicalColumnNames()) {
+			// Already converted by Primary-is-Candidate-Key Exception
+			if (primaryIsFk != null
+					&& primaryIsFk.getColumnNames().contains(columnName))
+				continue;
+			Statement triple = convertLex(s, vocabulary, r, columnName);
 			if (triple != null) {
-				result.add(vf.createStatement(s, triple.getPredicate(), triple
-						.getObject()));
+				sink.addStatement(triple);
+				nbTriples++;
 			}
 		}
-		// Update current table
-		if (currentTableName != currentTable.getTableName()) {
-			// currentTableName = currentTable.getTableName();
-			Statement typeStatement = convertType(s, baseURI, currentTable);
-			result.add(typeStatement);
+		// Table triple
+		sink.add(s, typePredicate, vocabulary.getTypeObject());
+		nbTriples++;
+		return nbTriples;
+	}
+
+	/*
+	 * Get the IRIs of a table, computed when its first row is converted.
+	 */
+	private TableVocabulary getVocabulary(StdTable t, String baseURI)
+			throws UnsupportedEncodingException {
+		TableVocabulary vocabulary = vocabularies.get(t.getTableName());
+		if (vocabulary == null || !vocabulary.isBuiltFor(baseURI)) {
+			vocabulary = buildVocabulary(t, baseURI);
+			vocabularies.put(t.getTableName(), vocabulary);
 		}
-		return result;
+		return vocabulary;
 	}
 
 	/*
-	 * Convert type predicate from a row.
+	 * Compute class IRI, column predicates and datatypes, foreign key
+	 * predicates of a table.
 	 */
-	private Statement convertType(Resource s, String baseURI, StdTable currentTable) {
+	private TableVocabulary buildVocabulary(StdTable t, String baseURI)
+			throws UnsupportedEncodingException {
 		// Table Triples
-		URI typePredicate = vf.createURI(RDFPrefixes.prefix.get("rdf"), "type");
-		URI typeObject = vf.createURI(baseURI, currentTable.getTableName());
-		Statement typeTriple = vf.createStatement(s, typePredicate, typeObject);
-		return typeTriple;
+		URI typeObject = vf.createURI(baseURI, t.getTableName());
+		TableVocabulary vocabulary = new TableVocabulary(t.getTableName(),
+				baseURI, typeObject);
+		// Literal Triples (columns of candidate keys can be converted too)
+		StdHeader header = t.getHeader();
+		for (String columnName : header.getColumnNames()) {
+			ArrayList<String> columnNames = new ArrayList<String>();
+			columnNames.add(columnName);
+			URI p = convertCol(t.getTableName(), columnNames, baseURI);
+			String d = header.getDatatypes().get(columnName);
+			SQLSpecificType sqlType = SQLSpecificType.toSQLType(d);
+			XSDType type = null;
+			URI datatype = null;
+			if (!sqlType.isBlobType()) {
+				type = SpecificSQLToXMLS.getEquivalentSpecificType(d);
+				if (type != null
+						&& !type.toString().equals(XSDType.STRING.toString()))
+					datatype = convertDatatype(d);
+			}
+			vocabulary.addColumn(columnName, p, type, datatype,
+					sqlType.isBlobType());
+		}
+		for (String columnName : t.getLexicals())
+			vocabulary.addLexicalColumn(columnName);
+		// Reference Triples
+		for (ForeignKey fk : t.getForeignKeys())
+			vocabulary.addReference(fk,
+					convertCol(t.getTableName(), fk.getColumnNames(), baseURI));
+		return vocabulary;
 	}
 
 	/*
@@ -715,62 +575,49 @@ public class DirectMappingEngineWD20110324 implements DirectMappingEngine {
 	 * 
 	 * @throws UnsupportedEncodingException
 	 */
-	private Statement convertLex(StdHeader header, Row r, String columnName,
-			String baseURI) throws UnsupportedEncodingException {
+	private Statement convertLex(Resource s, TableVocabulary vocabulary,
+			Row r, String columnName) throws UnsupportedEncodingException {
 		if (log.isDebugEnabled())
 			log.debug("[DirectMapper:convertLex] Table "
-					+ r.getParentBody().getParentTable().getTableName()
-					+ ", column : " + columnName);
-		Statement result = null;
+					+ vocabulary.getTableName() + ", column : " + columnName);
 		Literal l = null;
-		ArrayList<String> columnNames = new ArrayList<String>();
-		columnNames.add(columnName);
-		URI p = convertCol(r, columnNames, baseURI);
-		final byte[] bs = r.getValues().get(columnName);
+		final byte[] bs = r.getValue(columnName);
 		String v = new String(bs);
-		String d = header.getDatatypes().get(columnName);
 		if (v == null || v.equals("null")) {
 			// Don't keep triple with null value
 			return null;
 		}
-		XSDType type = null;
-		SQLSpecificType sqlType = SQLSpecificType.toSQLType(d);
-		if (sqlType.isBlobType()) {
+		if (vocabulary.isIgnored(columnName)) {
 			if (log.isDebugEnabled())
 				log
 						.debug("[DirectMapper:convertLex] Table "
-								+ r.getParentBody().getParentTable()
-										.getTableName()
+								+ vocabulary.getTableName()
 								+ ", column "
 								+ columnName
 								+ " Forbidden BLOB type (binary stream not supported in XSD)"
 								+ " => this triple will be ignored.");
 			return null;
-		} else {
-			type = SpecificSQLToXMLS.getEquivalentSpecificType(d);
-			if (type == null)
-				throw new IllegalStateException(
-						"[DirectMapper:convertLex] Unknown XSD equivalent type of : "
-								+ SQLSpecificType.toSQLType(d)
-								+ " in column : "
-								+ columnName
-								+ " in table : "
-								+ r.getParentBody().getParentTable()
-										.getTableName());
 		}
-		if (type.toString().equals(XSDType.STRING.toString())) {
+		XSDType type = vocabulary.getType(columnName);
+		if (type == null) {
+			String d = r.getParentBody().getParentTable().getHeader()
+					.getDatatypes().get(columnName);
+			throw new IllegalStateException(
+					"[DirectMapper:convertLex] Unknown XSD equivalent type of : "
+							+ SQLSpecificType.toSQLType(d)
+							+ " in column : "
+							+ columnName
+							+ " in table : "
+							+ vocabulary.getTableName());
+		}
+		URI datatype_iri = vocabulary.getDatatype(columnName);
+		if (datatype_iri == null) {
 			l = vf.createLiteral(v);
 		} else {
-
-			URI datatype_iri = convertDatatype(d);
-			if (datatype_iri == null) {
-				l = vf.createLiteral(v);
-			} else {
-				l = vf.createLiteral(v, datatype_iri);
-			}
+			l = vf.createLiteral(v, datatype_iri);
 		}
-		result = vf.createStatement(null, p, (Value) l);
-		return result;
+		return vf.createStatement(s, vocabulary.getPredicate(columnName),
+				(Value) l);
 	}
 
 	/*
@@ -779,10 +626,9 @@ public class DirectMappingEngineWD20110324 implements DirectMappingEngine {
 	 * 
 	 * @throws UnsupportedEncodingException
 	 */
-	private URI convertCol(Row row, ArrayList<String> columnNames,
+	private URI convertCol(String tableName, ArrayList<String> columnNames,
 			String baseURI) throws UnsupportedEncodingException {
-		String label = URLEncoder.encode(row.getParentBody().getParentTable()
-				.getTableName(), DirectMappingEngine.encoding)
+		String label = URLEncoder.encode(tableName, DirectMappingEngine.encoding)
 				+ hash;
 		int i = 0;
 		for (String columnName : columnNames) {
@@ -828,6 +674,17 @@ public class DirectMappingEngineWD20110324 implements DirectMappingEngine {
 		ForeignKey referenceKey = (ForeignKey) key;
 		return referenceKey.getTargetTableName();
 	}
+	public ArrayList<String> getReferencedColumnNames(Key key) {
+		// Explicit conversion
+		ForeignKey referenceKey = (ForeignKey) key;
+		return referenceKey.getReferenceKey().getColumnNames();
+	}
+	public Tuple copyReferencedTuple(Tuple referencedTuple, long index)
+			throws UnsupportedEncodingException {
+		// Explicit conversion
+		Row r = (Row) referencedTuple;
+		return r.copy(index);
+	}
 	public HashSet<Key> getReferencedKeys(Tuple tuple) {
 		// Explicit conversion
 		Row r = (Row) tuple;
@@ -34,10 +34,10 @@ import java.sql.SQLException;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.HashSet;
-import java.util.LinkedHashMap;
-import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
 
-import net.antidot.semantic.rdf.model.impl.sesame.SemiStatement;
+import net.antidot.semantic.rdf.model.StatementSetSink;
+import net.antidot.semantic.rdf.model.TripleSink;
 import net.antidot.semantic.rdf.model.tools.RDFDataValidator;
 import net.antidot.semantic.rdf.rdb2rdf.commons.RDFPrefixes;
 import net.antidot.semantic.rdf.rdb2rdf.commons.SQLToXMLS;
@@ -50,9 +50,10 @@ import net.antidot.sql.model.db.CandidateKey;
 import net.antidot.sql.model.db.ForeignKey;
 import net.antidot.sql.model.db.Key;
 import net.antidot.sql.model.db.Row;
-import net.antidot.sql.model.db.StdBody;
+import net.antidot.sql.model.db.RowLayout;
 import net.antidot.sql.model.db.StdHeader;
 import net.antidot.sql.model.db.StdTable;
+import net.antidot.sql.model.db.TableMetadata;
 import net.antidot.sql.model.db.Tuple;
 import net.antidot.sql.model.type.SQLType;
 
@@ -73,13 +74,6 @@ public class DirectMappingEngineWD20120529 implements DirectMappingEngine {
 	private static Log log = LogFactory
 			.getLog(DirectMappingEngineWD20120529.class);
 
-	// Database values
-	private String currentTableName;
-	private LinkedHashMap<String, String> datatypes;
-	private StdHeader header;
-	private ArrayList<CandidateKey> primaryKeys;
-	private HashSet<ForeignKey> foreignKeys;
-
 	// Sesame valueFactory which generates values like litterals or URI
 	private ValueFactory vf;
 
@@ -90,57 +84,29 @@ public class DirectMappingEngineWD20120529 implements DirectMappingEngine {
 	private static char hyphenEquals = '=';
 	private static String refInfix = "ref-";
 
-	public DirectMappingEngineWD20120529() {
-		initDatabaseValues();
-	}
+	// rdf:type predicate of table triples
+	private URI typePredicate;
 
-	private void initDatabaseValues() {
-		currentTableName = null;
-		datatypes = new LinkedHashMap<String, String>();
-		header = null;
-		primaryKeys = new ArrayList<CandidateKey>();
-		foreignKeys = new HashSet<ForeignKey>();
+	// IRIs of each table, computed once per table
+	private ConcurrentHashMap<String, TableVocabulary> vocabularies;
+
+	public DirectMappingEngineWD20120529() {
 		vf = new ValueFactoryImpl();
+		typePredicate = vf.createURI(RDFPrefixes.prefix.get("rdf"), "type");
+		vocabularies = new ConcurrentHashMap<String, TableVocabulary>();
 	}
 
 	/*
 	 * Extract a tuple from database extracted sets.
 	 */
-	public Tuple extractTupleFrom(ResultSet valueSet, ResultSet headerSet,
-			ResultSet primaryKeysSet, ResultSet foreignKeysSet,
-			String tableName, DriverType driver, String timeZone, int index)
+	public Tuple extractTupleFrom(ResultSet valueSet, TableMetadata table,
+			DriverType driver, String timeZone, long index)
 			throws UnsupportedEncodingException {
-		if (tableName != currentTableName)
-			// First table treatment
-			// Get datatypes
-			updateTableContext(headerSet, primaryKeysSet, foreignKeysSet,
-					tableName);
-		if (datatypes == null || header == null || primaryKeys == null
-				|| foreignKeys == null)
+		if (table == null)
 			throw new IllegalStateException(
-					"[DirectMappingEngine:extractTupleFrom] One of mandatory elements for tuple's building is missing.");
+					"[DirectMappingEngine:extractTupleFrom] Metadata of table is required for tuple's building.");
 		// Extract row
-		Row result = extractRow(driver, header, tableName, valueSet, timeZone,
-				index);
-		// Attach context to this row
-		buildTmpModel(result, tableName, header, primaryKeys, foreignKeys);
-		return result;
-	}
-
-	/*
-	 * Update data associated with current table.
-	 */
-	private void updateTableContext(ResultSet headerSet,
-			ResultSet primaryKeysSet, ResultSet foreignKeysSet, String tableName) {
-		// First table treatment
-		// Get datatypes
-		datatypes = extractDatatypes(headerSet, tableName);
-		header = new StdHeader(datatypes);
-		// Extract candidate keys
-		primaryKeys = extractPrimaryKeys(primaryKeysSet, header, tableName);
-		// Extract foreign key
-		if (foreignKeysSet != null)
-			foreignKeys = extractForeignKeys(foreignKeysSet, tableName);
+		return extractRow(driver, table, valueSet, timeZone, index);
 	}
 
 	/*
@@ -148,257 +114,111 @@ public class DirectMappingEngineWD20120529 implements DirectMappingEngine {
 	 * extracted sets.
 	 */
 	public Tuple extractReferencedTupleFrom(ResultSet valueSet,
-			ResultSet headerSet, ResultSet primaryKeysSet,
-			ResultSet foreignKeysSet, String tableName, DriverType driver,
-			String timeZone, int index) throws UnsupportedEncodingException {
-		// Get datatypes
-		LinkedHashMap<String, String> referencedDatatypes = extractDatatypes(
-				headerSet, tableName);
-		StdHeader referencedHeader = new StdHeader(referencedDatatypes);
-		// Extract candidate keys
-		ArrayList<CandidateKey> referencedPrimaryKeys = extractPrimaryKeys(
-				primaryKeysSet, referencedHeader, tableName);
-		// Extract foreign key
-		HashSet<ForeignKey> referencedForeignKeys = extractForeignKeys(
-				foreignKeysSet, tableName);
-		if (datatypes == null || header == null || primaryKeys == null)
-			throw new IllegalStateException(
-					"[DirectMappingEngine:extractTupleFrom] One of mandatory elements for tuple's building is missing.");
-		// Extract row
-		Row result = extractRow(driver, referencedHeader, tableName, valueSet,
-				timeZone, index);
-		// Attach context to this row
-		buildTmpModel(result, tableName, referencedHeader,
-				referencedPrimaryKeys, referencedForeignKeys);
-		return result;
-	}
-
-	/*
-	 * Build objects associated with a row from database extracted sets.
-	 */
-	private void buildTmpModel(Row row, String tableName, StdHeader header,
-			ArrayList<CandidateKey> primaryKeys, HashSet<ForeignKey> foreignKeys) {
-		// Create body
-		HashSet<Row> rows = new HashSet<Row>();
-		rows.add(row);
-		StdBody body = new StdBody(rows, null);
-		// Create table
-		StdTable table = new StdTable(tableName, header, primaryKeys,
-				foreignKeys, body);
-		// Link objects
-		body.setParentTable(table);
-		row.setParentBody(body);
+			TableMetadata table, DriverType driver, String timeZone, long index)
+			throws UnsupportedEncodingException {
+		return extractTupleFrom(valueSet, table, driver, timeZone, index);
 	}
 
 	/*
-	 * Extract a row from values datasets and its model.
+	 * Extract a row from values datasets and its model. Values are read by
+	 * position and the row is linked to the table model shared by every row
+	 * of its table.
 	 */
-	private Row extractRow(DriverType driver, StdHeader header, String tableName,
-			ResultSet valueSet, String timeZone, int index)
+	private Row extractRow(DriverType driver, TableMetadata table,
+			ResultSet valueSet, String timeZone, long index)
 			throws UnsupportedEncodingException {
-		TreeMap<String, byte[]> values = new TreeMap<String, byte[]>();
-		for (String columnName : header.getColumnNames()) {
+		RowLayout layout = table.getRowLayout();
+		byte[][] values = new byte[layout.getNbColumns()][];
+		for (int i = 0; i < values.length; i++) {
 			try {
-				byte[] value = null;
-				// SQLType type =
-				// SQLType.toSQLType(Integer.valueOf(header.getDatatypes().get(columnName)));
-				value = valueSet.getBytes(columnName);
+				int position = table.getHeaderPosition(i);
+				byte[] value = valueSet.getBytes(position);
 
 				// http://bugs.mysql.com/bug.php?id=65943
 				if(value != null && 
 					driver.equals(DriverType.MysqlDriver) &&
-					SQLType.toSQLType(valueSet.getMetaData().getColumnType(valueSet.findColumn(columnName))) == SQLType.CHAR) {
-				    value = valueSet.getString(columnName).getBytes();
+					table.getSQLType(layout.getColumnNames().get(i)) == SQLType.CHAR) {
+				    value = valueSet.getString(position).getBytes();
 				}
 
-				values.put(columnName, value);
+				values[i] = value;
 			} catch (SQLException e) {
 				log.error("[DirectMappingEngine:extractRow] SQL Error during row extraction");
 				e.printStackTrace();
 			}
 		}
-		Row row = new Row(values, null, index);
-		return row;
-	}
-
-	/*
-	 * Extract datatypes from a table and its header set.
-	 */
-	private LinkedHashMap<String, String> extractDatatypes(
-			ResultSet headersSet, String tableName) {
-		LinkedHashMap<String, String> datatypes = new LinkedHashMap<String, String>();
-		try {
-			while (headersSet.next()) {
-				String type = headersSet.getString("DATA_TYPE");
-				String column = headersSet.getString("COLUMN_NAME");
-				checkBlobType(type, tableName, column);
-				datatypes.put(column, type);
-			}
-		} catch (SQLException e) {
-			log.error("[DirectMappingEngine:extractDatatypes] SQL Error during datatype's tuples extraction");
-			e.printStackTrace();
-		}
-		return datatypes;
-	}
-
-	/*
-	 * Check blob types. This type is not supported in this working draft.
-	 */
-	private void checkBlobType(String type, String tableName, String column) {
-		if (SQLType.toSQLType(Integer.valueOf(type)).isBlobType())
-			log.warn("[DirectMapper:checkBlobType] WARNING Table "
-					+ tableName
-					+ ", column "
-					+ column
-					+ " Forbidden BLOB type (binary stream not supported in XSD)"
-					+ " => this column will be ignored.");
-	}
-
-	/*
-	 * Extract primary keys from database sets.
-	 */
-	private ArrayList<CandidateKey> extractPrimaryKeys(
-			ResultSet primaryKeysSet, StdHeader header, String tableName) {
-		ArrayList<CandidateKey> primaryKeys = new ArrayList<CandidateKey>();
-		// In particular : primary key
-
-		ArrayList<String> columnNames = new ArrayList<String>();
-		int size = 0;
-		// Extract columns names
-		try {
-			while (primaryKeysSet.next()) {
-				size++;
-				String columnName = primaryKeysSet.getString("COLUMN_NAME");
-				columnNames.add(columnName);
-			}
-		} catch (SQLException e) {
-			log.error("[DirectMappingEngine:extractPrimaryKeys] SQL Error during primary key of tuples extraction");
-			e.printStackTrace();
-		}
-		// Sort columns
-		ArrayList<String> sortedColumnNames = new ArrayList<String>();
-		for (String columnName : header.getColumnNames()) {
-			if (columnNames.contains(columnName))
-				sortedColumnNames.add(columnName);
-		}
-		// Create object
-		if (size != 0) {
-			CandidateKey primaryKey = new CandidateKey(sortedColumnNames,
-					tableName, CandidateKey.KeyType.PRIMARY);
-			primaryKeys.add(primaryKey);
-		}
-		if (primaryKeys.size() > 1)
-			throw new IllegalStateException(
-					"[DirectMappingEngine:extractPrimaryKeys] Table "
-							+ tableName + " has more primary keys.");
-		return primaryKeys;
+		return new Row(layout, values, table.getBody(), index);
 	}
 
 	/*
-	 * Extract foreign keys from database sets.
+	 * Construct the SELECT clause of a query which extracts rows from a
+	 * table (columns can be prefixed by a table alias).
 	 */
-	private HashSet<ForeignKey> extractForeignKeys(ResultSet foreignKeysSet,
-			String tableName) {
-		// Extract foreign key
-	    	log.error("[DirectMappingEngine:extractForeignKeys] Extract Foreign Keys for : " + tableName);	    
-		HashSet<ForeignKey> foreignKeys = new HashSet<ForeignKey>();
-		String currentPkTableName = null;
-		ArrayList<String> pkColumnNames = new ArrayList<String>();
-		ArrayList<String> fkColumnNames = new ArrayList<String>();
-		try {
-			while (foreignKeysSet.next()) {
-				String pkTableName;
-				// Foreign key infos
-				pkTableName = foreignKeysSet.getString("PKTABLE_NAME");
-
-				String pkColumnName = foreignKeysSet.getString("PKCOLUMN_NAME");
-				String fkTableName = foreignKeysSet.getString("FKTABLE_NAME");
-				String fkColumnName = foreignKeysSet.getString("FKCOLUMN_NAME");
-				int fkSequence = foreignKeysSet.getInt("KEY_SEQ");
-				// Consistency test
-				if (!fkTableName.equals(tableName))
-					throw new IllegalStateException(
-							"[DirectMappingEngine:extractForeignKeys] Unconsistency between source "
-									+ "table of foreign key and current table : "
-									+ tableName + " != " + fkTableName);
-
-				if (fkSequence == 1) { // Sequence == order of column in
-					// Multi-column foreign key
-					// New foreign key => store last key
-					storeForeignKey(foreignKeys, fkColumnNames, pkColumnNames,
-							tableName, currentPkTableName);
-					fkColumnNames = new ArrayList<String>();
-					pkColumnNames = new ArrayList<String>();
-				}
-				currentPkTableName = pkTableName;
-				pkColumnNames.add(pkColumnName);
-				fkColumnNames.add(fkColumnName);
+	private String constructSelectClause(DriverType driver,
+			TableMetadata table, String alias) {
+		String SQLQuery = "SELECT ";
+		int i = 0;
+		for (String columnName : table.getColumnNames()) {
+			i++;
+			SQLType type = table.getSQLType(columnName);
+			if (type == null) {
+				throw new IllegalStateException(
+						"[DirectMappingEngine:constructSQLQuery] Unknown SQL type : "
+								+ table.getHeader().getDatatypes().get(columnName)
+								+ " from column : " + columnName);
 			}
-			log.error("[DirectMappingEngine:extractForeignKeys] Store now last foreign key");
-			// Store last key
-			storeForeignKey(foreignKeys, fkColumnNames, pkColumnNames,
-					tableName, currentPkTableName);
-
-		} catch (SQLException e) {
-		    	log.error("[DirectMappingEngine:extractForeignKeys] SQL Error during foreign keys of tuples extraction");
-			e.printStackTrace();
+			if (alias != null)
+				SQLQuery += alias + ".";
+			if (driver.equals(DriverType.MysqlDriver))
+				SQLQuery += "`" + columnName + "`";
+			else
+			    	SQLQuery += "\"" + columnName + "\"";
+			if (i < table.getColumnNames().size())
+				SQLQuery += ", ";
 		}
-		return foreignKeys;
+		return SQLQuery;
 	}
 
 	/*
-	 * Create foreign key object.
+	 * Construct SQL Query from database sets in order to extract row from its
+	 * table.
 	 */
-	private void storeForeignKey(HashSet<ForeignKey> foreignKeys,
-			ArrayList<String> fkColumnNames, ArrayList<String> pkColumnNames,
-			String tableName, String currentPkTableName) {
-		log.debug("[DirectMappingEngine:storeForeignKey] Store foreign key : "
-				+ pkColumnNames);
-		if (fkColumnNames.size() != 0)
-			foreignKeys.add(new ForeignKey(fkColumnNames, tableName,
-					new CandidateKey(pkColumnNames, currentPkTableName,
-							CandidateKey.KeyType.REFERENCE)));
+	public String constructSQLQuery(DriverType driver, TableMetadata table) {
+		return constructSQLQuery(driver, table, null);
 	}
 
 	/*
-	 * Construct SQL Query from database sets in order to extract row from its
-	 * table.
+	 * Construct SQL Query from database sets in order to extract rows which
+	 * match a condition from their table.
 	 */
-	public String constructSQLQuery(DriverType driver, ResultSet headersSet,
-			String tableName) {
-		LinkedHashMap<String, String> datatypes = extractDatatypes(headersSet,
-				tableName);
-		StdHeader header = new StdHeader(datatypes);
-		// Construct SQL query
-		String SQLQuery = "SELECT ";
-		int i = 0;
-		for (String columnName : header.getColumnNames()) {
-			i++;
-			// Extract SQL date format in a ISO 8601 format
-			SQLType type = SQLType.toSQLType(Integer.valueOf(header
-					.getDatatypes().get(columnName)));
-			if (type == null) {
-				throw new IllegalStateException(
-						"[DirectMappingEngine:constructSQLQuery] Unknown SQL type : "
-								+ header.getDatatypes().get(columnName)
-								+ " from column : " + columnName);
-			}
+	public String constructSQLQuery(DriverType driver, TableMetadata table,
+			String condition) {
+		// Check types once per table
+		for (String columnName : table.getColumnNames()) {
+			SQLType type = table.getSQLType(columnName);
 			if (type == SQLType.UNKNOWN) {
 				log.warn("[DirectMappingEngine:constructSQLQuery] Unknown SQL type : "
-						+ header.getDatatypes().get(columnName)
+						+ table.getHeader().getDatatypes().get(columnName)
 						+ " from column : " + columnName);
 			}
-			if (driver.equals(DriverType.MysqlDriver))
-				SQLQuery += "`" + columnName + "`";
-			else
-			    	SQLQuery += "\"" + columnName + "\"";
-			if (i < header.getColumnNames().size())
-				SQLQuery += ", ";
+			// Blob types are not supported in this working draft.
+			if (type != null && type.isBlobType())
+				log.warn("[DirectMapper:checkBlobType] WARNING Table "
+						+ table.getTableName()
+						+ ", column "
+						+ columnName
+						+ " Forbidden BLOB type (binary stream not supported in XSD)"
+						+ " => this column will be ignored.");
 		}
+		// Construct SQL query
+		String SQLQuery = constructSelectClause(driver, table, null);
 		if (driver.equals(DriverType.MysqlDriver))
-			SQLQuery += " FROM `" + tableName + "`;";
+			SQLQuery += " FROM `" + table.getTableName() + "`";
 		else
-		    	SQLQuery += " FROM \"" + tableName + "\";";
+		    	SQLQuery += " FROM \"" + table.getTableName() + "\"";
+		if (condition != null)
+			SQLQuery += " WHERE " + condition;
+		SQLQuery += ";";
 		return SQLQuery;
 	}
 
@@ -407,45 +227,17 @@ public class DirectMappingEngineWD20120529 implements DirectMappingEngine {
 	 * table.
 	 */
 	public String constructReferencedSQLQuery(DriverType driver,
-			ResultSet headersSet, String tableName, Key key, Tuple tuple) {
+			TableMetadata table, Key key, Tuple tuple) {
 		// Explicit conversion
 		ForeignKey fk = (ForeignKey) key;
 		Row r = (Row) tuple;
-		LinkedHashMap<String, String> datatypes = extractDatatypes(headersSet,
-				tableName);
-		StdHeader header = new StdHeader(datatypes);
 		// Construct SQL query
 		// SELECT clause
-		String SQLQuery = "SELECT ";
-		int i = 0;
-		for (String columnName : header.getColumnNames()) {
-			i++;
-			// Extract SQL date format in a ISO 8601 format
-			SQLType type = SQLType.toSQLType(Integer.valueOf(header
-					.getDatatypes().get(columnName)));
-			if (type == null) {
-				throw new IllegalStateException(
-						"[DirectMappingEngine:constructSQLQuery] Unknown SQL type : "
-								+ header.getDatatypes().get(columnName)
-								+ " from column : " + columnName);
-			}
-			if (type == SQLType.UNKNOWN) {
-				if (log.isWarnEnabled())
-					log.warn("[DirectMappingEngine:constructSQLQuery] Unknown SQL type : "
-							+ header.getDatatypes().get(columnName)
-							+ " from column : " + columnName);
-			}
-			if (driver.equals(DriverType.MysqlDriver))
-				SQLQuery += "`" + columnName + "`";
-			else
-			    	SQLQuery += "\"" + columnName + "\"";
-			if (i < header.getColumnNames().size())
-				SQLQuery += ", ";
-		}
+		String SQLQuery = constructSelectClause(driver, table, null);
 		if (driver.equals(DriverType.MysqlDriver))
-			SQLQuery += " FROM `" + tableName + "`";
+			SQLQuery += " FROM `" + table.getTableName() + "`";
 		else
-		    	SQLQuery += " FROM \"" + tableName + "\"";
+		    	SQLQuery += " FROM \"" + table.getTableName() + "\"";
 		// WHERE clause
 		SQLQuery += " WHERE ";
 		int j = 0;
@@ -456,7 +248,7 @@ public class DirectMappingEngineWD20120529 implements DirectMappingEngine {
 			    finalColumnName = "`" + columnName + "`";
 			}
 
-			final byte[] bs = r.getValues().get(fk.getColumnNames().get(j));
+			final byte[] bs = r.getValue(fk.getColumnNames().get(j));
 			if (bs == null) {
 				// Always use IS NULL to look for NULL values.
 			    SQLQuery += finalColumnName + " IS NULL";
@@ -475,6 +267,46 @@ public class DirectMappingEngineWD20120529 implements DirectMappingEngine {
 		return SQLQuery;
 	}
 
+	/*
+	 * Construct SQL Query from database sets in order to extract, in one
+	 * query, every row of the referenced table pointed by a foreign key of
+	 * the referencing rows which match a condition (a NULL value references
+	 * no row).
+	 */
+	public String constructReferencedSetSQLQuery(DriverType driver,
+			TableMetadata table, Key key, String condition) {
+		// Explicit conversion
+		ForeignKey fk = (ForeignKey) key;
+		String quote = "\"";
+		if (driver.equals(DriverType.MysqlDriver))
+			quote = "`";
+		// Construct SQL query
+		// SELECT clause
+		String SQLQuery = constructSelectClause(driver, table, "referenced");
+		SQLQuery += " FROM " + quote + table.getTableName() + quote
+				+ " referenced";
+		// WHERE clause
+		SQLQuery += " WHERE EXISTS (SELECT 1 FROM " + quote
+				+ fk.getSourceTable() + quote + " referencing WHERE ";
+		int j = 0;
+		ArrayList<String> columnNames = fk.getReferenceKey().getColumnNames();
+		for (String columnName : columnNames) {
+			String referencedColumnName = "referenced." + quote + columnName
+					+ quote;
+			String referencingColumnName = "referencing." + quote
+					+ fk.getColumnNames().get(j) + quote;
+			SQLQuery += referencingColumnName + " = " + referencedColumnName;
+			j++;
+			if (j < columnNames.size())
+				SQLQuery += " AND ";
+		}
+		// Columns of the condition belong to the referencing table
+		if (condition != null)
+			SQLQuery += " AND (" + condition + ")";
+		SQLQuery += ");";
+		return SQLQuery;
+	}
+
 	/*
 	 * Most of the functions defining the Direct Mapping are higher-order
 	 * functions parameterized by a function φ (phi) : Row → Node. This function
@@ -486,10 +318,19 @@ public class DirectMappingEngineWD20120529 implements DirectMappingEngine {
 			throws UnsupportedEncodingException {
 		if (log.isDebugEnabled())
 			log.debug("[DirectMappingEngine:phi] Table : " + t);
-		CandidateKey primaryKey = t.getPrimaryKey();
+		return phi(t.getTableName(), t.getPrimaryKey(), r, baseURI);
+	}
+
+	/*
+	 * Phi function for a row seen from a given table name and primary key
+	 * (tables are shared by every row and must not be modified).
+	 */
+	private Resource phi(String tableName, CandidateKey primaryKey, Row r,
+			String baseURI) throws UnsupportedEncodingException {
 		if (primaryKey != null) {
 			// Unique Node IRI
-			String stringURI = generateUniqNodeIRI(r, t, primaryKey, baseURI);
+			String stringURI = generateUniqNodeIRI(r, tableName, primaryKey,
+					baseURI);
 			URI uri = vf.createURI(baseURI, stringURI);
 			return uri;
 		} else {
@@ -509,8 +350,8 @@ public class DirectMappingEngineWD20120529 implements DirectMappingEngine {
 		CandidateKey primaryKey = t.getPrimaryKey();
 		if (primaryKey != null) {
 			// Unique Node IRI
-			String stringURI = generateUniqNodeIRI(referencedRow, t,
-					primaryKey, baseURI);
+			String stringURI = generateUniqNodeIRI(referencedRow,
+					t.getTableName(), primaryKey, baseURI);
 					
 			URI uri = vf.createURI(baseURI, stringURI);
 			// URIs.put(r, uri);
@@ -532,27 +373,27 @@ public class DirectMappingEngineWD20120529 implements DirectMappingEngine {
 		String result = R2RMLToolkit.getIRISafeVersion(value);
 		// For attribute names, replace each HYPHEN-MINUS character ('-',
 		// U+003d) with the string "%3D".
-		if (isAttributeName)
-			result = result.replaceAll("\\-", "%3D");
+		if (isAttributeName && result.indexOf('-') != -1)
+			result = result.replace("-", "%3D");
 		// For attribute values, replace each FULL STOP character ('.', U+002e)
 		// with the string "%2E".
-		if (isAttributeValue)
-			result = result.replaceAll("\\-", "%2E");
+		if (isAttributeValue && result.indexOf('-') != -1)
+			result = result.replace("-", "%2E");
 		return result;
 	}
 
 	/*
 	 * Generate IRI name from database information.
 	 */
-	private String generateUniqNodeIRI(Row r, StdTable t,
+	private String generateUniqNodeIRI(Row r, String tableName,
 			CandidateKey primaryKey, String baseURI)
 			throws UnsupportedEncodingException {
-		String stringURI = percentEncode(t.getTableName(), false, false)
+		String stringURI = percentEncode(tableName, false, false)
 				+ solidus;
 		int i = 0;
 		for (String columnName : primaryKey.getColumnNames()) {
 			i++;
-			final byte[] bs = r.getValues().get(columnName);
+			final byte[] bs = r.getValue(columnName);
 			stringURI += percentEncode(columnName, true, false) + hyphenEquals
 					+ percentEncode(new String(bs), false, true);
 			if (i < primaryKey.getColumnNames().size())
@@ -575,12 +416,12 @@ public class DirectMappingEngineWD20120529 implements DirectMappingEngine {
 			throws UnsupportedEncodingException {
 		String blankNodeUniqName = r.getIndex() + "-";
 		int i = 1;
-		for (String columnName : r.getValues().keySet()) {
-			final byte[] bs = r.getValues().get(columnName);
+		for (String columnName : r.getColumnNames()) {
+			final byte[] bs = r.getValue(columnName);
 			blankNodeUniqName += percentEncode(columnName, true, false)
 					+ hyphenEquals
 					+ percentEncode(new String(bs), false, true);
-			if (i < r.getValues().size())
+			if (i < r.getColumnNames().size())
 				blankNodeUniqName += semicolon;
 			i++;
 		}
@@ -594,58 +435,40 @@ public class DirectMappingEngineWD20120529 implements DirectMappingEngine {
 	 * row in R. - The foreign key K generates no reference triple. - Even if K
 	 * is a single-column foreign key, it generates a literal triple.
 	 */
-	private HashSet<Statement> convertPrimaryIsCandidateKey(Row row,
-			Row referencedRow, ForeignKey fk, String baseURI)
-			throws UnsupportedEncodingException {
-		HashSet<Statement> result = new HashSet<Statement>();
-		// Generate URI subject
-
-		String saveTableName = referencedRow.getParentBody().getParentTable()
-				.getTableName();
-		StdTable referencedTable = referencedRow.getParentBody()
-				.getParentTable();
-		referencedTable.setTableName(fk.getTargetTableName());
-
-		Resource s = phi(referencedTable, referencedRow, baseURI);
-		referencedTable.setTableName(saveTableName);
-		// Generate predicates and objects
-		for (String columnName : fk.getColumnNames()) {
-			// For each column in candidate key, a literal triple is generated
-			Statement t = convertLex(s, row.getParentBody().getParentTable()
-					.getHeader(), row, columnName, baseURI);
-			result.add(t);
-		}
-		return result;
+	private Resource convertPrimaryIsCandidateKey(Row row, ForeignKey fk,
+			String baseURI) throws UnsupportedEncodingException {
+		// Generate URI subject : the row is seen from its referenced table
+		CandidateKey primaryKey = row.getParentBody().getParentTable()
+				.getPrimaryKey();
+		return phi(fk.getTargetTableName(), primaryKey, row, baseURI);
 	}
 
 	/*
 	 * Denotational semantics function : convert foreign key columns into a
 	 * triple with mapped (predicate, object).
 	 */
-	private HashSet<SemiStatement> convertRef(Row row, Row referencedRow,
-			ForeignKey fk, String baseURI) throws UnsupportedEncodingException {
-		log.debug("[DirectMappingEngine:convertRef] Row : " + row + " Referenced row : " + referencedRow);
-		HashSet<SemiStatement> result = new HashSet<SemiStatement>();
-		ArrayList<String> columnNames = new ArrayList<String>();
-		columnNames.addAll(fk.getColumnNames());
-		URI p = convertCol(row, columnNames, baseURI, true);
+	private Statement convertRef(Resource s, TableVocabulary vocabulary,
+			Row row, Row referencedRow, ForeignKey fk, String baseURI) throws UnsupportedEncodingException {
+		if (log.isDebugEnabled())
+			log.debug("[DirectMappingEngine:convertRef] Row : " + row + " Referenced row : " + referencedRow);
+		URI p = vocabulary.getReferencePredicate(fk);
+		if (p == null)
+			p = convertCol(vocabulary.getTableName(), fk.getColumnNames(),
+					baseURI, true);
 
 		// Do NOT build if ANY ref is "null"
 		for(String colName : fk.getReferenceKey().getColumnNames())
 		{
-		    if(referencedRow.getValues().get(colName) == null)
+		    if(referencedRow.getValue(colName) == null)
 		    {
 			log.debug("[DirectMappingEngine:convertRef] Return since " + colName + " is null");
-			return result;
+			return null;
 		    }
 		}
 		// Get URI of target table
 		Resource o = phi(referencedRow.getParentBody().getParentTable(), row,
 				referencedRow, baseURI);
-		SemiStatement semiTriple = new SemiStatement(p, o);
-		result.add(semiTriple);
-
-		return result;
+		return vf.createStatement(s, p, o);
 	}
 
 	/*
@@ -654,163 +477,186 @@ public class DirectMappingEngineWD20120529 implements DirectMappingEngine {
 	public HashSet<Statement> extractTriplesFrom(Tuple t,
 			HashMap<Key, Tuple> referencedTuples, Key primaryIsForeignKey,
 			String baseURI) throws UnsupportedEncodingException {
-		log.debug("[DirectMappingEngine:extractTriplesFrom] Tuple : " + t
-				+ ", referencedTuples : " + referencedTuples);
+		StatementSetSink result = new StatementSetSink();
+		extractTriplesFrom(t, referencedTuples, primaryIsForeignKey, baseURI,
+				result);
+		return result.getStatements();
+	}
+
+	/*
+	 * Denotational semantics function : convert row into triples which are
+	 * emitted into the sink as soon as they are generated.
+	 */
+	public int extractTriplesFrom(Tuple t,
+			HashMap<Key, Tuple> referencedTuples, Key primaryIsForeignKey,
+			String baseURI, TripleSink sink)
+			throws UnsupportedEncodingException {
+		if (log.isDebugEnabled())
+			log.debug("[DirectMappingEngine:extractTriplesFrom] Tuple : " + t
+					+ ", referencedTuples : " + referencedTuples);
 		// Explicit conversion
 		Row r = (Row) t;
-		HashMap<ForeignKey, Row> referencedRows = new HashMap<ForeignKey, Row>();
-		for (Key key : referencedTuples.keySet()) {
-			referencedRows.put((ForeignKey) key,
-					(Row) referencedTuples.get(key));
-		}
 		ForeignKey primaryIsFk = (ForeignKey) primaryIsForeignKey;
-		HashSet<Statement> result = new HashSet<Statement>();
 		StdTable currentTable = r.getParentBody().getParentTable();
-
-		Resource s = phi(currentTable, r, baseURI);
-		// Temporary set of triple used to store triples
-		// before attribute them their subject
-		// It's necessary for manage the Primary-is-Candidate-Key Exception
-		// which can modify subject
-		HashSet<SemiStatement> tmpResult = new HashSet<SemiStatement>();
-		if (primaryIsForeignKey != null) {
-			// Primary-is-Candidate-Key Exception
-			HashSet<Statement> primaryIsCandidateKeyTriples = convertPrimaryIsCandidateKey(
-					r, r, primaryIsFk, baseURI);
-			// Add these triples to result
-			boolean firstTriple = true;
-			for (Statement primaryIsCandidateKeyTriple : primaryIsCandidateKeyTriples) {
-				// Modify subject
-				if (firstTriple) {
-					s = primaryIsCandidateKeyTriple.getSubject();
-					firstTriple = false;
+		TableVocabulary vocabulary = getVocabulary(currentTable, baseURI);
+		int nbTriples = 0;
+
+		Resource s;
+		if (primaryIsFk != null) {
+			// Primary-is-Candidate-Key Exception : subject is known before
+			// any triple is emitted
+			s = convertPrimaryIsCandidateKey(r, primaryIsFk, baseURI);
+			// For each column in candidate key, a literal triple is generated
+			for (String columnName : primaryIsFk.getColumnNames()) {
+				Statement triple = convertLex(s, vocabulary, r, columnName);
+				if (triple != null) {
+					sink.addStatement(triple);
+					nbTriples++;
 				}
-				result.add(primaryIsCandidateKeyTriple);
 			}
-		}
-		for (ForeignKey fk : referencedRows.keySet()) {
-			HashSet<SemiStatement> refTriples = convertRef(r,
-					referencedRows.get(fk), fk, baseURI);
-			for (SemiStatement refTriple : refTriples) {
-				tmpResult.add(refTriple);
+		} else
+			s = phi(currentTable, r, baseURI);
+		// Reference Triples
+		for (Key key : referencedTuples.keySet()) {
+			Statement triple = convertRef(s, vocabulary, r,
+					(Row) referencedTuples.get(key), (ForeignKey) key, baseURI);
+			if (triple != null) {
+				sink.addStatement(triple);
+				nbTriples++;
 			}
 		}
-		// Construct ref triples with correct subject
-		for (SemiStatement refSemiTriple : tmpResult) {
-			Statement triple = vf.createStatement(s,
-					refSemiTriple.getPredicate(), refSemiTriple.getObject());
-			if (triple != null)
-				result.add(triple);
-		}
 		// Literal Triples
 		// Difference with preceding Working Draft : even unary foreign key are
 		// converted.
-		for (String columnName : currentTable.getHeader().getColumnNames()) {
-			Statement triple = convertLex(s, currentTable.getHeader(), r,
-					columnName, baseURI);
+		for (String columnName : vocabulary.getLexicalColumnNames()) {
+			// Already converted by Primary-is-Candidate-Key Exception
+			if (primaryIsFk != null
+					&& primaryIsFk.getColumnNames().contains(columnName))
+				continue;
+			Statement triple = convertLex(s, vocabulary, r, columnName);
 			if (triple != null) {
-				result.add(triple);
+				sink.addStatement(triple);
+				nbTriples++;
 			}
 		}
-		// Update current table
-		if (currentTableName != currentTable.getTableName()) {
-			// currentTableName = currentTable.getTableName();
-			Statement typeStatement = convertType(s, baseURI, currentTable);
-			result.add(typeStatement);
+		// Table triple
+		sink.add(s, typePredicate, vocabulary.getTypeObject());
+		nbTriples++;
+		return nbTriples;
+	}
+
+	/*
+	 * Get the IRIs of a table, computed when its first row is converted.
+	 */
+	private TableVocabulary getVocabulary(StdTable t, String baseURI)
+			throws UnsupportedEncodingException {
+		TableVocabulary vocabulary = vocabularies.get(t.getTableName());
+		if (vocabulary == null || !vocabulary.isBuiltFor(baseURI)) {
+			vocabulary = buildVocabulary(t, baseURI);
+			vocabularies.put(t.getTableName(), vocabulary);
 		}
-		return result;
+		return vocabulary;
 	}
 
 	/*
-	 * Convert type predicate from a row.
+	 * Compute class IRI, column predicates and datatypes, foreign key
+	 * predicates of a table.
 	 */
-	private Statement convertType(Resource s, String baseURI,
-			StdTable currentTable) {
+	private TableVocabulary buildVocabulary(StdTable t, String baseURI)
+			throws UnsupportedEncodingException {
 		// Table Triples
-		URI typePredicate = vf.createURI(RDFPrefixes.prefix.get("rdf"), "type");
 		URI typeObject = vf.createURI(baseURI,
-				percentEncode(currentTable.getTableName(), false, false));
-		Statement typeTriple = vf.createStatement(s, typePredicate, typeObject);
-		return typeTriple;
+				percentEncode(t.getTableName(), false, false));
+		TableVocabulary vocabulary = new TableVocabulary(t.getTableName(),
+				baseURI, typeObject);
+		// Literal Triples
+		StdHeader header = t.getHeader();
+		for (String columnName : header.getColumnNames()) {
+			ArrayList<String> columnNames = new ArrayList<String>();
+			columnNames.add(columnName);
+			URI p = convertCol(t.getTableName(), columnNames, baseURI, false);
+			String d = header.getDatatypes().get(columnName);
+			SQLType sqlType = SQLType.toSQLType(Integer.valueOf(d));
+			XSDType type = null;
+			URI datatype = null;
+			if (!sqlType.isBlobType()) {
+				type = SQLToXMLS.getEquivalentType(Integer.valueOf(d));
+				if (type != null
+						&& !type.toString().equals(XSDType.STRING.toString()))
+					datatype = convertDatatype(d);
+			}
+			vocabulary.addColumn(columnName, p, type, datatype,
+					sqlType.isBlobType());
+			// Difference with preceding Working Draft : even unary foreign
+			// key are converted.
+			vocabulary.addLexicalColumn(columnName);
+		}
+		// Reference Triples
+		for (ForeignKey fk : t.getForeignKeys())
+			vocabulary.addReference(fk,
+					convertCol(t.getTableName(), fk.getColumnNames(), baseURI,
+							true));
+		return vocabulary;
 	}
 
-	/*
-	 * Denotational semantics function : convert lexical columns into a triple
-	 * with mapped (predicate, object).
-	 * 
-	 * @throws UnsupportedEncodingException
-	 */
-	
 	/**
 	 * Denotational semantics function : convert lexical columns into a triple
 	 * with mapped (predicate, object).
 	 * 
 	 * @param subject The subject to add for this triple.
-	 * @param header
+	 * @param vocabulary IRIs of the table of the row.
 	 * @param r
 	 * @param columnName
-	 * @param baseURI
 	 * @return
 	 * @throws UnsupportedEncodingException
 	 */
 	private Statement convertLex(
 		Resource subject,
-		StdHeader header,
+		TableVocabulary vocabulary,
 		Row r,
-		String columnName,
-		String baseURI) throws UnsupportedEncodingException {
+		String columnName) throws UnsupportedEncodingException {
 	    
-	    	log.debug("[DirectMappingEngine:convertLex] Table "
-					+ r.getParentBody().getParentTable().getTableName()
-					+ ", column : " + columnName);
-		Statement result = null;
+		if (log.isDebugEnabled())
+			log.debug("[DirectMappingEngine:convertLex] Table "
+					+ vocabulary.getTableName() + ", column : " + columnName);
 		Literal l = null;
-		ArrayList<String> columnNames = new ArrayList<String>();
-		columnNames.add(columnName);
-		URI p = convertCol(r, columnNames, baseURI, false);
-		byte[] v = r.getValues().get(columnName);
-		String d = header.getDatatypes().get(columnName);
-		if (v == null || v.equals("null")) {
+		byte[] v = r.getValue(columnName);
+		if (v == null) {
 			// Don't keep triple with null value
 			return null;
 		}
-		XSDType type = null;
-		SQLType sqlType = SQLType.toSQLType(Integer.valueOf(d));
-		if (sqlType.isBlobType()) {
+		if (vocabulary.isIgnored(columnName)) {
 			if (log.isDebugEnabled())
 				log.debug("[DirectMappingEngine:convertLex] Table "
-						+ r.getParentBody().getParentTable().getTableName()
+						+ vocabulary.getTableName()
 						+ ", column "
 						+ columnName
 						+ " Forbidden BLOB type (binary stream not supported in XSD)"
 						+ " => this triple will be ignored.");
 			return null;
-		} else {
-			type = SQLToXMLS.getEquivalentType(Integer.valueOf(d));
-			if (type == null)
-				throw new IllegalStateException(
-						"[DirectMappingEngine:convertLex] Unknown XSD equivalent type of : "
-								+ SQLType.toSQLType(Integer.valueOf(d))
-								+ " in column : "
-								+ columnName
-								+ " in table : "
-								+ r.getParentBody().getParentTable()
-										.getTableName());
+		}
+		XSDType type = vocabulary.getType(columnName);
+		if (type == null) {
+			String d = r.getParentBody().getParentTable().getHeader()
+					.getDatatypes().get(columnName);
+			throw new IllegalStateException(
+					"[DirectMappingEngine:convertLex] Unknown XSD equivalent type of : "
+							+ SQLType.toSQLType(Integer.valueOf(d))
+							+ " in column : "
+							+ columnName
+							+ " in table : "
+							+ vocabulary.getTableName());
 		}
 		// Canonical lexical form
 		String v_str = XSDLexicalTransformation.extractNaturalRDFFormFrom(type, v);
-		if (type.toString().equals(XSDType.STRING.toString())) {
+		URI datatype_iri = vocabulary.getDatatype(columnName);
+		if (datatype_iri == null) {
 			l = vf.createLiteral(v_str);
 		} else {
-			URI datatype_iri = convertDatatype(d);
-			if (datatype_iri == null) {
-				l = vf.createLiteral(v_str);
-			} else {
-				l = vf.createLiteral(v_str, datatype_iri);
-			}
+			l = vf.createLiteral(v_str, datatype_iri);
 		}
-		result = vf.createStatement(subject, p, (Value) l);
-		return result;
+		return vf.createStatement(subject, vocabulary.getPredicate(columnName),
+				(Value) l);
 	}
 
 	/*
@@ -819,11 +665,9 @@ public class DirectMappingEngineWD20120529 implements DirectMappingEngine {
 	 * 
 	 * @throws UnsupportedEncodingException
 	 */
-	private URI convertCol(Row row, ArrayList<String> columnNames,
+	private URI convertCol(String tableName, ArrayList<String> columnNames,
 			String baseURI, boolean isRef) throws UnsupportedEncodingException {
-		String label = percentEncode(row.getParentBody().getParentTable()
-				.getTableName(), false, false)
-				+ hash;
+		String label = percentEncode(tableName, false, false) + hash;
 		if (isRef)
 			label += refInfix;
 		int i = 0;
@@ -873,6 +717,19 @@ public class DirectMappingEngineWD20120529 implements DirectMappingEngine {
 		return referenceKey.getTargetTableName();
 	}
 
+	public ArrayList<String> getReferencedColumnNames(Key key) {
+		// Explicit conversion
+		ForeignKey referenceKey = (ForeignKey) key;
+		return referenceKey.getReferenceKey().getColumnNames();
+	}
+
+	public Tuple copyReferencedTuple(Tuple referencedTuple, long index)
+			throws UnsupportedEncodingException {
+		// Explicit conversion
+		Row r = (Row) referencedTuple;
+		return r.copy(index);
+	}
+
 	public HashSet<Key> getReferencedKeys(Tuple tuple) {
 		// Explicit conversion
 		Row r = (Row) tuple;
@@ -0,0 +1,161 @@
+/* 
+ * Copyright 2011-2013 Antidot opensource@antidot.net
+ * https://github.com/antidot/db2triples
+ * 
+ * This file is part of DB2Triples
+ *
+ * DB2Triples is free software; you can redistribute it and/or 
+ * modify it under the terms of the GNU Lesser General Public License as 
+ * published by the Free Software Foundation; either version 2 of 
+ * the License, or (at your option) any later version.
+ * 
+ * DB2Triples is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+/***************************************************************************
+ *
+ * Direct Mapping : Referenced Tuple Cache
+ *
+ * Tuples referenced by foreign keys, indexed by referenced table and
+ * foreign key values, in a LRU cache bounded by an estimation of the
+ * memory used by its tuples. A foreign key which references no tuple is
+ * cached too (with a null tuple).
+ *
+ ****************************************************************************/
+package net.antidot.semantic.rdf.rdb2rdf.dm.core;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import net.antidot.sql.model.db.Tuple;
+
+public class ReferencedTupleCache {
+
+	// Default memory budget of the cache (in bytes)
+	public static final long DEFAULT_MEMORY = 16 * 1024 * 1024;
+	// Estimated memory used by an entry, without its strings and values
+	private static final int ENTRY_OVERHEAD = 96;
+	// Estimated memory used by a value, without its bytes (column names
+	// are shared by every tuple of a table)
+	private static final int VALUE_OVERHEAD = 24;
+
+	private long memoryBudget;
+	private long usedMemory;
+	private LinkedHashMap<String, Tuple> tuples;
+	private LinkedHashMap<String, Long> sizes;
+	private long hits;
+	private long misses;
+	private long evictions;
+
+	public ReferencedTupleCache(long memoryBudget) {
+		if (memoryBudget < 1)
+			throw new IllegalArgumentException(
+					"[ReferencedTupleCache:ReferencedTupleCache] Memory budget must be positive : "
+							+ memoryBudget);
+		this.memoryBudget = memoryBudget;
+		tuples = new LinkedHashMap<String, Tuple>(16, 0.75f, true);
+		sizes = new LinkedHashMap<String, Long>();
+		usedMemory = 0;
+	}
+
+	/**
+	 * True if a lookup of this key has already been cached (its tuple can be
+	 * null if the foreign key references no tuple).
+	 */
+	public boolean contains(String key) {
+		boolean result = tuples.containsKey(key);
+		if (result)
+			hits++;
+		else
+			misses++;
+		return result;
+	}
+
+	/**
+	 * Return the tuple cached for this key (contains must have been checked
+	 * before).
+	 */
+	public Tuple get(String key) {
+		return tuples.get(key);
+	}
+
+	public void put(String key, Tuple tuple) {
+		long size = estimateSize(key, tuple);
+		if (size > memoryBudget)
+			return;
+		Long previousSize = sizes.remove(key);
+		if (previousSize != null)
+			usedMemory -= previousSize;
+		tuples.put(key, tuple);
+		sizes.put(key, size);
+		usedMemory += size;
+		// Evict least recently used tuples
+		Iterator<Map.Entry<String, Tuple>> it = tuples.entrySet().iterator();
+		while (usedMemory > memoryBudget && it.hasNext()) {
+			String eldestKey = it.next().getKey();
+			it.remove();
+			usedMemory -= sizes.remove(eldestKey);
+			evictions++;
+		}
+	}
+
+	private static long estimateSize(String key, Tuple tuple) {
+		long size = ENTRY_OVERHEAD + 2 * key.length();
+		if (tuple != null)
+			for (String columnName : tuple.getColumnNames()) {
+				byte[] value = tuple.getValue(columnName);
+				size += VALUE_OVERHEAD;
+				if (value != null)
+					size += value.length;
+			}
+		return size;
+	}
+
+	public void clear() {
+		tuples.clear();
+		sizes.clear();
+		usedMemory = 0;
+	}
+
+	public long getMemoryBudget() {
+		return memoryBudget;
+	}
+
+	public long getUsedMemory() {
+		return usedMemory;
+	}
+
+	public int getNbEntries() {
+		return tuples.size();
+	}
+
+	public long getHits() {
+		return hits;
+	}
+
+	public long getMisses() {
+		return misses;
+	}
+
+	public long getEvictions() {
+		return evictions;
+	}
+
+	/**
+	 * Ratio of lookups found in this cache (0 if no lookup).
+	 */
+	public double getHitRate() {
+		long lookups = hits + misses;
+		if (lookups == 0)
+			return 0;
+		return (double) hits / lookups;
+	}
+
+}
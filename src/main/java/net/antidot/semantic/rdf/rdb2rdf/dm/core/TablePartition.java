@@ -0,0 +1,115 @@
+/* 
+ * Copyright 2011-2013 Antidot opensource@antidot.net
+ * https://github.com/antidot/db2triples
+ * 
+ * This file is part of DB2Triples
+ *
+ * DB2Triples is free software; you can redistribute it and/or 
+ * modify it under the terms of the GNU Lesser General Public License as 
+ * published by the Free Software Foundation; either version 2 of 
+ * the License, or (at your option) any later version.
+ * 
+ * DB2Triples is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+/***************************************************************************
+ *
+ * Direct Mapping : Table Partition
+ *
+ * A part of a table extracted by one scan : either the whole table or the
+ * rows matching a range condition (on the primary key or on the physical
+ * location of rows). Each partition owns a fixed range of row indexes, so
+ * that blank nodes named after these indexes do not depend on the order
+ * in which partitions are extracted. A table which is not split keeps the
+ * indexes of its rows (their rank in the table) ; the indexes of a split
+ * table depend on the number of its partitions.
+ *
+ ****************************************************************************/
+package net.antidot.semantic.rdf.rdb2rdf.dm.core;
+
+public class TablePartition {
+
+	private String tableName;
+	// SQL condition of the rows of this partition (null for the whole table)
+	private String condition;
+	private int partitionNumber;
+	private int nbPartitions;
+	// Range of row indexes owned by this partition
+	private long firstIndex;
+	private long nbIndexes;
+
+	/**
+	 * Build a partition which holds the whole table.
+	 * 
+	 * @param tableName
+	 */
+	public TablePartition(String tableName) {
+		this(tableName, null, 0, 1);
+	}
+
+	/**
+	 * Build the partitionNumber-th partition (from 0) of a table split in
+	 * nbPartitions partitions. Each partition owns a range of 2^40 row
+	 * indexes, far more than the number of rows of one scan.
+	 * 
+	 * @param tableName
+	 * @param condition
+	 * @param partitionNumber
+	 * @param nbPartitions
+	 */
+	public TablePartition(String tableName, String condition,
+			int partitionNumber, int nbPartitions) {
+		if (tableName == null)
+			throw new IllegalArgumentException(
+					"[TablePartition:TablePartition] A table name is required.");
+		if (nbPartitions < 1 || partitionNumber < 0
+				|| partitionNumber >= nbPartitions)
+			throw new IllegalArgumentException(
+					"[TablePartition:TablePartition] Invalid partition number : "
+							+ partitionNumber + " / " + nbPartitions);
+		this.tableName = tableName;
+		this.condition = condition;
+		this.partitionNumber = partitionNumber;
+		this.nbPartitions = nbPartitions;
+		this.nbIndexes = 1L << 40;
+		this.firstIndex = partitionNumber * nbIndexes;
+	}
+
+	public String getTableName() {
+		return tableName;
+	}
+
+	public String getCondition() {
+		return condition;
+	}
+
+	public int getPartitionNumber() {
+		return partitionNumber;
+	}
+
+	public int getNbPartitions() {
+		return nbPartitions;
+	}
+
+	public long getFirstIndex() {
+		return firstIndex;
+	}
+
+	public long getNbIndexes() {
+		return nbIndexes;
+	}
+
+	public String toString() {
+		if (condition == null)
+			return tableName;
+		return tableName + " (partition " + (partitionNumber + 1) + "/"
+				+ nbPartitions + " : " + condition + ")";
+	}
+
+}
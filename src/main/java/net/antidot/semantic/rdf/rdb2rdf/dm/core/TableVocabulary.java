@@ -0,0 +1,151 @@
+/* 
+ * Copyright 2011-2013 Antidot opensource@antidot.net
+ * https://github.com/antidot/db2triples
+ * 
+ * This file is part of DB2Triples
+ *
+ * DB2Triples is free software; you can redistribute it and/or 
+ * modify it under the terms of the GNU Lesser General Public License as 
+ * published by the Free Software Foundation; either version 2 of 
+ * the License, or (at your option) any later version.
+ * 
+ * DB2Triples is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+/***************************************************************************
+ *
+ * Direct Mapping : Table Vocabulary
+ *
+ * IRIs which only depend on a table and on the base IRI : class of its
+ * rows, predicates and datatypes of its columns, predicates of its
+ * foreign keys. A Direct Mapping Engine computes them once per table
+ * and reuses them for every row of this table.
+ *
+ ****************************************************************************/
+package net.antidot.semantic.rdf.rdb2rdf.dm.core;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+
+import net.antidot.semantic.xmls.xsd.XSDType;
+import net.antidot.sql.model.db.ForeignKey;
+
+import org.openrdf.model.URI;
+
+public class TableVocabulary {
+
+	private String tableName;
+	private String baseURI;
+	// Class IRI of the rows of this table
+	private URI typeObject;
+	// Columns converted into literal triples (in conversion order)
+	private ArrayList<String> lexicalColumnNames;
+	private HashMap<String, URI> predicates;
+	private HashMap<String, XSDType> types;
+	private HashMap<String, URI> datatypes;
+	// Columns which can't be converted (binary types)
+	private HashSet<String> ignoredColumnNames;
+	private HashMap<ForeignKey, URI> referencePredicates;
+
+	public TableVocabulary(String tableName, String baseURI, URI typeObject) {
+		this.tableName = tableName;
+		this.baseURI = baseURI;
+		this.typeObject = typeObject;
+		lexicalColumnNames = new ArrayList<String>();
+		predicates = new HashMap<String, URI>();
+		types = new HashMap<String, XSDType>();
+		datatypes = new HashMap<String, URI>();
+		ignoredColumnNames = new HashSet<String>();
+		referencePredicates = new HashMap<ForeignKey, URI>();
+	}
+
+	/**
+	 * Add a column which can be converted into literal triples.
+	 * 
+	 * @param columnName
+	 * @param predicate
+	 * @param type
+	 *            XSD type of its values (null if unknown)
+	 * @param datatype
+	 *            datatype IRI of its literals (null for plain literals)
+	 * @param ignored
+	 *            true if its values can't be converted
+	 */
+	public void addColumn(String columnName, URI predicate, XSDType type,
+			URI datatype, boolean ignored) {
+		predicates.put(columnName, predicate);
+		types.put(columnName, type);
+		datatypes.put(columnName, datatype);
+		if (ignored)
+			ignoredColumnNames.add(columnName);
+	}
+
+	/**
+	 * Add a column converted into literal triples for every row.
+	 * 
+	 * @param columnName
+	 */
+	public void addLexicalColumn(String columnName) {
+		lexicalColumnNames.add(columnName);
+	}
+
+	/**
+	 * Add the predicate of reference triples generated by a foreign key.
+	 * 
+	 * @param fk
+	 * @param predicate
+	 */
+	public void addReference(ForeignKey fk, URI predicate) {
+		referencePredicates.put(fk, predicate);
+	}
+
+	public String getTableName() {
+		return tableName;
+	}
+
+	public String getBaseURI() {
+		return baseURI;
+	}
+
+	public boolean isBuiltFor(String baseURI) {
+		if (this.baseURI == null)
+			return baseURI == null;
+		return this.baseURI.equals(baseURI);
+	}
+
+	public URI getTypeObject() {
+		return typeObject;
+	}
+
+	public ArrayList<String> getLexicalColumnNames() {
+		return lexicalColumnNames;
+	}
+
+	public URI getPredicate(String columnName) {
+		return predicates.get(columnName);
+	}
+
+	public XSDType getType(String columnName) {
+		return types.get(columnName);
+	}
+
+	public URI getDatatype(String columnName) {
+		return datatypes.get(columnName);
+	}
+
+	public boolean isIgnored(String columnName) {
+		return ignoredColumnNames.contains(columnName);
+	}
+
+	public URI getReferencePredicate(ForeignKey fk) {
+		return referencePredicates.get(fk);
+	}
+
+}
@@ -32,17 +32,25 @@ package net.antidot.semantic.rdf.rdb2rdf.dm.core;
 import java.io.UnsupportedEncodingException;
 import java.sql.Connection;
 import java.sql.DatabaseMetaData;
+import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.sql.Statement;
+import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Queue;
 import java.util.Set;
 
 import net.antidot.sql.model.core.DriverType;
 import net.antidot.sql.model.core.SQLConnector;
 import net.antidot.sql.model.db.Key;
+import net.antidot.sql.model.db.SchemaCatalog;
+import net.antidot.sql.model.db.TableMetadata;
 import net.antidot.sql.model.db.Tuple;
+import net.antidot.sql.model.type.SQLType;
 
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
@@ -56,24 +64,58 @@ public class TupleExtractor {
 	// Metrics
 	private static int moduloValueCheck = 1;
 
+	/**
+	 * Default maximum number of referenced tuples kept in memory for each
+	 * foreign key of the current table in bulk reference mode.
+	 */
+	public static final int DEFAULT_MAX_BULK_REFERENCED_ROWS = 100000;
+
+	/**
+	 * Default number of rows of a partition of a table.
+	 */
+	public static final int DEFAULT_PARTITION_SIZE = 1000000;
+
+	/**
+	 * Maximum number of partitions of a table.
+	 */
+	public static final int MAX_PARTITIONS = 1024;
+
+	// First version of PostgreSQL which can scan a range of ctid
+	private static final int MIN_TID_RANGE_SCAN_VERSION = 14;
+
+	/**
+	 * Number of tuples of a table used to log the progress of its extraction :
+	 * counted by a query before reading the table (EXACT), estimated from
+	 * the statistics of the database (ESTIMATE, only for MySQL and
+	 * PostgreSQL) or unknown (NONE). In any case, extracted tuples are counted
+	 * during the extraction.
+	 */
+	public enum RowCountMode {
+		EXACT, ESTIMATE, NONE
+	}
+
 	// Database values data
 	private ResultSet currentResultSet;
-	private ResultSet currentHeaderSet;
-	private ResultSet currentPrimaryKeySet;
-	private ResultSet currentImportedKeySet;
-	private ResultSet tablesSet;
+	private Queue<TablePartition> tables;
+	private TablePartition currentPartition;
 	private String currentTableName;
-	private String currentReferencedTableName;
-	private HashMap<String, ResultSet> referencedHeaderMap;
-	private HashMap<String, ResultSet> referencedPrimaryKeyMap;
-	private HashMap<String, ResultSet> referencedForeignKeyMap;
-	private ResultSet currentReferencedHeaderSet;
-	private ResultSet currentReferencedPrimaryKeySet;
-	private ResultSet currentReferencedImportedKeySet;
+	private TableMetadata currentTable;
 	private Key currentPrimaryIsForeignKey;
+
+	// Database metadata, extracted once
+	private SchemaCatalog catalog;
+	private HashMap<String, TableMetadata> uncataloguedTables;
+
+	// Bulk resolution of referenced tuples
+	private int maxBulkReferencedRows;
+	private HashMap<String, HashMap<String, Tuple>> referencedTuplesIndexes;
+
+	// Cache of tuples extracted row per row
+	private ReferencedTupleCache referencedTupleCache;
  
 	// Database connection data
 	private Statement currentStatement;
+	private int fetchSize;
 	private DatabaseMetaData metas;
 	private Connection conn;
 	private DirectMappingEngine engine;
@@ -81,12 +123,27 @@ public class TupleExtractor {
 	private String timeZone;
 
 	// Metrics data
+	private RowCountMode rowCountMode;
 	private int currentNbTuplesInTable;
-	private int currentNbTuplesExtractedInTable;
+	private long currentNbTuplesExtractedInTable;
 	private int lastModuloValue;
 
 	public TupleExtractor(Connection conn, DirectMappingEngine engine,
 			DriverType driver, String timeZone) {
+		this(conn, engine, driver, timeZone, null, null);
+	}
+
+	/**
+	 * Build an extractor which takes its tables (or parts of tables) from a
+	 * queue. Several extractors, each one with its own connection, can share
+	 * the same catalog and the same (thread-safe) queue : each partition is
+	 * then extracted by the first extractor which needs a new one. If no
+	 * catalog is given, it is loaded from the connection and every table of
+	 * this catalog is extracted.
+	 */
+	public TupleExtractor(Connection conn, DirectMappingEngine engine,
+			DriverType driver, String timeZone, SchemaCatalog catalog,
+			Queue<TablePartition> tables) {
 		if (conn == null)
 			throw new IllegalArgumentException(
 					"[TupleExtractor:TupleExtractor] A SQL connection is required !");
@@ -100,13 +157,247 @@ public class TupleExtractor {
 		initConnections(engine, conn, driver);
 		initTimeZone(timeZone);
 		initMetrics();
-		initContextualSets();
-		initReferencedContextualSets();
-		initReferencedContextualMaps();
+		initContextualSets(catalog, tables);
 		initPrimaryIsForeignKey();
+		initReferencedTuplesIndexes();
+		initReferencedTupleCache();
 		initExtractor();
 	}
 
+	/**
+	 * Keep the tuples referenced by foreign keys (extracted row per row) in a
+	 * LRU cache bounded to memoryBudget bytes, shared by all tables. A zero
+	 * budget disables this cache.
+	 */
+	public void setReferencedTupleCache(long memoryBudget) {
+		if (memoryBudget < 0)
+			throw new IllegalArgumentException(
+					"[TupleExtractor:setReferencedTupleCache] Memory budget of referenced tuples cache must be positive.");
+		if (memoryBudget == 0)
+			referencedTupleCache = null;
+		else
+			referencedTupleCache = new ReferencedTupleCache(memoryBudget);
+	}
+
+	public ReferencedTupleCache getReferencedTupleCache() {
+		return referencedTupleCache;
+	}
+
+	/**
+	 * Choose how the number of tuples of each table is known before its
+	 * extraction (ESTIMATE by default).
+	 */
+	public void setRowCountMode(RowCountMode rowCountMode) {
+		if (rowCountMode == null)
+			throw new IllegalArgumentException(
+					"[TupleExtractor:setRowCountMode] A row count mode is required.");
+		this.rowCountMode = rowCountMode;
+	}
+
+	public RowCountMode getRowCountMode() {
+		return rowCountMode;
+	}
+
+	/**
+	 * Number of rows of tables fetched at once from the database while they
+	 * are extracted (see SQLConnector.prepareStreamingStatement). A zero
+	 * fetch size lets the driver load every row of a table in memory.
+	 */
+	public void setFetchSize(int fetchSize) {
+		if (fetchSize < 0)
+			throw new IllegalArgumentException(
+					"[TupleExtractor:setFetchSize] Fetch size must be positive.");
+		this.fetchSize = fetchSize;
+	}
+
+	public int getFetchSize() {
+		return fetchSize;
+	}
+
+	/**
+	 * Resolve the referenced tuples of a foreign key with one query for the
+	 * whole current table (instead of one query per row), as long as the
+	 * referenced table holds at most maxReferencedRows referenced tuples.
+	 * Otherwise referenced tuples are extracted row per row. A zero maximum
+	 * disables this mode.
+	 */
+	public void setBulkReferenceMode(int maxReferencedRows) {
+		if (maxReferencedRows < 0)
+			throw new IllegalArgumentException(
+					"[TupleExtractor:setBulkReferenceMode] Maximum number of referenced rows must be positive.");
+		this.maxBulkReferencedRows = maxReferencedRows;
+		initReferencedTuplesIndexes();
+	}
+
+	public void setBulkReferenceMode() {
+		setBulkReferenceMode(DEFAULT_MAX_BULK_REFERENCED_ROWS);
+	}
+
+	public boolean isBulkReferenceMode() {
+		return maxBulkReferencedRows > 0;
+	}
+
+	/**
+	 * Split a table in partitions of about partitionSize rows, which can be
+	 * extracted concurrently by several extractors. A table whose primary key
+	 * is one integer column is split in ranges of this key, between its
+	 * minimum and maximum values. A PostgreSQL table without primary key is
+	 * split in ranges of physical locations of its rows (ctid), according to
+	 * its number of pages in pg_class, only from PostgreSQL 14 : older
+	 * servers scan the whole table for each range of ctid. Other tables are
+	 * not split.
+	 * 
+	 * @param conn
+	 * @param driver
+	 * @param table
+	 * @param partitionSize
+	 * @return
+	 * @throws SQLException
+	 */
+	public static List<TablePartition> partitionTable(Connection conn,
+			DriverType driver, TableMetadata table, int partitionSize)
+			throws SQLException {
+		if (partitionSize < 1)
+			throw new IllegalArgumentException(
+					"[TupleExtractor:partitionTable] Size of partitions must be positive : "
+							+ partitionSize);
+		List<TablePartition> partitions = null;
+		String partitionColumn = getPartitionColumn(table);
+		if (partitionColumn != null)
+			partitions = partitionTableByKey(conn, driver, table,
+					partitionColumn, partitionSize);
+		else if (driver.equals(DriverType.PostgreSQL)
+				&& table.getPrimaryKeys().isEmpty()
+				&& hasTidRangeScan(conn))
+			partitions = partitionTableByLocation(conn, table, partitionSize);
+		if (partitions == null) {
+			partitions = new ArrayList<TablePartition>();
+			partitions.add(new TablePartition(table.getTableName()));
+		}
+		return partitions;
+	}
+
+	/*
+	 * Column of a primary key made of one integer column, null otherwise.
+	 */
+	private static String getPartitionColumn(TableMetadata table) {
+		if (table.getPrimaryKeys().size() != 1)
+			return null;
+		ArrayList<String> columnNames = table.getPrimaryKeys().get(0)
+				.getColumnNames();
+		if (columnNames.size() != 1)
+			return null;
+		SQLType type = table.getSQLType(columnNames.get(0));
+		if (type == SQLType.TINYINT || type == SQLType.SMALLINT
+				|| type == SQLType.INTEGER || type == SQLType.BIGINT)
+			return columnNames.get(0);
+		return null;
+	}
+
+	private static List<TablePartition> partitionTableByKey(Connection conn,
+			DriverType driver, TableMetadata table, String columnName,
+			int partitionSize) throws SQLException {
+		String column = quoteIdentifier(driver, columnName);
+		String sqlQuery = "SELECT MIN(" + column + "), MAX(" + column
+				+ ") FROM " + quoteIdentifier(driver, table.getTableName());
+		log.debug("[TupleExtractor:partitionTableByKey] Execute query : "
+				+ sqlQuery);
+		Statement statement = conn.createStatement();
+		long min, max;
+		try {
+			ResultSet bounds = statement.executeQuery(sqlQuery);
+			if (!bounds.next() || bounds.getObject(1) == null)
+				return null;
+			min = bounds.getLong(1);
+			max = bounds.getLong(2);
+			bounds.close();
+		} finally {
+			statement.close();
+		}
+		// Number of key values (as a double : it may overflow a long)
+		double span = (double) max - min + 1;
+		int nbPartitions = (int) Math.min(MAX_PARTITIONS, Math.ceil(span
+				/ partitionSize));
+		if (nbPartitions < 2)
+			return null;
+		long width = (long) Math.ceil(span / nbPartitions);
+		List<TablePartition> partitions = new ArrayList<TablePartition>();
+		for (int i = 0; i < nbPartitions; i++) {
+			// First and last partitions are open, so that no row is missed
+			String condition = null;
+			if (i == 0)
+				condition = column + " < " + (min + width);
+			else if (i == nbPartitions - 1)
+				condition = column + " >= " + (min + i * width);
+			else
+				condition = column + " >= " + (min + i * width) + " AND "
+						+ column + " < " + (min + (i + 1) * width);
+			partitions.add(new TablePartition(table.getTableName(), condition,
+					i, nbPartitions));
+		}
+		return partitions;
+	}
+
+	/*
+	 * True if the server reads a range of ctid without a sequential scan of
+	 * the whole table (TID range scans appeared in PostgreSQL 14).
+	 */
+	private static boolean hasTidRangeScan(Connection conn) throws SQLException {
+		return conn.getMetaData().getDatabaseMajorVersion() >= MIN_TID_RANGE_SCAN_VERSION;
+	}
+
+	private static List<TablePartition> partitionTableByLocation(
+			Connection conn, TableMetadata table, int partitionSize)
+			throws SQLException {
+		String regclass = quoteIdentifier(DriverType.PostgreSQL,
+				table.getTableName()).replace("'", "''");
+		String sqlQuery = "SELECT relpages, reltuples FROM pg_class WHERE oid = '"
+				+ regclass + "'::regclass";
+		log.debug("[TupleExtractor:partitionTableByLocation] Execute query : "
+				+ sqlQuery);
+		Statement statement = conn.createStatement();
+		long nbPages;
+		double nbTuples;
+		try {
+			ResultSet stats = statement.executeQuery(sqlQuery);
+			if (!stats.next())
+				return null;
+			nbPages = stats.getLong(1);
+			nbTuples = stats.getDouble(2);
+			stats.close();
+		} finally {
+			statement.close();
+		}
+		int nbPartitions = (int) Math.min(Math.min(MAX_PARTITIONS, nbPages),
+				Math.ceil(nbTuples / partitionSize));
+		if (nbPartitions < 2)
+			return null;
+		long width = (long) Math.ceil((double) nbPages / nbPartitions);
+		List<TablePartition> partitions = new ArrayList<TablePartition>();
+		for (int i = 0; i < nbPartitions; i++) {
+			// First and last partitions are open, so that no row is missed
+			String condition = null;
+			if (i == 0)
+				condition = "ctid < '(" + width + ",0)'::tid";
+			else if (i == nbPartitions - 1)
+				condition = "ctid >= '(" + (i * width) + ",0)'::tid";
+			else
+				condition = "ctid >= '(" + (i * width)
+						+ ",0)'::tid AND ctid < '(" + ((i + 1) * width)
+						+ ",0)'::tid";
+			partitions.add(new TablePartition(table.getTableName(), condition,
+					i, nbPartitions));
+		}
+		return partitions;
+	}
+
+	private static String quoteIdentifier(DriverType driver, String identifier) {
+		if (driver.equals(DriverType.MysqlDriver))
+			return "`" + identifier + "`";
+		else
+			return "\"" + identifier + "\"";
+	}
+
 	private void initTimeZone(String timeZone) {
 		// Check timezone (only for MySQL)
 		if ((driver != null) && driver.equals("com.mysql.jdbc.Driver")
@@ -128,55 +419,55 @@ public class TupleExtractor {
 		this.currentPrimaryIsForeignKey = null;
 	}
 
+	private void initReferencedTupleCache() {
+		this.referencedTupleCache = new ReferencedTupleCache(
+				ReferencedTupleCache.DEFAULT_MEMORY);
+	}
+
+	private void initReferencedTuplesIndexes() {
+		this.referencedTuplesIndexes = new HashMap<String, HashMap<String, Tuple>>();
+	}
+
 	private void initConnections(DirectMappingEngine engine, Connection conn,
 			DriverType driver) {
 		this.engine = engine;
 		this.conn = conn;
 		this.driver = driver;
+		this.fetchSize = SQLConnector.DEFAULT_FETCH_SIZE;
 	}
 
 	private void initMetrics() {
+		this.rowCountMode = RowCountMode.ESTIMATE;
 		this.currentNbTuplesInTable = -1;
 		this.currentNbTuplesExtractedInTable = -1;
 		this.lastModuloValue = 0;
 	}
 
-	private void initContextualSets() {
+	private void initContextualSets(SchemaCatalog catalog, Queue<TablePartition> tables) {
 		this.currentResultSet = null;
-		this.currentHeaderSet = null;
-		this.currentPrimaryKeySet = null;
-		this.currentImportedKeySet = null;
-		this.tablesSet = null;
+		this.catalog = catalog;
+		this.tables = tables;
+		this.currentPartition = null;
 		this.currentTableName = null;
-	}
-	
-	private void initReferencedContextualSets() {
-		this.currentResultSet = null;
-		this.currentReferencedHeaderSet = null;
-		this.currentReferencedPrimaryKeySet = null;
-		this.currentReferencedImportedKeySet = null;
-	}
-
-	private void initReferencedContextualMaps() {
-		this.currentReferencedTableName = null;
-		this.referencedHeaderMap = new HashMap<String, ResultSet>();
-		this.referencedPrimaryKeyMap = new HashMap<String, ResultSet>();
-		this.referencedForeignKeyMap = new HashMap<String, ResultSet>();
+		this.currentTable = null;
+		this.uncataloguedTables = new HashMap<String, TableMetadata>();
 	}
 
 	private void initExtractor() {
 		try {
 			// Extract metadata from DB
 			metas = conn.getMetaData();
-			// Generates tables
-			tablesSet = metas.getTables(conn.getCatalog(), null, "%", null);
+			// Extract columns and keys of every table once
+			if (catalog == null)
+				catalog = SchemaCatalog.load(conn);
+			if (tables == null) {
+				tables = new LinkedList<TablePartition>();
+				for (String tableName : catalog.getTableNames())
+					tables.add(new TablePartition(tableName));
+			}
 			// Make sure autocommit is off (required for cursor mode)
 			conn.setAutoCommit(false);
-			currentStatement = conn.createStatement();
-			// Turn use of the cursor on.
-			currentStatement.setFetchSize(50);
-			// Execute first query
-			nextTable();
+			// First query is executed by the first call to next
 
 		} catch (SQLException e) {
 			log.error("[TupleExtractor:initExtractor] Error SQL during extractor initialization.");
@@ -185,81 +476,134 @@ public class TupleExtractor {
 	}
 
 	private boolean nextTable() {
-		boolean hasTables = false;
 		// Move tables cursor
+		if (tables == null)
+			return false;
+		TablePartition partition = tables.poll();
+		if (partition == null)
+			return false;
+		currentPartition = partition;
+		currentTableName = partition.getTableName();
+		currentTable = catalog.getTable(currentTableName);
+		log.info("Next table : " + partition);
+		initReferencedTuplesIndexes();
+
+		extractMetrics();
+		extractSets();
+		return true;
+	}
+
+	/*
+	 * Metadata of a table from the catalog. A referenced table which is not
+	 * catalogued (e.g. a view or a table of another schema) is loaded once.
+	 */
+	private TableMetadata getTableMetadata(String tableName) throws SQLException {
+		TableMetadata table = catalog.getTable(tableName);
+		if (table != null)
+			return table;
+		table = uncataloguedTables.get(tableName);
+		if (table == null) {
+			log.warn("[TupleExtractor:getTableMetadata] Table " + tableName
+					+ " is not in the schema catalog : its metadata are extracted separately.");
+			table = SchemaCatalog.loadTable(metas, conn.getCatalog(), tableName);
+			uncataloguedTables.put(tableName, table);
+		}
+		return table;
+	}
+
+	private void extractMetrics() {
+		// Tuples are counted during the extraction
+		currentNbTuplesExtractedInTable = 0;
+		lastModuloValue = 0;
+		currentNbTuplesInTable = -1;
 		try {
-			hasTables = tablesSet.next();
-			if (!hasTables)
-				return false;
-			
-			while (hasTables && (tablesSet.getString("TABLE_TYPE") == null || !tablesSet
-					.getString("TABLE_TYPE").equals("TABLE"))) {
-				hasTables = tablesSet.next();
+			switch (rowCountMode) {
+			case EXACT:
+				currentNbTuplesInTable = countTuples();
+				break;
+			case ESTIMATE:
+				currentNbTuplesInTable = estimateTuples();
+				// Every partition is supposed to hold as many tuples
+				if (currentNbTuplesInTable != -1)
+					currentNbTuplesInTable = (int) Math.ceil((double) currentNbTuplesInTable
+							/ currentPartition.getNbPartitions());
+				break;
+			default:
+				break;
 			}
-			if (!hasTables)
-				return false;
-			currentTableName = tablesSet.getString("TABLE_NAME");
-			log.info("Next table : " + currentTableName);
-
-			extractMetrics();
-			extractSets();
 		} catch (SQLException e) {
-			log.error("[TupleExtractor:nextTable] Error SQL during extracting next table.");
+			log.error("[TupleExtractor:extractMetrics] Error SQL during extracting metrics sets.");
 			e.printStackTrace();
 		}
-		return hasTables;
+		if (currentNbTuplesInTable != -1)
+			log.info("Number of tuples in this table"
+					+ (rowCountMode == RowCountMode.ESTIMATE ? " (estimated)" : "")
+					+ " : " + currentNbTuplesInTable);
 	}
 
-	private void extractMetrics() {
-		// Extract metrics
+	/*
+	 * Count tuples of the current partition with a query (-1 if unknown).
+	 */
+	private int countTuples() throws SQLException {
+		String metricsSQLQuery = "SELECT COUNT(*) FROM "
+				+ quoteIdentifier(driver, currentTableName);
+		if (currentPartition.getCondition() != null)
+			metricsSQLQuery += " WHERE " + currentPartition.getCondition();
+		log.debug("[TupleExtractor:countTuples] Execute query : " + metricsSQLQuery);
+		return executeMetricsQuery(metricsSQLQuery);
+	}
+
+	/*
+	 * Estimate tuples of the current table from statistics of the database,
+	 * without reading it (-1 if unknown).
+	 */
+	private int estimateTuples() throws SQLException {
 		String metricsSQLQuery = null;
-		if (driver.equals(DriverType.MysqlDriver))
-			metricsSQLQuery = "SELECT COUNT(*) FROM `" + currentTableName + "`";
+		if (driver.equals(DriverType.PostgreSQL))
+			metricsSQLQuery = "SELECT reltuples FROM pg_class WHERE oid = '"
+					+ quoteIdentifier(driver, currentTableName).replace("'", "''")
+					+ "'::regclass";
+		else if (driver.equals(DriverType.MysqlDriver))
+			metricsSQLQuery = "SELECT TABLE_ROWS FROM information_schema.TABLES WHERE TABLE_SCHEMA = DATABASE() AND TABLE_NAME = '"
+					+ currentTableName.replace("'", "''") + "'";
 		else
-			metricsSQLQuery = "SELECT COUNT(*) FROM \"" + currentTableName + "\"";
-		log.debug("[TupleExtractor:extractMetrics] Execute query : " + metricsSQLQuery);
-		Statement metricsStatement;
+			return -1;
+		log.debug("[TupleExtractor:estimateTuples] Execute query : " + metricsSQLQuery);
+		return executeMetricsQuery(metricsSQLQuery);
+	}
+
+	private int executeMetricsQuery(String metricsSQLQuery) throws SQLException {
+		Statement metricsStatement = conn.createStatement();
 		try {
-			metricsStatement = conn.createStatement();
-			ResultSet metricsSet = metricsStatement
-					.executeQuery(metricsSQLQuery);
-			if (metricsSet.next()) {
-				int nbTuples = 0;
-				nbTuples = metricsSet.getInt(1);
-				currentNbTuplesInTable = nbTuples;
-				currentNbTuplesExtractedInTable = 0;
-				lastModuloValue = 0;
-				log.info("Number of tuples in this table : "
-								+ nbTuples);
-			} else {
-				currentNbTuplesInTable = -1;
-				currentNbTuplesExtractedInTable = -1;
-				lastModuloValue = 0;
-				log.warn("[TupleExtractor:extractMetrics] Can not extract number of tuples in this table.");
+			ResultSet metricsSet = metricsStatement.executeQuery(metricsSQLQuery);
+			if (!metricsSet.next()) {
+				log.warn("[TupleExtractor:executeMetricsQuery] Can not extract number of tuples in this table.");
+				return -1;
 			}
-		} catch (SQLException e) {
-			log.error("[TupleExtractor:extractMetrics] Error SQL during extracting metrics sets.");
-			e.printStackTrace();
+			// Statistics can be a real number, unknown (null) or negative
+			double nbTuples = metricsSet.getDouble(1);
+			if (metricsSet.wasNull() || nbTuples < 0)
+				return -1;
+			return (int) Math.min(Integer.MAX_VALUE, Math.round(nbTuples));
+		} finally {
+			metricsStatement.close();
 		}
 	}
 		
 	private void extractSets() {
-		// Extract header
 		try {
-			currentHeaderSet = metas.getColumns(null, null, currentTableName, null);
 			// Extract values
-			String SQLQuery = engine.constructSQLQuery(driver,
-					currentHeaderSet, currentTableName);
+			String SQLQuery = engine.constructSQLQuery(driver, currentTable,
+					currentPartition.getCondition());
 			log.debug("[TupleExtractor:nextTable] Execute query : " + SQLQuery);
-			currentResultSet = currentStatement.executeQuery(SQLQuery);
-			
-			// Extract primary keys
-			currentPrimaryKeySet = metas.getPrimaryKeys(conn.getCatalog(),
-					null, currentTableName);
-						
-			// Extract foreign key
-			currentImportedKeySet = metas.getImportedKeys(conn.getCatalog(),
-					null, currentTableName);
+			// Rows of the previous table have been read
+			if (currentStatement != null)
+				currentStatement.close();
+			// Turn use of the cursor on.
+			PreparedStatement statement = SQLConnector
+					.prepareStreamingStatement(conn, driver, SQLQuery, fetchSize);
+			currentStatement = statement;
+			currentResultSet = statement.executeQuery();
 		} catch (SQLException e) {
 			log.error("[TupleExtractor:extractSets] Error SQL during extracting context sets.");
 			e.printStackTrace();
@@ -269,8 +613,11 @@ public class TupleExtractor {
 	public boolean next() {
 		boolean hasNext = false;
 		try {
-			hasNext = currentResultSet.next();
+			hasNext = currentResultSet != null && currentResultSet.next();
 			while (!hasNext){
+				if (currentPartition != null)
+					log.info(currentNbTuplesExtractedInTable
+							+ " tuples extracted from " + currentPartition);
 				// Check next table
 				boolean hasTable = nextTable();
 				if (!hasTable)
@@ -280,7 +627,6 @@ public class TupleExtractor {
 				}
 				if (!hasNext) log.info("This table is empty.");
 			}
-			reinitCurrentCursors();
 			updateMetrics();
 		} catch (SQLException e) {
 			log.error("[TupleExtractor:next] Error SQL during extracting of next tuple.");
@@ -289,49 +635,13 @@ public class TupleExtractor {
 		return hasNext;
 	}
 
-	private void reinitCurrentCursors() {
-		// Re-init cursors
-		try {
-			if (!currentHeaderSet.isFirst()) {
-				currentHeaderSet.beforeFirst();
-			}
-			if (!currentPrimaryKeySet.isFirst()) {
-				currentPrimaryKeySet.beforeFirst();
-			}
-			if (!currentImportedKeySet.isFirst()) {
-				currentImportedKeySet.beforeFirst();
-			}
-		} catch (Exception e) {
-			log.error("[TupleExtractor:reinitCurrentCursors] Error SQL during reinitilization of cursors.");
-			e.printStackTrace();
-		}
-	}
-	
-	private void reinitCurrentReferencedCursors() {
-		// Re-init cursors
-		try {
-			if (!currentReferencedHeaderSet.isFirst()) {
-				currentReferencedHeaderSet.beforeFirst();
-			}
-			if (!currentReferencedPrimaryKeySet.isFirst()) {
-				currentPrimaryKeySet.beforeFirst();
-			}
-			if (!currentReferencedImportedKeySet.isFirst()) {
-				currentImportedKeySet.beforeFirst();
-			}
-		} catch (Exception e) {
-			log.error("[TupleExtractor:reinitCurrentCursors] Error SQL during reinitilization of referenced cursors.");
-			e.printStackTrace();
-		}
-	}
-
 	private void updateMetrics() {
 		// Up metrics
+		currentNbTuplesExtractedInTable++;
 		if (currentNbTuplesInTable != -1 && currentNbTuplesInTable != 0) {
-			// Only if number of tuples is known
-			currentNbTuplesExtractedInTable++;
-			int ratio = (int) Math
-					.floor(((double) currentNbTuplesExtractedInTable / currentNbTuplesInTable) * 100.);
+			// Only if number of tuples is known (an estimation can be exceeded)
+			int ratio = (int) Math.min(100, Math
+					.floor(((double) currentNbTuplesExtractedInTable / currentNbTuplesInTable) * 100.));
 			int modulo = ratio / moduloValueCheck;
 			if (modulo > lastModuloValue) {
 				lastModuloValue = modulo;
@@ -340,11 +650,19 @@ public class TupleExtractor {
 		}
 	}
 
+	/*
+	 * Index of the current tuple, used to name its blank nodes : its rank in
+	 * its partition, shifted by the first index owned by this partition.
+	 */
+	private long getCurrentIndex() {
+		return currentPartition.getFirstIndex()
+				+ currentNbTuplesExtractedInTable;
+	}
+
 	public Tuple getCurrentTuple() throws UnsupportedEncodingException {
 		// This method depends on Direct Mapping norm used
-		return engine.extractTupleFrom(currentResultSet, currentHeaderSet,
-				currentPrimaryKeySet, currentImportedKeySet, currentTableName,
-				driver, timeZone, currentNbTuplesExtractedInTable);
+		return engine.extractTupleFrom(currentResultSet, currentTable,
+				driver, timeZone, getCurrentIndex());
 	}
 
 	public Key getCurrentPrimaryIsForeignKey(Set<Key> referencedKeys,
@@ -369,63 +687,18 @@ public class TupleExtractor {
 		}
 	}
 
-	private void extractReferencedSets(String referencedTableName) {
-		
-		try {
-			if (currentReferencedTableName != referencedTableName) {
-				initReferencedContextualMaps();
-				this.currentReferencedTableName = referencedTableName;
-				// Extract target headers from target table
-				ResultSet referencedHeaderSet = metas.getColumns(null, null,
-						referencedTableName, null);
-				this.referencedHeaderMap.put(referencedTableName, referencedHeaderSet);
-				// Extract primary keys
-				ResultSet referencedPrimaryKeySet = metas.getPrimaryKeys(conn
-						.getCatalog(), null, referencedTableName);
-				this.referencedPrimaryKeyMap.put(referencedTableName, referencedPrimaryKeySet);
-				// Extract foreign key
-				ResultSet referencedForeignKeySet = metas.getImportedKeys(conn
-						.getCatalog(), null, referencedTableName);
-				this.referencedForeignKeyMap.put(referencedTableName, referencedForeignKeySet);
-			}
-			currentReferencedHeaderSet = referencedHeaderMap.get(referencedTableName);
-			currentReferencedPrimaryKeySet = referencedPrimaryKeyMap.get(referencedTableName);
-			currentReferencedImportedKeySet = referencedForeignKeyMap.get(referencedTableName);
-		} catch (SQLException e) {
-			log.error("[TupleExtractor:extractSets] Error SQL during extracting context sets.");
-			e.printStackTrace();
-		}
-	}
-
 	public Key getPrimaryIsForeignKey(Key key, Tuple tuple) throws UnsupportedEncodingException {
 		Key result = key;
 		try {
 			Statement referencedStatement = conn.createStatement();
 			boolean primaryIsForeignKeyException = true;
 			while (primaryIsForeignKeyException) {
-
-				String referencedTableName = engine.getReferencedTableName(key);
-				extractReferencedSets(referencedTableName);
-				String sqlQuery = engine.constructReferencedSQLQuery(driver,
-						currentReferencedHeaderSet, referencedTableName, key, tuple);
-				reinitCurrentReferencedCursors();
-				log.debug("[TupleExtractor:getReferencedTuples] Execute query : "
-								+ sqlQuery);
-				ResultSet referencedValueSet = referencedStatement
-						.executeQuery(sqlQuery);
-
-				// Extract values in database
-				if (referencedValueSet.next()) {
-					Tuple referencedTuple = engine.extractReferencedTupleFrom(
-							referencedValueSet, currentReferencedHeaderSet,
-							currentReferencedPrimaryKeySet, currentReferencedImportedKeySet,
-							engine.getReferencedTableName(key), driver, null, currentNbTuplesExtractedInTable);
-					if (referencedValueSet.next())
-						throw new IllegalStateException(
-								"[TupleExtractor:getReferencedTuples] Foreign key matches with one element and more, it's unconsistent.");
+				Tuple referencedTuple = extractReferencedTuple(
+						referencedStatement, key, tuple);
+				primaryIsForeignKeyException = false;
+				if (referencedTuple != null) {
 					HashSet<Key> referencedKeys = engine
 							.getReferencedKeys(referencedTuple);
-					primaryIsForeignKeyException = false;
 					for (Key fk : referencedKeys) {
 						if (engine.isPrimaryKey(key, referencedTuple)) {
 							primaryIsForeignKeyException = true;
@@ -437,6 +710,7 @@ public class TupleExtractor {
 					}
 				}
 			}
+			referencedStatement.close();
 		} catch (SQLException e) {
 			log.error("[TupleExtractor:getPrimaryIsForeignKey] Error SQL during extracting primary-is-foreign key.");
 			e.printStackTrace();
@@ -465,33 +739,14 @@ public class TupleExtractor {
 						log.debug("[TupleExtractor:getReferencedTuples] Primary-is-foreign key detected : "
 										+ primaryIsForeignKey);
 				} else {
-					
-					String referencedTableName = engine
-							.getReferencedTableName(key);
-					extractReferencedSets(referencedTableName);
-					String sqlQuery = engine.constructReferencedSQLQuery(
-							driver, currentReferencedHeaderSet, referencedTableName,
-							key, tuple);
-					reinitCurrentReferencedCursors();
-					log.debug("[TupleExtractor:getReferencedTuples] Execute query : "
-									+ sqlQuery);
-					ResultSet referencedValueSet = referencedStatement
-							.executeQuery(sqlQuery);
-
-					// Extract values in database
-					if (referencedValueSet.next()) {
-						Tuple referencedTuple = engine
-								.extractReferencedTupleFrom(referencedValueSet,
-										currentReferencedHeaderSet,
-										currentReferencedPrimaryKeySet,
-										currentReferencedImportedKeySet, engine
-												.getReferencedTableName(key),
-										driver, null, currentNbTuplesExtractedInTable);
-						if (referencedValueSet.next())
-							throw new IllegalStateException(
-									"[TupleExtractor:getReferencedTuples] Foreign key matches with one element and more, it's unconsistent.");
+					Tuple referencedTuple = null;
+					if (isBulkReferenceMode())
+						referencedTuple = getIndexedReferencedTuple(key, tuple);
+					if (referencedTuple == null && !isResolvedByIndex(key, tuple))
+						referencedTuple = extractReferencedTuple(
+								referencedStatement, key, tuple);
+					if (referencedTuple != null)
 						result.put(key, referencedTuple);
-					}
 				}
 			}
 		} catch (SQLException e) {
@@ -501,4 +756,181 @@ public class TupleExtractor {
 		return result;
 	}
 
+	/*
+	 * Extract the tuple referenced by a foreign key of a tuple with its own
+	 * query, unless this tuple has already been cached.
+	 */
+	private Tuple extractReferencedTuple(Statement referencedStatement,
+			Key key, Tuple tuple) throws SQLException,
+			UnsupportedEncodingException {
+		String cacheKey = null;
+		if (referencedTupleCache != null) {
+			cacheKey = engine.getReferencedTableName(key)
+					+ engine.getReferencedColumnNames(key) + "|"
+					+ buildReferencedTupleKey(key.getColumnNames(), tuple);
+			if (referencedTupleCache.contains(cacheKey)) {
+				Tuple cachedTuple = referencedTupleCache.get(cacheKey);
+				if (cachedTuple == null)
+					return null;
+				return engine.copyReferencedTuple(cachedTuple,
+						getCurrentIndex());
+			}
+		}
+		Tuple referencedTuple = extractReferencedTupleFromDatabase(
+				referencedStatement, key, tuple);
+		if (referencedTupleCache != null)
+			referencedTupleCache.put(cacheKey, referencedTuple);
+		return referencedTuple;
+	}
+
+	/*
+	 * Run the query which extracts the tuple referenced by a foreign key of a
+	 * tuple.
+	 */
+	private Tuple extractReferencedTupleFromDatabase(
+			Statement referencedStatement, Key key, Tuple tuple)
+			throws SQLException, UnsupportedEncodingException {
+		TableMetadata referencedTable = getTableMetadata(engine
+				.getReferencedTableName(key));
+		String sqlQuery = engine.constructReferencedSQLQuery(driver,
+				referencedTable, key, tuple);
+		log.debug("[TupleExtractor:extractReferencedTupleFromDatabase] Execute query : "
+				+ sqlQuery);
+		ResultSet referencedValueSet = referencedStatement
+				.executeQuery(sqlQuery);
+
+		// Extract values in database
+		Tuple referencedTuple = null;
+		if (referencedValueSet.next()) {
+			referencedTuple = engine.extractReferencedTupleFrom(
+					referencedValueSet, referencedTable, driver, null,
+					getCurrentIndex());
+			if (referencedValueSet.next())
+				throw new IllegalStateException(
+						"[TupleExtractor:getReferencedTuples] Foreign key matches with one element and more, it's unconsistent.");
+		}
+		referencedValueSet.close();
+		return referencedTuple;
+	}
+
+	/*
+	 * Look for the tuple referenced by a foreign key of a tuple into the
+	 * referenced tuples extracted once for the current table. Return null if
+	 * this key is not indexed or if its values match no indexed tuple.
+	 */
+	private Tuple getIndexedReferencedTuple(Key key, Tuple tuple)
+			throws UnsupportedEncodingException {
+		HashMap<String, Tuple> index = getReferencedTuplesIndex(key);
+		if (index == null)
+			return null;
+		Tuple referencedTuple = index.get(buildReferencedTupleKey(
+				key.getColumnNames(), tuple));
+		if (referencedTuple == null)
+			return null;
+		return engine.copyReferencedTuple(referencedTuple,
+				getCurrentIndex());
+	}
+
+	/*
+	 * A foreign key whose values are all NULL references no tuple (NULL never
+	 * matches in the query of the index) : the database has not to be
+	 * queried. Any other miss (ambiguous key, database collation, etc.) is
+	 * checked by a query.
+	 */
+	private boolean isResolvedByIndex(Key key, Tuple tuple) {
+		if (!isBulkReferenceMode())
+			return false;
+		HashMap<String, Tuple> index = referencedTuplesIndexes.get(buildReferencedTuplesIndexName(key));
+		if (index == null)
+			return false;
+		for (String columnName : key.getColumnNames())
+			if (tuple.getValue(columnName) != null)
+				return false;
+		return true;
+	}
+
+	/*
+	 * Extract with one query every tuple referenced by a foreign key of the
+	 * current partition and index them by their referenced values. Null is
+	 * returned (and kept) if this index can not be built.
+	 */
+	private HashMap<String, Tuple> getReferencedTuplesIndex(Key key)
+			throws UnsupportedEncodingException {
+		String indexName = buildReferencedTuplesIndexName(key);
+		if (referencedTuplesIndexes.containsKey(indexName))
+			return referencedTuplesIndexes.get(indexName);
+		HashMap<String, Tuple> index = new HashMap<String, Tuple>();
+		ArrayList<String> referencedColumnNames = engine
+				.getReferencedColumnNames(key);
+		try {
+			TableMetadata referencedTable = getTableMetadata(engine
+					.getReferencedTableName(key));
+			String sqlQuery = engine.constructReferencedSetSQLQuery(driver,
+					referencedTable, key, currentPartition.getCondition());
+			log.debug("[TupleExtractor:getReferencedTuplesIndex] Execute query : "
+					+ sqlQuery);
+			PreparedStatement referencedStatement = SQLConnector
+					.prepareStreamingStatement(conn, driver, sqlQuery,
+							fetchSize);
+			ResultSet referencedValueSet = referencedStatement.executeQuery();
+			int nbReferencedTuples = 0;
+			while (referencedValueSet.next()) {
+				nbReferencedTuples++;
+				if (nbReferencedTuples > maxBulkReferencedRows) {
+					log.info("More than " + maxBulkReferencedRows
+							+ " tuples referenced by " + key
+							+ " : they will be extracted row per row.");
+					index = null;
+					break;
+				}
+				Tuple referencedTuple = engine.extractReferencedTupleFrom(
+						referencedValueSet, referencedTable, driver, null,
+						getCurrentIndex());
+				String referencedKey = buildReferencedTupleKey(
+						referencedColumnNames, referencedTuple);
+				// Several tuples with the same values are checked by a query
+				if (index.containsKey(referencedKey))
+					index.put(referencedKey, null);
+				else
+					index.put(referencedKey, referencedTuple);
+			}
+			referencedValueSet.close();
+			referencedStatement.close();
+			if (index != null)
+				log.debug("[TupleExtractor:getReferencedTuplesIndex] "
+						+ index.size() + " tuples referenced by " + key
+						+ " extracted.");
+		} catch (SQLException e) {
+			log.warn("[TupleExtractor:getReferencedTuplesIndex] Referenced tuples of "
+					+ key
+					+ " can not be extracted in one query : they will be extracted row per row. "
+					+ e.getMessage());
+			index = null;
+		}
+		referencedTuplesIndexes.put(indexName, index);
+		return index;
+	}
+
+	private String buildReferencedTuplesIndexName(Key key) {
+		return engine.getReferencedTableName(key) + key.getColumnNames();
+	}
+
+	/*
+	 * Build an unambiguous key from values of columns of a tuple.
+	 */
+	private static String buildReferencedTupleKey(
+			ArrayList<String> columnNames, Tuple tuple) {
+		StringBuilder sb = new StringBuilder();
+		for (String columnName : columnNames) {
+			byte[] bs = tuple.getValue(columnName);
+			if (bs == null)
+				sb.append("-;");
+			else {
+				String value = new String(bs);
+				sb.append(value.length()).append(':').append(value).append(';');
+			}
+		}
+		return sb.toString();
+	}
+
 }
@@ -32,10 +32,15 @@ import java.io.File;
 import java.sql.Connection;
 import java.sql.SQLException;
 
+import net.antidot.semantic.rdf.model.impl.sesame.RDFWriterSink;
 import net.antidot.semantic.rdf.model.impl.sesame.SesameDataSet;
 import net.antidot.semantic.rdf.rdb2rdf.dm.core.DirectMapper;
 import net.antidot.semantic.rdf.rdb2rdf.dm.core.DirectMappingEngine.Version;
+import net.antidot.semantic.rdf.rdb2rdf.dm.core.ReferencedTupleCache;
+import net.antidot.semantic.rdf.rdb2rdf.dm.core.TupleExtractor;
+import net.antidot.semantic.rdf.rdb2rdf.r2rml.core.R2RMLEngine;
 import net.antidot.semantic.rdf.rdb2rdf.r2rml.core.R2RMLProcessor;
+import net.antidot.sql.model.core.ConnectionPool;
 import net.antidot.sql.model.core.DriverType;
 import net.antidot.sql.model.core.SQLConnector;
 
@@ -107,6 +112,58 @@ public class Db2triples {
 			"Native store output directory").withLongOpt("native_output")
 			.create("n");
 
+	private static Option streamOpt = OptionBuilder
+			.withDescription("Stream RDF triples directly into the output file without storing them (duplicates are not removed)")
+			.withLongOpt("stream").create("w");
+
+	private static Option threadsOpt = OptionBuilder
+			.withArgName("threads")
+			.hasArg()
+			.withDescription("Number of triples maps (r2rml mode) or tables (dm mode) converted in parallel, each one with its own database connection (default : 1)")
+			.withLongOpt("threads").create("j");
+
+	private static Option hashJoinOpt = OptionBuilder
+			.withArgName("memory_mb")
+			.hasOptionalArg()
+			.withDescription("Join referencing object maps in memory (spilled on disk beyond memory_mb MB per parent, default : 64) instead of running joint SQL queries")
+			.withLongOpt("hash_join").create("k");
+
+	private static Option spillOpt = OptionBuilder
+			.withArgName("memory_mb")
+			.hasOptionalArg()
+			.withDescription("Keep RDF triples out of the in-memory store, spilled on disk as sorted runs beyond memory_mb MB (default : 64), and merge them into the output file")
+			.withLongOpt("spill").create("x");
+
+	private static Option bulkReferencesOpt = OptionBuilder
+			.withArgName("max_rows")
+			.hasOptionalArg()
+			.withDescription("Extract rows referenced by each foreign key in one query per table, with at most max_rows referenced rows in memory (default : 100000), instead of one query per row")
+			.withLongOpt("bulk_references").create("e");
+
+	private static Option partitionsOpt = OptionBuilder
+			.withArgName("rows")
+			.hasOptionalArg()
+			.withDescription("Split large tables in partitions of about rows rows (default : 1000000) converted in parallel by the threads")
+			.withLongOpt("partitions").create("g");
+
+	private static Option rowCountOpt = OptionBuilder
+			.withArgName("mode")
+			.hasArg()
+			.withDescription("Number of rows of tables used to log progress : 'exact' (counted by a query before reading each table), 'estimate' (from database statistics, default) or 'none'")
+			.withLongOpt("row_count").create("a");
+
+	private static Option referencedCacheOpt = OptionBuilder
+			.withArgName("memory_mb")
+			.hasArg()
+			.withDescription("Memory of the cache of rows referenced by foreign keys in MB (default : 16, 0 to disable)")
+			.withLongOpt("referenced_cache").create("c");
+
+	private static Option fetchSizeOpt = OptionBuilder
+			.withArgName("rows")
+			.hasArg()
+			.withDescription("Number of rows fetched at once from the database while tables are read (default : 50, 0 to let the driver load every row in memory ; MySQL reads rows with a server-side cursor unless it is 0)")
+			.withLongOpt("fetch_size").create("z");
+
 	private static Option forceOpt = new Option("f",
 			"Force loading of existing repository (without remove data)");
 
@@ -128,7 +185,7 @@ public class Db2triples {
 	private static Option rdfFormat = OptionBuilder
 			.withArgName("format")
 			.hasArg()
-			.withDescription("RDF syntax output format ('RDFXML', 'N3', 'NTRIPLES' or 'TURTLE')")
+			.withDescription("RDF syntax output format ('RDFXML', 'N3', 'NTRIPLES', 'NQUADS' or 'TURTLE')")
 			.withLongOpt("format").create("t");
 	private static Option r2rmlFileOpt = OptionBuilder
 			.withArgName("r2rml_file")
@@ -136,6 +193,12 @@ public class Db2triples {
 			.withDescription("R2RML config file used to convert relationnal database into RDF terms.")
 			.withLongOpt("r2rml_file").create("r");
 
+	private static Option mappingCacheOpt = OptionBuilder
+			.withArgName("directory")
+			.hasArg()
+			.withDescription("Directory of compiled R2RML mappings : a mapping compiled once is read from this directory by later runs instead of being parsed again")
+			.withLongOpt("mapping_cache").create("y");
+
 	private static String projectName = "db2triples v1.0 - See https://github.com/antidot/db2triples for more informations.";
 	private static String projectNameR2RMLMode = "db2triples v1.0 - R2RML mode - See https://github.com/antidot/db2triples for more informations.";
 	private static String projectNameDirectMappingMode = "db2triples v1.0 - Direct Mapping mode - See https://github.com/antidot/db2triples for more informations.";
@@ -173,6 +236,28 @@ public class Db2triples {
 		options.addOption(nativeStoreNameOpt);
 		r2rmlOptions.addOption(nativeStoreNameOpt);
 		dmOptions.addOption(nativeStoreNameOpt);
+		options.addOption(streamOpt);
+		r2rmlOptions.addOption(streamOpt);
+		dmOptions.addOption(streamOpt);
+		options.addOption(spillOpt);
+		r2rmlOptions.addOption(spillOpt);
+		dmOptions.addOption(spillOpt);
+		options.addOption(threadsOpt);
+		r2rmlOptions.addOption(threadsOpt);
+		dmOptions.addOption(threadsOpt);
+		options.addOption(hashJoinOpt);
+		r2rmlOptions.addOption(hashJoinOpt);
+		options.addOption(bulkReferencesOpt);
+		dmOptions.addOption(bulkReferencesOpt);
+		options.addOption(partitionsOpt);
+		dmOptions.addOption(partitionsOpt);
+		options.addOption(rowCountOpt);
+		dmOptions.addOption(rowCountOpt);
+		options.addOption(referencedCacheOpt);
+		dmOptions.addOption(referencedCacheOpt);
+		options.addOption(fetchSizeOpt);
+		r2rmlOptions.addOption(fetchSizeOpt);
+		dmOptions.addOption(fetchSizeOpt);
 		options.addOption(outputOpt);
 		r2rmlOptions.addOption(outputOpt);
 		dmOptions.addOption(outputOpt);
@@ -187,6 +272,8 @@ public class Db2triples {
 		dmOptions.addOption(versionOpt);
 		options.addOption(r2rmlFileOpt);
 		r2rmlOptions.addOption(r2rmlFileOpt);
+		options.addOption(mappingCacheOpt);
+		r2rmlOptions.addOption(mappingCacheOpt);
 
 		// Init parameters
 		String mode = null;
@@ -197,6 +284,7 @@ public class Db2triples {
 		String dbName = null;
 		String baseURI = null;
 		boolean useNativeStore = false;
+		boolean useStreaming = false;
 		boolean forceExistingRep = false;
 		String nativeOutput = null;
 		String output = null;
@@ -204,7 +292,16 @@ public class Db2triples {
 		String sparqlOutput = null;
 		String format = null;
 		String r2rmlFile = null;
+		String mappingCache = null;
 		int int_version = 1;
+		int threads = 1;
+		long hashJoinMemory = 0;
+		long spillMemory = 0;
+		int bulkReferencedRows = 0;
+		int partitionSize = 0;
+		TupleExtractor.RowCountMode rowCountMode = TupleExtractor.RowCountMode.ESTIMATE;
+		long referencedCacheMemory = ReferencedTupleCache.DEFAULT_MEMORY;
+		int fetchSize = SQLConnector.DEFAULT_FETCH_SIZE;
 
 		// RDF Format output
 		RDFFormat rdfFormat = RDFFormat.TURTLE; // Turtle by default
@@ -298,6 +395,175 @@ public class Db2triples {
 			} else {
 				nativeOutput = line.getOptionValue("native_output");
 			}
+			// Stream triples into output ?
+			useStreaming = line.hasOption("stream");
+			if (useStreaming && useNativeStore) {
+				log.warn("stream option can not be used with native store : it will be ignored...");
+				useStreaming = false;
+			}
+			// Spill triples on disk ?
+			if (line.hasOption("spill")) {
+				spillMemory = SesameDataSet.DEFAULT_SPILL_MEMORY;
+				if (line.getOptionValue("spill") != null) {
+					try {
+						spillMemory = Long.parseLong(line
+								.getOptionValue("spill")) * 1024 * 1024;
+					} catch (NumberFormatException e) {
+						spillMemory = 0;
+					}
+					if (spillMemory < 1) {
+						log.error("Memory of spill must be a positive number of MB.");
+						HelpFormatter formatter = new HelpFormatter();
+						if (mode.equals("r2rml")) {
+							formatter.printHelp(projectNameR2RMLMode, r2rmlOptions);
+						} else {
+							formatter.printHelp(projectNameDirectMappingMode, dmOptions);
+						}
+						System.exit(-1);
+					}
+				}
+				if (useNativeStore || useStreaming) {
+					log.warn("spill option can not be used with native store or stream options : it will be ignored...");
+					spillMemory = 0;
+				}
+			}
+			// Number of parallel workers
+			if (line.hasOption("threads")) {
+				try {
+					threads = Integer.parseInt(line.getOptionValue("threads"));
+				} catch (NumberFormatException e) {
+					threads = 0;
+				}
+				if (threads < 1) {
+					log.error("Number of threads must be a positive integer.");
+					HelpFormatter formatter = new HelpFormatter();
+					formatter.printHelp(projectName, options);
+					System.exit(-1);
+				}
+			}
+			// Hash join of referencing object maps
+			if (line.hasOption("hash_join")) {
+				hashJoinMemory = R2RMLEngine.DEFAULT_HASH_JOIN_MEMORY;
+				if (line.getOptionValue("hash_join") != null) {
+					try {
+						hashJoinMemory = Long.parseLong(line
+								.getOptionValue("hash_join")) * 1024 * 1024;
+					} catch (NumberFormatException e) {
+						hashJoinMemory = 0;
+					}
+					if (hashJoinMemory < 1) {
+						log.error("Memory of hash join must be a positive number of MB.");
+						HelpFormatter formatter = new HelpFormatter();
+						formatter.printHelp(projectNameR2RMLMode, r2rmlOptions);
+						System.exit(-1);
+					}
+				}
+				if (!mode.equals("r2rml")) {
+					log.warn("hash_join option is required only for 'r2rml' mode : it will be ignored...");
+					hashJoinMemory = 0;
+				} else if (threads > 1) {
+					log.warn("hash_join option can not be used with threads option : it will be ignored...");
+					hashJoinMemory = 0;
+				}
+			}
+			// Referenced rows extracted in one query per foreign key
+			if (line.hasOption("bulk_references")) {
+				bulkReferencedRows = TupleExtractor.DEFAULT_MAX_BULK_REFERENCED_ROWS;
+				if (line.getOptionValue("bulk_references") != null) {
+					try {
+						bulkReferencedRows = Integer.parseInt(line
+								.getOptionValue("bulk_references"));
+					} catch (NumberFormatException e) {
+						bulkReferencedRows = 0;
+					}
+					if (bulkReferencedRows < 1) {
+						log.error("Maximum number of referenced rows must be a positive integer.");
+						HelpFormatter formatter = new HelpFormatter();
+						formatter.printHelp(projectNameDirectMappingMode, dmOptions);
+						System.exit(-1);
+					}
+				}
+				if (mode.equals("r2rml")) {
+					log.warn("bulk_references option is required only for 'dm' mode : it will be ignored...");
+					bulkReferencedRows = 0;
+				}
+			}
+			// Number of rows of tables
+			if (line.hasOption("row_count")) {
+				String rowCount = line.getOptionValue("row_count");
+				if (rowCount.equals("exact"))
+					rowCountMode = TupleExtractor.RowCountMode.EXACT;
+				else if (rowCount.equals("estimate"))
+					rowCountMode = TupleExtractor.RowCountMode.ESTIMATE;
+				else if (rowCount.equals("none"))
+					rowCountMode = TupleExtractor.RowCountMode.NONE;
+				else {
+					log.error("Row count mode must be 'exact', 'estimate' or 'none'.");
+					HelpFormatter formatter = new HelpFormatter();
+					formatter.printHelp(projectNameDirectMappingMode, dmOptions);
+					System.exit(-1);
+				}
+				if (mode.equals("r2rml"))
+					log.warn("row_count option is required only for 'dm' mode : it will be ignored...");
+			}
+			// Partitions of large tables
+			if (line.hasOption("partitions")) {
+				partitionSize = TupleExtractor.DEFAULT_PARTITION_SIZE;
+				if (line.getOptionValue("partitions") != null) {
+					try {
+						partitionSize = Integer.parseInt(line
+								.getOptionValue("partitions"));
+					} catch (NumberFormatException e) {
+						partitionSize = 0;
+					}
+					if (partitionSize < 1) {
+						log.error("Number of rows of partitions must be a positive integer.");
+						HelpFormatter formatter = new HelpFormatter();
+						formatter.printHelp(projectNameDirectMappingMode, dmOptions);
+						System.exit(-1);
+					}
+				}
+				if (mode.equals("r2rml")) {
+					log.warn("partitions option is required only for 'dm' mode : it will be ignored...");
+					partitionSize = 0;
+				} else if (threads < 2) {
+					log.warn("partitions option is required only with several threads : it will be ignored...");
+					partitionSize = 0;
+				}
+			}
+			// Cache of referenced rows
+			if (line.hasOption("referenced_cache")) {
+				try {
+					referencedCacheMemory = Long.parseLong(line
+							.getOptionValue("referenced_cache")) * 1024 * 1024;
+				} catch (NumberFormatException e) {
+					referencedCacheMemory = -1;
+				}
+				if (referencedCacheMemory < 0) {
+					log.error("Memory of referenced rows cache must be a positive number of MB.");
+					HelpFormatter formatter = new HelpFormatter();
+					formatter.printHelp(projectNameDirectMappingMode, dmOptions);
+					System.exit(-1);
+				}
+				if (mode.equals("r2rml")) {
+					log.warn("referenced_cache option is required only for 'dm' mode : it will be ignored...");
+				}
+			}
+			// Rows fetched at once
+			if (line.hasOption("fetch_size")) {
+				try {
+					fetchSize = Integer.parseInt(line
+							.getOptionValue("fetch_size"));
+				} catch (NumberFormatException e) {
+					fetchSize = -1;
+				}
+				if (fetchSize < 0) {
+					log.error("Fetch size must be a positive number of rows.");
+					HelpFormatter formatter = new HelpFormatter();
+					formatter.printHelp(projectName, options);
+					System.exit(-1);
+				}
+			}
 			// Force loading of repository
 			forceExistingRep = line.hasOption("f");
 			// Output
@@ -306,6 +572,8 @@ public class Db2triples {
 			if (line.hasOption("sparql")) {
 				if (!mode.equals("dm")) {
 					log.warn("sparql option is required only for 'dm' mode : it will be ignored...");
+				} else if (useStreaming) {
+					log.warn("sparql option can not be used with stream option : it will be ignored...");
 				} else {
 					sparql = line.getOptionValue("sparql");
 					sparqlOutput = line.getOptionValue("sparql_output",
@@ -321,8 +589,10 @@ public class Db2triples {
 					rdfFormat = RDFFormat.RDFXML;
 				else if (format.equals("NTRIPLES"))
 					rdfFormat = RDFFormat.NTRIPLES;
+				else if (format.equals("NQUADS"))
+					rdfFormat = RDFFormat.NQUADS;
 				else if (!format.equals("N3")) {
-					log.error("Unknown RDF format. Please use RDFXML, TURTLE, N3 or NTRIPLES.");
+					log.error("Unknown RDF format. Please use RDFXML, TURTLE, N3, NTRIPLES or NQUADS.");
 					HelpFormatter formatter = new HelpFormatter();
 					if (mode.equals("r2rml")) {
 						formatter.printHelp(projectNameR2RMLMode, r2rmlOptions);
@@ -373,6 +643,9 @@ public class Db2triples {
 						System.exit(-1);
 					}
 				}
+				mappingCache = line.getOptionValue("mapping_cache");
+			} else if (line.hasOption("mapping_cache")) {
+				log.warn("mapping_cache option is required only for 'r2rml' mode : it will be ignored...");
 			}
 		} catch (ParseException exp) {
 			// oops, something went wrong
@@ -384,9 +657,24 @@ public class Db2triples {
 
 		// Open test database
 		Connection conn = null;
+		ConnectionPool pool = null;
 		try {
-			// Connect database
-			conn = SQLConnector.connect(userName, password, url + dbName, driver);
+			// Connect database (MySQL streams rows unless fetch size is 0)
+			String fullurl = url + dbName;
+			if (fetchSize > 0)
+				fullurl = SQLConnector.getStreamingURL(fullurl, driver);
+			conn = SQLConnector.connect(userName, password, fullurl, driver);
+			if (threads > 1)
+				pool = new ConnectionPool(userName, password, fullurl,
+						driver, threads);
+			R2RMLProcessor.setHashJoinMode(hashJoinMemory);
+			R2RMLProcessor.setFetchSize(fetchSize);
+			R2RMLProcessor.setMappingCache(mappingCache);
+			DirectMapper.setFetchSize(fetchSize);
+			DirectMapper.setBulkReferenceMode(bulkReferencedRows);
+			DirectMapper.setPartitionMode(partitionSize);
+			DirectMapper.setRowCountMode(rowCountMode);
+			DirectMapper.setReferencedTupleCache(referencedCacheMemory);
 
 			// Generate RDF graph
 			SesameDataSet g = null;
@@ -401,11 +689,51 @@ public class Db2triples {
 				}
 				// Extract database model according to convert mode
 				if (mode.equals("r2rml")) {
-					g = R2RMLProcessor.convertDatabase(conn, r2rmlFile, baseURI, nativeOutput, driver);
+					if (pool != null)
+						g = R2RMLProcessor.convertDatabase(pool, threads, r2rmlFile, baseURI, nativeOutput, driver);
+					else
+						g = R2RMLProcessor.convertDatabase(conn, r2rmlFile, baseURI, nativeOutput, driver);
 				} else {
-					g = DirectMapper.generateDirectMapping(conn, version,
-							driver, baseURI, null, nativeOutput);
+					if (pool != null)
+						g = DirectMapper.generateDirectMapping(pool, threads,
+								version, driver, baseURI, null, nativeOutput);
+					else
+						g = DirectMapper.generateDirectMapping(conn, version,
+								driver, baseURI, null, nativeOutput);
+				}
+			} else if (useStreaming) {
+				File outputFile = new File(output);
+				if (outputFile.exists() && !forceExistingRep) {
+						log.error("Output file "
+							+ outputFile.getAbsolutePath()
+							+ " already exists. Please remove it or modify ouput name option.");
+					System.exit(-1);
+				}
+				// Extract database model directly into output file
+				log.info("Stream RDF graph...");
+				RDFWriterSink sink = new RDFWriterSink(output, rdfFormat);
+				try {
+					if (mode.equals("r2rml")) {
+						if (pool != null)
+							R2RMLProcessor.convertDatabaseToSink(pool, threads,
+									r2rmlFile, baseURI, sink, driver);
+						else
+							R2RMLProcessor.convertDatabaseToSink(conn, r2rmlFile,
+									baseURI, sink, driver);
+					} else {
+						if (pool != null)
+							DirectMapper.generateDirectMappingToSink(pool,
+									threads, version, driver, baseURI, null,
+									sink);
+						else
+							DirectMapper.generateDirectMappingToSink(conn,
+									version, driver, baseURI, null, sink);
+					}
+				} finally {
+					sink.close();
 				}
+				log.info(sink.getNbStatements() + " triples streamed into "
+						+ outputFile.getAbsolutePath());
 			} else {
 				File outputFile = new File(output);
 				if (outputFile.exists() && !forceExistingRep) {
@@ -415,8 +743,34 @@ public class Db2triples {
 					System.exit(-1);
 				}
 				// Extract database model
-				if (mode.equals("r2rml")){
-					g = R2RMLProcessor.convertDatabase(conn, r2rmlFile, baseURI, driver);
+				if (spillMemory > 0) {
+					log.info("Spill RDF graph beyond " + spillMemory
+							+ " bytes...");
+					g = new SesameDataSet();
+					g.setSpillMode(spillMemory);
+					if (mode.equals("r2rml")) {
+						if (pool != null)
+							R2RMLProcessor.convertDatabaseToSink(pool, threads,
+									r2rmlFile, baseURI, g, driver);
+						else
+							R2RMLProcessor.convertDatabaseToSink(conn, r2rmlFile,
+									baseURI, g, driver);
+					} else {
+						if (pool != null)
+							DirectMapper.generateDirectMappingToSink(pool,
+									threads, version, driver, baseURI, null, g);
+						else
+							DirectMapper.generateDirectMappingToSink(conn,
+									version, driver, baseURI, null, g);
+					}
+				} else if (mode.equals("r2rml")){
+					if (pool != null)
+						g = R2RMLProcessor.convertDatabase(pool, threads, r2rmlFile, baseURI, null, driver);
+					else
+						g = R2RMLProcessor.convertDatabase(conn, r2rmlFile, baseURI, driver);
+				} else if (pool != null) {
+					g = DirectMapper.generateDirectMapping(pool, threads,
+							version, driver, baseURI, null, null);
 				} else {
 					g = DirectMapper.generateDirectMapping(conn, version, driver,
 							baseURI, null, null);
@@ -443,6 +797,9 @@ public class Db2triples {
 		} catch (Exception e) {
 			e.printStackTrace();
 		} finally {
+			// Close connections of parallel workers
+			if (pool != null)
+				pool.close();
 			try {
 				// Close db connection
 				conn.close();
@@ -0,0 +1,109 @@
+/* 
+ * Copyright 2011-2013 Antidot opensource@antidot.net
+ * https://github.com/antidot/db2triples
+ * 
+ * This file is part of DB2Triples
+ *
+ * DB2Triples is free software; you can redistribute it and/or 
+ * modify it under the terms of the GNU Lesser General Public License as 
+ * published by the Free Software Foundation; either version 2 of 
+ * the License, or (at your option) any later version.
+ * 
+ * DB2Triples is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+/***************************************************************************
+ *
+ * R2RML : Generated Term Cache
+ *
+ * RDF terms already generated by a term map, indexed by the values of the
+ * columns referenced by this term map, in a bounded LRU cache. A term
+ * found in this cache is returned without any template substitution or
+ * IRI validation.
+ *
+ ****************************************************************************/
+package net.antidot.semantic.rdf.rdb2rdf.r2rml.core;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import net.antidot.semantic.rdf.rdb2rdf.commons.LRUCache;
+import net.antidot.semantic.rdf.rdb2rdf.r2rml.model.TermMap;
+import net.antidot.sql.model.db.ColumnIdentifier;
+
+import org.openrdf.model.Value;
+
+public class GeneratedTermCache {
+
+	// Default maximal number of cached RDF terms of a term map
+	public static final int DEFAULT_MAX_ENTRIES = 10000;
+
+	private List<ColumnIdentifier> keyColumns;
+	private LRUCache<String, Value> terms;
+	private long hits;
+	private long misses;
+
+	public GeneratedTermCache(TermMap tm, int maxEntries) {
+		keyColumns = new ArrayList<ColumnIdentifier>(
+				tm.getReferencedColumns());
+		terms = new LRUCache<String, Value>(maxEntries);
+	}
+
+	/**
+	 * Build the key of a row from the values of the columns referenced by
+	 * the term map, null if one of them is NULL or missing.
+	 */
+	public String buildKey(Map<ColumnIdentifier, byte[]> dbValues) {
+		return buildKey(keyColumns, dbValues);
+	}
+
+	/**
+	 * Build a key from the values of some columns, null if one of them is
+	 * NULL or missing. Each value is prefixed by its length so that two
+	 * different lists of values never share the same key.
+	 */
+	public static String buildKey(List<ColumnIdentifier> columns,
+			Map<ColumnIdentifier, byte[]> dbValues) {
+		StringBuilder key = new StringBuilder();
+		for (ColumnIdentifier column : columns) {
+			byte[] value = dbValues.get(column);
+			if (value == null)
+				return null;
+			key.append(value.length).append(':');
+			for (byte b : value)
+				key.append((char) (b & 0xFF));
+		}
+		return key.toString();
+	}
+
+	/**
+	 * Return the RDF term generated for this key, null if unknown.
+	 */
+	public Value get(String key) {
+		Value result = terms.get(key);
+		if (result == null)
+			misses++;
+		else
+			hits++;
+		return result;
+	}
+
+	public void put(String key, Value term) {
+		terms.put(key, term);
+	}
+
+	public long getHits() {
+		return hits;
+	}
+
+	public long getMisses() {
+		return misses;
+	}
+
+}
@@ -0,0 +1,381 @@
+/* 
+ * Copyright 2011-2013 Antidot opensource@antidot.net
+ * https://github.com/antidot/db2triples
+ * 
+ * This file is part of DB2Triples
+ *
+ * DB2Triples is free software; you can redistribute it and/or 
+ * modify it under the terms of the GNU Lesser General Public License as 
+ * published by the Free Software Foundation; either version 2 of 
+ * the License, or (at your option) any later version.
+ * 
+ * DB2Triples is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+/***************************************************************************
+ *
+ * R2RML : Hash Join Index
+ *
+ * In-engine evaluation of the join conditions of referencing object
+ * maps : the subjects of the parent triples map are indexed by the
+ * values of the parent columns, then each child row probes the index.
+ * When the index exceeds its memory budget, parent subjects and child
+ * probes are spilled into hash partitions on disk and joined partition
+ * by partition (grace hash join).
+ *
+ ****************************************************************************/
+package net.antidot.semantic.rdf.rdb2rdf.r2rml.core;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.openrdf.model.Resource;
+import org.openrdf.model.URI;
+import org.openrdf.model.ValueFactory;
+import org.openrdf.model.impl.ValueFactoryImpl;
+import org.openrdf.rio.ntriples.NTriplesUtil;
+
+public class HashJoinIndex {
+
+	// Log
+	private static Log log = LogFactory.getLog(HashJoinIndex.class);
+
+	// Value factory
+	private static ValueFactory vf = new ValueFactoryImpl();
+
+	// Number of partitions of a spilled index
+	public static final int NB_PARTITIONS = 64;
+	// Estimated memory used by an entry, without its strings
+	private static final int ENTRY_OVERHEAD = 96;
+
+	/**
+	 * Receiver of the joined triples.
+	 */
+	public interface JoinHandler {
+		public void join(Resource subject, Set<URI> predicates,
+				Resource object, Set<URI> targetGraphs);
+	}
+
+	private String name;
+	private long memoryBudget;
+	private long usedMemory;
+	// Parent subjects by join key (null once spilled)
+	private Map<String, Set<Resource>> subjects;
+	// Parent partitions (spilled mode only)
+	private File[] partitionFiles;
+	private DataOutputStream[] partitions;
+	private boolean complete;
+
+	public HashJoinIndex(String name, long memoryBudget) {
+		this.name = name;
+		this.memoryBudget = memoryBudget;
+		subjects = new HashMap<String, Set<Resource>>();
+		usedMemory = 0;
+		complete = false;
+	}
+
+	/**
+	 * Encode the values of the join columns of a row into a join key, null if
+	 * one of them is NULL (NULL never satisfies a join condition).
+	 */
+	public static String buildKey(byte[][] values) {
+		StringBuilder key = new StringBuilder();
+		for (byte[] value : values) {
+			if (value == null)
+				return null;
+			key.append(value.length).append(':');
+			for (byte b : value)
+				key.append((char) (b & 0xFF));
+		}
+		return key.toString();
+	}
+
+	public boolean isComplete() {
+		return complete;
+	}
+
+	public boolean isSpilled() {
+		return subjects == null;
+	}
+
+	/**
+	 * Index a parent subject under its join key.
+	 */
+	public void add(String key, Resource subject) {
+		if (complete)
+			throw new IllegalStateException(
+					"[HashJoinIndex:add] Index " + name + " is already complete.");
+		if (key == null || subject == null)
+			return;
+		if (isSpilled()) {
+			write(partitions[partitionOf(key)], key, subject);
+			return;
+		}
+		Set<Resource> keySubjects = subjects.get(key);
+		if (keySubjects == null) {
+			keySubjects = new LinkedHashSet<Resource>(2);
+			subjects.put(key, keySubjects);
+			usedMemory += ENTRY_OVERHEAD + 2 * key.length();
+		}
+		if (!keySubjects.add(subject))
+			return;
+		usedMemory += ENTRY_OVERHEAD + 2 * subject.stringValue().length();
+		if (usedMemory > memoryBudget)
+			spill();
+	}
+
+	/**
+	 * End of the parent rows : the index can be probed.
+	 */
+	public void complete() {
+		if (isSpilled())
+			for (DataOutputStream partition : partitions)
+				closeQuietly(partition);
+		complete = true;
+		log.debug("[HashJoinIndex:complete] Index " + name + " complete"
+				+ (isSpilled() ? " (spilled on disk)." : " : " + subjects.size()
+						+ " keys."));
+	}
+
+	/**
+	 * Remove every spilled file.
+	 */
+	public void delete() {
+		if (partitionFiles != null)
+			for (File file : partitionFiles)
+				if (file != null)
+					file.delete();
+		subjects = null;
+		partitionFiles = null;
+	}
+
+	/**
+	 * Start a probe of this index by the rows of a child triples map.
+	 */
+	public Probe newProbe() {
+		if (!complete)
+			throw new IllegalStateException(
+					"[HashJoinIndex:newProbe] Index " + name + " is not complete.");
+		return new Probe();
+	}
+
+	/**
+	 * Probe of the index : child rows are joined immediately when the index
+	 * is in memory, otherwise they are spilled into the partition of their
+	 * key and joined when the probe is finished.
+	 */
+	public class Probe {
+		private File[] probeFiles;
+		private DataOutputStream[] probePartitions;
+
+		private Probe() {
+		}
+
+		public void probe(String key, Resource subject, Set<URI> predicates,
+				Set<URI> targetGraphs, JoinHandler handler) {
+			if (key == null || subject == null || predicates.isEmpty())
+				return;
+			if (!isSpilled()) {
+				Set<Resource> objects = subjects.get(key);
+				if (objects != null)
+					for (Resource object : objects)
+						handler.join(subject, predicates, object, targetGraphs);
+				return;
+			}
+			if (probePartitions == null) {
+				probeFiles = new File[NB_PARTITIONS];
+				probePartitions = openPartitions(probeFiles);
+			}
+			DataOutputStream out = probePartitions[partitionOf(key)];
+			try {
+				writeString(out, key);
+				writeString(out, NTriplesUtil.toNTriplesString(subject));
+				writeURIs(out, predicates);
+				writeURIs(out, targetGraphs);
+			} catch (IOException e) {
+				throw new IllegalStateException(
+						"[HashJoinIndex:probe] Unable to spill child row : "
+								+ e.getMessage(), e);
+			}
+		}
+
+		/**
+		 * Join the spilled child rows with the spilled parent subjects.
+		 */
+		public void finish(JoinHandler handler) {
+			if (probePartitions == null)
+				return;
+			try {
+				for (int i = 0; i < NB_PARTITIONS; i++) {
+					closeQuietly(probePartitions[i]);
+					Map<String, Set<Resource>> partition = loadPartition(partitionFiles[i]);
+					DataInputStream in = new DataInputStream(
+							new BufferedInputStream(new FileInputStream(
+									probeFiles[i])));
+					try {
+						while (true) {
+							String key = readString(in);
+							if (key == null)
+								break;
+							Resource subject = NTriplesUtil.parseResource(
+									readString(in), vf);
+							Set<URI> predicates = readURIs(in);
+							Set<URI> targetGraphs = readURIs(in);
+							Set<Resource> objects = partition.get(key);
+							if (objects != null)
+								for (Resource object : objects)
+									handler.join(subject, predicates, object,
+											targetGraphs);
+						}
+					} finally {
+						in.close();
+						probeFiles[i].delete();
+					}
+				}
+			} catch (IOException e) {
+				throw new IllegalStateException(
+						"[HashJoinIndex:finish] Unable to read spilled rows : "
+								+ e.getMessage(), e);
+			}
+			probePartitions = null;
+		}
+	}
+
+	private void spill() {
+		log.info("[HashJoinIndex:spill] Index " + name
+				+ " exceeds its memory budget (" + memoryBudget
+				+ " bytes) : spill it on disk.");
+		partitionFiles = new File[NB_PARTITIONS];
+		partitions = openPartitions(partitionFiles);
+		for (Map.Entry<String, Set<Resource>> entry : subjects.entrySet()) {
+			DataOutputStream out = partitions[partitionOf(entry.getKey())];
+			for (Resource subject : entry.getValue())
+				write(out, entry.getKey(), subject);
+		}
+		subjects = null;
+		usedMemory = 0;
+	}
+
+	private Map<String, Set<Resource>> loadPartition(File file)
+			throws IOException {
+		Map<String, Set<Resource>> result = new HashMap<String, Set<Resource>>();
+		DataInputStream in = new DataInputStream(new BufferedInputStream(
+				new FileInputStream(file)));
+		try {
+			while (true) {
+				String key = readString(in);
+				if (key == null)
+					break;
+				Resource subject = NTriplesUtil.parseResource(readString(in),
+						vf);
+				Set<Resource> keySubjects = result.get(key);
+				if (keySubjects == null) {
+					keySubjects = new LinkedHashSet<Resource>(2);
+					result.put(key, keySubjects);
+				}
+				keySubjects.add(subject);
+			}
+		} finally {
+			in.close();
+		}
+		return result;
+	}
+
+	private static int partitionOf(String key) {
+		return (key.hashCode() & 0x7FFFFFFF) % NB_PARTITIONS;
+	}
+
+	private DataOutputStream[] openPartitions(File[] files) {
+		DataOutputStream[] result = new DataOutputStream[files.length];
+		try {
+			for (int i = 0; i < files.length; i++) {
+				files[i] = File.createTempFile("db2triples-join-", ".part");
+				files[i].deleteOnExit();
+				result[i] = new DataOutputStream(new BufferedOutputStream(
+						new FileOutputStream(files[i])));
+			}
+		} catch (IOException e) {
+			throw new IllegalStateException(
+					"[HashJoinIndex:openPartitions] Unable to create spill files : "
+							+ e.getMessage(), e);
+		}
+		return result;
+	}
+
+	private void write(DataOutputStream out, String key, Resource subject) {
+		try {
+			writeString(out, key);
+			writeString(out, NTriplesUtil.toNTriplesString(subject));
+		} catch (IOException e) {
+			throw new IllegalStateException(
+					"[HashJoinIndex:write] Unable to spill parent subject : "
+							+ e.getMessage(), e);
+		}
+	}
+
+	private static void writeURIs(DataOutputStream out, Set<URI> uris)
+			throws IOException {
+		out.writeInt(uris.size());
+		for (URI uri : uris)
+			writeString(out, uri.stringValue());
+	}
+
+	private static Set<URI> readURIs(DataInputStream in) throws IOException {
+		int size = in.readInt();
+		Set<URI> result = new HashSet<URI>();
+		for (int i = 0; i < size; i++)
+			result.add(vf.createURI(readString(in)));
+		return result;
+	}
+
+	private static void writeString(DataOutputStream out, String s)
+			throws IOException {
+		byte[] bytes = s.getBytes("UTF-8");
+		out.writeInt(bytes.length);
+		out.write(bytes);
+	}
+
+	/*
+	 * Return null at the end of the stream.
+	 */
+	private static String readString(DataInputStream in) throws IOException {
+		int length;
+		try {
+			length = in.readInt();
+		} catch (EOFException e) {
+			return null;
+		}
+		byte[] bytes = new byte[length];
+		in.readFully(bytes);
+		return new String(bytes, "UTF-8");
+	}
+
+	private static void closeQuietly(DataOutputStream out) {
+		try {
+			out.close();
+		} catch (IOException e) {
+			log.warn("[HashJoinIndex:closeQuietly] Unable to close spill file : "
+					+ e.getMessage());
+		}
+	}
+
+}
@@ -0,0 +1,86 @@
+/* 
+ * Copyright 2011-2013 Antidot opensource@antidot.net
+ * https://github.com/antidot/db2triples
+ * 
+ * This file is part of DB2Triples
+ *
+ * DB2Triples is free software; you can redistribute it and/or 
+ * modify it under the terms of the GNU Lesser General Public License as 
+ * published by the Free Software Foundation; either version 2 of 
+ * the License, or (at your option) any later version.
+ * 
+ * DB2Triples is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+/***************************************************************************
+ *
+ * R2RML : Inverse Expression Index
+ *
+ * The same-term rows of a row are the rows whose instantiation of the
+ * inverse expression is the same, i.e. the rows with the same values for
+ * the column references of the inverse expression which are referenced
+ * by the term map. Generated RDF terms are indexed by these values,
+ * in a bounded LRU cache.
+ *
+ ****************************************************************************/
+package net.antidot.semantic.rdf.rdb2rdf.r2rml.core;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import net.antidot.semantic.rdf.rdb2rdf.commons.LRUCache;
+import net.antidot.semantic.rdf.rdb2rdf.r2rml.model.TermMap;
+import net.antidot.semantic.rdf.rdb2rdf.r2rml.tools.R2RMLToolkit;
+import net.antidot.sql.model.db.ColumnIdentifier;
+
+import org.openrdf.model.Value;
+
+public class InverseExpressionIndex {
+
+	// Default maximal number of indexed RDF terms of a term map
+	public static final int DEFAULT_MAX_ENTRIES = 10000;
+
+	// Column references of the inverse expression which are referenced by
+	// the term map
+	private List<ColumnIdentifier> keyColumns;
+	private LRUCache<String, Value> sameTerms;
+
+	public InverseExpressionIndex(TermMap tm, int maxEntries) {
+		Set<ColumnIdentifier> columnReferences = R2RMLToolkit
+				.extractColumnNamesFromInverseExpression(tm
+						.getInverseExpression());
+		Set<ColumnIdentifier> referencedColumns = tm.getReferencedColumns();
+		keyColumns = new ArrayList<ColumnIdentifier>();
+		for (ColumnIdentifier column : columnReferences)
+			if (referencedColumns.contains(column))
+				keyColumns.add(column);
+		sameTerms = new LRUCache<String, Value>(maxEntries);
+	}
+
+	/**
+	 * Build the key of a row from the values of its referenced columns, null
+	 * if one of them is NULL or missing.
+	 */
+	public String buildKey(Map<ColumnIdentifier, byte[]> dbValues) {
+		return GeneratedTermCache.buildKey(keyColumns, dbValues);
+	}
+
+	/**
+	 * Return the RDF term generated for a same-term row, null if unknown.
+	 */
+	public Value get(String key) {
+		return sameTerms.get(key);
+	}
+
+	public void put(String key, Value term) {
+		sameTerms.put(key, term);
+	}
+
+}
@@ -0,0 +1,322 @@
+/* 
+ * Copyright 2011-2013 Antidot opensource@antidot.net
+ * https://github.com/antidot/db2triples
+ * 
+ * This file is part of DB2Triples
+ *
+ * DB2Triples is free software; you can redistribute it and/or 
+ * modify it under the terms of the GNU Lesser General Public License as 
+ * published by the Free Software Foundation; either version 2 of 
+ * the License, or (at your option) any later version.
+ * 
+ * DB2Triples is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+/***************************************************************************
+ *
+ * R2RML : Logical Table Plan
+ *
+ * Execution plan of the term maps over the rows of a logical table (or of
+ * a joint table). The column identifiers and SQL types of the result set
+ * are extracted once from its meta data, and the columns referenced by
+ * each term map are resolved once into JDBC column indexes : reading a
+ * row only requires indexed calls on the result set.
+ *
+ ****************************************************************************/
+package net.antidot.semantic.rdf.rdb2rdf.r2rml.core;
+
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import net.antidot.semantic.rdf.rdb2rdf.r2rml.exception.R2RMLDataError;
+import net.antidot.semantic.rdf.rdb2rdf.r2rml.model.TermMap;
+import net.antidot.semantic.rdf.rdb2rdf.r2rml.model.TermMap.TermMapType;
+import net.antidot.semantic.rdf.rdb2rdf.r2rml.model.TermType;
+import net.antidot.sql.model.core.DriverType;
+import net.antidot.sql.model.db.ColumnIdentifier;
+import net.antidot.sql.model.db.ColumnIdentifierImpl;
+import net.antidot.sql.model.type.SQLType;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+public class LogicalTablePlan {
+
+	// Log
+	private static Log log = LogFactory.getLog(LogicalTablePlan.class);
+
+	private ResultSetMetaData meta;
+	// Column identifiers (with their SQL type) indexed by JDBC index - 1
+	private ColumnIdentifier[] columns;
+	// Columns read as strings (http://bugs.mysql.com/bug.php?id=65943)
+	private boolean[] readAsString;
+
+	// Resolved referenced columns of each term map
+	private Map<TermMap, ResolvedColumns> rowColumns = new HashMap<TermMap, ResolvedColumns>();
+	private Map<TermMap, ResolvedColumns> childRowColumns = new HashMap<TermMap, ResolvedColumns>();
+	private Map<TermMap, ResolvedColumns> parentRowColumns = new HashMap<TermMap, ResolvedColumns>();
+	// Resolved implicit SQL datatype of each term map
+	private Map<TermMap, SQLType> implicitDatatypes = new HashMap<TermMap, SQLType>();
+
+	/**
+	 * Referenced columns of a term map resolved against the result set : JDBC
+	 * indexes and column identifiers used as keys of the extracted values.
+	 */
+	private static class ResolvedColumns {
+		private int[] indexes;
+		private ColumnIdentifier[] keys;
+
+		private ResolvedColumns(int size) {
+			indexes = new int[size];
+			keys = new ColumnIdentifier[size];
+		}
+
+		private ResolvedColumns trim(int size) {
+			if (size == indexes.length)
+				return this;
+			ResolvedColumns result = new ResolvedColumns(size);
+			System.arraycopy(indexes, 0, result.indexes, 0, size);
+			System.arraycopy(keys, 0, result.keys, 0, size);
+			return result;
+		}
+	}
+
+	public LogicalTablePlan(ResultSetMetaData meta) throws SQLException {
+		this.meta = meta;
+		int n = meta.getColumnCount();
+		columns = new ColumnIdentifier[n];
+		readAsString = new boolean[n];
+		boolean isMySQL = DriverType.MysqlDriver.equals(R2RMLProcessor
+				.getDriverType());
+		for (int i = 1; i <= n; i++) {
+			ColumnIdentifier column = ColumnIdentifierImpl
+					.buildFromJDBCResultSet(meta, i);
+			columns[i - 1] = column;
+			readAsString[i - 1] = isMySQL
+					&& column.getSqlType() == SQLType.CHAR;
+		}
+	}
+
+	public ResultSetMetaData getMetaData() {
+		return meta;
+	}
+
+	public int getColumnCount() {
+		return columns.length;
+	}
+
+	/**
+	 * Return the column identifier of a JDBC column index.
+	 */
+	public ColumnIdentifier getColumn(int index) {
+		return columns[index - 1];
+	}
+
+	/**
+	 * Return the JDBC index of the first column equal to column, -1 if none.
+	 */
+	public int indexOf(ColumnIdentifier column) {
+		for (int i = 0; i < columns.length; i++)
+			if (columns[i].equals(column))
+				return i + 1;
+		return -1;
+	}
+
+	/**
+	 * Return the JDBC index of the last column equal to column, -1 if none.
+	 */
+	public int lastIndexOf(ColumnIdentifier column) {
+		for (int i = columns.length - 1; i >= 0; i--)
+			if (columns[i].equals(column))
+				return i + 1;
+		return -1;
+	}
+
+	/**
+	 * Return the JDBC indexes of columns named in the mapping document, such
+	 * as the columns of join conditions.
+	 * 
+	 * @throws R2RMLDataError
+	 *             if a column does not exist
+	 */
+	public int[] indexesOf(List<String> columnNames) throws R2RMLDataError {
+		int[] result = new int[columnNames.size()];
+		int k = 0;
+		for (String columnName : columnNames) {
+			ColumnIdentifier column = ColumnIdentifierImpl
+					.buildFromR2RMLConfigFile(columnName);
+			int index = indexOf(column);
+			if (index == -1)
+				throw new R2RMLDataError(
+						"[LogicalTablePlan:indexesOf] Unknown column : "
+								+ columnName);
+			result[k++] = index;
+		}
+		return result;
+	}
+
+	/**
+	 * Read the value of a column in the current row.
+	 */
+	public byte[] getBytes(ResultSet rs, int index) throws SQLException {
+		byte[] rawData = rs.getBytes(index);
+		// http://bugs.mysql.com/bug.php?id=65943
+		if (rawData != null && readAsString[index - 1])
+			rawData = rs.getString(index).getBytes();
+		return rawData;
+	}
+
+	/**
+	 * Read the values of columns in the current row as a join key of a
+	 * HashJoinIndex.
+	 */
+	public String extractJoinKey(ResultSet rs, int[] indexes)
+			throws SQLException {
+		byte[][] values = new byte[indexes.length][];
+		for (int k = 0; k < indexes.length; k++)
+			values[k] = getBytes(rs, indexes[k]);
+		return HashJoinIndex.buildKey(values);
+	}
+
+	/**
+	 * Read the values of the referenced columns of a term map in the current
+	 * row.
+	 * 
+	 * @throws SQLException
+	 *             if a referenced column does not exist
+	 */
+	public Map<ColumnIdentifier, byte[]> extractValues(ResultSet rs, TermMap tm)
+			throws SQLException {
+		ResolvedColumns resolved = rowColumns.get(tm);
+		if (resolved == null) {
+			Set<ColumnIdentifier> referencedColumns = tm.getReferencedColumns();
+			resolved = new ResolvedColumns(referencedColumns.size());
+			int k = 0;
+			for (ColumnIdentifier column : referencedColumns) {
+				int index = indexOf(column);
+				if (index == -1)
+					throw new SQLException(
+							"[LogicalTablePlan:extractValues] Unknown column : "
+									+ column);
+				resolved.indexes[k] = index;
+				resolved.keys[k++] = columns[index - 1];
+			}
+			rowColumns.put(tm, resolved);
+		}
+		return extractValues(rs, resolved);
+	}
+
+	/**
+	 * Read the values of the referenced columns of a term map in the child
+	 * row of the current joint row, i.e. in its first n columns.
+	 * 
+	 * @throws R2RMLDataError
+	 *             if a referenced column does not exist
+	 */
+	public Map<ColumnIdentifier, byte[]> extractChildValues(ResultSet rs,
+			TermMap tm, int n) throws SQLException, R2RMLDataError {
+		ResolvedColumns resolved = childRowColumns.get(tm);
+		if (resolved == null) {
+			Set<ColumnIdentifier> referencedColumns = tm.getReferencedColumns();
+			resolved = new ResolvedColumns(referencedColumns.size());
+			int k = 0;
+			for (ColumnIdentifier column : referencedColumns) {
+				int m = indexOf(column);
+				if (m == -1)
+					throw new R2RMLDataError(
+							"[LogicalTablePlan:extractChildValues] Unknown "
+									+ column + "in child row.");
+				if (m <= n) {
+					resolved.indexes[k] = m;
+					resolved.keys[k++] = column;
+				}
+			}
+			resolved = resolved.trim(k);
+			childRowColumns.put(tm, resolved);
+		}
+		return extractValues(rs, resolved);
+	}
+
+	/**
+	 * Read the values of the referenced columns of a term map in the parent
+	 * row of the current joint row, i.e. in all but its first n columns.
+	 * 
+	 * @throws R2RMLDataError
+	 *             if a referenced column does not exist
+	 */
+	public Map<ColumnIdentifier, byte[]> extractParentValues(ResultSet rs,
+			TermMap tm, int n) throws SQLException, R2RMLDataError {
+		ResolvedColumns resolved = parentRowColumns.get(tm);
+		if (resolved == null) {
+			Set<ColumnIdentifier> referencedColumns = tm.getReferencedColumns();
+			resolved = new ResolvedColumns(referencedColumns.size());
+			int k = 0;
+			for (ColumnIdentifier column : referencedColumns) {
+				int m = lastIndexOf(column);
+				if (m == -1)
+					throw new R2RMLDataError(
+							"[LogicalTablePlan:extractParentValues] Unknown "
+									+ column + "in parent row.");
+				if (m >= n) {
+					resolved.indexes[k] = m;
+					resolved.keys[k++] = column;
+				}
+			}
+			resolved = resolved.trim(k);
+			parentRowColumns.put(tm, resolved);
+		}
+		return extractValues(rs, resolved);
+	}
+
+	private Map<ColumnIdentifier, byte[]> extractValues(ResultSet rs,
+			ResolvedColumns resolved) throws SQLException {
+		int[] indexes = resolved.indexes;
+		Map<ColumnIdentifier, byte[]> result = new HashMap<ColumnIdentifier, byte[]>(
+				indexes.length * 2);
+		for (int k = 0; k < indexes.length; k++) {
+			int index = indexes[k];
+			byte[] rawData = getBytes(rs, index);
+			if (log.isDebugEnabled())
+				log.debug("[LogicalTablePlan:extractValues] Value found for "
+						+ columns[index - 1] + " (Type: "
+						+ columns[index - 1].getSqlType() + ")");
+			result.put(resolved.keys[k], rawData);
+		}
+		return result;
+	}
+
+	/**
+	 * Return the SQL datatype of the column referenced by a column-valued
+	 * literal term map, null otherwise.
+	 */
+	public SQLType getImplicitDatatype(TermMap tm) {
+		if (implicitDatatypes.containsKey(tm))
+			return implicitDatatypes.get(tm);
+		SQLType result = null;
+		if (tm.getTermMapType() != TermMapType.TEMPLATE_VALUED
+				&& tm.getTermMapType() != TermMapType.FUNCTION_CALL_VALUED // do not assume type, needs to be declared by mapper.
+				&& tm.getTermType() == TermType.LITERAL
+				&& tm.getConstantValue() == null) {
+			int index = lastIndexOf(tm.getReferencedColumns().iterator()
+					.next());
+			if (index != -1) {
+				result = columns[index - 1].getSqlType();
+				log.debug("[LogicalTablePlan:getImplicitDatatype] Extracted implicit datatype :  "
+						+ result);
+			}
+		}
+		implicitDatatypes.put(tm, result);
+		return result;
+	}
+
+}
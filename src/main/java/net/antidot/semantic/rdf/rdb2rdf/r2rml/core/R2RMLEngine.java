@@ -34,17 +34,30 @@ import java.sql.Connection;
 import java.sql.ResultSet;
 import java.sql.ResultSetMetaData;
 import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
+import net.antidot.semantic.rdf.model.SynchronizedTripleSink;
+import net.antidot.semantic.rdf.model.TripleSink;
 import net.antidot.semantic.rdf.model.impl.sesame.SesameDataSet;
 import net.antidot.semantic.rdf.model.tools.RDFDataValidator;
 import net.antidot.semantic.rdf.rdb2rdf.commons.SQLToXMLS;
 import net.antidot.semantic.rdf.rdb2rdf.r2rml.core.R2RMLVocabulary.R2RMLTerm;
 import net.antidot.semantic.rdf.rdb2rdf.r2rml.exception.R2RMLDataError;
+import net.antidot.semantic.rdf.rdb2rdf.r2rml.function.FunctionResultCache;
 import net.antidot.semantic.rdf.rdb2rdf.r2rml.model.GraphMap;
+import net.antidot.semantic.rdf.rdb2rdf.r2rml.model.JoinCondition;
 import net.antidot.semantic.rdf.rdb2rdf.r2rml.model.ObjectMap;
 import net.antidot.semantic.rdf.rdb2rdf.r2rml.model.PredicateMap;
 import net.antidot.semantic.rdf.rdb2rdf.r2rml.model.PredicateObjectMap;
@@ -53,14 +66,12 @@ import net.antidot.semantic.rdf.rdb2rdf.r2rml.model.ReferencingObjectMap;
 import net.antidot.semantic.rdf.rdb2rdf.r2rml.model.SubjectMap;
 import net.antidot.semantic.rdf.rdb2rdf.r2rml.model.TermMap;
 import net.antidot.semantic.rdf.rdb2rdf.r2rml.model.TermMap.TermMapType;
-import net.antidot.semantic.rdf.rdb2rdf.r2rml.model.TermType;
 import net.antidot.semantic.rdf.rdb2rdf.r2rml.model.TriplesMap;
 import net.antidot.semantic.rdf.rdb2rdf.r2rml.tools.R2RMLToolkit;
 import net.antidot.semantic.xmls.xsd.XSDType;
-import net.antidot.sql.model.core.DriverType;
+import net.antidot.sql.model.core.ConnectionPool;
+import net.antidot.sql.model.core.SQLConnector;
 import net.antidot.sql.model.db.ColumnIdentifier;
-import net.antidot.sql.model.db.ColumnIdentifierImpl;
-import net.antidot.sql.model.tools.SQLToolkit;
 import net.antidot.sql.model.type.SQLType;
 
 import org.apache.commons.logging.Log;
@@ -80,17 +91,61 @@ public class R2RMLEngine {
 
 	// SQL Connection
 	private Connection conn;
+	// Parallel mode : pool of connections used by the workers
+	private ConnectionPool pool;
+	// Parallel mode : maximal number of concurrent workers
+	private int parallelism;
 	// Current logical table
 	private ResultSet rows;
 	// Current referencing table
 	private ResultSet referencingRows;
 	// Current meta data of logical table
 	private ResultSetMetaData meta;
+	// Execution plans of the current logical and referencing tables
+	private LogicalTablePlan plan;
+	private LogicalTablePlan referencingPlan;
 	// A base IRI used in resolving relative IRIs produced by the R2RML mapping.
 	private String baseIRI;
 
-	private Map<TermMap, Map<Integer, ResultSet>> sameRows;
-	private Map<TermMap, Map<Integer, Value>> sameGeneratedRDFTerm;
+	// Number of triples emitted into the output
+	private int nbTriples;
+
+	// RDF terms generated by term maps with an inverse expression
+	private Map<TermMap, InverseExpressionIndex> sameTerms;
+	// Subjects generated by the subject map of each triples map
+	private Map<TermMap, GeneratedTermCache> subjectCaches;
+	// Hits and misses of the subject caches of a finished mapping
+	private long subjectCacheHits;
+	private long subjectCacheMisses;
+
+	// Default memory budget of a parent index in hash join mode (64 MB)
+	public static final long DEFAULT_HASH_JOIN_MEMORY = 64 * 1024 * 1024;
+	// Hash join mode : memory budget of each parent index (0 if disabled)
+	private long hashJoinMemory = 0;
+	// Hash join mode : parent indexes by parent triples map and parent columns
+	private Map<TriplesMap, Map<List<String>, HashJoinIndex>> hashJoinIndexes;
+	// Hash join mode : indexes filled by the current rows, with the JDBC
+	// indexes of their parent columns
+	private Map<HashJoinIndex, int[]> hashJoinBuilds;
+	// Hash join mode : referencing object maps of the current triples map
+	private List<HashJoin> hashJoins;
+	// Hash join mode : emits the joined triples of the current triples map
+	private HashJoinIndex.JoinHandler hashJoinHandler;
+
+	/*
+	 * Hash join mode : evaluation of a referencing object map during the
+	 * rows pass of its own triples map.
+	 */
+	private static class HashJoin {
+		private PredicateObjectMap predicateObjectMap;
+		private ReferencingObjectMap referencingObjectMap;
+		// JDBC indexes of the child columns (null without join condition)
+		private int[] childColumns;
+		private HashJoinIndex.Probe probe;
+	}
+
+	// Number of rows fetched at once from logical and joint tables
+	private int fetchSize = SQLConnector.DEFAULT_FETCH_SIZE;
 
 	// Value factory
 	private static ValueFactory vf = new ValueFactoryImpl();
@@ -104,6 +159,111 @@ public class R2RMLEngine {
 		rows = null;
 	}
 
+	/**
+	 * Build an engine which runs each triples map, and each join of its
+	 * referencing object maps, as an independent task on its own connection
+	 * of the pool. At most parallelism tasks are running at the same time.
+	 * 
+	 * @param pool
+	 * @param parallelism
+	 */
+	public R2RMLEngine(ConnectionPool pool, int parallelism) {
+		super();
+		if (pool == null)
+			throw new IllegalStateException(
+					"[R2RMLEngine:R2RMLEngine] SQL connection pool does not exists.");
+		if (parallelism < 1)
+			throw new IllegalArgumentException(
+					"[R2RMLEngine:R2RMLEngine] Parallelism must be positive : "
+							+ parallelism);
+		this.pool = pool;
+		this.parallelism = parallelism;
+		rows = null;
+	}
+
+	/**
+	 * Evaluate referencing object maps in the engine instead of running their
+	 * joint SQL query : the parent subjects are indexed by the values of the
+	 * parent columns of the join conditions during the rows pass of the
+	 * parent triples map, and each child row probes this index during the
+	 * rows pass of its own triples map. An index exceeding memoryBudget bytes
+	 * is spilled on disk. Join values are compared in their database string
+	 * form. This mode is not used by the parallel engine.
+	 * 
+	 * @param memoryBudget
+	 */
+	public void setHashJoinMode(long memoryBudget) {
+		if (memoryBudget < 1)
+			throw new IllegalArgumentException(
+					"[R2RMLEngine:setHashJoinMode] Memory budget must be positive : "
+							+ memoryBudget);
+		this.hashJoinMemory = memoryBudget;
+	}
+
+	public void setHashJoinMode() {
+		setHashJoinMode(DEFAULT_HASH_JOIN_MEMORY);
+	}
+
+	public boolean isHashJoinMode() {
+		return hashJoinMemory > 0;
+	}
+
+	/**
+	 * Number of rows of logical tables and joint tables fetched at once from
+	 * the database while they are converted, instead of loading every row in
+	 * memory (see SQLConnector.prepareStreamingStatement). A zero fetch size
+	 * keeps the default behaviour of the driver.
+	 * 
+	 * @param fetchSize
+	 */
+	public void setFetchSize(int fetchSize) {
+		if (fetchSize < 0)
+			throw new IllegalArgumentException(
+					"[R2RMLEngine:setFetchSize] Fetch size must be positive : "
+							+ fetchSize);
+		this.fetchSize = fetchSize;
+	}
+
+	public int getFetchSize() {
+		return fetchSize;
+	}
+
+	/*
+	 * Worker engine : holds the state of one task of a parallel mapping.
+	 */
+	private R2RMLEngine(Connection conn, String baseIRI, int fetchSize) {
+		this(conn);
+		this.baseIRI = baseIRI;
+		this.fetchSize = fetchSize;
+		sameTerms = new HashMap<TermMap, InverseExpressionIndex>();
+		subjectCaches = new HashMap<TermMap, GeneratedTermCache>();
+	}
+
+	/**
+	 * Number of subjects of the last mapping found in the subject caches.
+	 */
+	public long getSubjectCacheHits() {
+		return subjectCacheHits;
+	}
+
+	/**
+	 * Number of subjects of the last mapping which have been generated.
+	 */
+	public long getSubjectCacheMisses() {
+		return subjectCacheMisses;
+	}
+
+	/*
+	 * Add the hits and misses of the subject caches of an engine (this one or
+	 * a worker) to the statistics of the mapping.
+	 */
+	private synchronized void collectSubjectCacheStatistics(R2RMLEngine engine) {
+		for (GeneratedTermCache cache : engine.subjectCaches.values()) {
+			subjectCacheHits += cache.getHits();
+			subjectCacheMisses += cache.getMisses();
+		}
+	}
+
 	/**
 	 * Execute R2RML Mapping from a R2RML file in order to generate a RDF
 	 * dataset. This dataset is built with Sesame API.
@@ -118,6 +278,38 @@ public class R2RMLEngine {
 	public SesameDataSet runR2RMLMapping(R2RMLMapping r2rmlMapping,
 			String baseIRI, String pathToNativeStore) throws SQLException,
 			R2RMLDataError, UnsupportedEncodingException {
+		SesameDataSet sesameDataSet = null;
+		// Check if use of native store is required
+		if (pathToNativeStore != null) {
+			log.debug("[R2RMLEngine:runR2RMLMapping] Use native store "
+					+ pathToNativeStore);
+			sesameDataSet = new SesameDataSet(pathToNativeStore, false);
+		} else {
+			sesameDataSet = new SesameDataSet();
+		}
+		// Commit generated triples by batches
+		sesameDataSet.setBatchMode();
+		runR2RMLMappingToSink(r2rmlMapping, baseIRI, sesameDataSet);
+		// Commit last generated triples
+		sesameDataSet.close();
+		return sesameDataSet;
+	}
+
+	/**
+	 * Execute R2RML Mapping from a R2RML file and emit every generated triple
+	 * into a triple sink, without building any RDF dataset. The sink is
+	 * flushed but not closed.
+	 * 
+	 * @param r2rmlMapping
+	 * @param baseIRI
+	 * @param sink
+	 * @throws SQLException
+	 * @throws R2RMLDataError
+	 * @throws UnsupportedEncodingException
+	 */
+	public void runR2RMLMappingToSink(R2RMLMapping r2rmlMapping,
+			String baseIRI, TripleSink sink) throws SQLException,
+			R2RMLDataError, UnsupportedEncodingException {
 		log.debug("[R2RMLEngine:runR2RMLMapping] Run R2RML mapping... ");
 		if (r2rmlMapping == null)
 			throw new IllegalArgumentException(
@@ -125,32 +317,42 @@ public class R2RMLEngine {
 		if (baseIRI == null)
 			throw new IllegalArgumentException(
 					"[R2RMLEngine:runR2RMLMapping] No base IRI found.");
+		if (sink == null)
+			throw new IllegalArgumentException(
+					"[R2RMLEngine:runR2RMLMapping] No triple sink found.");
 
-		SesameDataSet sesameDataSet = null;
 		// Update baseIRI
 		this.baseIRI = baseIRI;
-		// Check if use of native store is required
-		if (pathToNativeStore != null) {
-			log.debug("[R2RMLEngine:runR2RMLMapping] Use native store "
-					+ pathToNativeStore);
-			sesameDataSet = new SesameDataSet(pathToNativeStore, false);
-		} else {
-			sesameDataSet = new SesameDataSet();
-		}
 		// Update inverse expression settings
-		sameRows = new HashMap<TermMap, Map<Integer, ResultSet>>();
-		sameGeneratedRDFTerm = new HashMap<TermMap, Map<Integer, Value>>();
+		sameTerms = new HashMap<TermMap, InverseExpressionIndex>();
+		subjectCaches = new HashMap<TermMap, GeneratedTermCache>();
+		subjectCacheHits = 0;
+		subjectCacheMisses = 0;
+		if (r2rmlMapping.getFunctionRuntime() != null)
+			for (FunctionResultCache cache : r2rmlMapping
+					.getFunctionRuntime().getCaches())
+				cache.resetStatistics();
 		
 		// Explore R2RML Mapping TriplesMap objects
-		generateRDFTriples(sesameDataSet, r2rmlMapping);
-
-		// Close connection to logical table
-		if (rows != null) {
-			rows.getStatement().close();
-			rows.close();
+		if (pool != null)
+			generateRDFTriplesInParallel(sink, r2rmlMapping);
+		else {
+			generateRDFTriples(sink, r2rmlMapping);
+			collectSubjectCacheStatistics(this);
 		}
+		subjectCaches = null;
+		sink.flush();
+		log.info("[R2RMLEngine:runR2RMLMapping] Subject caches : "
+				+ subjectCacheHits + " hits, " + subjectCacheMisses
+				+ " misses.");
+		if (r2rmlMapping.getFunctionRuntime() != null)
+			for (FunctionResultCache cache : r2rmlMapping
+					.getFunctionRuntime().getCaches())
+				log.info("[R2RMLEngine:runR2RMLMapping] Function "
+						+ cache.getFunctionName() + " cache : "
+						+ cache.getHits() + " hits, " + cache.getMisses()
+						+ " misses.");
 		log.debug("[R2RMLEngine:runR2RMLMapping] R2RML mapping done. ");
-		return sesameDataSet;
 	}
 
 	/**
@@ -158,116 +360,485 @@ public class R2RMLEngine {
 	 * triple is placed into one or more graphs of the output dataset. The
 	 * generated RDF triples are determined by the following algorithm.
 	 * 
-	 * @param sesameDataSet
+	 * @param sink
 	 * @param r2rmlMapping
 	 * @throws SQLException
 	 * @throws R2RMLDataError
 	 * @throws UnsupportedEncodingException
 	 */
-	private void generateRDFTriples(SesameDataSet sesameDataSet,
+	private void generateRDFTriples(TripleSink sink,
 			R2RMLMapping r2rmlMapping) throws SQLException, R2RMLDataError,
 			UnsupportedEncodingException {
 		log.debug("[R2RMLEngine:generateRDFTriples] Generate RDF triples... ");
+		nbTriples = 0;
 		int delta = 0;
-		for (TriplesMap triplesMap : r2rmlMapping.getTriplesMaps()) {
-			genereateRDFTriplesFromTriplesMap(sesameDataSet, triplesMap);
-			log.info("[R2RMLEngine:generateRDFTriples] "
-					+ (sesameDataSet.getSize() - delta)
+		Collection<TriplesMap> triplesMaps = r2rmlMapping.getTriplesMaps();
+		if (isHashJoinMode())
+			triplesMaps = prepareHashJoinIndexes(triplesMaps);
+		try {
+			for (TriplesMap triplesMap : triplesMaps) {
+				if (isHashJoinMode())
+					genereateRDFTriplesFromTriplesMapWithHashJoins(sink,
+							triplesMap);
+				else
+					genereateRDFTriplesFromTriplesMap(sink, triplesMap);
+				log.info("[R2RMLEngine:generateRDFTriples] "
+						+ (nbTriples - delta)
+						+ " triples generated for " + triplesMap.getName());
+				delta = nbTriples;
+			}
+		} finally {
+			if (hashJoinIndexes != null) {
+				for (Map<List<String>, HashJoinIndex> indexes : hashJoinIndexes
+						.values())
+					for (HashJoinIndex index : indexes.values())
+						index.delete();
+				hashJoinIndexes = null;
+			}
+		}
+	}
+
+	/*
+	 * Hash join mode : create the (empty) index of every parent triples map
+	 * and columns used by a join condition. Return the triples maps to run,
+	 * parents first, so that most indexes are filled by the rows pass of
+	 * their parent before being probed.
+	 */
+	private List<TriplesMap> prepareHashJoinIndexes(
+			Collection<TriplesMap> triplesMaps) {
+		hashJoinIndexes = new HashMap<TriplesMap, Map<List<String>, HashJoinIndex>>();
+		for (TriplesMap triplesMap : triplesMaps)
+			for (PredicateObjectMap predicateObjectMap : triplesMap
+					.getPredicateObjectMaps())
+				for (ReferencingObjectMap referencingObjectMap : predicateObjectMap
+						.getReferencingObjectMaps())
+					if (!referencingObjectMap.getJoinConditions().isEmpty())
+						getHashJoinIndex(referencingObjectMap);
+		List<TriplesMap> result = new ArrayList<TriplesMap>();
+		for (TriplesMap triplesMap : triplesMaps)
+			if (hashJoinIndexes.containsKey(triplesMap))
+				result.add(triplesMap);
+		for (TriplesMap triplesMap : triplesMaps)
+			if (!hashJoinIndexes.containsKey(triplesMap))
+				result.add(triplesMap);
+		return result;
+	}
+
+	private HashJoinIndex getHashJoinIndex(
+			ReferencingObjectMap referencingObjectMap) {
+		TriplesMap parent = referencingObjectMap.getParentTriplesMap();
+		List<String> parentColumns = new ArrayList<String>();
+		for (JoinCondition joinCondition : referencingObjectMap
+				.getJoinConditions())
+			parentColumns.add(joinCondition.getParent());
+		Map<List<String>, HashJoinIndex> indexes = hashJoinIndexes
+				.get(parent);
+		if (indexes == null) {
+			indexes = new HashMap<List<String>, HashJoinIndex>();
+			hashJoinIndexes.put(parent, indexes);
+		}
+		HashJoinIndex index = indexes.get(parentColumns);
+		if (index == null) {
+			index = new HashJoinIndex(parent.getName() + " " + parentColumns,
+					hashJoinMemory);
+			indexes.put(parentColumns, index);
+		}
+		return index;
+	}
+
+	private void genereateRDFTriplesFromTriplesMapWithHashJoins(
+			final TripleSink sink, TriplesMap triplesMap) throws SQLException,
+			R2RMLDataError, UnsupportedEncodingException {
+		log.debug("[R2RMLEngine:genereateRDFTriplesFromTriplesMapWithHashJoins] Generate RDF triples from triples map... ");
+		// Indexes probed by this triples map must be complete before its
+		// rows pass : fill them with a dedicated scan of their parent if
+		// it has not run yet (cycles and self joins)
+		for (PredicateObjectMap predicateObjectMap : triplesMap
+				.getPredicateObjectMaps())
+			for (ReferencingObjectMap referencingObjectMap : predicateObjectMap
+					.getReferencingObjectMaps())
+				if (!referencingObjectMap.getJoinConditions().isEmpty()) {
+					HashJoinIndex index = getHashJoinIndex(referencingObjectMap);
+					if (!index.isComplete())
+						fillHashJoinIndex(referencingObjectMap, index);
+				}
+		openLogicalTable(triplesMap);
+		// Indexes filled by this rows pass
+		hashJoinBuilds = new LinkedHashMap<HashJoinIndex, int[]>();
+		if (hashJoinIndexes.containsKey(triplesMap))
+			for (Map.Entry<List<String>, HashJoinIndex> entry : hashJoinIndexes
+					.get(triplesMap).entrySet())
+				if (!entry.getValue().isComplete())
+					hashJoinBuilds.put(entry.getValue(),
+							plan.indexesOf(entry.getKey()));
+		// Joins probed by this rows pass
+		hashJoins = new ArrayList<HashJoin>();
+		for (PredicateObjectMap predicateObjectMap : triplesMap
+				.getPredicateObjectMaps())
+			for (ReferencingObjectMap referencingObjectMap : predicateObjectMap
+					.getReferencingObjectMaps()) {
+				HashJoin join = new HashJoin();
+				join.predicateObjectMap = predicateObjectMap;
+				join.referencingObjectMap = referencingObjectMap;
+				if (!referencingObjectMap.getJoinConditions().isEmpty()) {
+					List<String> childColumns = new ArrayList<String>();
+					for (JoinCondition joinCondition : referencingObjectMap
+							.getJoinConditions())
+						childColumns.add(joinCondition.getChild());
+					join.childColumns = plan.indexesOf(childColumns);
+					join.probe = getHashJoinIndex(referencingObjectMap)
+							.newProbe();
+				}
+				hashJoins.add(join);
+			}
+		hashJoinHandler = new HashJoinIndex.JoinHandler() {
+			public void join(Resource subject, Set<URI> predicates,
+					Resource object, Set<URI> targetGraphs) {
+				for (URI predicate : predicates)
+					addTriplesToTheOutputDataset(sink, subject, predicate,
+							object, targetGraphs);
+			}
+		};
+		try {
+			generateRDFTriplesFromLogicalTable(sink, triplesMap);
+		} finally {
+			closeLogicalTable();
+		}
+		for (HashJoinIndex index : hashJoinBuilds.keySet())
+			index.complete();
+		// Join child rows spilled on disk
+		for (HashJoin join : hashJoins)
+			if (join.probe != null)
+				join.probe.finish(hashJoinHandler);
+		hashJoinBuilds = null;
+		hashJoins = null;
+		hashJoinHandler = null;
+	}
+
+	/*
+	 * Hash join mode : fill an index with a dedicated scan of the logical
+	 * table of its parent triples map.
+	 */
+	private void fillHashJoinIndex(ReferencingObjectMap referencingObjectMap,
+			HashJoinIndex index) throws SQLException, R2RMLDataError,
+			UnsupportedEncodingException {
+		TriplesMap parent = referencingObjectMap.getParentTriplesMap();
+		log.debug("[R2RMLEngine:fillHashJoinIndex] Scan logical table of "
+				+ parent.getName() + " to index its subjects.");
+		List<String> parentColumns = new ArrayList<String>();
+		for (JoinCondition joinCondition : referencingObjectMap
+				.getJoinConditions())
+			parentColumns.add(joinCondition.getParent());
+		R2RMLEngine worker = new R2RMLEngine(conn, baseIRI, fetchSize);
+		worker.openLogicalTable(parent);
+		try {
+			int[] columns = worker.plan.indexesOf(parentColumns);
+			SubjectMap psm = parent.getSubjectMap();
+			while (worker.rows.next()) {
+				Map<ColumnIdentifier, byte[]> psmFromRow = worker
+						.applyValueToRow(psm);
+				Resource subject = (Resource) worker.extractValueFromTermMap(
+						psm, psmFromRow, parent);
+				if (subject != null)
+					index.add(worker.plan.extractJoinKey(worker.rows, columns),
+							subject);
+			}
+		} finally {
+			worker.closeLogicalTable();
+			collectSubjectCacheStatistics(worker);
+		}
+		index.complete();
+	}
+
+	/*
+	 * Hash join mode : index the subject of the current row in the indexes of
+	 * its triples map, then apply its referencing object maps.
+	 */
+	private void generateRDFTriplesFromHashJoins(TripleSink sink,
+			TriplesMap triplesMap, Resource subject, Set<URI> subjectGraphs)
+			throws SQLException, R2RMLDataError, UnsupportedEncodingException {
+		for (Map.Entry<HashJoinIndex, int[]> build : hashJoinBuilds.entrySet())
+			build.getKey().add(plan.extractJoinKey(rows, build.getValue()),
+					subject);
+		for (HashJoin join : hashJoins) {
+			// Predicates and graphs of the child row
+			Set<URI> predicates = new HashSet<URI>();
+			for (PredicateMap pm : join.predicateObjectMap.getPredicateMaps()) {
+				Map<ColumnIdentifier, byte[]> pmFromRow = applyValueToRow(pm);
+				predicates.add((URI) extractValueFromTermMap(pm, pmFromRow,
+						triplesMap));
+			}
+			Set<URI> targetGraphs = new HashSet<URI>();
+			targetGraphs.addAll(subjectGraphs);
+			for (GraphMap graphMap : join.predicateObjectMap.getGraphMaps()) {
+				Map<ColumnIdentifier, byte[]> pogmFromRow = applyValueToRow(graphMap);
+				targetGraphs.add((URI) extractValueFromTermMap(graphMap,
+						pogmFromRow, triplesMap));
+			}
+			if (join.probe == null) {
+				// Without join condition, the parent row is the child row
+				SubjectMap psm = join.referencingObjectMap
+						.getParentTriplesMap().getSubjectMap();
+				Map<ColumnIdentifier, byte[]> psmFromRow = applyValueToRow(psm);
+				Resource object = (Resource) extractValueFromTermMap(psm,
+						psmFromRow, psm.getOwnTriplesMap());
+				for (URI predicate : predicates)
+					addTriplesToTheOutputDataset(sink, subject, predicate,
+							object, targetGraphs);
+			} else {
+				join.probe.probe(plan.extractJoinKey(rows, join.childColumns),
+						subject, predicates, targetGraphs, hashJoinHandler);
+			}
+		}
+	}
+
+	/**
+	 * Parallel version of generateRDFTriples : each triples map is a task
+	 * which, once its logical table is opened, submits one task per join of
+	 * its referencing object maps. Every task runs a worker engine on its own
+	 * connection of the pool, and all of them emit triples into the same
+	 * synchronized sink.
+	 * 
+	 * @param sink
+	 * @param r2rmlMapping
+	 * @throws SQLException
+	 * @throws R2RMLDataError
+	 * @throws UnsupportedEncodingException
+	 */
+	private void generateRDFTriplesInParallel(TripleSink sink,
+			R2RMLMapping r2rmlMapping) throws SQLException, R2RMLDataError,
+			UnsupportedEncodingException {
+		log.debug("[R2RMLEngine:generateRDFTriplesInParallel] Generate RDF triples with "
+				+ parallelism + " workers... ");
+		final TripleSink sharedSink = new SynchronizedTripleSink(sink);
+		final ExecutorService executor = Executors
+				.newFixedThreadPool(parallelism);
+		// Tasks are appended by triples map tasks : guarded by itself
+		final List<Future<Void>> tasks = new ArrayList<Future<Void>>();
+		try {
+			for (final TriplesMap triplesMap : r2rmlMapping.getTriplesMaps()) {
+				Future<Void> task = executor.submit(new Callable<Void>() {
+					public Void call() throws Exception {
+						runTriplesMapTask(executor, tasks, sharedSink,
+								triplesMap);
+						return null;
+					}
+				});
+				synchronized (tasks) {
+					tasks.add(task);
+				}
+			}
+			// Join tasks are submitted before the end of their triples map
+			// task : every task is known once the last one is reached
+			int i = 0;
+			while (true) {
+				Future<Void> task;
+				synchronized (tasks) {
+					if (i == tasks.size())
+						break;
+					task = tasks.get(i++);
+				}
+				waitForTask(task);
+			}
+		} finally {
+			executor.shutdownNow();
+		}
+	}
+
+	private void runTriplesMapTask(ExecutorService executor,
+			List<Future<Void>> tasks, final TripleSink sink,
+			final TriplesMap triplesMap) throws SQLException, R2RMLDataError,
+			UnsupportedEncodingException {
+		Connection taskConn = pool.acquire();
+		R2RMLEngine worker = null;
+		try {
+			worker = new R2RMLEngine(taskConn, baseIRI, fetchSize);
+			final SubjectMap sm = triplesMap.getSubjectMap();
+			final Set<GraphMap> sgm = sm.getGraphMaps();
+			worker.openLogicalTable(triplesMap);
+			final int n = worker.meta.getColumnCount();
+			// Joins do not depend on the rows of this task
+			for (final PredicateObjectMap predicateObjectMap : triplesMap
+					.getPredicateObjectMaps())
+				for (final ReferencingObjectMap referencingObjectMap : predicateObjectMap
+						.getReferencingObjectMaps()) {
+					Future<Void> task = executor.submit(new Callable<Void>() {
+						public Void call() throws Exception {
+							runReferencingObjectMapTask(sink, triplesMap, sm,
+									sgm, predicateObjectMap,
+									referencingObjectMap, n);
+							return null;
+						}
+					});
+					synchronized (tasks) {
+						tasks.add(task);
+					}
+				}
+			worker.generateRDFTriplesFromLogicalTable(sink, triplesMap);
+			log.info("[R2RMLEngine:runTriplesMapTask] " + worker.nbTriples
 					+ " triples generated for " + triplesMap.getName());
-			delta = sesameDataSet.getSize();
+			collectSubjectCacheStatistics(worker);
+		} finally {
+			// Never release a connection with an open logical table
+			try {
+				if (worker != null)
+					worker.closeLogicalTable();
+			} finally {
+				pool.release(taskConn);
+			}
 		}
 	}
 
-	private void genereateRDFTriplesFromTriplesMap(SesameDataSet sesameDataSet,
+	private void runReferencingObjectMapTask(TripleSink sink,
+			TriplesMap triplesMap, SubjectMap sm, Set<GraphMap> sgm,
+			PredicateObjectMap predicateObjectMap,
+			ReferencingObjectMap referencingObjectMap, int n)
+			throws SQLException, R2RMLDataError, UnsupportedEncodingException {
+		Connection taskConn = pool.acquire();
+		try {
+			R2RMLEngine worker = new R2RMLEngine(taskConn, baseIRI, fetchSize);
+			worker.generateRDFTriplesFromReferencingObjectMap(sink,
+					triplesMap, sm, sgm, predicateObjectMap,
+					referencingObjectMap, n);
+			log.info("[R2RMLEngine:runReferencingObjectMapTask] "
+					+ worker.nbTriples + " triples generated for "
+					+ triplesMap.getName() + " (referencing object map of "
+					+ referencingObjectMap.getParentTriplesMap().getName()
+					+ ")");
+			collectSubjectCacheStatistics(worker);
+		} finally {
+			pool.release(taskConn);
+		}
+	}
+
+	/*
+	 * Wait for the end of a task and throw again its failure.
+	 */
+	private static void waitForTask(Future<Void> task) throws SQLException,
+			R2RMLDataError, UnsupportedEncodingException {
+		try {
+			task.get();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IllegalStateException(
+					"[R2RMLEngine:waitForTask] Interrupted while waiting for mapping tasks.");
+		} catch (ExecutionException e) {
+			Throwable cause = e.getCause();
+			if (cause instanceof SQLException)
+				throw (SQLException) cause;
+			if (cause instanceof R2RMLDataError)
+				throw (R2RMLDataError) cause;
+			if (cause instanceof UnsupportedEncodingException)
+				throw (UnsupportedEncodingException) cause;
+			if (cause instanceof RuntimeException)
+				throw (RuntimeException) cause;
+			if (cause instanceof Error)
+				throw (Error) cause;
+			throw new IllegalStateException(
+					"[R2RMLEngine:waitForTask] Mapping task failed : "
+							+ cause.getMessage(), cause);
+		}
+	}
+
+	private void genereateRDFTriplesFromTriplesMap(TripleSink sink,
 			TriplesMap triplesMap) throws SQLException, R2RMLDataError,
 			UnsupportedEncodingException {
 		log.debug("[R2RMLEngine:genereateRDFTriplesFromTriplesMap] Generate RDF triples from triples map... ");
 		// 1. Let sm be the subject map of the triples map
 		SubjectMap sm = triplesMap.getSubjectMap();
-		// Check inverse expression
-		// 2. Let rows be the result of evaluating the effective SQL query
-		rows = constructLogicalTable(triplesMap);
-		meta = extractMetaDatas(rows);
-		// 3. Let classes be the class IRIs of sm
-		Set<URI> classes = sm.getClassIRIs();
 		// 4. Let sgm be the set of graph maps of sm
 		Set<GraphMap> sgm = sm.getGraphMaps();
+		// 2. Let rows be the result of evaluating the effective SQL query
+		openLogicalTable(triplesMap);
 		// 5. For each logical table row in rows, apply the following method
-		while (rows.next()) {
-			generateRDFTriplesFromRow(sesameDataSet, triplesMap, sm, classes,
-					sgm);
-		}
+		generateRDFTriplesFromLogicalTable(sink, triplesMap);
 		// 6. For each referencing object map of a predicate-object map of the
 		// triples map,
 		// apply the following method
+		int n = meta.getColumnCount();
 		for (PredicateObjectMap predicateObjectMap : triplesMap
 				.getPredicateObjectMaps())
 			for (ReferencingObjectMap referencingObjectMap : predicateObjectMap
 					.getReferencingObjectMaps()) {
-				generateRDFTriplesFromReferencingObjectMap(sesameDataSet,
+				generateRDFTriplesFromReferencingObjectMap(sink,
 						triplesMap, sm, sgm, predicateObjectMap,
-						referencingObjectMap);
+						referencingObjectMap, n);
 			}
+		// Close connection to logical table
+		closeLogicalTable();
+	}
+
+	private void openLogicalTable(TriplesMap triplesMap)
+			throws SQLException {
+		// Check inverse expression
+		rows = constructLogicalTable(triplesMap);
+		meta = extractMetaDatas(rows);
+		plan = new LogicalTablePlan(meta);
+	}
+
+	private void closeLogicalTable() throws SQLException {
+		if (rows != null) {
+			rows.getStatement().close();
+			rows.close();
+			rows = null;
+		}
+	}
+
+	private void generateRDFTriplesFromLogicalTable(TripleSink sink,
+			TriplesMap triplesMap) throws SQLException, R2RMLDataError,
+			UnsupportedEncodingException {
+		SubjectMap sm = triplesMap.getSubjectMap();
+		// 3. Let classes be the class IRIs of sm
+		Set<URI> classes = sm.getClassIRIs();
+		// 4. Let sgm be the set of graph maps of sm
+		Set<GraphMap> sgm = sm.getGraphMaps();
+		while (rows.next()) {
+			generateRDFTriplesFromRow(sink, triplesMap, sm, classes,
+					sgm);
+		}
 	}
 
 	/*
-	 * An inverse expression MUST satisfy the following condition.
+	 * An inverse expression MUST satisfy the following condition. Its index
+	 * is built when the term map is applied for the first time.
 	 */
-	private void performInverseExpression(Map<ColumnIdentifier, byte[]> dbValues,
-			TermMap tm, String effectiveSQLQuery) throws SQLException,
-			R2RMLDataError, UnsupportedEncodingException {
+	private InverseExpressionIndex getInverseExpressionIndex(TermMap tm)
+			throws SQLException, R2RMLDataError {
+		InverseExpressionIndex result = sameTerms.get(tm);
+		if (result != null)
+			return result;
 		// Every column reference in the inverse expression MUST
 		// be an existing column in t
-		String inverseExpression = tm.getInverseExpression();
-		if (inverseExpression == null)
-			return;
 		Set<ColumnIdentifier> columnReferences = R2RMLToolkit
-				.extractColumnNamesFromInverseExpression(inverseExpression);
+				.extractColumnNamesFromInverseExpression(tm
+						.getInverseExpression());
 		Set<ColumnIdentifier> existingColumns = getExistingColumnNames();
 		for (ColumnIdentifier referencedColumns : columnReferences) {
-		    boolean found = false;
-		    for (ColumnIdentifier existingColumn : existingColumns) {
-			if(existingColumn.equals(referencedColumns)) {
-			    found = true;
-			    break;
-			}
-		    }
-		    if (!found)
+		    if (!existingColumns.contains(referencedColumns))
 			throw new R2RMLDataError("[R2RMLEngine:checkInverseExpression] Every column"
 								+ " reference in the inverse expression must be an existing column : "
 								+ referencedColumns + " does not exist.");
 		}
-		// Let instantiation(r)
-		String instantiation = R2RMLToolkit
-				.extractColumnValueFromInverseExpression(inverseExpression,
-						dbValues, columnReferences);
-		// let same-term(r) be the set of logical table rows in t that are
-		// the result of executing the following SQL query over the SQL
-		// connection
-		ResultSet sameTerm = constructInversionTable(instantiation,
-				effectiveSQLQuery);
 		// For every logical table row r in t whose generated RDF term g is not
-		// NULL, same-term(r)
-		// MUST be exactly the set of logical table rows in t whose generated
-		// RDF term is also g
-		// => Save similar rows
-		if (sameRows.containsKey(tm)) {
-			sameRows.get(tm).put(rows.getRow(), sameTerm);
-		} else {
-			Map<Integer, ResultSet> sameRowsMap = new HashMap<Integer, ResultSet>();
-			sameRowsMap.put(rows.getRow(), sameTerm);
-			sameRows.put(tm, sameRowsMap);
-		}
-
+		// NULL, same-term(r) MUST be exactly the set of logical table rows in t
+		// whose generated RDF term is also g : same-term(r) is the set of rows
+		// with the same instantiation(r), i.e. with the same values for the
+		// referenced columns of the inverse expression
+		result = new InverseExpressionIndex(tm,
+				InverseExpressionIndex.DEFAULT_MAX_ENTRIES);
+		sameTerms.put(tm, result);
+		return result;
 	}
 
 	private Set<ColumnIdentifier> getExistingColumnNames() throws SQLException {
 		Set<ColumnIdentifier> result = new HashSet<ColumnIdentifier>();
-		for (int i = 1; i <= meta.getColumnCount(); i++)
-		    result.add(ColumnIdentifierImpl.buildFromJDBCResultSet(meta, i));
+		// Joins run by a parallel worker have no logical table of their own
+		if (plan != null)
+			for (int i = 1; i <= plan.getColumnCount(); i++)
+			    result.add(plan.getColumn(i));
 		if (referencingRows != null)
-			for (int i = 1; i <= referencingRows.getMetaData().getColumnCount(); i++)
-			    	result.add(ColumnIdentifierImpl.buildFromJDBCResultSet(referencingRows.getMetaData(), i));
+			for (int i = 1; i <= referencingPlan.getColumnCount(); i++)
+			    	result.add(referencingPlan.getColumn(i));
 		return result;
 	}
 
@@ -291,10 +862,10 @@ public class R2RMLEngine {
 	}
 
 	private void generateRDFTriplesFromReferencingObjectMap(
-			SesameDataSet sesameDataSet, TriplesMap triplesMap, SubjectMap sm,
+			TripleSink sink, TriplesMap triplesMap, SubjectMap sm,
 			Set<GraphMap> sgm, PredicateObjectMap predicateObjectMap,
-			ReferencingObjectMap referencingObjectMap) throws SQLException,
-			R2RMLDataError, UnsupportedEncodingException {
+			ReferencingObjectMap referencingObjectMap, int n)
+			throws SQLException, R2RMLDataError, UnsupportedEncodingException {
 		// 1. Let psm be the subject map of the parent triples map of the
 		// referencing object map
 		SubjectMap psm = referencingObjectMap.getParentTriplesMap()
@@ -302,19 +873,22 @@ public class R2RMLEngine {
 		// 2. Let pogm be the set of graph maps of the predicate-object map
 		Set<GraphMap> pogm = predicateObjectMap.getGraphMaps();
 		// 3. Let n be the number of columns in the logical table of the triples
-		// map
-		int n = meta.getColumnCount();
+		// map : see caller
 		// 4. Let rows be the result of evaluating the joint SQL query of the
 		// referencing object map
 		referencingRows = constructJointTable(referencingObjectMap);
+		referencingPlan = new LogicalTablePlan(referencingRows.getMetaData());
 		// 5. For each row in rows, apply the following method
 		while (referencingRows.next())
-			generateRDFTriplesFromReferencingRow(sesameDataSet, triplesMap, sm,
+			generateRDFTriplesFromReferencingRow(sink, triplesMap, sm,
 					psm, pogm, sgm, predicateObjectMap, n);
+		referencingRows.getStatement().close();
+		referencingRows.close();
+		referencingRows = null;
 	}
 
 	private void generateRDFTriplesFromReferencingRow(
-			SesameDataSet sesameDataSet, TriplesMap triplesMap, SubjectMap sm,
+			TripleSink sink, TriplesMap triplesMap, SubjectMap sm,
 			SubjectMap psm, Set<GraphMap> pogm, Set<GraphMap> sgm,
 			PredicateObjectMap predicateObjectMap, int n) throws SQLException,
 			R2RMLDataError, UnsupportedEncodingException {
@@ -387,7 +961,7 @@ public class R2RMLEngine {
 			Set<URI> targetGraphs = new HashSet<URI>();
 			targetGraphs.addAll(subject_graphs);
 			targetGraphs.addAll(predicate_object_graphs);
-			addTriplesToTheOutputDataset(sesameDataSet, subject, predicate,
+			addTriplesToTheOutputDataset(sink, subject, predicate,
 					object, targetGraphs);
 		}
 	}
@@ -404,28 +978,7 @@ public class R2RMLEngine {
 	 */
 	private Map<ColumnIdentifier, byte[]> applyValueToParentRow(TermMap tm, int n)
 			throws SQLException, R2RMLDataError {
-		Map<ColumnIdentifier, byte[]> result = new HashMap<ColumnIdentifier, byte[]>();
-		Set<ColumnIdentifier> columns = tm.getReferencedColumns();
-		ResultSetMetaData referencingMetas = referencingRows.getMetaData();
-		for (ColumnIdentifier column : columns) {
-			int m = -1;
-			for (int i = 1; i <= referencingMetas.getColumnCount(); i++) {
-			    ColumnIdentifier refCol = ColumnIdentifierImpl.buildFromJDBCResultSet(referencingMetas, i);
-			    if(refCol.equals(column)) {
-				m = i;
-			    }
-
-			}
-			if (m == -1)
-				throw new R2RMLDataError(
-						"[R2RMLEngine:applyValueToParentRow] Unknown " + column
-								+ "in parent row.");
-			if (m >= n) {
-				byte[] value = referencingRows.getBytes(m);
-				result.put(column, value);
-			}
-		}
-		return result;
+		return referencingPlan.extractParentValues(referencingRows, tm, n);
 	}
 
 	/**
@@ -440,31 +993,10 @@ public class R2RMLEngine {
 	 */
 	private Map<ColumnIdentifier, byte[]> applyValueToChildRow(TermMap tm, int n)
 			throws SQLException, R2RMLDataError {
-		Map<ColumnIdentifier, byte[]> result = new HashMap<ColumnIdentifier, byte[]>();
-		Set<ColumnIdentifier> columns = tm.getReferencedColumns();
-		ResultSetMetaData referencingMetas = referencingRows.getMetaData();
-		for (ColumnIdentifier column : columns) {
-			int m = -1;
-			for (int i = 1; i <= referencingMetas.getColumnCount(); i++) {
-				ColumnIdentifier refCol = ColumnIdentifierImpl.buildFromJDBCResultSet(referencingMetas, i);
-				if ( refCol.equals(column)) {
-				    m = i;
-				    break;
-				}
-			}
-			if (m == -1)
-				throw new R2RMLDataError(
-						"[R2RMLEngine:applyValueToChildRow] Unknown " + column
-								+ "in child row.");
-			if (m <= n) {
-				byte[] value = referencingRows.getBytes(m);
-				result.put(column, value);
-			}
-		}
-		return result;
+		return referencingPlan.extractChildValues(referencingRows, tm, n);
 	}
 
-	private void generateRDFTriplesFromRow(SesameDataSet sesameDataSet,
+	private void generateRDFTriplesFromRow(TripleSink sink,
 			TriplesMap triplesMap, SubjectMap sm, Set<URI> classes,
 			Set<GraphMap> sgm) throws SQLException, R2RMLDataError,
 			UnsupportedEncodingException {
@@ -496,15 +1028,19 @@ public class R2RMLEngine {
 		for (URI classIRI : sm.getClassIRIs()) {
 			URI predicate = vf.createURI(R2RMLVocabulary.RDF_NAMESPACE
 					+ R2RMLTerm.TYPE);
-			addTriplesToTheOutputDataset(sesameDataSet, subject, predicate,
+			addTriplesToTheOutputDataset(sink, subject, predicate,
 					classIRI, subject_graphs);
 		}
 		// 4. For each predicate-object map of the triples map, apply the
 		// following method
 		for (PredicateObjectMap predicateObjectMap : triplesMap
 				.getPredicateObjectMaps())
-			generateRDFTriplesFromPredicateObjectMap(sesameDataSet, triplesMap,
+			generateRDFTriplesFromPredicateObjectMap(sink, triplesMap,
 					subject, subject_graphs, predicateObjectMap);
+		// Hash join mode : referencing object maps are applied to this row
+		if (hashJoins != null)
+			generateRDFTriplesFromHashJoins(sink, triplesMap, subject,
+					subject_graphs);
 
 	}
 
@@ -513,50 +1049,43 @@ public class R2RMLEngine {
 			throws SQLException, R2RMLDataError, UnsupportedEncodingException {
 		Value result = null;
 		if (tm.getInverseExpression() != null) {
-			
-			if (!sameRows.containsKey(tm)) {
-				// First perform of inversion expression
-				performInverseExpression(smFromRow, tm, triplesMap
-						.getLogicalTable().getEffectiveSQLQuery());
-				// Generate RDF Term
-				String value = tm.getValue(smFromRow, meta);
-				if (value == null)
-					return null;
-				result = (Resource) generateRDFTerm(tm, value);
-				// Store Generated RDF Term
-				Map<Integer, Value> sameGeneratedRDFTermMap = new HashMap<Integer, Value>();
-				sameGeneratedRDFTermMap.put(rows.getRow(), result);
-				sameGeneratedRDFTerm.put(tm, sameGeneratedRDFTermMap);
-			} else {
-				// Check if the current row exists in sameRows
-				Map<Integer, ResultSet> rowsMap = sameRows.get(tm);
-
-				for (Integer rm : rowsMap.keySet()) {
-					if (SQLToolkit.containsTheSameRow(rows, rowsMap.get(rm))) {
-						log.debug("[R2RMLEngine:extractSubject] Generate subject graph already exists thanks to inversion expression.");
-						result = (Resource) sameGeneratedRDFTerm.get(rm);
-						break;
-					}
-				}
-				if (result == null) {
-					// Generated RDF Term not found : run inversion search
-					performInverseExpression(smFromRow, tm, triplesMap
-							.getLogicalTable().getEffectiveSQLQuery());
-					// Generate RDF Term
-					String value = tm.getValue(smFromRow, meta);
-					if (value == null)
-						return null;
-					result = (Resource) generateRDFTerm(tm, value);
-					// Store Generated RDF Term
-					if (sameGeneratedRDFTerm.containsKey(tm)) {
-						sameGeneratedRDFTerm.get(tm).put(rows.getRow(), result);
-					} else {
-						Map<Integer, Value> sameGeneratedRDFTermMap = new HashMap<Integer, Value>();
-						sameGeneratedRDFTermMap.put(rows.getRow(), result);
-						sameGeneratedRDFTerm.put(tm, sameGeneratedRDFTermMap);
-					}
+			InverseExpressionIndex index = getInverseExpressionIndex(tm);
+			String key = index.buildKey(smFromRow);
+			if (key != null) {
+				result = index.get(key);
+				if (result != null) {
+					log.debug("[R2RMLEngine:extractValueFromTermMap] Generated RDF term already exists thanks to inversion expression.");
+					return result;
 				}
 			}
+			// Generate RDF Term
+			String value = tm.getValue(smFromRow, meta);
+			if (value == null)
+				return null;
+			result = generateRDFTerm(tm, value);
+			// Store Generated RDF Term
+			if (key != null)
+				index.put(key, result);
+		} else if (tm instanceof SubjectMap
+				&& tm.getTermMapType() != TermMapType.FUNCTION_CALL_VALUED) {
+			// Subjects are generated again for each referencing row and
+			// each parent row of a join
+			GeneratedTermCache cache = subjectCaches.get(tm);
+			if (cache == null) {
+				cache = new GeneratedTermCache(tm,
+						GeneratedTermCache.DEFAULT_MAX_ENTRIES);
+				subjectCaches.put(tm, cache);
+			}
+			String key = cache.buildKey(smFromRow);
+			if (key != null) {
+				result = cache.get(key);
+				if (result != null)
+					return result;
+			}
+			String value = tm.getValue(smFromRow, meta);
+			result = generateRDFTerm(tm, value);
+			if (key != null && result != null)
+				cache.put(key, result);
 		} else {
 			String value = tm.getValue(smFromRow, meta);
 			result = generateRDFTerm(tm, value);
@@ -565,7 +1094,7 @@ public class R2RMLEngine {
 	}
 
 	private void generateRDFTriplesFromPredicateObjectMap(
-			SesameDataSet sesameDataSet, TriplesMap triplesMap,
+			TripleSink sink, TriplesMap triplesMap,
 			Resource subject, Set<URI> subjectGraphs,
 			PredicateObjectMap predicateObjectMap) throws SQLException,
 			R2RMLDataError, UnsupportedEncodingException {		
@@ -633,7 +1162,7 @@ public class R2RMLEngine {
 		// add triples to the output dataset
 		for (URI predicate : predicates) {
 			for (Value object : objects) {
-				addTriplesToTheOutputDataset(sesameDataSet, subject, predicate,
+				addTriplesToTheOutputDataset(sink, subject, predicate,
 						object, predicate_object_graphs);
 			}
 		}
@@ -644,13 +1173,13 @@ public class R2RMLEngine {
 	 * inputs: Subject, an IRI or blank node or empty Predicate, an IRI or empty
 	 * Object, an RDF term or empty Target graphs, a set of zero or more IRIs
 	 * 
-	 * @param sesameDataSet
+	 * @param sink
 	 * @param subject
 	 * @param predicate
 	 * @param object
 	 * @param targetGraphs
 	 */
-	private void addTriplesToTheOutputDataset(SesameDataSet sesameDataSet,
+	private void addTriplesToTheOutputDataset(TripleSink sink,
 			Resource subject, URI predicate, Value object, Set<URI> targetGraphs) {
 
 		// 1. If Subject, Predicate or Object is empty, then abort these steps.
@@ -661,7 +1190,8 @@ public class R2RMLEngine {
 		if (targetGraphs.isEmpty()) {
 			// add the triple to the default graph of the output dataset.
 			triple = vf.createStatement(subject, predicate, object);
-			sesameDataSet.addStatement(triple);
+			sink.addStatement(triple);
+			nbTriples++;
 			log.debug("[R2RMLEngine:addStatement] Added new statement : " + triple);
 		}
 		for (URI targetGraph : targetGraphs) {
@@ -678,47 +1208,14 @@ public class R2RMLEngine {
 				triple = vf.createStatement(subject, predicate, object,
 						targetGraph);
 			}
-			sesameDataSet.addStatement(triple);
+			sink.addStatement(triple);
+			nbTriples++;
 			log.debug("[R2RMLEngine:addStatement] Added new statement : " + triple);
 		}
 	}
 
 	private Map<ColumnIdentifier, byte[]> applyValueToRow(TermMap tm) throws SQLException {
-		Map<ColumnIdentifier, byte[]> result = new HashMap<ColumnIdentifier, byte[]>();
-		Set<ColumnIdentifier> columns = tm.getReferencedColumns();
-		for (ColumnIdentifier column : columns) {
-		    log.debug("[R2RMLEngine:applyValueToRow] Iterate over : "
-				+ column);
-
-		    int i;
-		    final ResultSetMetaData metaData = rows.getMetaData();
-		    int n = metaData.getColumnCount();
-		    boolean found = false;
-		    for (i = 1; i <= n; i++) {
-			ColumnIdentifier cId = ColumnIdentifierImpl.buildFromJDBCResultSet(metaData, i);
-			log.debug("[R2RMLEngine:applyValueToRow] Test column : " + cId);
-			if(cId.equals(column)) {
-				log.debug("[R2RMLEngine:applyValueToRow] Value found : \""
-					+ rows.getString(i) +"\" (Type: "+cId.getSqlType()+")");
-				byte[] rawData = rows.getBytes(i);
-				
-				// http://bugs.mysql.com/bug.php?id=65943
-				if(rawData != null &&
-					R2RMLProcessor.getDriverType().equals(DriverType.MysqlDriver) &&
-					cId.getSqlType() == SQLType.CHAR) {
-				    rawData = rows.getString(i).getBytes();
-				}
-				result.put(cId, rawData);
-				found = true;
-				break;
-			}
-		    }
-		    if (!found)
-			// Second chance fails...
-			throw new SQLException("[R2RMLEngine:applyValueToRow] Unknown column : "
-								+ column);
-		}
-		return result;
+		return plan.extractValues(rows, tm);
 	}
 
 	/**
@@ -868,23 +1365,7 @@ public class R2RMLEngine {
 
 	private SQLType extractImplicitDatatype(TermMap objectMap)
 			throws SQLException {
-		SQLType result = null;
-		if (objectMap.getTermMapType() != TermMapType.TEMPLATE_VALUED
-				&& objectMap.getTermMapType() != TermMapType.FUNCTION_CALL_VALUED // do not assume type, needs to be declared by mapper.
-				&& objectMap.getTermType() == TermType.LITERAL
-				&& objectMap.getConstantValue() == null) {
-			for (int i = 1; i <= meta.getColumnCount(); i++) {
-				ColumnIdentifier referencedColumn = objectMap.getReferencedColumns()
-					.iterator().next();
-				ColumnIdentifier curCol = ColumnIdentifierImpl.buildFromJDBCResultSet(meta, i);
-			    	if(curCol.equals(referencedColumn)) {
-			    	    result = SQLType.toSQLType(meta.getColumnType(i));
-			    	    log.debug("[R2RMLEngine:extractImplicitDatatype] Extracted implicit datatype :  "
-								+ result);
-				}
-			}
-		}
-		return result;
+		return plan.getImplicitDatatype(objectMap);
 	}
 
 	/**
@@ -935,12 +1416,11 @@ public class R2RMLEngine {
 	}
 
 	/**
-	 * Construct logical table. Note : Run SQL Query against database calling
-	 * the method Connection.commit can close the ResultSet objects that have
-	 * been created during the current transaction. In some cases, however, this
-	 * may not be the desired behavior. The ResultSet property holdability gives
-	 * the application control over whether ResultSet objects (cursors) are
-	 * closed when commit is called.
+	 * Construct logical table. Its rows are fetched from the database while
+	 * they are read (see setFetchSize). Note : calling the method
+	 * Connection.commit can close the ResultSet objects (cursors) that have
+	 * been created during the current transaction : the connection is not
+	 * committed while a logical table is read.
 	 * 
 	 * @param triplesMap
 	 * @throws SQLException
@@ -950,12 +1430,12 @@ public class R2RMLEngine {
 		log.debug("[R2RMLEngine:constructLogicalTable] Run effective SQL Query : "
 				+ triplesMap.getLogicalTable().getEffectiveSQLQuery());
 		ResultSet rs = null;
-		java.sql.Statement s = conn.createStatement(
-				ResultSet.HOLD_CURSORS_OVER_COMMIT, ResultSet.CONCUR_READ_ONLY);
 		if (triplesMap.getLogicalTable().getEffectiveSQLQuery() != null) {
-
-			s.executeQuery(triplesMap.getLogicalTable().getEffectiveSQLQuery());
-			rs = s.getResultSet();
+			java.sql.PreparedStatement s = SQLConnector
+					.prepareStreamingStatement(conn, R2RMLProcessor
+							.getDriverType(), triplesMap.getLogicalTable()
+							.getEffectiveSQLQuery(), fetchSize);
+			rs = s.executeQuery();
 			if (rs == null)
 				throw new IllegalStateException(
 						"[R2RMLEngine:constructLogicalTable] SQL request "
@@ -965,9 +1445,6 @@ public class R2RMLEngine {
 			throw new IllegalStateException(
 					"[R2RMLEngine:constructLogicalTable] No effective SQL query has been found.");
 		}
-		// Commit to held logical table (read-only)
-		conn.setAutoCommit(false);
-		conn.commit();
 		return rs;
 	}
 
@@ -976,11 +1453,12 @@ public class R2RMLEngine {
 		log.debug("[R2RMLEngine:constructJointTable] Run joint SQL Query : "
 				+ refObjectMap.getJointSQLQuery());
 		ResultSet rs = null;
-		java.sql.Statement s = conn.createStatement(
-				ResultSet.HOLD_CURSORS_OVER_COMMIT, ResultSet.CONCUR_READ_ONLY);
 		if (refObjectMap.getJointSQLQuery() != null) {
-			s.executeQuery(refObjectMap.getJointSQLQuery());
-			rs = s.getResultSet();
+			java.sql.PreparedStatement s = SQLConnector
+					.prepareStreamingStatement(conn, R2RMLProcessor
+							.getDriverType(), refObjectMap.getJointSQLQuery(),
+							fetchSize);
+			rs = s.executeQuery();
 			if (rs == null)
 				throw new IllegalStateException(
 						"[R2RMLEngine:constructJointTable] SQL request "
@@ -991,22 +1469,4 @@ public class R2RMLEngine {
 		}
 		return rs;
 	}
-
-	private ResultSet constructInversionTable(String instantiation,
-			String effectiveSQLQuery) throws SQLException {
-		String sqlQuery = "SELECT * FROM (" + effectiveSQLQuery
-				+ ") AS tmp WHERE " + instantiation + ";";
-		log.debug("[R2RMLEngine:constructInversionTable] Run inversion SQL Query : "
-				+ sqlQuery);
-		ResultSet rs = null;
-		java.sql.Statement s = conn.createStatement(
-				ResultSet.HOLD_CURSORS_OVER_COMMIT, ResultSet.CONCUR_READ_ONLY);
-		s.executeQuery(sqlQuery);
-		rs = s.getResultSet();
-		if (rs == null)
-			throw new IllegalStateException(
-					"[R2RMLEngine:constructInversionTable] SQL request "
-							+ "failed : result of effective SQL query is null.");
-		return rs;
-	}
 }
@@ -0,0 +1,181 @@
+/* 
+ * Copyright 2011-2013 Antidot opensource@antidot.net
+ * https://github.com/antidot/db2triples
+ * 
+ * This file is part of DB2Triples
+ *
+ * DB2Triples is free software; you can redistribute it and/or 
+ * modify it under the terms of the GNU Lesser General Public License as 
+ * published by the Free Software Foundation; either version 2 of 
+ * the License, or (at your option) any later version.
+ * 
+ * DB2Triples is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+/***************************************************************************
+ *
+ * R2RML : R2RML Mapping Cache
+ *
+ * Directory of compiled R2RML mappings : a validated mapping (with its
+ * compiled templates and functions) is serialized in a binary file named
+ * after the hash of its mapping document, then read directly by later
+ * runs instead of parsing and checking this document again.
+ *
+ ****************************************************************************/
+package net.antidot.semantic.rdf.rdb2rdf.r2rml.core;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+import net.antidot.semantic.rdf.rdb2rdf.r2rml.model.R2RMLMapping;
+import net.antidot.sql.model.core.DriverType;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+public class R2RMLMappingCache {
+
+	// Log
+	private static Log log = LogFactory.getLog(R2RMLMappingCache.class);
+
+	// Version of the serialized model, part of the key of each mapping
+	private static final int FORMAT_VERSION = 2;
+
+	private static final String EXTENSION = ".r2rml.bin";
+
+	private File directory;
+
+	public R2RMLMappingCache(File directory) {
+		if (directory == null)
+			throw new IllegalArgumentException(
+					"[R2RMLMappingCache:R2RMLMappingCache] No cache directory found.");
+		this.directory = directory;
+	}
+
+	public File getDirectory() {
+		return directory;
+	}
+
+	/**
+	 * Key of a mapping document : SHA-256 hash of its content, of its IRI
+	 * (relative IRIs of the document are resolved against it), of the driver
+	 * used to extract it (column identifiers depend on this driver) and of
+	 * the format version.
+	 * 
+	 * @param mappingDocument
+	 * @param driver
+	 * @return
+	 * @throws IOException
+	 */
+	public static String buildKey(File mappingDocument, DriverType driver)
+			throws IOException {
+		MessageDigest digest;
+		try {
+			digest = MessageDigest.getInstance("SHA-256");
+		} catch (NoSuchAlgorithmException e) {
+			throw new IllegalStateException(
+					"[R2RMLMappingCache:buildKey] SHA-256 is not supported by this JVM.");
+		}
+		digest.update((FORMAT_VERSION + "\n"
+				+ mappingDocument.getAbsoluteFile().toURI().toString() + "\n"
+				+ (driver == null ? "" : driver.getDriverName()) + "\n")
+				.getBytes("UTF-8"));
+		InputStream in = new FileInputStream(mappingDocument);
+		try {
+			byte[] buffer = new byte[8192];
+			int n;
+			while ((n = in.read(buffer)) != -1)
+				digest.update(buffer, 0, n);
+		} finally {
+			in.close();
+		}
+		StringBuilder result = new StringBuilder();
+		for (byte b : digest.digest()) {
+			result.append(Character.forDigit((b >> 4) & 0x0F, 16));
+			result.append(Character.forDigit(b & 0x0F, 16));
+		}
+		return result.toString();
+	}
+
+	/**
+	 * Compiled mapping of this key, null if it is not cached or can not be
+	 * read (an unreadable file is removed).
+	 * 
+	 * @param key
+	 * @return
+	 */
+	public R2RMLMapping load(String key) {
+		File file = new File(directory, key + EXTENSION);
+		if (!file.isFile())
+			return null;
+		try {
+			ObjectInputStream in = new ObjectInputStream(
+					new BufferedInputStream(new FileInputStream(file)));
+			try {
+				return (R2RMLMapping) in.readObject();
+			} finally {
+				in.close();
+			}
+		} catch (Exception e) {
+			// Corrupted file or file written by another version
+			log.warn("[R2RMLMappingCache:load] Compiled mapping " + file
+					+ " can not be read : " + e.getMessage());
+			if (!file.delete())
+				log.warn("[R2RMLMappingCache:load] Compiled mapping " + file
+						+ " can not be removed.");
+			return null;
+		}
+	}
+
+	/**
+	 * Serialize a compiled mapping under this key. The file is written under
+	 * a temporary name then renamed so that concurrent runs never read a
+	 * partial file.
+	 * 
+	 * @param key
+	 * @param r2rmlMapping
+	 * @throws IOException
+	 */
+	public void store(String key, R2RMLMapping r2rmlMapping)
+			throws IOException {
+		if (!directory.isDirectory() && !directory.mkdirs())
+			throw new IOException("[R2RMLMappingCache:store] Cache directory "
+					+ directory + " can not be created.");
+		File file = new File(directory, key + EXTENSION);
+		File tmp = File.createTempFile(key, ".tmp", directory);
+		try {
+			ObjectOutputStream out = new ObjectOutputStream(
+					new BufferedOutputStream(new FileOutputStream(tmp)));
+			try {
+				out.writeObject(r2rmlMapping);
+			} finally {
+				out.close();
+			}
+			if (!tmp.renameTo(file)) {
+				// Replaced by a concurrent run (or renaming is not atomic)
+				file.delete();
+				if (!tmp.renameTo(file))
+					throw new IOException(
+							"[R2RMLMappingCache:store] Compiled mapping "
+									+ file + " can not be written.");
+			}
+		} finally {
+			tmp.delete();
+		}
+	}
+
+}
@@ -50,16 +50,15 @@ import org.openrdf.model.vocabulary.RDF;
 import org.openrdf.repository.RepositoryException;
 import org.openrdf.rio.RDFFormat;
 import org.openrdf.rio.RDFParseException;
-import org.openrdf.sail.memory.model.MemResource;
 
-import net.antidot.semantic.rdf.model.impl.sesame.SesameDataSet;
 import net.antidot.semantic.rdf.rdb2rdf.r2rml.core.R2RMLVocabulary.R2RMLTerm;
 import net.antidot.semantic.rdf.rdb2rdf.r2rml.core.R2RMLVocabulary.RRFTerm;
 import net.antidot.semantic.rdf.rdb2rdf.r2rml.exception.InvalidR2RMLStructureException;
 import net.antidot.semantic.rdf.rdb2rdf.r2rml.exception.InvalidR2RMLSyntaxException;
 import net.antidot.semantic.rdf.rdb2rdf.r2rml.exception.R2RMLDataError;
 import net.antidot.semantic.rdf.rdb2rdf.r2rml.function.FunctionCall;
-import net.antidot.semantic.rdf.rdb2rdf.r2rml.function.JSEnv;
+import net.antidot.semantic.rdf.rdb2rdf.r2rml.function.FunctionRuntime;
+import net.antidot.semantic.rdf.rdb2rdf.r2rml.function.JavaFunctions;
 import net.antidot.semantic.rdf.rdb2rdf.r2rml.model.GraphMap;
 import net.antidot.semantic.rdf.rdb2rdf.r2rml.model.JoinCondition;
 import net.antidot.semantic.rdf.rdb2rdf.r2rml.model.LogicalTable;
@@ -119,8 +118,8 @@ public abstract class R2RMLMappingFactory {
 	public static R2RMLMapping extractR2RMLMapping(String fileToR2RMLFile, DriverType driver)
 			throws InvalidR2RMLStructureException, InvalidR2RMLSyntaxException,
 			R2RMLDataError, RepositoryException, RDFParseException, IOException {
-		// Load RDF data from R2RML Mapping document
-		SesameDataSet r2rmlMappingGraph = new SesameDataSet();
+		// Load and index RDF data from R2RML Mapping document
+		R2RMLMappingGraph r2rmlMappingGraph = new R2RMLMappingGraph();
 		r2rmlMappingGraph.loadDataFromFile(fileToR2RMLFile, RDFFormat.TURTLE);
 		log.debug("[R2RMLMappingFactory:extractR2RMLMapping] Number of R2RML triples in file "
 				+ fileToR2RMLFile + " : " + r2rmlMappingGraph.getSize());
@@ -129,7 +128,8 @@ public abstract class R2RMLMappingFactory {
 		// Run few tests to help user in its RDF syntax
 		launchPreChecks(r2rmlMappingGraph);
 		
-		// Load Scripts
+		// Compile Scripts
+		FunctionRuntime functionRuntime = new FunctionRuntime();
 		try {
 			URI p_body = r2rmlMappingGraph.URIref(R2RMLVocabulary.RRF_NAMESPACE + RRFTerm.FUNCTION_BODY);
 			URI p_name = r2rmlMappingGraph.URIref(R2RMLVocabulary.RRF_NAMESPACE + RRFTerm.FUNCTION_NAME);
@@ -150,7 +150,7 @@ public abstract class R2RMLMappingFactory {
 				functionnames.add(name);
 				
 				String code = statement.getObject().stringValue();
-				JSEnv.loadCode(code);
+				functionRuntime.declare(name, code);
 			}
 		} catch (ScriptException e) {
 			throw new R2RMLDataError("Something wrong with one of the scripts: " + e.getMessage());
@@ -168,9 +168,10 @@ public abstract class R2RMLMappingFactory {
 		for (Resource triplesMapResource : triplesMapResources.keySet())
 			// Extract each triplesMap
 			extractTriplesMap(r2rmlMappingGraph, triplesMapResource,
-					triplesMapResources);
+					triplesMapResources, functionRuntime);
 		// Generate R2RMLMapping object
-		R2RMLMapping result = new R2RMLMapping(triplesMapResources.values());
+		R2RMLMapping result = new R2RMLMapping(triplesMapResources.values(),
+				functionRuntime);
 		return result;
 	}
 
@@ -182,7 +183,7 @@ public abstract class R2RMLMappingFactory {
 	 * 
 	 * @param r2rmlMappingGraph
 	 */
-	private static void replaceShortcuts(SesameDataSet r2rmlMappingGraph) {
+	private static void replaceShortcuts(R2RMLMappingGraph r2rmlMappingGraph) {
 		Map<URI, URI> shortcutPredicates = new HashMap<URI, URI>();
 		shortcutPredicates.put(
 				vf.createURI(R2RMLVocabulary.R2RML_NAMESPACE
@@ -238,7 +239,7 @@ public abstract class R2RMLMappingFactory {
 	 * @throws InvalidR2RMLStructureException
 	 */
 	private static Map<Resource, TriplesMap> extractTripleMapResources(
-			SesameDataSet r2rmlMappingGraph)
+			R2RMLMappingGraph r2rmlMappingGraph)
 			throws InvalidR2RMLStructureException {
 		// A triples map is represented by a resource that references the
 		// following other resources :
@@ -275,7 +276,7 @@ public abstract class R2RMLMappingFactory {
 		return triplesMapResources;
 	}
 
-	private static void launchPreChecks(SesameDataSet r2rmlMappingGraph)
+	private static void launchPreChecks(R2RMLMappingGraph r2rmlMappingGraph)
 			throws InvalidR2RMLStructureException {
 		// Pre-check 1 : test if a triplesMap with predicateObject map exists
 		// without subject map
@@ -307,9 +308,10 @@ public abstract class R2RMLMappingFactory {
 	 * @throws InvalidR2RMLSyntaxException
 	 * @throws R2RMLDataError
 	 */
-	private static void extractTriplesMap(SesameDataSet r2rmlMappingGraph,
+	private static void extractTriplesMap(R2RMLMappingGraph r2rmlMappingGraph,
 			Resource triplesMapSubject,
-			Map<Resource, TriplesMap> triplesMapResources)
+			Map<Resource, TriplesMap> triplesMapResources,
+			FunctionRuntime functionRuntime)
 			throws InvalidR2RMLStructureException, InvalidR2RMLSyntaxException,
 			R2RMLDataError {
 
@@ -335,7 +337,7 @@ public abstract class R2RMLMappingFactory {
 		// Extract predicate-object maps
 		Set<PredicateObjectMap> predicateObjectMaps = extractPredicateObjectMaps(
 				r2rmlMappingGraph, triplesMapSubject, graphMaps, result,
-				triplesMapResources);
+				triplesMapResources, functionRuntime);
 		log.debug("[R2RMLMappingFactory:extractTriplesMap] Current number of created graphMaps : "
 			+ graphMaps.size());
 		// Fill triplesMap
@@ -348,9 +350,10 @@ public abstract class R2RMLMappingFactory {
 	}
 
 	private static Set<PredicateObjectMap> extractPredicateObjectMaps(
-			SesameDataSet r2rmlMappingGraph, Resource triplesMapSubject,
+			R2RMLMappingGraph r2rmlMappingGraph, Resource triplesMapSubject,
 			Set<GraphMap> graphMaps, TriplesMap result,
-			Map<Resource, TriplesMap> triplesMapResources)
+			Map<Resource, TriplesMap> triplesMapResources,
+			FunctionRuntime functionRuntime)
 			throws InvalidR2RMLStructureException, R2RMLDataError,
 			InvalidR2RMLSyntaxException {
 		log.debug("[R2RMLMappingFactory:extractPredicateObjectMaps] Extract predicate-object maps...");
@@ -364,7 +367,7 @@ public abstract class R2RMLMappingFactory {
 			for (Statement statement : statements) {
 				PredicateObjectMap predicateObjectMap = extractPredicateObjectMap(
 						r2rmlMappingGraph, (Resource) statement.getObject(),
-						graphMaps, triplesMapResources);
+						graphMaps, triplesMapResources, functionRuntime);
 				// Add own tripleMap to predicateObjectMap
 				predicateObjectMap.setOwnTriplesMap(result);
 				predicateObjectMaps.add(predicateObjectMap);
@@ -381,10 +384,11 @@ public abstract class R2RMLMappingFactory {
 	}
 
 	private static PredicateObjectMap extractPredicateObjectMap(
-			SesameDataSet r2rmlMappingGraph,
+			R2RMLMappingGraph r2rmlMappingGraph,
 			Resource predicateObject,
 			Set<GraphMap> savedGraphMaps,
-			Map<Resource, TriplesMap> triplesMapResources)
+			Map<Resource, TriplesMap> triplesMapResources,
+			FunctionRuntime functionRuntime)
 			throws InvalidR2RMLStructureException, R2RMLDataError,
 			InvalidR2RMLSyntaxException {
 		log.debug("[R2RMLMappingFactory:extractPredicateObjectMap] Extract predicate-object map..");
@@ -435,7 +439,8 @@ public abstract class R2RMLMappingFactory {
 					continue;
 				}
 				ObjectMap objectMap = extractObjectMap(r2rmlMappingGraph,
-						(Resource) statement.getObject(), savedGraphMaps);
+						(Resource) statement.getObject(), savedGraphMaps,
+						functionRuntime);
 				if (objectMap != null)
 					objectMaps.add(objectMap);
 			}
@@ -476,7 +481,7 @@ public abstract class R2RMLMappingFactory {
 	}
 
 	private static ReferencingObjectMap extractReferencingObjectMap(
-			SesameDataSet r2rmlMappingGraph, Resource object,
+			R2RMLMappingGraph r2rmlMappingGraph, Resource object,
 			Set<GraphMap> graphMaps,
 			Map<Resource, TriplesMap> triplesMapResources)
 			throws InvalidR2RMLStructureException, InvalidR2RMLSyntaxException {
@@ -525,7 +530,7 @@ public abstract class R2RMLMappingFactory {
 	}
 
 	private static Set<JoinCondition> extractJoinConditions(
-			SesameDataSet r2rmlMappingGraph, Resource object)
+			R2RMLMappingGraph r2rmlMappingGraph, Resource object)
 			throws InvalidR2RMLStructureException, InvalidR2RMLSyntaxException {
 		log.debug("[R2RMLMappingFactory:extractJoinConditions] Extract join conditions..");
 		Set<JoinCondition> result = new HashSet<JoinCondition>();
@@ -558,8 +563,9 @@ public abstract class R2RMLMappingFactory {
 		return result;
 	}
 
-	private static ObjectMap extractObjectMap(SesameDataSet r2rmlMappingGraph,
-			Resource object, Set<GraphMap> graphMaps)
+	private static ObjectMap extractObjectMap(R2RMLMappingGraph r2rmlMappingGraph,
+			Resource object, Set<GraphMap> graphMaps,
+			FunctionRuntime functionRuntime)
 			throws InvalidR2RMLStructureException, R2RMLDataError,
 			InvalidR2RMLSyntaxException {
 		log.debug("[R2RMLMappingFactory:extractObjectMap] Extract object map..");
@@ -582,7 +588,7 @@ public abstract class R2RMLMappingFactory {
 		
 		// BEGIN CHANGED BY CHRISTOPHE
 		
-		FunctionCall functionCall = extractFunctionCallFromTermMap(r2rmlMappingGraph, object, RRFTerm.FUNCTION_CALL, graphMaps);
+		FunctionCall functionCall = extractFunctionCallFromTermMap(r2rmlMappingGraph, object, RRFTerm.FUNCTION_CALL, graphMaps, functionRuntime);
 		
 		StdObjectMap result = new StdObjectMap(null, constantValue, dataType,
 				languageTag, stringTemplate, termType, inverseExpression,
@@ -595,9 +601,10 @@ public abstract class R2RMLMappingFactory {
 	}
 
 	private static FunctionCall extractFunctionCallFromTermMap(
-				SesameDataSet r2rmlMappingGraph, 
+				R2RMLMappingGraph r2rmlMappingGraph, 
 				Resource termType,
-				RRFTerm term, Set<GraphMap> graphMaps) throws InvalidR2RMLStructureException {
+				RRFTerm term, Set<GraphMap> graphMaps,
+				FunctionRuntime functionRuntime) throws InvalidR2RMLStructureException {
 		
 		URI p = r2rmlMappingGraph.URIref(R2RMLVocabulary.RRF_NAMESPACE + term);
 		List<Statement> statements = r2rmlMappingGraph.tuplePattern(termType, p, null);
@@ -610,7 +617,7 @@ public abstract class R2RMLMappingFactory {
 							+ " has too many " + term + " predicate defined.");
 		}
 		
-		MemResource r = (MemResource) statements.get(0).getObject();
+		Resource r = (Resource) statements.get(0).getObject();
 		// iterate over the statement lists. A function call needs a function
 		// name and a Collection of arguments
 		
@@ -628,11 +635,37 @@ public abstract class R2RMLMappingFactory {
 		Resource functionToCall = (Resource) stmts.get(0).getObject();
 		List<Statement> stmts2 = r2rmlMappingGraph.tuplePattern(functionToCall, functionName, null);
 		
-		// Functions were already preprocessed, so we shouldn't check on existence of 
-		// a function name!
+		// Functions with a body were already preprocessed, other ones
+		// must be Java functions
+		if(stmts2.size() != 1) {
+			throw new InvalidR2RMLStructureException(
+					"[R2RMLMappingFactory:extractFunctionCallFromTermMap] function must have exactly one name.");
+		}
 		
 		String name = stmts2.get(0).getObject().stringValue();
 		functioncall.setFunctionName(name);
+		functioncall.setFunction(functionRuntime.getFunction(name));
+		if(functioncall.getFunction() == null) {
+			functioncall.setJavaFunction(JavaFunctions.getFunction(name));
+			if(functioncall.getJavaFunction() == null)
+				throw new InvalidR2RMLStructureException(
+						"[R2RMLMappingFactory:extractFunctionCallFromTermMap] unknown function " + name + ".");
+		}
+		
+		// Results of a deterministic function are cached
+		URI deterministic = r2rmlMappingGraph.URIref(R2RMLVocabulary.RRF_NAMESPACE + RRFTerm.DETERMINISTIC);
+		stmts2 = r2rmlMappingGraph.tuplePattern(functionToCall, deterministic, null);
+		if(stmts2.size() > 1) {
+			throw new InvalidR2RMLStructureException(
+					"[R2RMLMappingFactory:extractFunctionCallFromTermMap] function " + name + " has too many " + RRFTerm.DETERMINISTIC + " predicate defined.");
+		} else if(stmts2.size() == 1) {
+			String value = stmts2.get(0).getObject().stringValue();
+			if(!value.equals("true") && !value.equals("false"))
+				throw new InvalidR2RMLStructureException(
+						"[R2RMLMappingFactory:extractFunctionCallFromTermMap] " + RRFTerm.DETERMINISTIC + " of function " + name + " must be a boolean.");
+			if(value.equals("true"))
+				functioncall.setCache(functionRuntime.getCache(name));
+		}
 		
 		// Get the parameter bindings of the function
 		predicate = r2rmlMappingGraph.URIref(R2RMLVocabulary.RRF_NAMESPACE + RRFTerm.PARAMETER_BINDINGS);
@@ -647,13 +680,13 @@ public abstract class R2RMLMappingFactory {
 		if(stmts.size() == 0) {
 			// functions with no parameter bindings are allowed
 		} else {
-			MemResource object = (MemResource) stmts.get(0).getObject();
+			Resource object = (Resource) stmts.get(0).getObject();
 			while(true){
 				stmts = r2rmlMappingGraph.tuplePattern(object, RDF.FIRST, null);
 				if(stmts.size() == 1) {
-					MemResource first = (MemResource) stmts.get(0).getObject();
+					Resource first = (Resource) stmts.get(0).getObject();
 					try {
-						ObjectMap objectmap = extractObjectMap(r2rmlMappingGraph, first, graphMaps);
+						ObjectMap objectmap = extractObjectMap(r2rmlMappingGraph, first, graphMaps, functionRuntime);
 						list.add(objectmap);
 					} catch (Exception e) {
 						throw new InvalidR2RMLStructureException(
@@ -661,7 +694,7 @@ public abstract class R2RMLMappingFactory {
 					}
 					
 					stmts = r2rmlMappingGraph.tuplePattern(object, RDF.REST, null);
-					object = (MemResource) stmts.get(0).getObject();
+					object = (Resource) stmts.get(0).getObject();
 				} else {
 					break;
 				}
@@ -677,7 +710,7 @@ public abstract class R2RMLMappingFactory {
 	}
 
 	private static PredicateMap extractPredicateMap(
-			SesameDataSet r2rmlMappingGraph, Resource object,
+			R2RMLMappingGraph r2rmlMappingGraph, Resource object,
 			Set<GraphMap> graphMaps) throws InvalidR2RMLStructureException,
 			R2RMLDataError, InvalidR2RMLSyntaxException {
 		log.debug("[R2RMLMappingFactory:extractPredicateMap] Extract predicate map..");
@@ -711,7 +744,7 @@ public abstract class R2RMLMappingFactory {
 	 * @throws R2RMLDataError
 	 */
 	private static SubjectMap extractSubjectMap(
-			SesameDataSet r2rmlMappingGraph, Resource triplesMapSubject,
+			R2RMLMappingGraph r2rmlMappingGraph, Resource triplesMapSubject,
 			Set<GraphMap> savedGraphMaps, TriplesMap ownTriplesMap)
 			throws InvalidR2RMLStructureException, R2RMLDataError,
 			InvalidR2RMLSyntaxException {
@@ -779,7 +812,7 @@ public abstract class R2RMLMappingFactory {
 		return result;
 	}
 
-	private static GraphMap extractGraphMap(SesameDataSet r2rmlMappingGraph,
+	private static GraphMap extractGraphMap(R2RMLMappingGraph r2rmlMappingGraph,
 			Resource graphMap) throws InvalidR2RMLStructureException,
 			R2RMLDataError, InvalidR2RMLSyntaxException {
 		log.debug("[R2RMLMappingFactory:extractPredicateObjectMaps] Extract graph map...");
@@ -812,7 +845,7 @@ public abstract class R2RMLMappingFactory {
 	 * @throws InvalidR2RMLStructureException
 	 */
 	private static String extractLiteralFromTermMap(
-			SesameDataSet r2rmlMappingGraph, Resource termType, R2RMLTerm term)
+			R2RMLMappingGraph r2rmlMappingGraph, Resource termType, R2RMLTerm term)
 			throws InvalidR2RMLStructureException {
 		URI p = r2rmlMappingGraph
 				.URIref(R2RMLVocabulary.R2RML_NAMESPACE + term);
@@ -838,7 +871,7 @@ public abstract class R2RMLMappingFactory {
 	 * @throws InvalidR2RMLStructureException
 	 */
 	private static Value extractValueFromTermMap(
-			SesameDataSet r2rmlMappingGraph, Resource termType,
+			R2RMLMappingGraph r2rmlMappingGraph, Resource termType,
 			R2RMLVocabulary.R2RMLTerm term)
 			throws InvalidR2RMLStructureException {
 		URI p = r2rmlMappingGraph
@@ -864,7 +897,7 @@ public abstract class R2RMLMappingFactory {
 	 * @throws InvalidR2RMLStructureException
 	 */
 	private static Set<Value> extractValuesFromResource(
-			SesameDataSet r2rmlMappingGraph,
+			R2RMLMappingGraph r2rmlMappingGraph,
 			Resource termType,
 			R2RMLVocabulary.R2RMLTerm term)
 			throws InvalidR2RMLStructureException {
@@ -891,7 +924,7 @@ public abstract class R2RMLMappingFactory {
 	 * @throws InvalidR2RMLStructureException
 	 */
 	private static Set<URI> extractURIsFromTermMap(
-			SesameDataSet r2rmlMappingGraph, Resource termType,
+			R2RMLMappingGraph r2rmlMappingGraph, Resource termType,
 			R2RMLVocabulary.R2RMLTerm term)
 			throws InvalidR2RMLStructureException {
 		URI p = r2rmlMappingGraph
@@ -921,7 +954,7 @@ public abstract class R2RMLMappingFactory {
 	 * @throws R2RMLDataError
 	 */
 	private static LogicalTable extractLogicalTable(
-			SesameDataSet r2rmlMappingGraph, Resource triplesMapSubject)
+			R2RMLMappingGraph r2rmlMappingGraph, Resource triplesMapSubject)
 			throws InvalidR2RMLStructureException, InvalidR2RMLSyntaxException,
 			R2RMLDataError {
 
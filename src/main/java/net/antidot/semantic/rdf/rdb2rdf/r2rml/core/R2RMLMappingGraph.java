@@ -0,0 +1,167 @@
+/* 
+ * Copyright 2011-2013 Antidot opensource@antidot.net
+ * https://github.com/antidot/db2triples
+ * 
+ * This file is part of DB2Triples
+ *
+ * DB2Triples is free software; you can redistribute it and/or 
+ * modify it under the terms of the GNU Lesser General Public License as 
+ * published by the Free Software Foundation; either version 2 of 
+ * the License, or (at your option) any later version.
+ * 
+ * DB2Triples is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+/***************************************************************************
+ *
+ * R2RML : R2RML Mapping Graph
+ *
+ * Statements of a R2RML mapping document, parsed in a single pass and
+ * indexed by subject and by predicate in memory. Each lookup of the
+ * mapping factory only reads the statements of one subject (or of one
+ * predicate) : the load time of a mapping grows linearly with its size.
+ *
+ ****************************************************************************/
+package net.antidot.semantic.rdf.rdb2rdf.r2rml.core;
+
+import java.io.BufferedInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.openrdf.model.Resource;
+import org.openrdf.model.Statement;
+import org.openrdf.model.URI;
+import org.openrdf.model.Value;
+import org.openrdf.model.ValueFactory;
+import org.openrdf.model.impl.ValueFactoryImpl;
+import org.openrdf.rio.RDFFormat;
+import org.openrdf.rio.RDFHandlerException;
+import org.openrdf.rio.RDFParseException;
+import org.openrdf.rio.RDFParser;
+import org.openrdf.rio.Rio;
+import org.openrdf.rio.helpers.RDFHandlerBase;
+
+public class R2RMLMappingGraph {
+
+	private ValueFactory vf = new ValueFactoryImpl();
+
+	// Each statement is stored once (as in a RDF store)
+	private Set<Statement> statements;
+	private Map<Resource, Set<Statement>> statementsBySubject;
+	private Map<URI, Set<Statement>> statementsByPredicate;
+
+	public R2RMLMappingGraph() {
+		statements = new LinkedHashSet<Statement>();
+		statementsBySubject = new HashMap<Resource, Set<Statement>>();
+		statementsByPredicate = new HashMap<URI, Set<Statement>>();
+	}
+
+	/**
+	 * Parse a mapping document. Relative IRIs are resolved against the IRI of
+	 * this file.
+	 * 
+	 * @param filePath
+	 * @param format
+	 * @throws RDFParseException
+	 * @throws IOException
+	 */
+	public void loadDataFromFile(String filePath, RDFFormat format)
+			throws RDFParseException, IOException {
+		File file = new File(filePath);
+		RDFParser parser = Rio.createParser(format, vf);
+		parser.setRDFHandler(new RDFHandlerBase() {
+			public void handleStatement(Statement st) {
+				add(st);
+			}
+		});
+		InputStream in = new BufferedInputStream(new FileInputStream(file));
+		try {
+			parser.parse(in, file.toURI().toString());
+		} catch (RDFHandlerException e) {
+			throw new IllegalStateException(
+					"[R2RMLMappingGraph:loadDataFromFile] Statement can not be indexed : "
+							+ e.getMessage(), e);
+		} finally {
+			in.close();
+		}
+	}
+
+	public URI URIref(String uri) {
+		return vf.createURI(uri);
+	}
+
+	public int getSize() {
+		return statements.size();
+	}
+
+	public void add(Resource s, URI p, Value o) {
+		add(vf.createStatement(s, p, o));
+	}
+
+	private void add(Statement st) {
+		if (!statements.add(st))
+			return;
+		index(statementsBySubject, st.getSubject(), st);
+		index(statementsByPredicate, st.getPredicate(), st);
+	}
+
+	private static <K> void index(Map<K, Set<Statement>> index, K key,
+			Statement st) {
+		Set<Statement> indexed = index.get(key);
+		if (indexed == null) {
+			indexed = new LinkedHashSet<Statement>();
+			index.put(key, indexed);
+		}
+		indexed.add(st);
+	}
+
+	public void remove(Resource s, URI p, Value o) {
+		Statement st = vf.createStatement(s, p, o);
+		if (!statements.remove(st))
+			return;
+		statementsBySubject.get(s).remove(st);
+		statementsByPredicate.get(p).remove(st);
+	}
+
+	/**
+	 * Statements matching a pattern (null matches any value), read from the
+	 * subject index or else from the predicate index.
+	 * 
+	 * @param s
+	 * @param p
+	 * @param o
+	 * @return
+	 */
+	public List<Statement> tuplePattern(Resource s, URI p, Value o) {
+		Collection<Statement> candidates;
+		if (s != null)
+			candidates = statementsBySubject.get(s);
+		else if (p != null)
+			candidates = statementsByPredicate.get(p);
+		else
+			candidates = statements;
+		List<Statement> result = new ArrayList<Statement>();
+		if (candidates == null)
+			return result;
+		for (Statement st : candidates)
+			if ((p == null || p.equals(st.getPredicate()))
+					&& (o == null || o.equals(st.getObject())))
+				result.add(st);
+		return result;
+	}
+
+}
@@ -27,16 +27,20 @@
  ****************************************************************************/
 package net.antidot.semantic.rdf.rdb2rdf.r2rml.core;
 
+import java.io.File;
 import java.io.IOException;
 import java.sql.Connection;
 import java.sql.SQLException;
 
+import net.antidot.semantic.rdf.model.TripleSink;
 import net.antidot.semantic.rdf.model.impl.sesame.SesameDataSet;
 import net.antidot.semantic.rdf.rdb2rdf.r2rml.exception.InvalidR2RMLStructureException;
 import net.antidot.semantic.rdf.rdb2rdf.r2rml.exception.InvalidR2RMLSyntaxException;
 import net.antidot.semantic.rdf.rdb2rdf.r2rml.exception.R2RMLDataError;
 import net.antidot.semantic.rdf.rdb2rdf.r2rml.model.R2RMLMapping;
+import net.antidot.sql.model.core.ConnectionPool;
 import net.antidot.sql.model.core.DriverType;
+import net.antidot.sql.model.core.SQLConnector;
 
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
@@ -57,6 +61,76 @@ public abstract class R2RMLProcessor {
 	    return driver;
 	}	
 	
+	// Memory budget of the hash join mode (disabled if 0)
+	private static long hashJoinMemory = 0;
+	
+	/**
+	 * Evaluate the joins of referencing object maps in the engine, with a
+	 * memory budget in bytes for each parent index (see
+	 * R2RMLEngine.setHashJoinMode). A zero budget disables this mode.
+	 */
+	public static void setHashJoinMode(long memoryBudget) {
+	    hashJoinMemory = memoryBudget;
+	}
+	
+	// Number of rows fetched at once from logical tables
+	private static int fetchSize = SQLConnector.DEFAULT_FETCH_SIZE;
+	
+	/**
+	 * Number of rows of logical tables and joint tables fetched at once from
+	 * the database (see R2RMLEngine.setFetchSize). A zero fetch size lets the
+	 * driver load every row in memory.
+	 */
+	public static void setFetchSize(int fetchSize) {
+	    R2RMLProcessor.fetchSize = fetchSize;
+	}
+	
+	// Cache of compiled mappings (disabled if null)
+	private static R2RMLMappingCache mappingCache = null;
+	
+	/**
+	 * Read compiled R2RML mappings from this directory (see
+	 * R2RMLMappingCache) instead of parsing their documents again, and
+	 * store the mappings compiled by this processor into it. A null
+	 * directory disables this cache.
+	 */
+	public static void setMappingCache(String directory) {
+	    if (directory == null)
+		mappingCache = null;
+	    else
+		mappingCache = new R2RMLMappingCache(new File(directory));
+	}
+	
+	/*
+	 * Extract R2RML Mapping object from the cache of compiled mappings if it
+	 * is enabled, from its mapping document otherwise.
+	 */
+	private static R2RMLMapping extractR2RMLMapping(
+			String pathToR2RMLMappingDocument, DriverType driver)
+			throws InvalidR2RMLStructureException, InvalidR2RMLSyntaxException,
+			R2RMLDataError, RepositoryException, RDFParseException, IOException {
+		R2RMLMappingCache cache = mappingCache;
+		if (cache == null)
+			return R2RMLMappingFactory.extractR2RMLMapping(pathToR2RMLMappingDocument, driver);
+		String key = R2RMLMappingCache.buildKey(new File(pathToR2RMLMappingDocument), driver);
+		R2RMLMapping result = cache.load(key);
+		if (result != null) {
+			log.info("[R2RMLMapper:extractR2RMLMapping] Compiled mapping " + key
+					+ " read from " + cache.getDirectory());
+			return result;
+		}
+		result = R2RMLMappingFactory.extractR2RMLMapping(pathToR2RMLMappingDocument, driver);
+		try {
+			cache.store(key, result);
+			log.info("[R2RMLMapper:extractR2RMLMapping] Compiled mapping " + key
+					+ " stored into " + cache.getDirectory());
+		} catch (IOException e) {
+			log.warn("[R2RMLMapper:extractR2RMLMapping] Compiled mapping can not be stored : "
+					+ e.getMessage());
+		}
+		return result;
+	}
+	
 	/**
 	 * Convert a database into a RDF graph from a database Connection
 	 * and a R2RML instance (with native storage).
@@ -70,6 +144,29 @@ public abstract class R2RMLProcessor {
 	public static SesameDataSet convertDatabase(Connection conn,
 			String pathToR2RMLMappingDocument, String baseIRI, String pathToNativeStore, DriverType driver) throws InstantiationException,
 			IllegalAccessException, ClassNotFoundException, SQLException, R2RMLDataError, InvalidR2RMLStructureException, InvalidR2RMLSyntaxException, RepositoryException, RDFParseException, IOException {
+		return convertDatabase(new R2RMLEngine(conn), pathToR2RMLMappingDocument, baseIRI, pathToNativeStore, driver);
+	}
+	
+	/**
+	 * Convert a database into a RDF graph (with native storage if a path is
+	 * given) from a pool of database connections and a R2RML instance. Triples
+	 * maps are run in parallel by at most parallelism workers.
+	 * @throws R2RMLDataError 
+	 * @throws InvalidR2RMLSyntaxException 
+	 * @throws InvalidR2RMLStructureException 
+	 * @throws IOException 
+	 * @throws RDFParseException 
+	 * @throws RepositoryException 
+	 */
+	public static SesameDataSet convertDatabase(ConnectionPool pool, int parallelism,
+			String pathToR2RMLMappingDocument, String baseIRI, String pathToNativeStore, DriverType driver) throws InstantiationException,
+			IllegalAccessException, ClassNotFoundException, SQLException, R2RMLDataError, InvalidR2RMLStructureException, InvalidR2RMLSyntaxException, RepositoryException, RDFParseException, IOException {
+		return convertDatabase(new R2RMLEngine(pool, parallelism), pathToR2RMLMappingDocument, baseIRI, pathToNativeStore, driver);
+	}
+	
+	private static SesameDataSet convertDatabase(R2RMLEngine r2rmlEngine,
+			String pathToR2RMLMappingDocument, String baseIRI, String pathToNativeStore, DriverType driver) throws InstantiationException,
+			IllegalAccessException, ClassNotFoundException, SQLException, R2RMLDataError, InvalidR2RMLStructureException, InvalidR2RMLSyntaxException, RepositoryException, RDFParseException, IOException {
 		log.info("[R2RMLMapper:convertMySQLDatabase] Start Mapping R2RML...");
 		// Init time
 		start = System.currentTimeMillis();
@@ -77,10 +174,11 @@ public abstract class R2RMLProcessor {
 		R2RMLMapping r2rmlMapping = null;
 		
 		R2RMLProcessor.driver = driver;
-		r2rmlMapping = R2RMLMappingFactory.extractR2RMLMapping(pathToR2RMLMappingDocument, driver);
+		r2rmlMapping = extractR2RMLMapping(pathToR2RMLMappingDocument, driver);
 		
-		// Connect database
-		R2RMLEngine r2rmlEngine = new R2RMLEngine(conn);
+		if (hashJoinMemory > 0)
+			r2rmlEngine.setHashJoinMode(hashJoinMemory);
+		r2rmlEngine.setFetchSize(fetchSize);
 		SesameDataSet result =  r2rmlEngine.runR2RMLMapping(r2rmlMapping, baseIRI, pathToNativeStore);
 		log.info("[R2RMLMapper:convertDatabase] Mapping R2RML done.");
 		Float stop = Float.valueOf(System.currentTimeMillis() - start) / 1000;
@@ -93,6 +191,62 @@ public abstract class R2RMLProcessor {
 		return result;
 	}
 	
+	/**
+	 * Convert a database into RDF triples emitted into a triple sink from a
+	 * database Connection and a R2RML instance. No RDF graph is built : use a
+	 * RDFWriterSink to stream triples directly to an output.
+	 * @throws R2RMLDataError 
+	 * @throws InvalidR2RMLSyntaxException 
+	 * @throws InvalidR2RMLStructureException 
+	 * @throws IOException 
+	 * @throws RDFParseException 
+	 * @throws RepositoryException 
+	 */
+	public static void convertDatabaseToSink(Connection conn,
+			String pathToR2RMLMappingDocument, String baseIRI, TripleSink sink, DriverType driver) throws InstantiationException,
+			IllegalAccessException, ClassNotFoundException, SQLException, R2RMLDataError, InvalidR2RMLStructureException, InvalidR2RMLSyntaxException, RepositoryException, RDFParseException, IOException {
+		convertDatabaseToSink(new R2RMLEngine(conn), pathToR2RMLMappingDocument, baseIRI, sink, driver);
+	}
+	
+	/**
+	 * Convert a database into RDF triples emitted into a triple sink from a
+	 * pool of database connections and a R2RML instance. Triples maps are run
+	 * in parallel by at most parallelism workers.
+	 * @throws R2RMLDataError 
+	 * @throws InvalidR2RMLSyntaxException 
+	 * @throws InvalidR2RMLStructureException 
+	 * @throws IOException 
+	 * @throws RDFParseException 
+	 * @throws RepositoryException 
+	 */
+	public static void convertDatabaseToSink(ConnectionPool pool, int parallelism,
+			String pathToR2RMLMappingDocument, String baseIRI, TripleSink sink, DriverType driver) throws InstantiationException,
+			IllegalAccessException, ClassNotFoundException, SQLException, R2RMLDataError, InvalidR2RMLStructureException, InvalidR2RMLSyntaxException, RepositoryException, RDFParseException, IOException {
+		convertDatabaseToSink(new R2RMLEngine(pool, parallelism), pathToR2RMLMappingDocument, baseIRI, sink, driver);
+	}
+	
+	private static void convertDatabaseToSink(R2RMLEngine r2rmlEngine,
+			String pathToR2RMLMappingDocument, String baseIRI, TripleSink sink, DriverType driver) throws InstantiationException,
+			IllegalAccessException, ClassNotFoundException, SQLException, R2RMLDataError, InvalidR2RMLStructureException, InvalidR2RMLSyntaxException, RepositoryException, RDFParseException, IOException {
+		log.info("[R2RMLMapper:convertDatabaseToSink] Start Mapping R2RML...");
+		// Init time
+		start = System.currentTimeMillis();
+		R2RMLProcessor.driver = driver;
+		// Extract R2RML Mapping object
+		R2RMLMapping r2rmlMapping = extractR2RMLMapping(pathToR2RMLMappingDocument, driver);
+		
+		if (hashJoinMemory > 0)
+			r2rmlEngine.setHashJoinMode(hashJoinMemory);
+		r2rmlEngine.setFetchSize(fetchSize);
+		r2rmlEngine.runR2RMLMappingToSink(r2rmlMapping, baseIRI, sink);
+		log.info("[R2RMLMapper:convertDatabaseToSink] Mapping R2RML done.");
+		Float stop = Float.valueOf(System.currentTimeMillis() - start) / 1000;
+		log.info("[R2RMLMapper:convertDatabaseToSink] Database extracted in "
+				+ stop + " seconds.");
+		
+		R2RMLProcessor.driver = null;
+	}
+	
 	/**
 	 * Convert a MySQL database into a RDF graph from a database Connection
 	 * and a R2RML instance.
@@ -48,7 +48,8 @@ public class R2RMLVocabulary {
 		FUNCTION_NAME("functionName"),
 		FUNCTION_BODY("functionBody"),
 		PARAMETER_BINDINGS("parameterBindings"), 
-		FUNCTION("function");
+		FUNCTION("function"),
+		DETERMINISTIC("deterministic");
 		
 		private String displayName;
 		
@@ -0,0 +1,53 @@
+package net.antidot.semantic.rdf.rdb2rdf.r2rml.function;
+
+import net.antidot.semantic.rdf.rdb2rdf.r2rml.exception.R2RMLDataError;
+
+/**
+ * A Java function with a checked number of parameters. As for a template, no
+ * value is returned if one of its parameters is null.
+ * 
+ */
+public abstract class AbstractJavaFunction implements JavaFunction {
+
+	private String name;
+	private int minParameters;
+	private int maxParameters;
+
+	protected AbstractJavaFunction(String name, int parameters) {
+		this(name, parameters, parameters);
+	}
+
+	protected AbstractJavaFunction(String name, int minParameters,
+			int maxParameters) {
+		this.name = name;
+		this.minParameters = minParameters;
+		this.maxParameters = maxParameters;
+	}
+
+	public String getName() {
+		return name;
+	}
+
+	public String invoke(String... parameters) throws R2RMLDataError {
+		if (parameters.length < minParameters
+				|| parameters.length > maxParameters)
+			throw new R2RMLDataError("[AbstractJavaFunction:invoke] Function "
+					+ name + " can not be called with " + parameters.length
+					+ " parameters.");
+		for (String parameter : parameters)
+			if (parameter == null)
+				return null;
+		return apply(parameters);
+	}
+
+	/**
+	 * Computing the value of this function from non null parameters.
+	 * 
+	 * @param parameters
+	 * @return
+	 * @throws R2RMLDataError
+	 */
+	protected abstract String apply(String[] parameters)
+			throws R2RMLDataError;
+
+}
@@ -1,5 +1,9 @@
 package net.antidot.semantic.rdf.rdb2rdf.r2rml.function;
 
+import java.io.IOException;
+import java.io.InvalidObjectException;
+import java.io.ObjectInputStream;
+import java.io.Serializable;
 import java.util.ArrayList;
 import java.util.List;
 
@@ -11,9 +15,17 @@ import net.antidot.semantic.rdf.rdb2rdf.r2rml.model.ObjectMap;
  * @author Christophe Debruyne
  *
  */
-public class FunctionCall {
+public class FunctionCall implements Serializable {
+
+	private static final long serialVersionUID = 1L;
 
 	private String functionName;
+	// Compiled function, resolved when the mapping is loaded
+	private ScriptFunction function;
+	// Java function, when no script declares this function name
+	private transient JavaFunction javaFunction;
+	// Cached results, when the function is deterministic
+	private FunctionResultCache cache;
 	private List<ObjectMap> parameters = new ArrayList<ObjectMap>();
 
 	public String getFunctionName() {
@@ -24,6 +36,43 @@ public class FunctionCall {
 		this.functionName = functionName;
 	}
 
+	public ScriptFunction getFunction() {
+		return function;
+	}
+
+	public void setFunction(ScriptFunction function) {
+		this.function = function;
+	}
+
+	public JavaFunction getJavaFunction() {
+		return javaFunction;
+	}
+
+	public void setJavaFunction(JavaFunction javaFunction) {
+		this.javaFunction = javaFunction;
+	}
+
+	public FunctionResultCache getCache() {
+		return cache;
+	}
+
+	public void setCache(FunctionResultCache cache) {
+		this.cache = cache;
+	}
+
+	private void readObject(ObjectInputStream in) throws IOException,
+			ClassNotFoundException {
+		in.defaultReadObject();
+		// Java functions are not serialized : resolved again by name
+		if (function == null) {
+			javaFunction = JavaFunctions.getFunction(functionName);
+			if (javaFunction == null)
+				throw new InvalidObjectException(
+						"[FunctionCall:readObject] Unknown function "
+								+ functionName);
+		}
+	}
+
 	public List<ObjectMap> getParameters() {
 		return parameters;
 	}
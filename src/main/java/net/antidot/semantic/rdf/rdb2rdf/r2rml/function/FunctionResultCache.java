@@ -0,0 +1,77 @@
+package net.antidot.semantic.rdf.rdb2rdf.r2rml.function;
+
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.Serializable;
+import java.util.List;
+
+import net.antidot.semantic.rdf.rdb2rdf.commons.LRUCache;
+
+/**
+ * Results of a deterministic function (declared with rrf:deterministic true),
+ * indexed by the values of its parameters in a bounded LRU cache shared by
+ * every call of this function. Null results are not cached, nor serialized
+ * with the mapping.
+ * 
+ */
+public class FunctionResultCache implements Serializable {
+
+	private static final long serialVersionUID = 1L;
+
+	// Default maximal number of cached results of a function
+	public static final int DEFAULT_MAX_ENTRIES = 10000;
+
+	private String functionName;
+	private int maxEntries;
+	private transient LRUCache<List<String>, String> results;
+	private transient long hits;
+	private transient long misses;
+
+	public FunctionResultCache(String functionName, int maxEntries) {
+		this.functionName = functionName;
+		this.maxEntries = maxEntries;
+		results = new LRUCache<List<String>, String>(maxEntries);
+	}
+
+	private void readObject(ObjectInputStream in) throws IOException,
+			ClassNotFoundException {
+		in.defaultReadObject();
+		results = new LRUCache<List<String>, String>(maxEntries);
+	}
+
+	public String getFunctionName() {
+		return functionName;
+	}
+
+	/**
+	 * Return the result of the function for these parameters, null if
+	 * unknown.
+	 */
+	public synchronized String get(List<String> parameters) {
+		String result = results.get(parameters);
+		if (result == null)
+			misses++;
+		else
+			hits++;
+		return result;
+	}
+
+	public synchronized void put(List<String> parameters, String result) {
+		if (result != null)
+			results.put(parameters, result);
+	}
+
+	public synchronized long getHits() {
+		return hits;
+	}
+
+	public synchronized long getMisses() {
+		return misses;
+	}
+
+	public synchronized void resetStatistics() {
+		hits = 0;
+		misses = 0;
+	}
+
+}
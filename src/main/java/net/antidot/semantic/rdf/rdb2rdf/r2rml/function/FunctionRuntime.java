@@ -0,0 +1,181 @@
+package net.antidot.semantic.rdf.rdb2rdf.r2rml.function;
+
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import javax.script.Bindings;
+import javax.script.Compilable;
+import javax.script.CompiledScript;
+import javax.script.Invocable;
+import javax.script.ScriptContext;
+import javax.script.ScriptEngine;
+import javax.script.ScriptEngineManager;
+import javax.script.ScriptException;
+import javax.script.SimpleScriptContext;
+
+import net.antidot.semantic.rdf.rdb2rdf.r2rml.exception.R2RMLDataError;
+
+/**
+ * JavaScript functions declared by a mapping. The body of each function is
+ * compiled once, when it is declared. The script engine is only required (and
+ * created) when a first function is declared. Each thread which invokes a function
+ * evaluates every compiled body once in its own script context (with its own
+ * global scope) and keeps a handle on each function : functions can be
+ * invoked concurrently, without looking them up by name. A serialized runtime
+ * keeps the code of its functions, compiled again when it is read.
+ * 
+ */
+public class FunctionRuntime implements Serializable {
+
+	private static final long serialVersionUID = 1L;
+
+	private transient ScriptEngine engine;
+	private transient List<CompiledScript> scripts;
+	private List<String> codes;
+	private List<ScriptFunction> functions;
+	private Map<String, ScriptFunction> functionsByName;
+	// Result caches of the deterministic functions (scripts or Java)
+	private Map<String, FunctionResultCache> caches;
+	// Handles on the functions (by id) in the script context of each thread
+	private transient ThreadLocal<Object[]> handles;
+
+	public FunctionRuntime() {
+		scripts = new ArrayList<CompiledScript>();
+		handles = new ThreadLocal<Object[]>();
+		codes = new ArrayList<String>();
+		functions = new ArrayList<ScriptFunction>();
+		functionsByName = new HashMap<String, ScriptFunction>();
+		caches = new HashMap<String, FunctionResultCache>();
+	}
+
+	private void createEngine() throws R2RMLDataError {
+		ScriptEngine result = new ScriptEngineManager()
+				.getEngineByName("javascript");
+		if (!(result instanceof Compilable) || !(result instanceof Invocable))
+			throw new R2RMLDataError(
+					"[FunctionRuntime:createEngine] No JavaScript engine which compiles scripts has been found : functions with a body can not be declared.");
+		engine = result;
+	}
+
+	private void readObject(ObjectInputStream in) throws IOException,
+			ClassNotFoundException {
+		in.defaultReadObject();
+		scripts = new ArrayList<CompiledScript>();
+		handles = new ThreadLocal<Object[]>();
+		if (codes.isEmpty())
+			return;
+		try {
+			createEngine();
+			for (String code : codes)
+				scripts.add(((Compilable) engine).compile(code));
+		} catch (R2RMLDataError e) {
+			throw new IOException(e.getMessage(), e);
+		} catch (ScriptException e) {
+			throw new IOException(
+					"[FunctionRuntime:readObject] Function can not be compiled : "
+							+ e.getMessage(), e);
+		}
+	}
+
+	/**
+	 * Compiling the JavaScript code which defines a function.
+	 * 
+	 * @param name
+	 * @param code
+	 * @return
+	 * @throws ScriptException
+	 * @throws R2RMLDataError
+	 *             if no JavaScript engine is available
+	 */
+	public synchronized ScriptFunction declare(String name, String code)
+			throws ScriptException, R2RMLDataError {
+		if (functionsByName.containsKey(name))
+			throw new IllegalArgumentException(
+					"[FunctionRuntime:declare] Function " + name
+							+ " is already declared.");
+		if (engine == null)
+			createEngine();
+		scripts.add(((Compilable) engine).compile(code));
+		codes.add(code);
+		ScriptFunction function = new ScriptFunction(this, functions.size(),
+				name);
+		functions.add(function);
+		functionsByName.put(name, function);
+		return function;
+	}
+
+	/**
+	 * Function declared with this name (null if there is none).
+	 * 
+	 * @param name
+	 * @return
+	 */
+	public synchronized ScriptFunction getFunction(String name) {
+		return functionsByName.get(name);
+	}
+
+	/**
+	 * Result cache of the deterministic function with this name, shared by
+	 * all its calls.
+	 * 
+	 * @param name
+	 * @return
+	 */
+	public synchronized FunctionResultCache getCache(String name) {
+		FunctionResultCache cache = caches.get(name);
+		if (cache == null) {
+			cache = new FunctionResultCache(name,
+					FunctionResultCache.DEFAULT_MAX_ENTRIES);
+			caches.put(name, cache);
+		}
+		return cache;
+	}
+
+	public synchronized Collection<FunctionResultCache> getCaches() {
+		return new ArrayList<FunctionResultCache>(caches.values());
+	}
+
+	String invoke(ScriptFunction function, Object[] parameters)
+			throws NoSuchMethodException, ScriptException {
+		Object[] threadHandles = handles.get();
+		// Functions declared since the context of this thread was created
+		if (threadHandles == null || threadHandles.length <= function.getId()) {
+			threadHandles = createContext();
+			handles.set(threadHandles);
+		}
+		Object handle = threadHandles[function.getId()];
+		if (handle == null)
+			throw new NoSuchMethodException("No such function : "
+					+ function.getName());
+		// Function.prototype.call(thisArg, parameters...)
+		Object[] arguments = new Object[parameters.length + 1];
+		System.arraycopy(parameters, 0, arguments, 1, parameters.length);
+		Object o = ((Invocable) engine).invokeMethod(handle, "call", arguments);
+		if (o == null)
+			return null;
+		return o.toString();
+	}
+
+	/*
+	 * Evaluate every compiled function in a new script context and get a
+	 * handle on each function.
+	 */
+	private synchronized Object[] createContext() throws ScriptException {
+		Bindings bindings = engine.createBindings();
+		ScriptContext context = new SimpleScriptContext();
+		context.setBindings(bindings, ScriptContext.ENGINE_SCOPE);
+		for (CompiledScript script : scripts)
+			script.eval(context);
+		Object[] result = new Object[functions.size()];
+		for (ScriptFunction function : functions)
+			result[function.getId()] = bindings.get(function.getName());
+		return result;
+	}
+
+}
@@ -6,10 +6,13 @@ import javax.script.ScriptEngineManager;
 import javax.script.ScriptException;
 
 /**
+ * Global script engine shared by every thread.
  * 
+ * @deprecated functions of a mapping are compiled by its FunctionRuntime.
  * @author Christophe Debruyne
  *
  */
+@Deprecated
 public class JSEnv {
 
 	private static ScriptEngineManager manager = new ScriptEngineManager();
@@ -24,7 +27,7 @@ public class JSEnv {
 	 * @throws NoSuchMethodException
 	 * @throws ScriptException
 	 */
-	public static String invoke(String functionName, Object... parameters) 
+	public static synchronized String invoke(String functionName, Object... parameters) 
 			throws NoSuchMethodException, ScriptException {
 		Invocable invokeEngine = (Invocable) engine;
 		Object o = invokeEngine.invokeFunction(functionName, parameters);
@@ -37,7 +40,7 @@ public class JSEnv {
 	 * @param code
 	 * @throws ScriptException
 	 */
-	public static void loadCode(String code) throws ScriptException {
+	public static synchronized void loadCode(String code) throws ScriptException {
 		engine.eval(code);
 	}
 
@@ -45,9 +48,9 @@ public class JSEnv {
 	 * A utility function for setting up a new engine and environment.
 	 * 
 	 */
-	public static void reset() {
+	public static synchronized void reset() {
 		manager = new ScriptEngineManager();
-		manager.getEngineByName("javascript");
+		engine = manager.getEngineByName("javascript");
 	}
 
 }
@@ -0,0 +1,27 @@
+package net.antidot.semantic.rdf.rdb2rdf.r2rml.function;
+
+import net.antidot.semantic.rdf.rdb2rdf.r2rml.exception.R2RMLDataError;
+
+/**
+ * A function implemented in Java, which can be called by its name from a
+ * rrf:functionCall without any rrf:functionBody. Implementations are
+ * provided by a JavaFunctionLibrary and must be thread-safe.
+ * 
+ */
+public interface JavaFunction {
+
+	/**
+	 * @return name of this function (its rrf:functionName)
+	 */
+	public String getName();
+
+	/**
+	 * Invoking this function with the values of its parameter bindings.
+	 * 
+	 * @param parameters
+	 * @return value of the function call (null if no term is generated)
+	 * @throws R2RMLDataError
+	 */
+	public String invoke(String... parameters) throws R2RMLDataError;
+
+}
@@ -0,0 +1,19 @@
+package net.antidot.semantic.rdf.rdb2rdf.r2rml.function;
+
+import java.util.Collection;
+
+/**
+ * Service provider of Java functions. Libraries are found with a
+ * java.util.ServiceLoader : each one is declared in a
+ * META-INF/services/net.antidot.semantic.rdf.rdb2rdf.r2rml.function.JavaFunctionLibrary
+ * file of the class path.
+ * 
+ */
+public interface JavaFunctionLibrary {
+
+	/**
+	 * @return functions provided by this library
+	 */
+	public Collection<JavaFunction> getFunctions();
+
+}
@@ -0,0 +1,52 @@
+package net.antidot.semantic.rdf.rdb2rdf.r2rml.function;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.ServiceLoader;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+/**
+ * Java functions provided by the libraries found on the class path. Libraries
+ * are loaded the first time a function is looked up.
+ * 
+ */
+public abstract class JavaFunctions {
+
+	private static Log log = LogFactory.getLog(JavaFunctions.class);
+
+	private static Map<String, JavaFunction> functions;
+
+	/**
+	 * Java function with this name (null if there is none).
+	 * 
+	 * @param name
+	 * @return
+	 */
+	public static synchronized JavaFunction getFunction(String name) {
+		if (functions == null)
+			functions = loadFunctions();
+		return functions.get(name);
+	}
+
+	private static Map<String, JavaFunction> loadFunctions() {
+		Map<String, JavaFunction> result = new HashMap<String, JavaFunction>();
+		for (JavaFunctionLibrary library : ServiceLoader.load(
+				JavaFunctionLibrary.class, JavaFunctions.class.getClassLoader()))
+			for (JavaFunction function : library.getFunctions()) {
+				if (result.containsKey(function.getName())) {
+					log.warn("[JavaFunctions:loadFunctions] Function "
+							+ function.getName() + " of "
+							+ library.getClass().getName()
+							+ " is already provided : ignored.");
+					continue;
+				}
+				result.put(function.getName(), function);
+			}
+		log.debug("[JavaFunctions:loadFunctions] " + result.size()
+				+ " Java functions loaded.");
+		return result;
+	}
+
+}
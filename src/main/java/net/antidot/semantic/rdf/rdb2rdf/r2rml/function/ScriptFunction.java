@@ -0,0 +1,48 @@
+package net.antidot.semantic.rdf.rdb2rdf.r2rml.function;
+
+import java.io.Serializable;
+
+import javax.script.ScriptException;
+
+/**
+ * A function declared by a rrf:functionBody, compiled once by its function
+ * runtime. It can be invoked by several threads at the same time.
+ * 
+ */
+public class ScriptFunction implements Serializable {
+
+	private static final long serialVersionUID = 1L;
+
+	private FunctionRuntime runtime;
+	// Position of this function in its runtime
+	private int id;
+	private String name;
+
+	ScriptFunction(FunctionRuntime runtime, int id, String name) {
+		this.runtime = runtime;
+		this.id = id;
+		this.name = name;
+	}
+
+	public String getName() {
+		return name;
+	}
+
+	int getId() {
+		return id;
+	}
+
+	/**
+	 * Invoking this function with an array of parameters.
+	 * 
+	 * @param parameters
+	 * @return
+	 * @throws NoSuchMethodException
+	 * @throws ScriptException
+	 */
+	public String invoke(Object... parameters) throws NoSuchMethodException,
+			ScriptException {
+		return runtime.invoke(this, parameters);
+	}
+
+}
@@ -0,0 +1,232 @@
+package net.antidot.semantic.rdf.rdb2rdf.r2rml.function;
+
+import java.io.UnsupportedEncodingException;
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.text.ParseException;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+import net.antidot.semantic.rdf.rdb2rdf.r2rml.exception.R2RMLDataError;
+
+/**
+ * Built-in Java functions on strings, numbers and dates.
+ * 
+ * <ul>
+ * <li>upperCase(s), lowerCase(s), trim(s), length(s)</li>
+ * <li>concat(s1, s2, ...)</li>
+ * <li>replace(s, target, replacement) : replaces each occurrence of target</li>
+ * <li>substring(s, begin[, end])</li>
+ * <li>md5(s), sha1(s), sha256(s) : hexadecimal hash of UTF-8 bytes</li>
+ * <li>abs(x), add(x, y), multiply(x, y), round(x[, scale])</li>
+ * <li>formatDate(date, inputPattern, outputPattern) : SimpleDateFormat
+ * patterns</li>
+ * </ul>
+ * Results do not depend on the default locale of the JVM.
+ * 
+ */
+public class StandardFunctionLibrary implements JavaFunctionLibrary {
+
+	// Date formats (which are not thread-safe) of each thread, by pattern
+	private static ThreadLocal<Map<String, SimpleDateFormat>> dateFormats = new ThreadLocal<Map<String, SimpleDateFormat>>() {
+		protected Map<String, SimpleDateFormat> initialValue() {
+			return new HashMap<String, SimpleDateFormat>();
+		}
+	};
+
+	private static final char[] HEX_DIGITS = "0123456789abcdef"
+			.toCharArray();
+
+	private final Collection<JavaFunction> functions;
+
+	public StandardFunctionLibrary() {
+		List<JavaFunction> result = new ArrayList<JavaFunction>();
+		// Strings
+		result.add(new AbstractJavaFunction("upperCase", 1) {
+			protected String apply(String[] parameters) {
+				return parameters[0].toUpperCase(Locale.ROOT);
+			}
+		});
+		result.add(new AbstractJavaFunction("lowerCase", 1) {
+			protected String apply(String[] parameters) {
+				return parameters[0].toLowerCase(Locale.ROOT);
+			}
+		});
+		result.add(new AbstractJavaFunction("trim", 1) {
+			protected String apply(String[] parameters) {
+				return parameters[0].trim();
+			}
+		});
+		result.add(new AbstractJavaFunction("length", 1) {
+			protected String apply(String[] parameters) {
+				return String.valueOf(parameters[0].length());
+			}
+		});
+		result.add(new AbstractJavaFunction("concat", 1, Integer.MAX_VALUE) {
+			protected String apply(String[] parameters) {
+				StringBuilder sb = new StringBuilder();
+				for (String parameter : parameters)
+					sb.append(parameter);
+				return sb.toString();
+			}
+		});
+		result.add(new AbstractJavaFunction("replace", 3) {
+			protected String apply(String[] parameters) {
+				return parameters[0].replace(parameters[1], parameters[2]);
+			}
+		});
+		result.add(new AbstractJavaFunction("substring", 2, 3) {
+			protected String apply(String[] parameters) throws R2RMLDataError {
+				String s = parameters[0];
+				String lastIndex = parameters.length == 3 ? parameters[2]
+						: String.valueOf(s.length());
+				int begin = Math.min(parseInt(getName(), parameters[1]),
+						s.length());
+				int end = s.length();
+				if (parameters.length == 3)
+					end = Math.min(parseInt(getName(), parameters[2]), end);
+				if (begin < 0 || end < begin)
+					throw new R2RMLDataError(
+							"[StandardFunctionLibrary:substring] Invalid bounds "
+									+ parameters[1] + " and " + lastIndex
+									+ " for value " + s);
+				return s.substring(begin, end);
+			}
+		});
+		// Hashes
+		result.add(new DigestFunction("md5", "MD5"));
+		result.add(new DigestFunction("sha1", "SHA-1"));
+		result.add(new DigestFunction("sha256", "SHA-256"));
+		// Numbers
+		result.add(new AbstractJavaFunction("abs", 1) {
+			protected String apply(String[] parameters) throws R2RMLDataError {
+				return parseDecimal(getName(), parameters[0]).abs()
+						.toPlainString();
+			}
+		});
+		result.add(new AbstractJavaFunction("add", 2) {
+			protected String apply(String[] parameters) throws R2RMLDataError {
+				return parseDecimal(getName(), parameters[0]).add(
+						parseDecimal(getName(), parameters[1]))
+						.toPlainString();
+			}
+		});
+		result.add(new AbstractJavaFunction("multiply", 2) {
+			protected String apply(String[] parameters) throws R2RMLDataError {
+				return parseDecimal(getName(), parameters[0]).multiply(
+						parseDecimal(getName(), parameters[1]))
+						.toPlainString();
+			}
+		});
+		result.add(new AbstractJavaFunction("round", 1, 2) {
+			protected String apply(String[] parameters) throws R2RMLDataError {
+				int scale = 0;
+				if (parameters.length == 2)
+					scale = parseInt(getName(), parameters[1]);
+				return parseDecimal(getName(), parameters[0]).setScale(
+						scale, RoundingMode.HALF_UP).toPlainString();
+			}
+		});
+		// Dates
+		result.add(new AbstractJavaFunction("formatDate", 3) {
+			protected String apply(String[] parameters) throws R2RMLDataError {
+				try {
+					return getDateFormat(parameters[2]).format(
+							getDateFormat(parameters[1]).parse(parameters[0]));
+				} catch (ParseException e) {
+					throw new R2RMLDataError(
+							"[StandardFunctionLibrary:formatDate] Value "
+									+ parameters[0]
+									+ " does not match pattern "
+									+ parameters[1]);
+				}
+			}
+		});
+		functions = Collections.unmodifiableList(result);
+	}
+
+	public Collection<JavaFunction> getFunctions() {
+		return functions;
+	}
+
+	private static int parseInt(String function, String value)
+			throws R2RMLDataError {
+		try {
+			return Integer.parseInt(value.trim());
+		} catch (NumberFormatException e) {
+			throw new R2RMLDataError("[StandardFunctionLibrary:" + function
+					+ "] " + value + " is not an integer.");
+		}
+	}
+
+	private static BigDecimal parseDecimal(String function, String value)
+			throws R2RMLDataError {
+		try {
+			return new BigDecimal(value.trim());
+		} catch (NumberFormatException e) {
+			throw new R2RMLDataError("[StandardFunctionLibrary:" + function
+					+ "] " + value + " is not a number.");
+		}
+	}
+
+	private static SimpleDateFormat getDateFormat(String pattern)
+			throws R2RMLDataError {
+		Map<String, SimpleDateFormat> formats = dateFormats.get();
+		SimpleDateFormat format = formats.get(pattern);
+		if (format == null) {
+			try {
+				format = new SimpleDateFormat(pattern, Locale.ROOT);
+			} catch (IllegalArgumentException e) {
+				throw new R2RMLDataError(
+						"[StandardFunctionLibrary:getDateFormat] Invalid date pattern "
+								+ pattern);
+			}
+			format.setLenient(false);
+			formats.put(pattern, format);
+		}
+		return format;
+	}
+
+	/*
+	 * Hexadecimal digest of the UTF-8 bytes of a value.
+	 */
+	private static class DigestFunction extends AbstractJavaFunction {
+
+		private String algorithm;
+
+		public DigestFunction(String name, String algorithm) {
+			super(name, 1);
+			this.algorithm = algorithm;
+		}
+
+		protected String apply(String[] parameters) throws R2RMLDataError {
+			byte[] digest;
+			try {
+				digest = MessageDigest.getInstance(algorithm).digest(
+						parameters[0].getBytes("UTF-8"));
+			} catch (NoSuchAlgorithmException e) {
+				throw new IllegalStateException("[StandardFunctionLibrary:"
+						+ getName() + "] " + algorithm
+						+ " is not supported by this JVM.");
+			} catch (UnsupportedEncodingException e) {
+				throw new IllegalStateException("[StandardFunctionLibrary:"
+						+ getName() + "] UTF-8 is not supported by this JVM.");
+			}
+			char[] result = new char[digest.length * 2];
+			for (int i = 0; i < digest.length; i++) {
+				result[2 * i] = HEX_DIGITS[(digest[i] >> 4) & 0x0F];
+				result[2 * i + 1] = HEX_DIGITS[digest[i] & 0x0F];
+			}
+			return new String(result);
+		}
+	}
+
+}
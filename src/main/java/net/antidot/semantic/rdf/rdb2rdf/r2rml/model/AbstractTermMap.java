@@ -26,10 +26,14 @@
  ****************************************************************************/
 package net.antidot.semantic.rdf.rdb2rdf.r2rml.model;
 
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
 import java.io.UnsupportedEncodingException;
 import java.sql.ResultSetMetaData;
 import java.sql.SQLException;
-import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
@@ -37,9 +41,12 @@ import java.util.Set;
 
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
+import org.openrdf.model.BNode;
 import org.openrdf.model.Literal;
 import org.openrdf.model.URI;
 import org.openrdf.model.Value;
+import org.openrdf.model.ValueFactory;
+import org.openrdf.model.impl.ValueFactoryImpl;
 
 import net.antidot.semantic.rdf.model.tools.RDFDataValidator;
 import net.antidot.semantic.rdf.rdb2rdf.commons.SQLToXMLS;
@@ -47,25 +54,33 @@ import net.antidot.semantic.rdf.rdb2rdf.r2rml.exception.InvalidR2RMLStructureExc
 import net.antidot.semantic.rdf.rdb2rdf.r2rml.exception.InvalidR2RMLSyntaxException;
 import net.antidot.semantic.rdf.rdb2rdf.r2rml.exception.R2RMLDataError;
 import net.antidot.semantic.rdf.rdb2rdf.r2rml.function.FunctionCall;
+import net.antidot.semantic.rdf.rdb2rdf.r2rml.function.FunctionResultCache;
 import net.antidot.semantic.rdf.rdb2rdf.r2rml.tools.R2RMLToolkit;
+import net.antidot.semantic.rdf.rdb2rdf.r2rml.tools.StringTemplate;
 import net.antidot.semantic.xmls.xsd.XSDLexicalTransformation;
 import net.antidot.semantic.xmls.xsd.XSDType;
 import net.antidot.sql.model.db.ColumnIdentifier;
-import net.antidot.sql.model.db.ColumnIdentifierImpl;
 import net.antidot.sql.model.type.SQLType;
 
-public abstract class AbstractTermMap implements TermMap {
+public abstract class AbstractTermMap implements TermMap, Serializable {
+
+	private static final long serialVersionUID = 1L;
 
 	// Log
 	private static Log log = LogFactory.getLog(AbstractTermMap.class);
 
+	// Value factory of serialized values
+	private static ValueFactory vf = new ValueFactoryImpl();
+
 	private FunctionCall functionCall;
-	private Value constantValue;
+	private transient Value constantValue;
 	private XSDType dataType;
 	private TermType termType;
 	private XSDType implicitDataType;
 	private String languageTag;
 	private String stringTemplate;
+	// String template parsed at mapping load time
+	private StringTemplate compiledTemplate;
 	private ColumnIdentifier columnValue;
 	private String inverseExpression;
 
@@ -208,6 +223,8 @@ public abstract class AbstractTermMap implements TermMap {
 			checkStringTemplate(stringTemplate);
 
 		this.stringTemplate = stringTemplate;
+		if (stringTemplate != null)
+			compiledTemplate = new StringTemplate(stringTemplate);
 	}
 
 	/**
@@ -253,6 +270,40 @@ public abstract class AbstractTermMap implements TermMap {
 	protected abstract void checkConstantValue(Value constantValue)
 			throws R2RMLDataError;
 
+	/*
+	 * Values extracted from a mapping graph belong to its memory store : they
+	 * are serialized as plain values.
+	 */
+	private void writeObject(ObjectOutputStream out) throws IOException {
+		out.defaultWriteObject();
+		out.writeObject(toPlainValue(constantValue));
+	}
+
+	private void readObject(ObjectInputStream in) throws IOException,
+			ClassNotFoundException {
+		in.defaultReadObject();
+		constantValue = (Value) in.readObject();
+	}
+
+	/**
+	 * Copy of a value which does not depend on any RDF store.
+	 */
+	protected static Value toPlainValue(Value value) {
+		if (value == null)
+			return null;
+		if (value instanceof URI)
+			return vf.createURI(value.stringValue());
+		if (value instanceof BNode)
+			return vf.createBNode(((BNode) value).getID());
+		Literal literal = (Literal) value;
+		if (literal.getLanguage() != null)
+			return vf.createLiteral(literal.getLabel(), literal.getLanguage());
+		if (literal.getDatatype() != null)
+			return vf.createLiteral(literal.getLabel(),
+					vf.createURI(literal.getDatatype().stringValue()));
+		return vf.createLiteral(literal.getLabel());
+	}
+
 	public void setConstantValue(Value constantValue) throws R2RMLDataError,
 			InvalidR2RMLStructureException {
 		// Check if constant value is valid
@@ -335,10 +386,7 @@ public abstract class AbstractTermMap implements TermMap {
 			// The referenced columns of a template-valued term map is
 			// the set of column names enclosed in unescaped curly braces
 			// in the template string.
-		    	for(String colName : R2RMLToolkit
-					.extractColumnNamesFromStringTemplate(stringTemplate)) {
-		    	    referencedColumns.add(ColumnIdentifierImpl.buildFromR2RMLConfigFile(colName));
-		    	}
+			referencedColumns.addAll(compiledTemplate.getColumns());
 			break;
 			
 		case FUNCTION_CALL_VALUED:
@@ -440,17 +488,29 @@ public abstract class AbstractTermMap implements TermMap {
 			if (dbValues.keySet().isEmpty())
 				throw new IllegalStateException(
 						"[AbstractTermMap:getValue] impossible to extract from an empty database value set.");
-			result = R2RMLToolkit.extractColumnValueFromStringTemplate(
-					stringTemplate, dbValues, dbTypes);
+			result = compiledTemplate.render(dbValues);
 			return result;
 			
 		case FUNCTION_CALL_VALUED:
-			List<String> evaluatedparams = new ArrayList<String>();
-			for(ObjectMap om : functionCall.getParameters()) {
-				String evaluatedparam = om.getValue(dbValues, dbTypes);
-				evaluatedparams.add(evaluatedparam);
-			}			
-			result = R2RMLToolkit.processFunctionCall(functionCall, evaluatedparams.toArray(new String[] {}));
+			List<ObjectMap> parameters = functionCall.getParameters();
+			String[] evaluatedparams = new String[parameters.size()];
+			for (int i = 0; i < evaluatedparams.length; i++)
+				evaluatedparams[i] = parameters.get(i).getValue(dbValues, dbTypes);
+			FunctionResultCache cache = functionCall.getCache();
+			List<String> key = null;
+			if (cache != null) {
+				key = Arrays.asList(evaluatedparams);
+				result = cache.get(key);
+				if (result != null)
+					return result;
+			}
+			// Java functions are called directly, without script engine
+			if (functionCall.getJavaFunction() != null)
+				result = functionCall.getJavaFunction().invoke(evaluatedparams);
+			else
+				result = R2RMLToolkit.processFunctionCall(functionCall, evaluatedparams);
+			if (cache != null)
+				cache.put(key, result);
 			return result;
 		default:
 			return null;
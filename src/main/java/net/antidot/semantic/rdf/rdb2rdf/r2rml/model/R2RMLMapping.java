@@ -27,18 +27,30 @@
  ****************************************************************************/
 package net.antidot.semantic.rdf.rdb2rdf.r2rml.model;
 
+import java.io.Serializable;
 import java.util.Collection;
 import java.util.HashSet;
 
+import net.antidot.semantic.rdf.rdb2rdf.r2rml.function.FunctionRuntime;
 
-public class R2RMLMapping {
+public class R2RMLMapping implements Serializable {
+
+	private static final long serialVersionUID = 1L;
 	
 	private Collection<TriplesMap> triplesMaps;
+	// Functions declared by this mapping
+	private FunctionRuntime functionRuntime;
 
 	public R2RMLMapping(Collection<TriplesMap> triplesMaps) {
+		this(triplesMaps, null);
+	}
+
+	public R2RMLMapping(Collection<TriplesMap> triplesMaps,
+			FunctionRuntime functionRuntime) {
 		super();
 		this.triplesMaps = new HashSet<TriplesMap>();
 		this.triplesMaps.addAll(triplesMaps);
+		this.functionRuntime = functionRuntime;
 	}
 
 	/**
@@ -47,4 +59,11 @@ public class R2RMLMapping {
 	public Collection<TriplesMap> getTriplesMaps() {
 		return triplesMaps;
 	}
+
+	/**
+	 * @return functions declared by this mapping (null if unknown)
+	 */
+	public FunctionRuntime getFunctionRuntime() {
+		return functionRuntime;
+	}
 }
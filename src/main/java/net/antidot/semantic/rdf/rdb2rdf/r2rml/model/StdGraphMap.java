@@ -40,6 +40,7 @@ import org.openrdf.model.Value;
 
 public class StdGraphMap extends AbstractTermMap implements GraphMap {
 
+	private static final long serialVersionUID = 1L;
 
 	public StdGraphMap(Value constantValue,
 			String stringTemplate, String inverseExpression,
@@ -31,11 +31,15 @@
  ****************************************************************************/
 package net.antidot.semantic.rdf.rdb2rdf.r2rml.model;
 
+import java.io.Serializable;
+
 import net.antidot.semantic.rdf.rdb2rdf.r2rml.exception.InvalidR2RMLStructureException;
 import net.antidot.semantic.rdf.rdb2rdf.r2rml.exception.InvalidR2RMLSyntaxException;
 import net.antidot.sql.model.tools.SQLDataValidator;
 
-public class StdJoinCondition implements JoinCondition {
+public class StdJoinCondition implements JoinCondition, Serializable {
+
+	private static final long serialVersionUID = 1L;
 
 	private String child;
 	private String parent;
@@ -39,6 +39,8 @@ import org.openrdf.model.Value;
 
 public class StdObjectMap extends AbstractTermMap implements TermMap, ObjectMap {
 
+	private static final long serialVersionUID = 1L;
+
 	private PredicateObjectMap predicateObjectMap;
 
 	public StdObjectMap(PredicateObjectMap predicateObjectMap,
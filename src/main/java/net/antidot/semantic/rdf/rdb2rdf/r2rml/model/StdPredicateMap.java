@@ -39,6 +39,8 @@ import org.openrdf.model.Value;
 public class StdPredicateMap extends AbstractTermMap implements TermMap,
 		PredicateMap {
 
+	private static final long serialVersionUID = 1L;
+
 	private PredicateObjectMap predicateObjectMap;
 
 	public StdPredicateMap(PredicateObjectMap predicateObjectMap,
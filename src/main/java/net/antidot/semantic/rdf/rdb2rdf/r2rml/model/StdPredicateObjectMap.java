@@ -29,10 +29,13 @@
  ****************************************************************************/
 package net.antidot.semantic.rdf.rdb2rdf.r2rml.model;
 
+import java.io.Serializable;
 import java.util.HashSet;
 import java.util.Set;
 
-public class StdPredicateObjectMap implements PredicateObjectMap {
+public class StdPredicateObjectMap implements PredicateObjectMap, Serializable {
+
+	private static final long serialVersionUID = 1L;
 
 	private Set<ObjectMap> objectMaps;
 	private Set<ReferencingObjectMap> refObjectMaps;
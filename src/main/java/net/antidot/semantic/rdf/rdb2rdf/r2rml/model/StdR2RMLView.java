@@ -26,12 +26,15 @@
  ****************************************************************************/
 package net.antidot.semantic.rdf.rdb2rdf.r2rml.model;
 
+import java.io.Serializable;
 import java.util.HashSet;
 import java.util.Set;
 
 import net.antidot.sql.model.tools.SQLDataValidator;
 
-public class StdR2RMLView implements R2RMLView {
+public class StdR2RMLView implements R2RMLView, Serializable {
+
+	private static final long serialVersionUID = 1L;
 
 	private String sqlQuery;
 	private Set<SQLVersion> sqlVersion;
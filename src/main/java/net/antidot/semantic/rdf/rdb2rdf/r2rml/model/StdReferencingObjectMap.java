@@ -28,10 +28,13 @@
  ****************************************************************************/
 package net.antidot.semantic.rdf.rdb2rdf.r2rml.model;
 
+import java.io.Serializable;
 import java.util.HashSet;
 import java.util.Set;
 
-public class StdReferencingObjectMap implements ReferencingObjectMap {
+public class StdReferencingObjectMap implements ReferencingObjectMap, Serializable {
+
+	private static final long serialVersionUID = 1L;
 
 	private TriplesMap parentTriplesMap;
 	private HashSet<JoinCondition> joinConditions;
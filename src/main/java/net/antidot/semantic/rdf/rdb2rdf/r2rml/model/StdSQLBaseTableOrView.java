@@ -26,10 +26,14 @@
  ****************************************************************************/
 package net.antidot.semantic.rdf.rdb2rdf.r2rml.model;
 
+import java.io.Serializable;
+
 import net.antidot.semantic.rdf.rdb2rdf.r2rml.exception.InvalidR2RMLSyntaxException;
 import net.antidot.sql.model.tools.SQLDataValidator;
 
-public class StdSQLBaseTableOrView implements SQLBaseTableOrView {
+public class StdSQLBaseTableOrView implements SQLBaseTableOrView, Serializable {
+
+	private static final long serialVersionUID = 1L;
 
 	private String tableName;
 
@@ -28,6 +28,9 @@
  ****************************************************************************/
 package net.antidot.semantic.rdf.rdb2rdf.r2rml.model;
 
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
 import java.util.HashSet;
 import java.util.Set;
 
@@ -42,7 +45,9 @@ import org.openrdf.model.Value;
 
 public class StdSubjectMap extends AbstractTermMap implements SubjectMap {
 
-	private Set<URI> classIRIs;
+	private static final long serialVersionUID = 1L;
+
+	private transient Set<URI> classIRIs;
 	private HashSet<GraphMap> graphMaps;
 	protected TriplesMap ownTriplesMap;
 
@@ -100,6 +105,22 @@ public class StdSubjectMap extends AbstractTermMap implements SubjectMap {
 		}
 	}
 
+	private void writeObject(ObjectOutputStream out) throws IOException {
+		out.defaultWriteObject();
+		out.writeInt(classIRIs.size());
+		for (URI classIRI : classIRIs)
+			out.writeObject(toPlainValue(classIRI));
+	}
+
+	private void readObject(ObjectInputStream in) throws IOException,
+			ClassNotFoundException {
+		in.defaultReadObject();
+		int size = in.readInt();
+		classIRIs = new HashSet<URI>();
+		for (int i = 0; i < size; i++)
+			classIRIs.add((URI) in.readObject());
+	}
+
 	public Set<URI> getClassIRIs() {
 		return classIRIs;
 	}
@@ -27,12 +27,15 @@
  ****************************************************************************/
 package net.antidot.semantic.rdf.rdb2rdf.r2rml.model;
 
+import java.io.Serializable;
 import java.util.HashSet;
 import java.util.Set;
 
 import net.antidot.semantic.rdf.rdb2rdf.r2rml.exception.InvalidR2RMLStructureException;
 
-public class StdTriplesMap implements TriplesMap {
+public class StdTriplesMap implements TriplesMap, Serializable {
+
+	private static final long serialVersionUID = 1L;
 
 	private Set<PredicateObjectMap> predicateObjectMaps;
 	private SubjectMap subjectMap;
@@ -42,15 +42,14 @@ import javax.script.ScriptException;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 
-import net.antidot.semantic.rdf.rdb2rdf.commons.SQLToXMLS;
+import net.antidot.semantic.rdf.rdb2rdf.commons.LRUCache;
+import net.antidot.semantic.rdf.rdb2rdf.r2rml.core.R2RMLProcessor;
 import net.antidot.semantic.rdf.rdb2rdf.r2rml.exception.R2RMLDataError;
 import net.antidot.semantic.rdf.rdb2rdf.r2rml.function.FunctionCall;
 import net.antidot.semantic.rdf.rdb2rdf.r2rml.function.JSEnv;
-import net.antidot.semantic.xmls.xsd.XSDLexicalTransformation;
-import net.antidot.semantic.xmls.xsd.XSDType;
+import net.antidot.sql.model.core.DriverType;
 import net.antidot.sql.model.db.ColumnIdentifier;
 import net.antidot.sql.model.db.ColumnIdentifierImpl;
-import net.antidot.sql.model.type.SQLType;
 
 public abstract class R2RMLToolkit {
 
@@ -268,49 +267,58 @@ public abstract class R2RMLToolkit {
 			ResultSetMetaData dbTypes) throws R2RMLDataError, SQLException,
 			UnsupportedEncodingException {
 		// Let result be the template string
-
-		String result = stringTemplate;
 		if (dbValues == null)
 			return null;
-		for (ColumnIdentifier dbValue : dbValues.keySet()) {
-			// For each pair of unescaped curly braces in result: if value is
-			// NULL, then return NULL
-			if (dbValues.get(dbValue) == null)
-				return null;
-		}
-		for (ColumnIdentifier column : dbValues.keySet()) {
-			// Extract db value
-			byte[] byteValue = dbValues.get(column);
-			// Extract RDF Natural form
-			SQLType sqlType = column.getSqlType();
-			// Apply cast to string to the SQL data value
-			String value;
-			if (sqlType != null) {
-				XSDType xsdType = SQLToXMLS.getEquivalentType(sqlType);
-				value = XSDLexicalTransformation.extractNaturalRDFFormFrom(
-						xsdType, byteValue);
-			}
-			else
-			{
-			    value = new String(byteValue, "UTF-8");
-			}
-			result = column.replaceAll(result, getIRISafeVersion(value));
-			// Test backslashes result =
-			/*
-			 * result.replaceAll("\\{\\\"" + column + "\\\"\\}",
-			 * getIRISafeVersion(result)); result = result.replaceAll("\\{\\'" +
-			 * column + "\\'\\}", getIRISafeVersion(result)); result =
-			 * result.replaceAll("\\{\\`" + column + "\\`\\}",
-			 * getIRISafeVersion(result));
-			 */
+		return getCompiledTemplate(stringTemplate).render(dbValues);
+	}
 
+	// Templates compiled for callers without a term map (term maps keep
+	// their own compiled template), by driver and template
+	private static final int MAX_COMPILED_TEMPLATES = 256;
+	private static final LRUCache<String, StringTemplate> compiledTemplates = new LRUCache<String, StringTemplate>(
+			MAX_COMPILED_TEMPLATES);
+
+	/*
+	 * Compile a template once : its columns depend on the driver in use.
+	 */
+	private static StringTemplate getCompiledTemplate(String stringTemplate) {
+		DriverType driver = R2RMLProcessor.getDriverType();
+		String key = (driver == null ? "" : driver.getDriverName()) + "\n"
+				+ stringTemplate;
+		synchronized (compiledTemplates) {
+			StringTemplate result = compiledTemplates.get(key);
+			if (result == null) {
+				result = new StringTemplate(stringTemplate);
+				compiledTemplates.put(key, result);
+			}
+			return result;
 		}
-		// Curly braces that do not enclose column names MUST be
-		// escaped by a backslash character (“\”).
-		result = result.replaceAll("\\\\\\{", "{");
-		result = result.replaceAll("\\\\\\}", "}");
+	}
 
-		return result;
+	// ASCII characters kept by the IRI-safe version : ALPHA / DIGIT / "-" /
+	// "." / "_" / "~" and some sub-delims
+	private static final boolean[] IRI_UNRESERVED = new boolean[128];
+	static {
+		for (char c = 'A'; c <= 'Z'; c++)
+			IRI_UNRESERVED[c] = true;
+		for (char c = 'a'; c <= 'z'; c++)
+			IRI_UNRESERVED[c] = true;
+		for (char c = '0'; c <= '9'; c++)
+			IRI_UNRESERVED[c] = true;
+		for (char c : "-._~*'()!=".toCharArray())
+			IRI_UNRESERVED[c] = true;
+	}
+
+	private static final char[] HEX_DIGITS = "0123456789ABCDEF"
+			.toCharArray();
+
+	/*
+	 * Other characters (ucschar) are kept if they are letters or digits.
+	 */
+	private static boolean isIRIUnreserved(int codePoint) {
+		if (codePoint < 128)
+			return IRI_UNRESERVED[codePoint];
+		return Character.isLetterOrDigit(codePoint);
 	}
 
 	/**
@@ -321,34 +329,68 @@ public abstract class R2RMLToolkit {
 	 * @throws MalformedURLException
 	 */
 	public static String getIRISafeVersion(String value) {
-		// Any character that is not in the iunreserved production
-		// iunreserved = ALPHA / DIGIT / "-" / "." / "_" / "~" / ucschar
-		StringBuffer buff = new StringBuffer(value.length());
-		Set<Character> unreservedChars = new HashSet<Character>();
+		// Most values have nothing to encode
+		int length = value.length();
+		int i = 0;
+		while (i < length) {
+			int codePoint = value.codePointAt(i);
+			if (!isIRIUnreserved(codePoint))
+				break;
+			i += Character.charCount(codePoint);
+		}
+		if (i == length)
+			return value;
+		StringBuilder buff = new StringBuilder(length + 16);
+		buff.append(value, 0, i);
+		appendIRISafeVersion(value, i, buff);
+		return buff.toString();
+	}
 
-		unreservedChars.add('-');
-		unreservedChars.add('.');
-		unreservedChars.add('_');
-		unreservedChars.add('~');
-		unreservedChars.add('*');
-		unreservedChars.add('\'');
-		unreservedChars.add('(');
-		unreservedChars.add(')');
-		unreservedChars.add('!');
-		unreservedChars.add('=');
+	/**
+	 * Append the IRI-safe version of a string to a buffer.
+	 */
+	public static void appendIRISafeVersion(String value, StringBuilder buff) {
+		appendIRISafeVersion(value, 0, buff);
+	}
 
-		for (int i = 0; i < value.length(); i++) {
-			char c = value.charAt(i);
-			if (!(Character.isDigit(c) || Character.isLetter(c) || unreservedChars
-					.contains(c))) {
-				// Percent-encode each octet
-				buff.append('%');
-				buff.append(Integer.toHexString(c).toUpperCase());
+	private static void appendIRISafeVersion(String value, int start,
+			StringBuilder buff) {
+		// Any character that is not in the iunreserved production
+		// iunreserved = ALPHA / DIGIT / "-" / "." / "_" / "~" / ucschar
+		int length = value.length();
+		int i = start;
+		while (i < length) {
+			int codePoint = value.codePointAt(i);
+			i += Character.charCount(codePoint);
+			if (isIRIUnreserved(codePoint))
+				buff.appendCodePoint(codePoint);
+			else if (codePoint < 0x80)
+				// Percent-encode each octet of its UTF-8 encoding
+				appendPercentEncodedOctet(codePoint, buff);
+			else if (codePoint < 0x800) {
+				appendPercentEncodedOctet(0xC0 | (codePoint >> 6), buff);
+				appendPercentEncodedOctet(0x80 | (codePoint & 0x3F), buff);
+			} else if (codePoint < 0x10000) {
+				appendPercentEncodedOctet(0xE0 | (codePoint >> 12), buff);
+				appendPercentEncodedOctet(0x80 | ((codePoint >> 6) & 0x3F),
+						buff);
+				appendPercentEncodedOctet(0x80 | (codePoint & 0x3F), buff);
 			} else {
-				buff.append(c);
+				appendPercentEncodedOctet(0xF0 | (codePoint >> 18), buff);
+				appendPercentEncodedOctet(0x80 | ((codePoint >> 12) & 0x3F),
+						buff);
+				appendPercentEncodedOctet(0x80 | ((codePoint >> 6) & 0x3F),
+						buff);
+				appendPercentEncodedOctet(0x80 | (codePoint & 0x3F), buff);
 			}
 		}
-		return buff.toString();
+	}
+
+	private static void appendPercentEncodedOctet(int octet,
+			StringBuilder buff) {
+		buff.append('%');
+		buff.append(HEX_DIGITS[(octet >> 4) & 0xF]);
+		buff.append(HEX_DIGITS[octet & 0xF]);
 	}
 
 	/**
@@ -398,7 +440,11 @@ public abstract class R2RMLToolkit {
 		
 		String result;
 		try {
-			result = JSEnv.invoke(functionCall.getFunctionName(), parameters);
+			if (functionCall.getFunction() != null)
+				result = functionCall.getFunction().invoke(parameters);
+			else
+				// Function call built without the mapping factory
+				result = JSEnv.invoke(functionCall.getFunctionName(), parameters);
 		} catch (NoSuchMethodException e) {
 			throw new R2RMLDataError(e.getMessage());
 		} catch (ScriptException e) {
@@ -0,0 +1,184 @@
+/* 
+ * Copyright 2011-2013 Antidot opensource@antidot.net
+ * https://github.com/antidot/db2triples
+ * 
+ * This file is part of DB2Triples
+ *
+ * DB2Triples is free software; you can redistribute it and/or 
+ * modify it under the terms of the GNU Lesser General Public License as 
+ * published by the Free Software Foundation; either version 2 of 
+ * the License, or (at your option) any later version.
+ * 
+ * DB2Triples is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+/***************************************************************************
+ *
+ * R2RML Tools : String Template
+ *
+ * A string template parsed once into a sequence of literal segments and
+ * column slots. Escaped curly braces of the literal segments are already
+ * unescaped, so that a template value is built in a single pass.
+ *
+ ****************************************************************************/
+package net.antidot.semantic.rdf.rdb2rdf.r2rml.tools;
+
+import java.io.Serializable;
+import java.io.UnsupportedEncodingException;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import net.antidot.semantic.rdf.rdb2rdf.commons.SQLToXMLS;
+import net.antidot.semantic.xmls.xsd.XSDLexicalTransformation;
+import net.antidot.semantic.xmls.xsd.XSDType;
+import net.antidot.sql.model.db.ColumnIdentifier;
+import net.antidot.sql.model.db.ColumnIdentifierImpl;
+import net.antidot.sql.model.type.SQLType;
+
+public class StringTemplate implements Serializable {
+
+	private static final long serialVersionUID = 1L;
+
+	private String template;
+	// segments[i] precedes the column slot i, the last one ends the template
+	private String[] segments;
+	// Column names of the slots, as written in the template
+	private String[] columnNames;
+	// Columns of the slots
+	private ColumnIdentifier[] columns;
+
+	public StringTemplate(String template) {
+		if (template == null)
+			throw new IllegalArgumentException(
+					"[StringTemplate:StringTemplate] No string template found.");
+		this.template = template;
+		List<String> parsedSegments = new ArrayList<String>();
+		List<String> parsedColumnNames = new ArrayList<String>();
+		StringBuilder segment = new StringBuilder();
+		int length = template.length();
+		int i = 0;
+		while (i < length) {
+			char c = template.charAt(i);
+			if (c == '\\' && i + 1 < length
+					&& (template.charAt(i + 1) == '{' || template
+							.charAt(i + 1) == '}')) {
+				// Curly braces that do not enclose column names MUST be
+				// escaped by a backslash character ("\").
+				segment.append(template.charAt(i + 1));
+				i += 2;
+			} else if (c == '{' && template.indexOf('}', i + 1) > i + 1) {
+				int end = template.indexOf('}', i + 1);
+				parsedSegments.add(segment.toString());
+				parsedColumnNames.add(template.substring(i + 1, end));
+				segment.setLength(0);
+				i = end + 1;
+			} else {
+				segment.append(c);
+				i++;
+			}
+		}
+		parsedSegments.add(segment.toString());
+		segments = parsedSegments.toArray(new String[parsedSegments.size()]);
+		columnNames = parsedColumnNames.toArray(new String[parsedColumnNames
+				.size()]);
+		columns = new ColumnIdentifier[columnNames.length];
+		for (int k = 0; k < columnNames.length; k++)
+			columns[k] = ColumnIdentifierImpl
+					.buildFromR2RMLConfigFile(columnNames[k]);
+	}
+
+	public String getTemplate() {
+		return template;
+	}
+
+	/**
+	 * Column names enclosed in unescaped curly braces, as written in the
+	 * template.
+	 */
+	public Set<String> getColumnNames() {
+		Set<String> result = new LinkedHashSet<String>();
+		for (String columnName : columnNames)
+			result.add(columnName);
+		return result;
+	}
+
+	/**
+	 * Columns referenced by the template.
+	 */
+	public Set<ColumnIdentifier> getColumns() {
+		Set<ColumnIdentifier> result = new LinkedHashSet<ColumnIdentifier>();
+		for (ColumnIdentifier column : columns)
+			result.add(column);
+		return result;
+	}
+
+	/**
+	 * Build the template value of a row : each column slot is replaced by the
+	 * IRI-safe version of the natural RDF lexical form of its value. Return
+	 * null if a value is NULL.
+	 * 
+	 * @param dbValues
+	 * @return
+	 * @throws UnsupportedEncodingException
+	 */
+	public String render(Map<ColumnIdentifier, byte[]> dbValues)
+			throws UnsupportedEncodingException {
+		if (dbValues == null)
+			return null;
+		String[] values = new String[columns.length];
+		for (Map.Entry<ColumnIdentifier, byte[]> entry : dbValues.entrySet()) {
+			byte[] byteValue = entry.getValue();
+			// For each pair of unescaped curly braces in result: if value is
+			// NULL, then return NULL
+			if (byteValue == null)
+				return null;
+			ColumnIdentifier column = entry.getKey();
+			String value = null;
+			for (int k = 0; k < columns.length; k++) {
+				if (!column.equals(columns[k]))
+					continue;
+				if (value == null)
+					value = extractValue(column, byteValue);
+				values[k] = value;
+			}
+		}
+		StringBuilder result = new StringBuilder(template.length() + 16
+				* columns.length);
+		for (int k = 0; k < columns.length; k++) {
+			result.append(segments[k]);
+			if (values[k] != null)
+				R2RMLToolkit.appendIRISafeVersion(values[k], result);
+			else
+				// Unknown column : left as is
+				result.append('{').append(columnNames[k]).append('}');
+		}
+		result.append(segments[columns.length]);
+		return result.toString();
+	}
+
+	private static String extractValue(ColumnIdentifier column,
+			byte[] byteValue) throws UnsupportedEncodingException {
+		// Extract RDF Natural form
+		SQLType sqlType = column.getSqlType();
+		// Apply cast to string to the SQL data value
+		if (sqlType != null) {
+			XSDType xsdType = SQLToXMLS.getEquivalentType(sqlType);
+			return XSDLexicalTransformation.extractNaturalRDFFormFrom(xsdType,
+					byteValue);
+		} else
+			return new String(byteValue, "UTF-8");
+	}
+
+	public String toString() {
+		return template;
+	}
+
+}
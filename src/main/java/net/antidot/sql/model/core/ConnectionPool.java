@@ -0,0 +1,171 @@
+/* 
+ * Copyright 2011-2013 Antidot opensource@antidot.net
+ * https://github.com/antidot/db2triples
+ * 
+ * This file is part of DB2Triples
+ *
+ * DB2Triples is free software; you can redistribute it and/or 
+ * modify it under the terms of the GNU Lesser General Public License as 
+ * published by the Free Software Foundation; either version 2 of 
+ * the License, or (at your option) any later version.
+ * 
+ * DB2Triples is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+/***************************************************************************
+ *
+ * SQL Connection Pool
+ *
+ * Fixed-size pool of JDBC connections opened on demand against the
+ * same database, used by parallel mapping workers.
+ *
+ ****************************************************************************/
+package net.antidot.sql.model.core;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.LinkedList;
+import java.util.List;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+public class ConnectionPool {
+
+	// Log
+	private static Log log = LogFactory.getLog(ConnectionPool.class);
+
+	// Connection settings
+	private String userName;
+	private String password;
+	private String fullurl;
+	private DriverType driver;
+
+	// Maximal number of opened connections
+	private int maxSize;
+	// Every connection opened by this pool
+	private List<Connection> connections;
+	// Connections ready to be acquired
+	private LinkedList<Connection> idleConnections;
+	private boolean closed;
+
+	public ConnectionPool(String userName, String password, String fullurl,
+			DriverType driver, int maxSize) {
+		if (maxSize < 1)
+			throw new IllegalArgumentException(
+					"[ConnectionPool:ConnectionPool] Size of pool must be positive : "
+							+ maxSize);
+		this.userName = userName;
+		this.password = password;
+		this.fullurl = fullurl;
+		this.driver = driver;
+		this.maxSize = maxSize;
+		connections = new ArrayList<Connection>();
+		idleConnections = new LinkedList<Connection>();
+		closed = false;
+	}
+
+	public int getMaxSize() {
+		return maxSize;
+	}
+
+	/**
+	 * Get a connection of the pool. A new connection is opened if every
+	 * opened connection is in use and the pool is not full, otherwise the
+	 * caller waits until a connection is released.
+	 * 
+	 * @return
+	 * @throws SQLException
+	 */
+	public synchronized Connection acquire() throws SQLException {
+		while (true) {
+			if (closed)
+				throw new SQLException(
+						"[ConnectionPool:acquire] Connection pool is closed.");
+			if (!idleConnections.isEmpty())
+				return idleConnections.removeFirst();
+			if (connections.size() < maxSize) {
+				Connection conn = open();
+				connections.add(conn);
+				log.debug("[ConnectionPool:acquire] Number of opened connections : "
+						+ connections.size());
+				return conn;
+			}
+			try {
+				wait();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw new SQLException(
+						"[ConnectionPool:acquire] Interrupted while waiting for a connection.");
+			}
+		}
+	}
+
+	/**
+	 * Give back a connection acquired from this pool.
+	 * 
+	 * @param conn
+	 */
+	public synchronized void release(Connection conn) {
+		if (conn == null)
+			return;
+		if (!containsConnection(connections, conn))
+			throw new IllegalArgumentException(
+					"[ConnectionPool:release] This connection does not belong to this pool.");
+		if (!containsConnection(idleConnections, conn))
+			idleConnections.addLast(conn);
+		notifyAll();
+	}
+
+	/**
+	 * Close every connection opened by this pool.
+	 */
+	public synchronized void close() {
+		closed = true;
+		for (Connection conn : connections) {
+			try {
+				conn.close();
+			} catch (SQLException e) {
+				log.warn("[ConnectionPool:close] Unable to close a connection : "
+						+ e.getMessage());
+			}
+		}
+		connections.clear();
+		idleConnections.clear();
+		notifyAll();
+	}
+
+	/*
+	 * Connections are compared by identity : some drivers wrap them and
+	 * redefine equals.
+	 */
+	private static boolean containsConnection(List<Connection> list,
+			Connection conn) {
+		for (Connection c : list)
+			if (c == conn)
+				return true;
+		return false;
+	}
+
+	private Connection open() throws SQLException {
+		try {
+			return SQLConnector.connect(userName, password, fullurl, driver);
+		} catch (InstantiationException e) {
+			throw new SQLException("[ConnectionPool:open] Unable to load driver "
+					+ driver + " : " + e.getMessage());
+		} catch (IllegalAccessException e) {
+			throw new SQLException("[ConnectionPool:open] Unable to load driver "
+					+ driver + " : " + e.getMessage());
+		} catch (ClassNotFoundException e) {
+			throw new SQLException("[ConnectionPool:open] Unable to load driver "
+					+ driver + " : " + e.getMessage());
+		}
+	}
+
+}
@@ -35,6 +35,7 @@ import java.io.FileReader;
 import java.sql.Connection;
 import java.sql.DatabaseMetaData;
 import java.sql.DriverManager;
+import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.sql.Statement;
@@ -52,6 +53,14 @@ public abstract class SQLConnector {
 
 	// Log
 	private static Log log = LogFactory.getLog(SQLConnector.class);
+
+	/**
+	 * Default number of rows fetched at once by streaming statements.
+	 */
+	public static final int DEFAULT_FETCH_SIZE = 50;
+
+	// MySQL Connector/J option which fetches rows with a server-side cursor
+	private static final String MYSQL_CURSOR_FETCH = "useCursorFetch=true";
 			
 	/**
 	 * Try to connect a database and returns current connection.
@@ -92,6 +101,58 @@ public abstract class SQLConnector {
 	return conn;
 }	
 
+	/**
+	 * Add to a connection URL the options required to stream the results of
+	 * queries. MySQL Connector/J loads every row of a result in memory unless
+	 * it uses a server-side cursor (for prepared statements) : unlike its row
+	 * per row streaming mode (fetch size of Integer.MIN_VALUE), a cursor lets
+	 * other queries run on the same connection while a result is read. A
+	 * cursor also costs a round trip per fetch : it is only worth it to read
+	 * large tables, so this option is not added by connect.
+	 * 
+	 * @param url
+	 * @param driver
+	 * @return
+	 */
+	public static String getStreamingURL(String url, DriverType driver) {
+		if (!DriverType.MysqlDriver.equals(driver)
+				|| url.indexOf("useCursorFetch=") != -1)
+			return url;
+		if (url.indexOf('?') == -1)
+			return url + "?" + MYSQL_CURSOR_FETCH;
+		return url + "&" + MYSQL_CURSOR_FETCH;
+	}
+
+	/**
+	 * Prepare a read-only query whose results are fetched from the database
+	 * fetchSize rows at a time instead of being loaded in memory (see
+	 * getStreamingURL for MySQL). A zero fetch size keeps the default
+	 * behaviour of the driver. PostgreSQL only uses a cursor inside a
+	 * transaction : autocommit is turned off.
+	 * 
+	 * @param conn
+	 * @param driver
+	 * @param query
+	 * @param fetchSize
+	 * @return
+	 * @throws SQLException
+	 */
+	public static PreparedStatement prepareStreamingStatement(Connection conn,
+			DriverType driver, String query, int fetchSize)
+			throws SQLException {
+		if (fetchSize < 0)
+			throw new IllegalArgumentException(
+					"[SQLConnector:prepareStreamingStatement] Fetch size must be positive.");
+		PreparedStatement stmt = conn.prepareStatement(query,
+				ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+		if (fetchSize > 0) {
+			if (DriverType.PostgreSQL.equals(driver) && conn.getAutoCommit())
+				conn.setAutoCommit(false);
+			stmt.setFetchSize(fetchSize);
+		}
+		return stmt;
+	}
+
 	/**
 	 * Update a database, connected with c, with requests in SQL file.
 	 * 
@@ -20,6 +20,7 @@
 
 package net.antidot.sql.model.db;
 
+import java.io.Serializable;
 import java.sql.ResultSetMetaData;
 import java.sql.SQLException;
 import java.util.Set;
@@ -33,7 +34,9 @@ import net.antidot.sql.model.type.SQLType;
  * @author Laurent Mazuel
  * 
  */
-public class ColumnIdentifierImpl implements ColumnIdentifier {
+public class ColumnIdentifierImpl implements ColumnIdentifier, Serializable {
+
+    private static final long serialVersionUID = 1L;
 
     private String columnName = null;
     private SQLType sqlType = null;
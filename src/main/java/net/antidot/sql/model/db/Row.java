@@ -35,22 +35,24 @@
 package net.antidot.sql.model.db;
 
 import java.io.UnsupportedEncodingException;
-import java.util.Map;
+import java.util.List;
 import java.util.SortedMap;
 import java.util.TreeMap;
 
 
 public class Row implements Tuple {
 
-	SortedMap<String, byte[]> values;
+	// Values indexed by the positions of the layout
+	RowLayout layout;
+	byte[][] values;
 	StdBody parentBody;
-	int index;
+	long index;
 
 	public StdBody getParentBody() {
 		return parentBody;
 	}
 	
-	public int getIndex(){
+	public long getIndex(){
 		return index;
 	}
 
@@ -58,34 +60,78 @@ public class Row implements Tuple {
 		this.parentBody = parentBody;
 	}
 
-	public Row(SortedMap<String, byte[]> values, StdBody parentBody, int index) throws UnsupportedEncodingException {
-		this.values = new TreeMap<String, byte[]>();
-		if (values != null)
-			for (String key : values.keySet()){
-				byte[] bytesResult = values.get(key);
-				this.values.put(key, bytesResult);
-			}
+	public Row(SortedMap<String, byte[]> values, StdBody parentBody, long index) throws UnsupportedEncodingException {
+		setValues(values);
 		this.parentBody = parentBody;
 		this.index = index;
 	}
-	
 
+	/**
+	 * Build a row from values indexed by the positions of a layout shared by
+	 * the rows of its table. These values are not copied.
+	 * 
+	 * @param layout
+	 * @param values
+	 * @param parentBody
+	 * @param index
+	 */
+	public Row(RowLayout layout, byte[][] values, StdBody parentBody, long index) {
+		if (layout.getNbColumns() != values.length)
+			throw new IllegalArgumentException(
+					"[Row:Row] Number of values does not match the row layout : "
+							+ values.length + " instead of "
+							+ layout.getNbColumns());
+		this.layout = layout;
+		this.values = values;
+		this.parentBody = parentBody;
+		this.index = index;
+	}
+
+	/**
+	 * Copy of this row with another index, which shares its values.
+	 * 
+	 * @param index
+	 * @return
+	 */
+	public Row copy(long index) {
+		return new Row(layout, values, parentBody, index);
+	}
+
+	/**
+	 * Return a copy of the values of this row.
+	 */
 	public SortedMap<String, byte[]> getValues() {
-		return values;
+		TreeMap<String, byte[]> result = new TreeMap<String, byte[]>();
+		for (int i = 0; i < values.length; i++)
+			result.put(layout.getColumnNames().get(i), values[i]);
+		return result;
 	}
 
 	public void setValues(SortedMap<String, byte[]> values) {
-		this.values = values;
+		if (values == null)
+			values = new TreeMap<String, byte[]>();
+		this.layout = new RowLayout(values.keySet());
+		this.values = new byte[layout.getNbColumns()][];
+		for (String columnName : values.keySet())
+			this.values[layout.getPosition(columnName)] = values.get(columnName);
+	}
+
+	public byte[] getValue(String columnName) {
+		int position = layout.getPosition(columnName);
+		if (position == -1)
+			return null;
+		return values[position];
+	}
+
+	public List<String> getColumnNames() {
+		return layout.getColumnNames();
 	}
 
 	public String toString() {
 		String result = "{[Row:toString] values = ";
-		int i = 0;
-		final int size = values.size();
-		for (Map.Entry<String, byte[]> entry : values.entrySet()) {
-			i++;
-			result += entry.getKey() + " => " + entry.getValue();
-			if (i < size)
+		for (int i = 0; i < values.length; i++) {
+			result += layout.getColumnNames().get(i) + " => " + values[i];
+			if (i < values.length - 1)
 				result += ", ";
 		}
 		result += "; parentBody = " + parentBody;
@@ -0,0 +1,79 @@
+/* 
+ * Copyright 2011-2013 Antidot opensource@antidot.net
+ * https://github.com/antidot/db2triples
+ * 
+ * This file is part of DB2Triples
+ *
+ * DB2Triples is free software; you can redistribute it and/or 
+ * modify it under the terms of the GNU Lesser General Public License as 
+ * published by the Free Software Foundation; either version 2 of 
+ * the License, or (at your option) any later version.
+ * 
+ * DB2Triples is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+/**
+ *
+ * SQL model : Row Layout
+ * 
+ * Columns of the rows of a table, sorted by name, and the position of each
+ * column. A layout is shared by every row of a table, which only holds an
+ * array of values indexed by these positions. It must not be modified.
+ *
+ */
+package net.antidot.sql.model.db;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+
+public class RowLayout {
+
+	private final List<String> columnNames;
+	private final HashMap<String, Integer> positions;
+
+	public RowLayout(Collection<String> columnNames) {
+		ArrayList<String> sortedColumnNames = new ArrayList<String>(
+				columnNames);
+		Collections.sort(sortedColumnNames);
+		this.columnNames = Collections.unmodifiableList(sortedColumnNames);
+		this.positions = new HashMap<String, Integer>();
+		for (int i = 0; i < sortedColumnNames.size(); i++)
+			positions.put(sortedColumnNames.get(i), i);
+	}
+
+	/**
+	 * Columns of this layout, sorted by name.
+	 */
+	public List<String> getColumnNames() {
+		return columnNames;
+	}
+
+	public int getNbColumns() {
+		return columnNames.size();
+	}
+
+	/**
+	 * Position of a column in this layout, -1 if this column does not
+	 * belong to it.
+	 */
+	public int getPosition(String columnName) {
+		Integer position = positions.get(columnName);
+		if (position == null)
+			return -1;
+		return position;
+	}
+
+	public String toString() {
+		return "{[RowLayout:toString] columnNames = " + columnNames + "}";
+	}
+
+}
@@ -0,0 +1,209 @@
+/* 
+ * Copyright 2011-2013 Antidot opensource@antidot.net
+ * https://github.com/antidot/db2triples
+ * 
+ * This file is part of DB2Triples
+ *
+ * DB2Triples is free software; you can redistribute it and/or 
+ * modify it under the terms of the GNU Lesser General Public License as 
+ * published by the Free Software Foundation; either version 2 of 
+ * the License, or (at your option) any later version.
+ * 
+ * DB2Triples is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+/**
+ *
+ * SQL model : Schema Catalog
+ * 
+ * Metadata of every table of a database, loaded once up front with one
+ * pass over the database metadata : tables and columns are listed with one
+ * query each, then primary and foreign keys are extracted table by table.
+ * A catalog is immutable once loaded and can be shared by several
+ * extractions.
+ *
+ */
+package net.antidot.sql.model.db;
+
+import java.sql.Connection;
+import java.sql.DatabaseMetaData;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+public class SchemaCatalog {
+
+	// Log
+	private static Log log = LogFactory.getLog(SchemaCatalog.class);
+
+	private final Map<String, TableMetadata> tables;
+
+	private SchemaCatalog(LinkedHashMap<String, TableMetadata> tables) {
+		this.tables = Collections.unmodifiableMap(tables);
+	}
+
+	/**
+	 * Load the metadata of every table of the current catalog of a
+	 * connection.
+	 */
+	public static SchemaCatalog load(Connection conn) throws SQLException {
+		DatabaseMetaData metas = conn.getMetaData();
+		String catalog = conn.getCatalog();
+		// Tables
+		LinkedHashMap<String, LinkedHashMap<String, String>> datatypes = new LinkedHashMap<String, LinkedHashMap<String, String>>();
+		LinkedHashMap<String, LinkedHashMap<String, String>> typeNames = new LinkedHashMap<String, LinkedHashMap<String, String>>();
+		ResultSet tablesSet = metas.getTables(catalog, null, "%", null);
+		while (tablesSet.next()) {
+			String tableType = tablesSet.getString("TABLE_TYPE");
+			if (tableType == null || !tableType.equals("TABLE"))
+				continue;
+			String tableName = tablesSet.getString("TABLE_NAME");
+			datatypes.put(tableName, new LinkedHashMap<String, String>());
+			typeNames.put(tableName, new LinkedHashMap<String, String>());
+		}
+		tablesSet.close();
+		// Columns of all tables
+		ResultSet headersSet = metas.getColumns(null, null, "%", null);
+		while (headersSet.next()) {
+			String tableName = headersSet.getString("TABLE_NAME");
+			if (!datatypes.containsKey(tableName))
+				continue;
+			String column = headersSet.getString("COLUMN_NAME");
+			datatypes.get(tableName).put(column,
+					headersSet.getString("DATA_TYPE"));
+			typeNames.get(tableName).put(column,
+					headersSet.getString("TYPE_NAME"));
+		}
+		headersSet.close();
+		// Keys
+		LinkedHashMap<String, TableMetadata> tables = new LinkedHashMap<String, TableMetadata>();
+		for (String tableName : datatypes.keySet())
+			tables.put(tableName, loadTable(metas, catalog, tableName,
+					datatypes.get(tableName), typeNames.get(tableName)));
+		log.info("[SchemaCatalog:load] Metadata of " + tables.size()
+				+ " tables loaded.");
+		return new SchemaCatalog(tables);
+	}
+
+	/**
+	 * Load the metadata of a single table (e.g. a table referenced by a
+	 * foreign key but not listed in a catalog).
+	 */
+	public static TableMetadata loadTable(DatabaseMetaData metas,
+			String catalog, String tableName) throws SQLException {
+		LinkedHashMap<String, String> datatypes = new LinkedHashMap<String, String>();
+		LinkedHashMap<String, String> typeNames = new LinkedHashMap<String, String>();
+		ResultSet headersSet = metas.getColumns(null, null, tableName, null);
+		while (headersSet.next()) {
+			String column = headersSet.getString("COLUMN_NAME");
+			datatypes.put(column, headersSet.getString("DATA_TYPE"));
+			typeNames.put(column, headersSet.getString("TYPE_NAME"));
+		}
+		headersSet.close();
+		return loadTable(metas, catalog, tableName, datatypes, typeNames);
+	}
+
+	private static TableMetadata loadTable(DatabaseMetaData metas,
+			String catalog, String tableName,
+			LinkedHashMap<String, String> datatypes,
+			LinkedHashMap<String, String> typeNames) throws SQLException {
+		// Primary key
+		ArrayList<String> primaryKeyColumnNames = new ArrayList<String>();
+		ResultSet primaryKeysSet = metas.getPrimaryKeys(catalog, null,
+				tableName);
+		while (primaryKeysSet.next())
+			primaryKeyColumnNames.add(primaryKeysSet.getString("COLUMN_NAME"));
+		primaryKeysSet.close();
+		// Foreign keys
+		ResultSet foreignKeysSet = metas.getImportedKeys(catalog, null,
+				tableName);
+		HashSet<ForeignKey> foreignKeys = extractForeignKeys(foreignKeysSet,
+				tableName);
+		foreignKeysSet.close();
+		return new TableMetadata(tableName, datatypes, typeNames,
+				primaryKeyColumnNames, foreignKeys);
+	}
+
+	/*
+	 * Extract foreign keys from database sets.
+	 */
+	private static HashSet<ForeignKey> extractForeignKeys(
+			ResultSet foreignKeysSet, String tableName) throws SQLException {
+		HashSet<ForeignKey> foreignKeys = new HashSet<ForeignKey>();
+		String currentPkTableName = null;
+		ArrayList<String> pkColumnNames = new ArrayList<String>();
+		ArrayList<String> fkColumnNames = new ArrayList<String>();
+		while (foreignKeysSet.next()) {
+			// Foreign key infos
+			String pkTableName = foreignKeysSet.getString("PKTABLE_NAME");
+			String pkColumnName = foreignKeysSet.getString("PKCOLUMN_NAME");
+			String fkTableName = foreignKeysSet.getString("FKTABLE_NAME");
+			String fkColumnName = foreignKeysSet.getString("FKCOLUMN_NAME");
+			int fkSequence = foreignKeysSet.getInt("KEY_SEQ");
+			// Consistency test
+			if (!fkTableName.equals(tableName))
+				throw new IllegalStateException(
+						"[SchemaCatalog:extractForeignKeys] Unconsistency between source "
+								+ "table of foreign key and current table : "
+								+ tableName + " != " + fkTableName);
+			if (fkSequence == 1) { // Sequence == order of column in
+				// Multi-column foreign key
+				// New foreign key => store last key
+				storeForeignKey(foreignKeys, fkColumnNames, pkColumnNames,
+						tableName, currentPkTableName);
+				fkColumnNames = new ArrayList<String>();
+				pkColumnNames = new ArrayList<String>();
+			}
+			currentPkTableName = pkTableName;
+			pkColumnNames.add(pkColumnName);
+			fkColumnNames.add(fkColumnName);
+		}
+		// Store last key
+		storeForeignKey(foreignKeys, fkColumnNames, pkColumnNames, tableName,
+				currentPkTableName);
+		return foreignKeys;
+	}
+
+	/*
+	 * Create foreign key object.
+	 */
+	private static void storeForeignKey(Set<ForeignKey> foreignKeys,
+			ArrayList<String> fkColumnNames, ArrayList<String> pkColumnNames,
+			String tableName, String currentPkTableName) {
+		log.debug("[SchemaCatalog:storeForeignKey] Store foreign key : "
+				+ pkColumnNames);
+		if (fkColumnNames.size() != 0)
+			foreignKeys.add(new ForeignKey(fkColumnNames, tableName,
+					new CandidateKey(pkColumnNames, currentPkTableName,
+							CandidateKey.KeyType.REFERENCE)));
+	}
+
+	/**
+	 * Names of the tables of this catalog, in database order.
+	 */
+	public Set<String> getTableNames() {
+		return tables.keySet();
+	}
+
+	/**
+	 * Metadata of a table, null if this table is not in this catalog.
+	 */
+	public TableMetadata getTable(String tableName) {
+		return tables.get(tableName);
+	}
+
+}
@@ -0,0 +1,188 @@
+/* 
+ * Copyright 2011-2013 Antidot opensource@antidot.net
+ * https://github.com/antidot/db2triples
+ * 
+ * This file is part of DB2Triples
+ *
+ * DB2Triples is free software; you can redistribute it and/or 
+ * modify it under the terms of the GNU Lesser General Public License as 
+ * published by the Free Software Foundation; either version 2 of 
+ * the License, or (at your option) any later version.
+ * 
+ * DB2Triples is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+/**
+ *
+ * SQL model : Table Metadata
+ * 
+ * Metadata of a table extracted once from the database : its header (SQL
+ * datatypes and type names of its columns), the resolved SQL type of each
+ * column, its primary key and its foreign keys, and the layout of its rows.
+ * These objects (and a table model built from them) are shared by every
+ * tuple of this table and must not be modified.
+ *
+ */
+package net.antidot.sql.model.db;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Set;
+
+import net.antidot.sql.model.type.SQLType;
+
+public class TableMetadata {
+
+	private final String tableName;
+	private final StdHeader header;
+	private final StdHeader typeNameHeader;
+	private final LinkedHashMap<String, SQLType> sqlTypes;
+	private final ArrayList<CandidateKey> primaryKeys;
+	private final HashSet<ForeignKey> foreignKeys;
+	private final RowLayout rowLayout;
+	// Position in header of each column of the row layout (from 1)
+	private final int[] headerPositions;
+	// Table models shared by rows, with SQL datatypes or type names
+	private final StdBody body;
+	private final StdBody typeNameBody;
+
+	/**
+	 * @param tableName
+	 * @param datatypes
+	 *            SQL datatypes (java.sql.Types codes) by column name, in
+	 *            column order.
+	 * @param typeNames
+	 *            database specific type names by column name.
+	 * @param primaryKeyColumnNames
+	 *            columns of the primary key (empty if there is no primary
+	 *            key).
+	 * @param foreignKeys
+	 */
+	public TableMetadata(String tableName,
+			LinkedHashMap<String, String> datatypes,
+			LinkedHashMap<String, String> typeNames,
+			List<String> primaryKeyColumnNames, Set<ForeignKey> foreignKeys) {
+		if (tableName == null)
+			throw new IllegalArgumentException(
+					"[TableMetadata:TableMetadata] A table name is required.");
+		this.tableName = tableName;
+		this.header = new StdHeader(new LinkedHashMap<String, String>(
+				datatypes));
+		this.typeNameHeader = new StdHeader(new LinkedHashMap<String, String>(
+				typeNames));
+		// Resolve SQL types once
+		this.sqlTypes = new LinkedHashMap<String, SQLType>();
+		for (String columnName : datatypes.keySet())
+			sqlTypes.put(columnName, SQLType.toSQLType(Integer
+					.valueOf(datatypes.get(columnName))));
+		// Primary key columns are sorted in header order
+		this.primaryKeys = new ArrayList<CandidateKey>();
+		if (!primaryKeyColumnNames.isEmpty()) {
+			ArrayList<String> sortedColumnNames = new ArrayList<String>();
+			for (String columnName : header.getColumnNames())
+				if (primaryKeyColumnNames.contains(columnName))
+					sortedColumnNames.add(columnName);
+			primaryKeys.add(new CandidateKey(sortedColumnNames, tableName,
+					CandidateKey.KeyType.PRIMARY));
+		}
+		this.foreignKeys = new HashSet<ForeignKey>(foreignKeys);
+		// Resolve positions of values once
+		this.rowLayout = new RowLayout(header.getColumnNames());
+		this.headerPositions = new int[rowLayout.getNbColumns()];
+		ArrayList<String> columnNames = header.getColumnNames();
+		for (int i = 0; i < columnNames.size(); i++)
+			headerPositions[rowLayout.getPosition(columnNames.get(i))] = i + 1;
+		this.body = buildBody(header);
+		this.typeNameBody = buildBody(typeNameHeader);
+	}
+
+	/*
+	 * Build a table model (without rows) which rows can be linked to.
+	 */
+	private StdBody buildBody(StdHeader header) {
+		StdBody body = new StdBody(new HashSet<Row>(), null);
+		StdTable table = new StdTable(tableName, header, primaryKeys,
+				foreignKeys, body);
+		body.setParentTable(table);
+		return body;
+	}
+
+	public String getTableName() {
+		return tableName;
+	}
+
+	/**
+	 * Header of this table with SQL datatypes (java.sql.Types codes).
+	 */
+	public StdHeader getHeader() {
+		return header;
+	}
+
+	/**
+	 * Header of this table with database specific type names.
+	 */
+	public StdHeader getTypeNameHeader() {
+		return typeNameHeader;
+	}
+
+	public ArrayList<String> getColumnNames() {
+		return header.getColumnNames();
+	}
+
+	public SQLType getSQLType(String columnName) {
+		return sqlTypes.get(columnName);
+	}
+
+	public ArrayList<CandidateKey> getPrimaryKeys() {
+		return primaryKeys;
+	}
+
+	public HashSet<ForeignKey> getForeignKeys() {
+		return foreignKeys;
+	}
+
+	/**
+	 * Layout of the rows of this table.
+	 */
+	public RowLayout getRowLayout() {
+		return rowLayout;
+	}
+
+	/**
+	 * Position (from 1) in the header of the column at a position of the row
+	 * layout : it's the position of this column in a result set whose
+	 * columns are selected in header order.
+	 */
+	public int getHeaderPosition(int layoutPosition) {
+		return headerPositions[layoutPosition];
+	}
+
+	/**
+	 * Body of a table model of this table, with SQL datatypes in its header.
+	 */
+	public StdBody getBody() {
+		return body;
+	}
+
+	/**
+	 * Body of a table model of this table, with type names in its header.
+	 */
+	public StdBody getTypeNameBody() {
+		return typeNameBody;
+	}
+
+	public String toString() {
+		return "{[TableMetadata:toString] tableName = " + tableName
+				+ "; header = " + header + "; primaryKeys = " + primaryKeys
+				+ "; foreignKeys = " + foreignKeys + "}";
+	}
+
+}
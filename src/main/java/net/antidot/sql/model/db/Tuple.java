@@ -31,6 +31,7 @@
  ****************************************************************************/
 package net.antidot.sql.model.db;
 
+import java.util.List;
 import java.util.SortedMap;
 
 
@@ -54,6 +55,20 @@ public interface Tuple {
 	 */
 	public SortedMap<String, byte[]> getValues();
 
+	/**
+	 * Get the value of a column of this tuple (null if this value is NULL or
+	 * if this column does not belong to this tuple).
+	 * @param columnName
+	 * @return
+	 */
+	public byte[] getValue(String columnName);
+
+	/**
+	 * Get columns of this tuple, sorted by name.
+	 * @return
+	 */
+	public List<String> getColumnNames();
+
 	/**
 	 * Set values contained in this tuple.
 	 * @param values
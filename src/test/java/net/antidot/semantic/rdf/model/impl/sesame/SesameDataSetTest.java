@@ -0,0 +1,94 @@
+/* 
+ * Copyright 2011-2013 Antidot opensource@antidot.net
+ * https://github.com/antidot/db2triples
+ * 
+ * This file is part of DB2Triples
+ *
+ * DB2Triples is free software; you can redistribute it and/or 
+ * modify it under the terms of the GNU Lesser General Public License as 
+ * published by the Free Software Foundation; either version 2 of 
+ * the License, or (at your option) any later version.
+ * 
+ * DB2Triples is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+/***************************************************************************
+ *
+ * Sesame Data Set Test
+ *
+ * A data set in spill mode must write each statement once, whether it
+ * has been spilled, added to the repository or both.
+ *
+ ****************************************************************************/
+package net.antidot.semantic.rdf.model.impl.sesame;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.ByteArrayOutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.Test;
+import org.openrdf.model.URI;
+import org.openrdf.rio.RDFFormat;
+
+public class SesameDataSetTest {
+
+	private static final String NS = "http://example.com/";
+
+	private static List<String> dump(SesameDataSet dataSet)
+			throws Exception {
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		dataSet.dumpRDF(out, RDFFormat.NTRIPLES);
+		List<String> result = new ArrayList<String>();
+		for (String line : out.toString("UTF-8").split("\n"))
+			if (line.trim().length() > 0)
+				result.add(line.trim());
+		Collections.sort(result);
+		return result;
+	}
+
+	@Test
+	public void testSpilledStatementsAlreadyInRepositoryAreWrittenOnce()
+			throws Exception {
+		SesameDataSet dataSet = new SesameDataSet();
+		URI p = dataSet.URIref(NS + "p");
+		URI a = dataSet.URIref(NS + "a");
+		URI b = dataSet.URIref(NS + "b");
+		URI c = dataSet.URIref(NS + "c");
+		// Statement in the repository before the spill mode
+		dataSet.add(a, p, b);
+		// Budget of a few statements : spilled on disk
+		dataSet.setSpillMode(200);
+		for (int i = 0; i < 10; i++) {
+			dataSet.add(a, p, b);
+			dataSet.add(b, p, c);
+		}
+		List<String> expected = Arrays.asList("<" + NS + "a> <" + NS
+				+ "p> <" + NS + "b> .", "<" + NS + "b> <" + NS + "p> <" + NS
+				+ "c> .");
+		assertEquals(expected, dump(dataSet));
+		dataSet.closeRepository();
+	}
+
+	@Test
+	public void testSpilledStatementsOnlyAreWrittenOnce()
+			throws Exception {
+		SesameDataSet dataSet = new SesameDataSet();
+		URI p = dataSet.URIref(NS + "p");
+		URI a = dataSet.URIref(NS + "a");
+		dataSet.setSpillMode(200);
+		for (int i = 0; i < 10; i++)
+			dataSet.add(a, p, dataSet.URIref(NS + "o" + (i % 3)));
+		assertEquals(3, dump(dataSet).size());
+		dataSet.closeRepository();
+	}
+
+}
@@ -0,0 +1,109 @@
+/* 
+ * Copyright 2011-2013 Antidot opensource@antidot.net
+ * https://github.com/antidot/db2triples
+ * 
+ * This file is part of DB2Triples
+ *
+ * DB2Triples is free software; you can redistribute it and/or 
+ * modify it under the terms of the GNU Lesser General Public License as 
+ * published by the Free Software Foundation; either version 2 of 
+ * the License, or (at your option) any later version.
+ * 
+ * DB2Triples is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+/***************************************************************************
+ *
+ * Spilled Statements Test
+ *
+ * Statements spilled into several sorted runs must be merged into one
+ * sorted stream without duplicates.
+ *
+ ****************************************************************************/
+package net.antidot.semantic.rdf.model.impl.sesame;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+
+import org.junit.Test;
+import org.openrdf.model.Statement;
+import org.openrdf.model.URI;
+import org.openrdf.model.ValueFactory;
+import org.openrdf.model.impl.ValueFactoryImpl;
+import org.openrdf.rio.RDFHandlerException;
+import org.openrdf.rio.helpers.RDFHandlerBase;
+import org.openrdf.rio.ntriples.NTriplesUtil;
+
+public class SpilledStatementsTest {
+
+	private static ValueFactory vf = new ValueFactoryImpl();
+
+	private static final String NS = "http://example.com/";
+	private static final int NB_SUBJECTS = 50;
+
+	/*
+	 * Add every statement three times in different orders, half of them in
+	 * a named graph, then export them.
+	 */
+	private static List<String> addAndExport(SpilledStatements statements)
+			throws RDFHandlerException {
+		URI p = vf.createURI(NS + "p");
+		URI graph = vf.createURI(NS + "graph");
+		for (int copy = 0; copy < 3; copy++)
+			for (int i = 0; i < NB_SUBJECTS; i++) {
+				int n = copy == 1 ? NB_SUBJECTS - 1 - i : (i * 7) % NB_SUBJECTS;
+				URI s = vf.createURI(NS + "s" + n);
+				statements.add(s, p, vf.createLiteral("value " + n), null);
+				statements.add(s, p, vf.createLiteral("value " + n), graph);
+			}
+		// Statement.equals ignores contexts : compare N-Triples forms
+		final List<String> result = new ArrayList<String>();
+		statements.export(new RDFHandlerBase() {
+			public void handleStatement(Statement st) {
+				result.add(NTriplesUtil.toNTriplesString(st.getSubject())
+						+ " " + NTriplesUtil.toNTriplesString(st.getObject())
+						+ " " + (st.getContext() == null ? "" : NTriplesUtil
+								.toNTriplesString(st.getContext())));
+			}
+		});
+		return result;
+	}
+
+	@Test
+	public void testRunsAreMergedWithoutDuplicates() throws RDFHandlerException {
+		SpilledStatements inMemory = new SpilledStatements(Long.MAX_VALUE);
+		List<String> expected = addAndExport(inMemory);
+		assertEquals(0, inMemory.getNbRuns());
+		assertEquals(2 * NB_SUBJECTS, expected.size());
+
+		// Budget of a few statements : many runs on disk
+		SpilledStatements spilled = new SpilledStatements(1000);
+		List<String> merged = addAndExport(spilled);
+		assertTrue(spilled.getNbRuns() > 10);
+		assertEquals(expected, merged);
+		spilled.clear();
+		assertTrue(spilled.isEmpty());
+	}
+
+	@Test
+	public void testStatementsAreSorted() throws RDFHandlerException {
+		SpilledStatements spilled = new SpilledStatements(1000);
+		List<String> merged = addAndExport(spilled);
+		List<String> sorted = new ArrayList<String>(merged);
+		Collections.sort(sorted);
+		assertEquals(sorted, merged);
+		assertEquals(new HashSet<String>(merged).size(), merged.size());
+		spilled.clear();
+	}
+
+}
@@ -0,0 +1,142 @@
+/* 
+ * Copyright 2011-2013 Antidot opensource@antidot.net
+ * https://github.com/antidot/db2triples
+ * 
+ * This file is part of DB2Triples
+ *
+ * DB2Triples is free software; you can redistribute it and/or 
+ * modify it under the terms of the GNU Lesser General Public License as 
+ * published by the Free Software Foundation; either version 2 of 
+ * the License, or (at your option) any later version.
+ * 
+ * DB2Triples is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+/***************************************************************************
+ *
+ * R2RML : Hash Join Index Test
+ *
+ * Joins computed by an index kept in memory and by the same index spilled
+ * on disk must be identical.
+ *
+ ****************************************************************************/
+package net.antidot.semantic.rdf.rdb2rdf.r2rml.core;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.junit.Test;
+import org.openrdf.model.Resource;
+import org.openrdf.model.URI;
+import org.openrdf.model.ValueFactory;
+import org.openrdf.model.impl.ValueFactoryImpl;
+
+public class HashJoinIndexTest {
+
+	private static ValueFactory vf = new ValueFactoryImpl();
+
+	private static final String NS = "http://example.com/";
+	// Number of join keys, enough to fill every partition of a spilled index
+	private static final int NB_KEYS = 4 * HashJoinIndex.NB_PARTITIONS;
+
+	/*
+	 * Collect joined triples as sorted strings.
+	 */
+	private static class Collector implements HashJoinIndex.JoinHandler {
+		private List<String> triples = new ArrayList<String>();
+
+		public void join(Resource subject, Set<URI> predicates,
+				Resource object, Set<URI> targetGraphs) {
+			for (URI predicate : predicates)
+				triples.add(subject + " " + predicate + " " + object + " "
+						+ targetGraphs);
+		}
+
+		public List<String> getTriples() {
+			Collections.sort(triples);
+			return triples;
+		}
+	}
+
+	private static String key(String value) {
+		return HashJoinIndex.buildKey(new byte[][] { value.getBytes() });
+	}
+
+	/*
+	 * Build an index whose keys hold one or two parents (each added twice),
+	 * then join one child per key, plus rows whose key is NULL or unknown.
+	 */
+	private static List<String> join(long memoryBudget, boolean spilled) {
+		HashJoinIndex index = new HashJoinIndex("test", memoryBudget);
+		try {
+			for (int i = 0; i < NB_KEYS; i++)
+				for (int copy = 0; copy < 2; copy++) {
+					index.add(key("k" + i), vf.createURI(NS + "parent" + i));
+					if (i % 3 == 0)
+						index.add(key("k" + i), vf.createURI(NS + "other" + i));
+				}
+			index.add(null, vf.createURI(NS + "nullParent"));
+			index.complete();
+			assertEquals(spilled, index.isSpilled());
+
+			Set<URI> predicates = new HashSet<URI>();
+			predicates.add(vf.createURI(NS + "ref"));
+			Set<URI> graphs = new HashSet<URI>();
+			graphs.add(vf.createURI(NS + "graph"));
+			Collector collector = new Collector();
+			HashJoinIndex.Probe probe = index.newProbe();
+			for (int i = 0; i < NB_KEYS; i++)
+				probe.probe(key("k" + i), vf.createURI(NS + "child" + i),
+						predicates, graphs, collector);
+			probe.probe(null, vf.createURI(NS + "nullChild"), predicates,
+					graphs, collector);
+			probe.probe(key("unknown"), vf.createURI(NS + "lonelyChild"),
+					predicates, graphs, collector);
+			probe.finish(collector);
+			return collector.getTriples();
+		} finally {
+			index.delete();
+		}
+	}
+
+	@Test
+	public void testSpilledIndexJoinsLikeMemoryIndex() {
+		List<String> inMemory = join(Long.MAX_VALUE, false);
+		List<String> spilled = join(0, true);
+		assertEquals(NB_KEYS + (NB_KEYS + 2) / 3, inMemory.size());
+		assertEquals(inMemory, spilled);
+	}
+
+	@Test
+	public void testIndexSpilledWhileBuilt() {
+		// Budget exceeded in the middle of the parent rows
+		List<String> inMemory = join(Long.MAX_VALUE, false);
+		List<String> spilled = join(NB_KEYS * 100, true);
+		assertEquals(inMemory, spilled);
+	}
+
+	@Test
+	public void testNullKeysNeverJoin() {
+		assertNull(HashJoinIndex.buildKey(new byte[][] { "a".getBytes(),
+				null }));
+		for (String triple : join(0, true)) {
+			assertFalse(triple.contains("null"));
+			assertFalse(triple.contains("lonely"));
+		}
+		assertTrue(join(Long.MAX_VALUE, false).get(0).contains("child"));
+	}
+
+}
@@ -0,0 +1,210 @@
+/* 
+ * Copyright 2011-2013 Antidot opensource@antidot.net
+ * https://github.com/antidot/db2triples
+ * 
+ * This file is part of DB2Triples
+ *
+ * DB2Triples is free software; you can redistribute it and/or 
+ * modify it under the terms of the GNU Lesser General Public License as 
+ * published by the Free Software Foundation; either version 2 of 
+ * the License, or (at your option) any later version.
+ * 
+ * DB2Triples is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+/***************************************************************************
+ *
+ * R2RML : R2RML Mapping Cache Test
+ *
+ * A mapping read from the cache must be the mapping parsed from its
+ * document, and a cache entry must never be served for another document.
+ *
+ ****************************************************************************/
+package net.antidot.semantic.rdf.rdb2rdf.r2rml.core;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.lang.reflect.Field;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import net.antidot.semantic.rdf.rdb2rdf.r2rml.model.GraphMap;
+import net.antidot.semantic.rdf.rdb2rdf.r2rml.model.ObjectMap;
+import net.antidot.semantic.rdf.rdb2rdf.r2rml.model.PredicateMap;
+import net.antidot.semantic.rdf.rdb2rdf.r2rml.model.PredicateObjectMap;
+import net.antidot.semantic.rdf.rdb2rdf.r2rml.model.R2RMLMapping;
+import net.antidot.semantic.rdf.rdb2rdf.r2rml.model.ReferencingObjectMap;
+import net.antidot.semantic.rdf.rdb2rdf.r2rml.model.TermMap;
+import net.antidot.semantic.rdf.rdb2rdf.r2rml.model.TriplesMap;
+import net.antidot.sql.model.core.DriverType;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class R2RMLMappingCacheTest {
+
+	private static final String MAPPING = "@prefix rr: <http://www.w3.org/ns/r2rml#> .\n"
+			+ "@prefix ex: <http://example.com/ns#> .\n"
+			+ "<#Dept> rr:logicalTable [ rr:tableName \"DEPT\" ] ;\n"
+			+ "  rr:subjectMap [ rr:template \"http://example.com/dept/{DEPTNO}\" ; rr:class ex:Dept ; rr:graph <#graph> ] ;\n"
+			+ "  rr:predicateObjectMap [ rr:predicate ex:name ; rr:objectMap [ rr:column \"DNAME\" ] ] .\n"
+			+ "<#Emp> rr:logicalTable [ rr:sqlQuery \"SELECT EMPNO, ENAME, DEPTNO FROM EMP\" ] ;\n"
+			+ "  rr:subjectMap [ rr:template \"emp/{EMPNO}\" ] ;\n"
+			+ "  rr:predicateObjectMap [ rr:predicate ex:label ; rr:objectMap [ rr:template \"{ENAME} ({EMPNO})\" ; rr:termType rr:Literal ] ] ;\n"
+			+ "  rr:predicateObjectMap [ rr:predicate ex:dept ; rr:objectMap [ rr:parentTriplesMap <#Dept> ;\n"
+			+ "    rr:joinCondition [ rr:child \"DEPTNO\" ; rr:parent \"DEPTNO\" ] ] ] .\n";
+
+	private static final DriverType driver = DriverType.MysqlDriver;
+
+	private File root;
+
+	@Before
+	public void setUp() throws Exception {
+		root = File.createTempFile("db2triples-cache-", "");
+		root.delete();
+		assertTrue(root.mkdirs());
+		// Column identifiers of the mapping depend on the driver in use
+		setProcessorDriver(driver);
+	}
+
+	@After
+	public void tearDown() throws Exception {
+		setProcessorDriver(null);
+		delete(root);
+	}
+
+	private static void setProcessorDriver(DriverType driverType)
+			throws Exception {
+		Field field = R2RMLProcessor.class.getDeclaredField("driver");
+		field.setAccessible(true);
+		field.set(null, driverType);
+	}
+
+	private static void delete(File file) {
+		File[] children = file.listFiles();
+		if (children != null)
+			for (File child : children)
+				delete(child);
+		file.delete();
+	}
+
+	private File writeMapping(String directory) throws IOException {
+		File dir = new File(root, directory);
+		dir.mkdirs();
+		File file = new File(dir, "mapping.ttl");
+		Writer out = new OutputStreamWriter(new FileOutputStream(file), "UTF-8");
+		try {
+			out.write(MAPPING);
+		} finally {
+			out.close();
+		}
+		return file;
+	}
+
+	/*
+	 * Sorted description of the triples maps of a mapping.
+	 */
+	private static List<String> describe(R2RMLMapping mapping) {
+		List<String> result = new ArrayList<String>();
+		for (TriplesMap triplesMap : mapping.getTriplesMaps()) {
+			String name = triplesMap.getName();
+			result.add(name + " table " + triplesMap.getLogicalTable().getEffectiveSQLQuery());
+			result.add(name + " subject " + describe(triplesMap.getSubjectMap())
+					+ " " + triplesMap.getSubjectMap().getClassIRIs());
+			for (GraphMap graphMap : triplesMap.getSubjectMap().getGraphMaps())
+				result.add(name + " graph " + describe(graphMap));
+			for (PredicateObjectMap pom : triplesMap.getPredicateObjectMaps()) {
+				for (PredicateMap predicateMap : pom.getPredicateMaps())
+					for (ObjectMap objectMap : pom.getObjectMaps())
+						result.add(name + " " + describe(predicateMap) + " "
+								+ describe(objectMap));
+				for (PredicateMap predicateMap : pom.getPredicateMaps())
+					for (ReferencingObjectMap refMap : pom.getReferencingObjectMaps())
+						result.add(name + " " + describe(predicateMap) + " "
+								+ refMap.getParentTriplesMap().getName() + " "
+								+ refMap.getJointSQLQuery());
+			}
+		}
+		Collections.sort(result);
+		return result;
+	}
+
+	private static String describe(TermMap termMap) {
+		return termMap.getTermMapType() + "/" + termMap.getTermType() + "/"
+				+ termMap.getConstantValue() + "/" + termMap.getColumnValue()
+				+ "/" + termMap.getStringTemplate();
+	}
+
+	@Test
+	public void testStoredMappingIsLoadedUnchanged() throws Exception {
+		File document = writeMapping("a");
+		R2RMLMapping parsed = R2RMLMappingFactory.extractR2RMLMapping(
+				document.getPath(), driver);
+		R2RMLMappingCache cache = new R2RMLMappingCache(new File(root, "cache"));
+		String key = R2RMLMappingCache.buildKey(document, driver);
+		assertNull(cache.load(key));
+		cache.store(key, parsed);
+		R2RMLMapping loaded = cache.load(key);
+		assertNotNull(loaded);
+		assertEquals(2, loaded.getTriplesMaps().size());
+		assertEquals(describe(parsed), describe(loaded));
+	}
+
+	@Test
+	public void testKeyDependsOnLocationOfDocument() throws Exception {
+		File first = writeMapping("a");
+		File second = writeMapping("b");
+		assertEquals(R2RMLMappingCache.buildKey(first, driver),
+				R2RMLMappingCache.buildKey(first, driver));
+		assertFalse(R2RMLMappingCache.buildKey(first, driver).equals(
+				R2RMLMappingCache.buildKey(second, driver)));
+		// Their relative IRIs are resolved against different bases
+		assertFalse(describe(
+				R2RMLMappingFactory.extractR2RMLMapping(first.getPath(), driver))
+				.equals(describe(R2RMLMappingFactory.extractR2RMLMapping(
+						second.getPath(), driver))));
+	}
+
+	@Test
+	public void testCorruptedEntryIsDiscarded() throws Exception {
+		File document = writeMapping("a");
+		File directory = new File(root, "cache");
+		R2RMLMappingCache cache = new R2RMLMappingCache(directory);
+		String key = R2RMLMappingCache.buildKey(document, driver);
+		cache.store(key, R2RMLMappingFactory.extractR2RMLMapping(
+				document.getPath(), driver));
+		File[] files = directory.listFiles();
+		assertEquals(1, files.length);
+		FileOutputStream out = new FileOutputStream(files[0]);
+		try {
+			out.write("not a mapping".getBytes("UTF-8"));
+		} finally {
+			out.close();
+		}
+		assertNull(cache.load(key));
+		assertFalse(files[0].exists());
+
+		// The next run parses the document again and stores it
+		R2RMLMapping parsed = R2RMLMappingFactory.extractR2RMLMapping(
+				document.getPath(), driver);
+		cache.store(key, parsed);
+		assertEquals(describe(parsed), describe(cache.load(key)));
+	}
+
+}
@@ -0,0 +1,81 @@
+/* 
+ * Copyright 2011-2013 Antidot opensource@antidot.net
+ * https://github.com/antidot/db2triples
+ * 
+ * This file is part of DB2Triples
+ *
+ * DB2Triples is free software; you can redistribute it and/or 
+ * modify it under the terms of the GNU Lesser General Public License as 
+ * published by the Free Software Foundation; either version 2 of 
+ * the License, or (at your option) any later version.
+ * 
+ * DB2Triples is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+/***************************************************************************
+ *
+ * R2RML : R2RML Toolkit Test
+ *
+ * IRI-safe versions of values, as defined by the R2RML specification.
+ *
+ ****************************************************************************/
+package net.antidot.semantic.rdf.rdb2rdf.r2rml.tools;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+import org.junit.Test;
+
+public class R2RMLToolkitTest {
+
+	private static void checkIRISafeVersion(String expected, String value) {
+		assertEquals(value, expected, R2RMLToolkit.getIRISafeVersion(value));
+		StringBuilder buff = new StringBuilder("<");
+		R2RMLToolkit.appendIRISafeVersion(value, buff);
+		assertEquals(value, "<" + expected, buff.toString());
+	}
+
+	@Test
+	public void testUnreservedValueIsUnchanged() {
+		String value = "Jean-Dupont_42.~*'()!=";
+		assertSame(value, R2RMLToolkit.getIRISafeVersion(value));
+		checkIRISafeVersion("", "");
+	}
+
+	@Test
+	public void testPercentEncodingOfUTF8Octets() {
+		checkIRISafeVersion("a%20b%2Fé%E2%82%AC%F0%9F%98%80%01",
+				"a b/é€😀\u0001");
+		// Letters outside ASCII are kept, even out of the BMP
+		checkIRISafeVersion("日本𝐀", "日本𝐀");
+	}
+
+	@Test
+	public void testUnpairedSurrogates() {
+		// Encoded as the code unit alone, the following character is kept
+		checkIRISafeVersion("%ED%A0%80a", "\uD800a");
+		checkIRISafeVersion("a%ED%B0%80", "a\uDC00");
+		checkIRISafeVersion("%ED%B0%80%ED%A0%80", "\uDC00\uD800");
+	}
+
+	@Test
+	public void testASCIICharacters() {
+		String unreserved = "-._~*'()!=";
+		for (char c = 0; c < 128; c++) {
+			String value = String.valueOf(c);
+			boolean kept = (c >= 'A' && c <= 'Z') || (c >= 'a' && c <= 'z')
+					|| (c >= '0' && c <= '9') || unreserved.indexOf(c) >= 0;
+			checkIRISafeVersion(kept ? value : String.format("%%%02X",
+					(int) c), value);
+		}
+		// Boundaries of the letters and digits ranges
+		checkIRISafeVersion("%2F09%3A%40AZ%5B%60az%7B%7F", "/09:@AZ[`az{\u007F");
+		checkIRISafeVersion("%20%22%23%24%25%26%2B%2C%3B%3C%3E%3F%5C%5D%5E%7C%7D",
+				" \"#$%&+,;<>?\\]^|}");
+	}
+}
@@ -0,0 +1,148 @@
+/* 
+ * Copyright 2011-2013 Antidot opensource@antidot.net
+ * https://github.com/antidot/db2triples
+ * 
+ * This file is part of DB2Triples
+ *
+ * DB2Triples is free software; you can redistribute it and/or 
+ * modify it under the terms of the GNU Lesser General Public License as 
+ * published by the Free Software Foundation; either version 2 of 
+ * the License, or (at your option) any later version.
+ * 
+ * DB2Triples is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+/***************************************************************************
+ *
+ * R2RML : String Template Test
+ *
+ * A compiled string template must render rows as the former rendering by
+ * regular expressions did.
+ *
+ ****************************************************************************/
+package net.antidot.semantic.rdf.rdb2rdf.r2rml.tools;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import java.lang.reflect.Field;
+import java.util.HashMap;
+import java.util.Map;
+
+import net.antidot.semantic.rdf.rdb2rdf.r2rml.core.R2RMLProcessor;
+import net.antidot.sql.model.core.DriverType;
+import net.antidot.sql.model.db.ColumnIdentifier;
+import net.antidot.sql.model.db.ColumnIdentifierImpl;
+
+import org.junit.After;
+import org.junit.Test;
+
+public class StringTemplateTest {
+
+	private static final String[] TEMPLATES = {
+			"http://example.com/emp/{ID}",
+			"http://example.com/{ID}/{NAME}",
+			"{NAME}",
+			"{ID}-{ID}",
+			"\\{literal\\} {ID} \\{NAME\\}",
+			"http://example.com/{ID}/{OTHER}",
+			"no column" };
+
+	private static final String[][] ROWS = { { "7", "Smith" },
+			{ "42", "Jean Dupont/é€😀" }, { "", "a {b} \\c" } };
+
+	@After
+	public void tearDown() throws Exception {
+		setProcessorDriver(null);
+	}
+
+	private static void setProcessorDriver(DriverType driverType)
+			throws Exception {
+		Field field = R2RMLProcessor.class.getDeclaredField("driver");
+		field.setAccessible(true);
+		field.set(null, driverType);
+	}
+
+	private static Map<ColumnIdentifier, byte[]> row(String id, String name)
+			throws Exception {
+		Map<ColumnIdentifier, byte[]> result = new HashMap<ColumnIdentifier, byte[]>();
+		result.put(ColumnIdentifierImpl.buildFromR2RMLConfigFile("ID"),
+				id == null ? null : id.getBytes("UTF-8"));
+		result.put(ColumnIdentifierImpl.buildFromR2RMLConfigFile("NAME"),
+				name == null ? null : name.getBytes("UTF-8"));
+		return result;
+	}
+
+	/*
+	 * Rendering by regular expressions, before templates were compiled.
+	 */
+	private static String renderByRegex(String stringTemplate,
+			Map<ColumnIdentifier, byte[]> dbValues) throws Exception {
+		String result = stringTemplate;
+		for (ColumnIdentifier column : dbValues.keySet())
+			if (dbValues.get(column) == null)
+				return null;
+		for (ColumnIdentifier column : dbValues.keySet()) {
+			String value = new String(dbValues.get(column), "UTF-8");
+			result = column.replaceAll(result,
+					R2RMLToolkit.getIRISafeVersion(value));
+		}
+		result = result.replaceAll("\\\\\\{", "{");
+		result = result.replaceAll("\\\\\\}", "}");
+		return result;
+	}
+
+	private static void checkRendering(DriverType driver) throws Exception {
+		setProcessorDriver(driver);
+		for (String template : TEMPLATES) {
+			StringTemplate compiled = new StringTemplate(template);
+			for (String[] values : ROWS) {
+				// Values of the columns of the template, as the engine gives
+				Map<ColumnIdentifier, byte[]> dbValues = row(values[0],
+						values[1]);
+				dbValues.keySet().retainAll(compiled.getColumns());
+				String expected = renderByRegex(template, dbValues);
+				assertEquals(template, expected, compiled.render(dbValues));
+				assertEquals(template, expected, R2RMLToolkit
+						.extractColumnValueFromStringTemplate(template,
+								dbValues, null));
+			}
+		}
+	}
+
+	@Test
+	public void testRenderingOfMySQLTemplates() throws Exception {
+		checkRendering(DriverType.MysqlDriver);
+	}
+
+	@Test
+	public void testRenderingOfPostgreSQLTemplates() throws Exception {
+		checkRendering(DriverType.PostgreSQL);
+	}
+
+	@Test
+	public void testNullValues() throws Exception {
+		setProcessorDriver(DriverType.PostgreSQL);
+		for (String template : TEMPLATES) {
+			StringTemplate compiled = new StringTemplate(template);
+			assertNull(compiled.render(row("7", null)));
+			assertNull(compiled.render(row(null, "Smith")));
+			assertNull(compiled.render(null));
+		}
+	}
+
+	@Test
+	public void testEscapesAndUnknownColumns() throws Exception {
+		setProcessorDriver(DriverType.PostgreSQL);
+		assertEquals("{literal} 42 {NAME}", new StringTemplate(
+				"\\{literal\\} {ID} \\{NAME\\}").render(row("42", "x")));
+		assertEquals("http://example.com/42/{OTHER}", new StringTemplate(
+				"http://example.com/{ID}/{OTHER}").render(row("42", "x")));
+	}
+
+}